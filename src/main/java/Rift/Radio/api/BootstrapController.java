@@ -0,0 +1,49 @@
+package Rift.Radio.api;
+
+import Rift.Radio.dto.BootstrapDto;
+import Rift.Radio.service.BootstrapService;
+import Rift.Radio.service.events.CatalogVersion;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/bootstrap")
+@CrossOrigin(origins = "http://localhost:5173")
+public class BootstrapController {
+
+    private final BootstrapService bootstrapService;
+    private final CatalogVersion catalogVersion;
+
+    @Autowired
+    public BootstrapController(BootstrapService bootstrapService, CatalogVersion catalogVersion) {
+        this.bootstrapService = bootstrapService;
+        this.catalogVersion = catalogVersion;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> bootstrap(
+            @RequestParam(defaultValue = "50") @Min(1) @Max(100) int pageSize,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            String etag = catalogVersion.etag("bootstrap", pageSize);
+            if (CatalogVersion.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            BootstrapDto dto = bootstrapService.bootstrap(pageSize);
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(dto);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Internal server error");
+        }
+    }
+
+}
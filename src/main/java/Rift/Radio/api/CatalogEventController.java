@@ -0,0 +1,27 @@
+package Rift.Radio.api;
+
+import Rift.Radio.service.events.CatalogEventStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/v1/events")
+@CrossOrigin(origins = "http://localhost:5173")
+public class CatalogEventController {
+
+    private final CatalogEventStream eventStream;
+
+    @Autowired
+    public CatalogEventController(CatalogEventStream eventStream) {
+        this.eventStream = eventStream;
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCatalogChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return eventStream.subscribe(lastEventId);
+    }
+
+}
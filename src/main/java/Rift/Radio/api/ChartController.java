@@ -0,0 +1,37 @@
+package Rift.Radio.api;
+
+import Rift.Radio.service.charts.ChartService;
+import Rift.Radio.service.charts.ChartWindow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/charts")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ChartController {
+
+    private final ChartService chartService;
+
+    @Autowired
+    public ChartController(ChartService chartService) {
+        this.chartService = chartService;
+    }
+
+    /**
+     * Top songs by estimated plays for window=hour, day or week. Entries carry song ids;
+     * details come from GET /api/v1/songs?ids=.
+     */
+    @GetMapping
+    public ResponseEntity<?> getChart(@RequestParam(defaultValue = "day") String window,
+                                      @RequestParam(defaultValue = "50") int limit) {
+        ChartWindow chartWindow;
+        try {
+            chartWindow = ChartWindow.fromName(window);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        return ResponseEntity.ok(chartService.getChart(chartWindow, limit));
+    }
+}
@@ -0,0 +1,119 @@
+package Rift.Radio.api;
+
+import Rift.Radio.error.SongException;
+import Rift.Radio.service.artwork.CoverArtService;
+import Rift.Radio.service.artwork.CoverFile;
+import Rift.Radio.service.events.CatalogVersion;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+@RestController
+@RequestMapping("/api/v1")
+@CrossOrigin(origins = "http://localhost:5173")
+public class CoverArtController {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    // Tomcat request attributes for sending a file with sendfile after the handler returns
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final CoverArtService coverArtService;
+
+    @Autowired
+    public CoverArtController(CoverArtService coverArtService) {
+        this.coverArtService = coverArtService;
+    }
+
+    /**
+     * Redirects to the content-addressed URL of the song's cover. That URL never changes its
+     * content, so browsers cache it for good, and songs sharing a picture share the cache entry.
+     */
+    @GetMapping("/songs/{id}/cover")
+    public ResponseEntity<?> getSongCover(@PathVariable Long id,
+                                          @RequestParam(defaultValue = "0") int size,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String hash;
+        try {
+            hash = coverArtService.getCoverHash(id);
+        } catch (SongException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+        if (hash == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Song has no cover");
+        }
+        int variant = CoverArtService.bucket(size);
+        String etag = "\"" + hash + "-" + variant + "\"";
+        if (CatalogVersion.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        URI location = UriComponentsBuilder.fromPath("/api/v1/covers/{hash}")
+                .queryParam("size", variant)
+                .buildAndExpand(hash)
+                .toUri();
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(location)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .build();
+    }
+
+    @GetMapping("/covers/{hash}")
+    public void getCover(@PathVariable String hash,
+                         @RequestParam(defaultValue = "0") int size,
+                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        CoverFile cover = coverArtService.resolve(hash, size);
+        if (cover == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        response.setHeader(HttpHeaders.ETAG, cover.getEtag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+        if (CatalogVersion.matches(ifNoneMatch, cover.getEtag())) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+        response.setContentType(cover.getContentType());
+        response.setContentLengthLong(cover.getLength());
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // The connector copies the file to the socket in the kernel
+            request.setAttribute(SENDFILE_FILENAME, cover.getPath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, cover.getLength());
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(cover.getPath(), StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = 0;
+            while (position < cover.getLength()) {
+                long sent = channel.transferTo(position, cover.getLength() - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package Rift.Radio.api;
+
+import Rift.Radio.dto.DuplicateReportDto;
+import Rift.Radio.service.fingerprint.FingerprintService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/songs/duplicates")
+@CrossOrigin(origins = "http://localhost:5173")
+public class DuplicateSongsController {
+
+    private final FingerprintService fingerprintService;
+
+    @Autowired
+    public DuplicateSongsController(FingerprintService fingerprintService) {
+        this.fingerprintService = fingerprintService;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getDuplicates() {
+        DuplicateReportDto report = fingerprintService.getLastReport();
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No duplicate scan has finished yet");
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    @PostMapping("/scan")
+    public ResponseEntity<String> scan() {
+        if (!fingerprintService.startScan()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("A duplicate scan is already running");
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body("Duplicate scan started");
+    }
+}
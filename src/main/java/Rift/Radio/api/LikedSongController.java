@@ -1,9 +1,15 @@
 package Rift.Radio.api;
 
+import Rift.Radio.dto.BatchResultDto;
+import Rift.Radio.dto.SongIdsDto;
 import Rift.Radio.modal.LikedSong;
 import Rift.Radio.modal.Song;
 import Rift.Radio.service.LikedSongService;
+import Rift.Radio.service.events.CatalogVersion;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,10 +23,12 @@ import java.util.List;
 public class LikedSongController {
 
     private final LikedSongService likedService;
+    private final CatalogVersion catalogVersion;
 
     @Autowired
-    public LikedSongController(LikedSongService likedService) {
+    public LikedSongController(LikedSongService likedService, CatalogVersion catalogVersion) {
         this.likedService = likedService;
+        this.catalogVersion = catalogVersion;
     }
 
     @PostMapping("/{songId}")
@@ -30,9 +38,17 @@ public class LikedSongController {
     }
 
     @GetMapping
-    public ResponseEntity<List<Song>> getAllLikedSongs() {
+    public ResponseEntity<List<Song>> getAllLikedSongs(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = catalogVersion.etag("liked");
+        if (CatalogVersion.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         List<Song> likedSongs = likedService.getAllLikedSongs();
-        return ResponseEntity.ok(likedSongs);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(likedSongs);
     }
 
     @DeleteMapping("/{songId}")
@@ -41,4 +57,16 @@ public class LikedSongController {
         return ResponseEntity.ok().build();
     }
 
-}
\ No newline at end of file
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResultDto> likeSongs(@RequestBody @Valid SongIdsDto dto) {
+        BatchResultDto result = likedService.likeSongs(dto.getSongIds());
+        return ResponseEntity.ok(result);
+    }
+
+    @DeleteMapping("/batch")
+    public ResponseEntity<BatchResultDto> removeLikedSongs(@RequestBody @Valid SongIdsDto dto) {
+        BatchResultDto result = likedService.removeLikedSongs(dto.getSongIds());
+        return ResponseEntity.ok(result);
+    }
+
+}
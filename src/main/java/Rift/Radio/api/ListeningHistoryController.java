@@ -0,0 +1,29 @@
+package Rift.Radio.api;
+
+import Rift.Radio.dto.ListeningHistoryEntryDto;
+import Rift.Radio.service.history.ListeningHistoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/history")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ListeningHistoryController {
+
+    private final ListeningHistoryService listeningHistoryService;
+
+    @Autowired
+    public ListeningHistoryController(ListeningHistoryService listeningHistoryService) {
+        this.listeningHistoryService = listeningHistoryService;
+    }
+
+    @GetMapping("/recent")
+    public ResponseEntity<List<ListeningHistoryEntryDto>> getRecent(
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "7") int days) {
+        return ResponseEntity.ok(listeningHistoryService.getRecent(limit, days));
+    }
+}
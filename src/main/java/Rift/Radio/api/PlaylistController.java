@@ -1,13 +1,23 @@
 package Rift.Radio.api;
 
+import Rift.Radio.dto.BatchResultDto;
 import Rift.Radio.dto.CreatePlaylistDto;
+import Rift.Radio.dto.CreateSmartPlaylistDto;
+import Rift.Radio.dto.MoveSongDto;
 import Rift.Radio.dto.PlaylistDto;
+import Rift.Radio.dto.PlaylistSummaryDto;
+import Rift.Radio.dto.SmartRuleDto;
+import Rift.Radio.dto.SongIdsDto;
+import Rift.Radio.error.ErrorType;
 import Rift.Radio.error.PlaylistException;
-import Rift.Radio.modal.Playlist;
-import Rift.Radio.modal.Song;
+import Rift.Radio.service.PlaylistOrderService;
 import Rift.Radio.service.PlaylistService;
+import Rift.Radio.service.events.CatalogVersion;
+import Rift.Radio.service.smart.SmartPlaylistService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -20,17 +30,34 @@ import java.util.Set;
 @CrossOrigin(origins = "http://localhost:5173")
 public class PlaylistController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final PlaylistService playlistService;
+    private final PlaylistOrderService playlistOrderService;
+    private final SmartPlaylistService smartPlaylistService;
+    private final CatalogVersion catalogVersion;
 
     @Autowired
-    public PlaylistController(PlaylistService playlistService) {
+    public PlaylistController(PlaylistService playlistService, PlaylistOrderService playlistOrderService,
+                              SmartPlaylistService smartPlaylistService, CatalogVersion catalogVersion) {
         this.playlistService = playlistService;
+        this.playlistOrderService = playlistOrderService;
+        this.smartPlaylistService = smartPlaylistService;
+        this.catalogVersion = catalogVersion;
     }
 
     @GetMapping
-    public ResponseEntity<List<PlaylistDto>> listAllPlaylists() {
+    public ResponseEntity<List<PlaylistDto>> listAllPlaylists(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = catalogVersion.etag("playlists");
+        if (CatalogVersion.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         List<PlaylistDto> playlists = playlistService.listAllPlaylists();
-        return ResponseEntity.ok(playlists);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(playlists);
     }
 
     @PostMapping
@@ -43,22 +70,88 @@ public class PlaylistController {
         }
     }
 
+    @PostMapping("/smart")
+    public ResponseEntity<?> createSmartPlaylist(@RequestBody @Valid CreateSmartPlaylistDto dto) {
+        try {
+            PlaylistSummaryDto created = smartPlaylistService.createSmartPlaylist(dto);
+            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        } catch (PlaylistException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @PutMapping("/{playlistId}/rule")
+    public ResponseEntity<?> updateSmartRule(@PathVariable Long playlistId, @RequestBody SmartRuleDto dto) {
+        try {
+            PlaylistSummaryDto updated = smartPlaylistService.updateRule(playlistId, dto);
+            return ResponseEntity.ok(updated);
+        } catch (PlaylistException e) {
+            HttpStatus status = e.getErrorType() == ErrorType.PLAYLIST_NOT_FOUND
+                    ? HttpStatus.NOT_FOUND : HttpStatus.BAD_REQUEST;
+            return ResponseEntity.status(status).body(e.getMessage());
+        }
+    }
+
     @PostMapping("/{playlistId}/songs/{songId}")
-    public ResponseEntity<Playlist> addSongToPlaylist(@PathVariable Long playlistId, @PathVariable Long songId) {
-        Playlist updated = playlistService.addSongToPlaylist(playlistId, songId);
+    public ResponseEntity<PlaylistSummaryDto> addSongToPlaylist(@PathVariable Long playlistId, @PathVariable Long songId) {
+        PlaylistSummaryDto updated = playlistService.addSongToPlaylist(playlistId, songId);
         return ResponseEntity.ok(updated);
     }
 
     @DeleteMapping("/{playlistId}/songs/{songId}")
-    public ResponseEntity<Playlist> deleteSongFromPlaylist(@PathVariable Long playlistId, @PathVariable Long songId) {
-        Playlist updated = playlistService.deleteSongFromPlaylist(playlistId, songId);
+    public ResponseEntity<PlaylistSummaryDto> deleteSongFromPlaylist(@PathVariable Long playlistId, @PathVariable Long songId) {
+        PlaylistSummaryDto updated = playlistService.deleteSongFromPlaylist(playlistId, songId);
         return ResponseEntity.ok(updated);
     }
 
+    @PostMapping("/{playlistId}/songs")
+    public ResponseEntity<?> addSongsToPlaylist(@PathVariable Long playlistId, @RequestBody @Valid SongIdsDto dto) {
+        try {
+            BatchResultDto result = playlistService.addSongsToPlaylist(playlistId, dto.getSongIds());
+            return ResponseEntity.ok(result);
+        } catch (PlaylistException e) {
+            HttpStatus status = e.getErrorType() == ErrorType.SMART_PLAYLIST_READ_ONLY
+                    ? HttpStatus.CONFLICT : HttpStatus.NOT_FOUND;
+            return ResponseEntity.status(status).body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{playlistId}/songs")
+    public ResponseEntity<?> removeSongsFromPlaylist(@PathVariable Long playlistId, @RequestBody @Valid SongIdsDto dto) {
+        try {
+            BatchResultDto result = playlistService.removeSongsFromPlaylist(playlistId, dto.getSongIds());
+            return ResponseEntity.ok(result);
+        } catch (PlaylistException e) {
+            HttpStatus status = e.getErrorType() == ErrorType.SMART_PLAYLIST_READ_ONLY
+                    ? HttpStatus.CONFLICT : HttpStatus.NOT_FOUND;
+            return ResponseEntity.status(status).body(e.getMessage());
+        }
+    }
+
+    @PutMapping("/{playlistId}/songs/{songId}/position")
+    public ResponseEntity<?> moveSong(@PathVariable Long playlistId, @PathVariable Long songId,
+                                      @RequestBody MoveSongDto dto) {
+        try {
+            playlistOrderService.moveSong(playlistId, songId, dto.getAfterSongId());
+            return ResponseEntity.noContent().build();
+        } catch (PlaylistException e) {
+            HttpStatus status = e.getErrorType() == ErrorType.INVALID_POSITION
+                    ? HttpStatus.BAD_REQUEST : HttpStatus.NOT_FOUND;
+            return ResponseEntity.status(status).body(e.getMessage());
+        }
+    }
+
     @GetMapping("/{playlistId}/songs")
-    public ResponseEntity<PlaylistDto> listSongsInPlaylist(@PathVariable Long playlistId) {
-        PlaylistDto songs = playlistService.listSongsInPlaylist(playlistId);
-        return ResponseEntity.ok(songs);
+    public ResponseEntity<PlaylistDto> listSongsInPlaylist(@PathVariable Long playlistId,
+                                                           @RequestParam(required = false) Integer offset,
+                                                           @RequestParam(required = false) Integer limit) {
+        if (offset == null && limit == null) {
+            PlaylistDto songs = playlistService.listSongsInPlaylist(playlistId);
+            return ResponseEntity.ok(songs);
+        }
+        PlaylistDto page = playlistService.listSongsInPlaylist(playlistId,
+                offset == null ? 0 : offset, limit == null ? DEFAULT_PAGE_SIZE : limit);
+        return ResponseEntity.ok(page);
     }
 
 }
@@ -0,0 +1,97 @@
+package Rift.Radio.api;
+
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.service.archive.PlaylistArchive;
+import Rift.Radio.service.archive.PlaylistArchiveService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@RestController
+@ConditionalOnProperty(name = "riftradio.storage.type", havingValue = "local", matchIfMissing = true)
+@RequestMapping("/api/v1/playlists")
+@CrossOrigin(origins = "http://localhost:5173")
+public class PlaylistDownloadController {
+
+    private final PlaylistArchiveService playlistArchiveService;
+
+    @Autowired
+    public PlaylistDownloadController(PlaylistArchiveService playlistArchiveService) {
+        this.playlistArchiveService = playlistArchiveService;
+    }
+
+    /**
+     * Streams the playlist as a zip. A single byte range is honoured when If-Range is absent
+     * or still matches the archive's ETag; otherwise the whole archive is sent.
+     */
+    @GetMapping("/{playlistId}/download")
+    public ResponseEntity<?> downloadPlaylist(
+            @PathVariable Long playlistId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        PlaylistArchive archive;
+        try {
+            archive = playlistArchiveService.prepare(playlistId);
+        } catch (PlaylistException e) {
+            HttpStatus status = e.getErrorType() == ErrorType.PLAYLIST_NOT_FOUND
+                    ? HttpStatus.NOT_FOUND : HttpStatus.BAD_REQUEST;
+            return ResponseEntity.status(status).body(e.getMessage());
+        }
+
+        long length = archive.length();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setETag(archive.getEtag());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(archive.getFileName(), StandardCharsets.UTF_8)
+                .build());
+
+        if (range != null && (ifRange == null || ifRange.equals(archive.getEtag()))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = null;
+            }
+            if (ranges == null || ranges.size() != 1) {
+                return unsatisfiable(length);
+            }
+            long start;
+            long end;
+            try {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                return unsatisfiable(length);
+            }
+            long rangeStart = start;
+            long rangeEnd = end;
+            headers.setContentLength(rangeEnd - rangeStart + 1);
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + rangeStart + "-" + rangeEnd + "/" + length);
+            StreamingResponseBody body = out -> archive.writeTo(out, rangeStart, rangeEnd);
+            return new ResponseEntity<>(body, headers, HttpStatus.PARTIAL_CONTENT);
+        }
+
+        headers.setContentLength(length);
+        StreamingResponseBody body = out -> archive.writeTo(out, 0, length - 1);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    private static ResponseEntity<?> unsatisfiable(long length) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                .build();
+    }
+}
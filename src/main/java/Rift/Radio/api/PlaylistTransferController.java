@@ -0,0 +1,77 @@
+package Rift.Radio.api;
+
+import Rift.Radio.dto.PlaylistImportResultDto;
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.modal.Playlist;
+import Rift.Radio.service.transfer.PlaylistFormat;
+import Rift.Radio.service.transfer.PlaylistTransferService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@RequestMapping("/api/v0/playlists")
+@CrossOrigin(origins = "http://localhost:5173")
+public class PlaylistTransferController {
+
+    private final PlaylistTransferService playlistTransferService;
+
+    @Autowired
+    public PlaylistTransferController(PlaylistTransferService playlistTransferService) {
+        this.playlistTransferService = playlistTransferService;
+    }
+
+    /**
+     * Imports an M3U, M3U8 or XSPF file sent as the raw request body.
+     */
+    @PostMapping("/{playlistId}/import")
+    public ResponseEntity<?> importPlaylist(@PathVariable Long playlistId,
+                                            @RequestParam(defaultValue = "m3u8") String format,
+                                            InputStream body) {
+        try {
+            PlaylistImportResultDto result = playlistTransferService.importPlaylist(playlistId,
+                    PlaylistFormat.fromName(format), body);
+            return ResponseEntity.ok(result);
+        } catch (PlaylistException e) {
+            return ResponseEntity.status(statusFor(e)).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{playlistId}/export")
+    public ResponseEntity<?> exportPlaylist(@PathVariable Long playlistId,
+                                            @RequestParam(defaultValue = "m3u8") String format) {
+        try {
+            PlaylistFormat playlistFormat = PlaylistFormat.fromName(format);
+            Playlist playlist = playlistTransferService.requirePlaylist(playlistId);
+            StreamingResponseBody body = out -> playlistTransferService.exportPlaylist(playlist, playlistFormat, out);
+            ContentDisposition disposition = ContentDisposition.attachment()
+                    .filename(playlist.getName() + "." + playlistFormat.getExtension(), StandardCharsets.UTF_8)
+                    .build();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(playlistFormat.getContentType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                    .body(body);
+        } catch (PlaylistException e) {
+            return ResponseEntity.status(statusFor(e)).body(e.getMessage());
+        }
+    }
+
+    private HttpStatus statusFor(PlaylistException e) {
+        if (e.getErrorType() == ErrorType.PLAYLIST_NOT_FOUND) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (e.getErrorType() == ErrorType.SMART_PLAYLIST_READ_ONLY) {
+            return HttpStatus.CONFLICT;
+        }
+        return HttpStatus.BAD_REQUEST;
+    }
+}
@@ -0,0 +1,43 @@
+package Rift.Radio.api;
+
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.service.queue.QueueMode;
+import Rift.Radio.service.queue.QueueService;
+import Rift.Radio.service.queue.QueueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/queue")
+@CrossOrigin(origins = "http://localhost:5173")
+public class QueueController {
+
+    private final QueueService queueService;
+
+    @Autowired
+    public QueueController(QueueService queueService) {
+        this.queueService = queueService;
+    }
+
+    /**
+     * A page of a play queue over source=catalog|liked|playlist:{id}. Omit seed to start a new
+     * queue; pass the returned seed to fetch later pages of the same one.
+     */
+    @GetMapping
+    public ResponseEntity<?> getQueue(@RequestParam(defaultValue = "catalog") String source,
+                                      @RequestParam(defaultValue = "shuffle") String mode,
+                                      @RequestParam(required = false) Long seed,
+                                      @RequestParam(defaultValue = "0") int offset,
+                                      @RequestParam(defaultValue = "500") int limit) {
+        try {
+            return ResponseEntity.ok(queueService.getQueue(QueueSource.parse(source), QueueMode.fromName(mode),
+                    seed, offset, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (PlaylistException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+}
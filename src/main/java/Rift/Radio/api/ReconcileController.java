@@ -0,0 +1,41 @@
+package Rift.Radio.api;
+
+import Rift.Radio.dto.ReconcileReportDto;
+import Rift.Radio.service.reconcile.ReconciliationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@ConditionalOnProperty(name = "riftradio.storage.type", havingValue = "local", matchIfMissing = true)
+@RequestMapping("/api/v1/admin/reconcile")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ReconcileController {
+
+    private final ReconciliationService reconciliationService;
+
+    @Autowired
+    public ReconcileController(ReconciliationService reconciliationService) {
+        this.reconciliationService = reconciliationService;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getProgress() {
+        ReconcileReportDto report = reconciliationService.getReport();
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No reconciliation has run yet");
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    @PostMapping
+    public ResponseEntity<String> start(@RequestParam(defaultValue = "false") boolean repair,
+                                        @RequestParam(defaultValue = "false") boolean deep) {
+        if (!reconciliationService.start(repair, deep)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("A reconciliation run is already in progress");
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body("Reconciliation started");
+    }
+}
@@ -0,0 +1,30 @@
+package Rift.Radio.api;
+
+import Rift.Radio.error.SongException;
+import Rift.Radio.service.similar.SimilarSongsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/songs")
+@CrossOrigin(origins = "http://localhost:5173")
+public class SimilarSongsController {
+
+    private final SimilarSongsService similarSongsService;
+
+    @Autowired
+    public SimilarSongsController(SimilarSongsService similarSongsService) {
+        this.similarSongsService = similarSongsService;
+    }
+
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<?> getSimilarSongs(@PathVariable Long id, @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(similarSongsService.getSimilar(id, limit));
+        } catch (SongException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+}
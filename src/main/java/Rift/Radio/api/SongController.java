@@ -1,23 +1,40 @@
 package Rift.Radio.api;
 
 import Rift.Radio.dto.CreateSongDto;
+import Rift.Radio.dto.PlayCountDto;
+import Rift.Radio.dto.PlayEventDto;
+import Rift.Radio.dto.PlaybackContextDto;
+import Rift.Radio.dto.SongBatchDto;
 import Rift.Radio.dto.SongDto;
 import Rift.Radio.error.SongException;
 import Rift.Radio.modal.Song;
 import Rift.Radio.service.SongService;
+import Rift.Radio.service.charts.ChartService;
+import Rift.Radio.service.events.CatalogVersion;
+import Rift.Radio.service.history.ListeningHistoryService;
+import Rift.Radio.service.plays.KnownSongs;
+import Rift.Radio.service.plays.PlayCountService;
+import Rift.Radio.service.prefetch.PrefetchService;
+import Rift.Radio.service.upload.StreamingUploadService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartException;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.net.URI;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @CrossOrigin(origins = "http://localhost:5173")
@@ -25,10 +42,27 @@ import java.util.List;
 public class SongController {
 
     private final SongService songService;
+    private final CatalogVersion catalogVersion;
+    private final PlayCountService playCountService;
+    private final ListeningHistoryService listeningHistoryService;
+    private final ChartService chartService;
+    private final KnownSongs knownSongs;
+    private final PrefetchService prefetchService;
+    private final StreamingUploadService streamingUploadService;
 
     @Autowired
-    public SongController(SongService songService) {
+    public SongController(SongService songService, CatalogVersion catalogVersion, PlayCountService playCountService,
+                          ListeningHistoryService listeningHistoryService, ChartService chartService,
+                          KnownSongs knownSongs, PrefetchService prefetchService,
+                          StreamingUploadService streamingUploadService) {
         this.songService = songService;
+        this.catalogVersion = catalogVersion;
+        this.playCountService = playCountService;
+        this.listeningHistoryService = listeningHistoryService;
+        this.chartService = chartService;
+        this.knownSongs = knownSongs;
+        this.prefetchService = prefetchService;
+        this.streamingUploadService = streamingUploadService;
     }
 
 
@@ -36,10 +70,31 @@ public class SongController {
     @GetMapping
     public ResponseEntity<?> getAllSongs(
             @RequestParam(defaultValue = "0") @Min(0) int page,
-            @RequestParam(defaultValue = "50") @Min(1) @Max(100) int pageSize) {
+            @RequestParam(defaultValue = "50") @Min(1) @Max(100) int pageSize,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
+            String etag = catalogVersion.etag("songs", page, pageSize);
+            if (CatalogVersion.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
             List<SongDto> songs = songService.getAllSongs(page, pageSize);
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(songs);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Internal server error");
+        }
+    }
+
+    @GetMapping(params = "ids")
+    public ResponseEntity<?> getSongsByIds(@RequestParam List<Long> ids) {
+        try {
+            SongBatchDto songs = songService.getSongsByIds(ids);
             return ResponseEntity.ok(songs);
+        } catch (SongException e) {
+            return handleSongException(e);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Internal server error");
@@ -62,6 +117,32 @@ public class SongController {
         }
     }
 
+    /**
+     * Same as /upload, but the body is read as it arrives and the file goes straight to
+     * storage. Multipart resolution is lazy, so the servlet does not spool this body. A failed
+     * upload closes the connection, as the rest of the body was not read.
+     */
+    @PostMapping(value = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadFileStream(HttpServletRequest request) {
+        try {
+            Song song = streamingUploadService.upload(request.getContentType(), request.getInputStream());
+            return ResponseEntity.ok(song);
+        } catch (SongException e) {
+            ResponseEntity<?> error = handleSongException(e);
+            return ResponseEntity.status(error.getStatusCode())
+                    .header(HttpHeaders.CONNECTION, "close")
+                    .body(error.getBody());
+        } catch (MultipartException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .header(HttpHeaders.CONNECTION, "close")
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .header(HttpHeaders.CONNECTION, "close")
+                    .body("Internal server error");
+        }
+    }
+
     @GetMapping("/{id}/path")
     public ResponseEntity<?> getSongPath(@PathVariable Long id) {
         try {
@@ -75,13 +156,60 @@ public class SongController {
         }
     }
 
+    /**
+     * Records a play reported by the client. Plays of ids that are not songs are turned down,
+     * so they never reach the charts or the history.
+     */
+    @PostMapping("/{id}/play")
+    public ResponseEntity<Void> recordPlay(
+            @PathVariable Long id,
+            @RequestBody(required = false) @Valid PlayEventDto event,
+            @RequestHeader(value = HttpHeaders.USER_AGENT, required = false) String userAgent) {
+        if (!knownSongs.exists(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        String client = event != null && event.getClient() != null ? event.getClient() : userAgent;
+        registerPlay(id, event == null ? 0 : event.getPositionMs(), client);
+        return ResponseEntity.accepted().build();
+    }
+
+    @GetMapping("/{id}/plays")
+    public ResponseEntity<PlayCountDto> getPlayCount(@PathVariable Long id) {
+        return ResponseEntity.ok(new PlayCountDto(id, playCountService.getPlayCount(id)));
+    }
+
+    /**
+     * Streams the song, or redirects to the storage backend when it can serve the file itself.
+     * Query parameters describing what is being played (see {@link PlaybackContextDto}) add a
+     * preload Link for the next track and warm up the upcoming files.
+     */
     @GetMapping("/{id}/file")
-    public ResponseEntity<?> getSongFile(@PathVariable Long id) {
+    public ResponseEntity<?> getSongFile(@PathVariable Long id,
+                                         @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                         @RequestHeader(value = HttpHeaders.USER_AGENT, required = false) String userAgent,
+                                         PlaybackContextDto context,
+                                         HttpServletRequest request) {
         try {
+            Optional<URI> direct = songService.getSongFileUrl(id, null);
+            if (direct.isPresent()) {
+                countPlay(id, range, userAgent, request);
+                // Presigned URLs expire, so the redirect must not outlive them in a cache
+                return ResponseEntity.status(HttpStatus.FOUND)
+                        .location(direct.get())
+                        .cacheControl(CacheControl.noStore())
+                        .build();
+            }
             Resource resource = songService.getSongFile(id);
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
+            countPlay(id, range, userAgent, request);
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"");
+            if (isFromStart(range)) {
+                List<String> links = prefetchHints(id, context);
+                if (!links.isEmpty()) {
+                    builder.header(HttpHeaders.LINK, links.toArray(new String[0]));
+                }
+            }
+            return builder.body(resource);
         } catch (SongException e) {
             return handleSongException(e);
         } catch (Exception e) {
@@ -121,9 +249,14 @@ public class SongController {
 
 
     @GetMapping("/{id}/download")
-    public void downloadSong(@PathVariable Long id, HttpServletResponse response) {
+    public void downloadSong(@PathVariable Long id,
+                             @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                             @RequestHeader(value = HttpHeaders.USER_AGENT, required = false) String userAgent,
+                             HttpServletRequest request,
+                             HttpServletResponse response) {
         try {
             songService.downloadSong(id, response);
+            countPlay(id, range, userAgent, request);
         } catch (SongException e) {
             response.setStatus(mapSongExceptionStatus(e));
         } catch (Exception e) {
@@ -131,9 +264,49 @@ public class SongController {
         }
     }
 
+    /**
+     * Seeking and resuming send Range requests for later bytes; only a request that starts
+     * at the beginning of the file counts as a play. Prefetches are not plays either: the
+     * client reports those with POST /{id}/play once it starts playing them.
+     */
+    private void countPlay(Long id, String range, String userAgent, HttpServletRequest request) {
+        if (isFromStart(range) && !isPrefetch(request)) {
+            registerPlay(id, 0, userAgent);
+        }
+    }
+
+    private static boolean isFromStart(String range) {
+        return range == null || range.trim().replace(" ", "").startsWith("bytes=0-");
+    }
+
+    // Browsers send Sec-Purpose, older ones Purpose; scripts can only set the latter
+    private static boolean isPrefetch(HttpServletRequest request) {
+        String purpose = request.getHeader("Sec-Purpose");
+        if (purpose == null) {
+            purpose = request.getHeader("Purpose");
+        }
+        return purpose != null && purpose.toLowerCase().contains("prefetch");
+    }
+
+    private List<String> prefetchHints(Long id, PlaybackContextDto context) {
+        List<Long> upcoming = prefetchService.upcoming(id, context);
+        prefetchService.warmUp(upcoming);
+        return prefetchService.preloadLinks(upcoming, context);
+    }
+
+    // Only for songs that exist: streams have loaded the song, reported plays are checked first
+    private void registerPlay(Long id, long positionMs, String client) {
+        playCountService.recordPlay(id);
+        listeningHistoryService.recordPlay(id, positionMs, client);
+        chartService.recordPlay(id);
+    }
+
     private ResponseEntity<?> handleSongException(SongException e) {
         String msg = e.getMessage();
-        if ("Song name already exists".equals(msg) || "MP3 file already uploaded".equals(msg)) {
+        if ("Song name already exists".equals(msg) || "MP3 file already uploaded".equals(msg)
+                || "Same audio already uploaded".equals(msg) || "Too many ids in one request".equals(msg)
+                || "Invalid file format. Only MP3 files are allowed.".equals(msg) || "File is empty".equals(msg)
+                || "File size exceeds the limit".equals(msg) || "Invalid song data".equals(msg)) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(msg);
         } else if ("Song not found".equals(msg) || "Song file not found".equals(msg)) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(msg);
@@ -146,7 +319,8 @@ public class SongController {
 
     private int mapSongExceptionStatus(SongException e) {
         String msg = e.getMessage();
-        if ("Song name already exists".equals(msg) || "MP3 file already uploaded".equals(msg)) {
+        if ("Song name already exists".equals(msg) || "MP3 file already uploaded".equals(msg)
+                || "Same audio already uploaded".equals(msg)) {
             return HttpStatus.BAD_REQUEST.value();
         } else if ("Song not found".equals(msg) || "Song file not found".equals(msg)) {
             return HttpStatus.NOT_FOUND.value();
@@ -0,0 +1,55 @@
+package Rift.Radio.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Runs the independent catalog queries of a single request in parallel.
+     * Kept small and bounded so a burst of page loads cannot drain the connection pool.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor catalogQueryExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("catalog-query-");
+        return executor;
+    }
+
+    /**
+     * One thread per running playlist download, reading the next files ahead of the response.
+     * No queue: when every thread is busy a new download is refused instead of stalling.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor archiveReadAheadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(16);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("archive-read-");
+        return executor;
+    }
+
+    /**
+     * Reads the first blocks of upcoming tracks so they are in the page cache when requested.
+     * Warm-up is only a hint: when the queue is full new work is dropped.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor trackWarmupExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(32);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.setThreadNamePrefix("track-warmup-");
+        return executor;
+    }
+
+}
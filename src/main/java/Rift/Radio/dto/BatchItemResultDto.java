@@ -0,0 +1,31 @@
+package Rift.Radio.dto;
+
+public class BatchItemResultDto {
+
+    private Long songId;
+    private BatchItemStatus status;
+
+    public BatchItemResultDto() {
+    }
+
+    public BatchItemResultDto(Long songId, BatchItemStatus status) {
+        this.songId = songId;
+        this.status = status;
+    }
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public void setSongId(Long songId) {
+        this.songId = songId;
+    }
+
+    public BatchItemStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(BatchItemStatus status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,18 @@
+package Rift.Radio.dto;
+
+public enum BatchItemStatus {
+
+    ADDED,
+    REMOVED,
+    LIKED,
+    UNLIKED,
+    SONG_NOT_FOUND,
+    ALREADY_IN_PLAYLIST,
+    NOT_IN_PLAYLIST,
+    ALREADY_LIKED,
+    NOT_LIKED;
+
+    public boolean isSuccess() {
+        return this == ADDED || this == REMOVED || this == LIKED || this == UNLIKED;
+    }
+}
@@ -0,0 +1,44 @@
+package Rift.Radio.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchResultDto {
+
+    private int succeeded;
+    private int failed;
+    private List<BatchItemResultDto> results = new ArrayList<>();
+
+    public void add(Long songId, BatchItemStatus status) {
+        results.add(new BatchItemResultDto(songId, status));
+        if (status.isSuccess()) {
+            succeeded++;
+        } else {
+            failed++;
+        }
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(int succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<BatchItemResultDto> getResults() {
+        return results;
+    }
+
+    public void setResults(List<BatchItemResultDto> results) {
+        this.results = results;
+    }
+}
@@ -0,0 +1,53 @@
+package Rift.Radio.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BootstrapDto {
+
+    private int page;
+    private int pageSize;
+    private List<SongDto> songs = new ArrayList<>();
+    private List<PlaylistSummaryDto> playlists = new ArrayList<>();
+    private List<Long> likedSongIds = new ArrayList<>();
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public List<SongDto> getSongs() {
+        return songs;
+    }
+
+    public void setSongs(List<SongDto> songs) {
+        this.songs = songs;
+    }
+
+    public List<PlaylistSummaryDto> getPlaylists() {
+        return playlists;
+    }
+
+    public void setPlaylists(List<PlaylistSummaryDto> playlists) {
+        this.playlists = playlists;
+    }
+
+    public List<Long> getLikedSongIds() {
+        return likedSongIds;
+    }
+
+    public void setLikedSongIds(List<Long> likedSongIds) {
+        this.likedSongIds = likedSongIds;
+    }
+}
@@ -0,0 +1,44 @@
+package Rift.Radio.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CatalogChangeDto {
+
+    private long id;
+    private String type;
+    private Long playlistId;
+    private List<Long> songIds = new ArrayList<>();
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getPlaylistId() {
+        return playlistId;
+    }
+
+    public void setPlaylistId(Long playlistId) {
+        this.playlistId = playlistId;
+    }
+
+    public List<Long> getSongIds() {
+        return songIds;
+    }
+
+    public void setSongIds(List<Long> songIds) {
+        this.songIds = songIds;
+    }
+}
@@ -0,0 +1,51 @@
+package Rift.Radio.dto;
+
+import java.util.List;
+
+/**
+ * A chart with the error bounds of its estimates: each estimatedPlays is at most
+ * maxOverestimate above the true count with the given confidence, and never below it.
+ */
+public class ChartDto {
+
+    private final String window;
+    private final long totalPlays;
+    private final double epsilon;
+    private final double confidence;
+    private final long maxOverestimate;
+    private final List<ChartEntryDto> entries;
+
+    public ChartDto(String window, long totalPlays, double epsilon, double confidence, long maxOverestimate,
+                    List<ChartEntryDto> entries) {
+        this.window = window;
+        this.totalPlays = totalPlays;
+        this.epsilon = epsilon;
+        this.confidence = confidence;
+        this.maxOverestimate = maxOverestimate;
+        this.entries = entries;
+    }
+
+    public String getWindow() {
+        return window;
+    }
+
+    public long getTotalPlays() {
+        return totalPlays;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public long getMaxOverestimate() {
+        return maxOverestimate;
+    }
+
+    public List<ChartEntryDto> getEntries() {
+        return entries;
+    }
+}
@@ -0,0 +1,26 @@
+package Rift.Radio.dto;
+
+public class ChartEntryDto {
+
+    private final int rank;
+    private final Long songId;
+    private final long estimatedPlays;
+
+    public ChartEntryDto(int rank, Long songId, long estimatedPlays) {
+        this.rank = rank;
+        this.songId = songId;
+        this.estimatedPlays = estimatedPlays;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public long getEstimatedPlays() {
+        return estimatedPlays;
+    }
+}
@@ -0,0 +1,40 @@
+package Rift.Radio.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+public class CreateSmartPlaylistDto {
+
+    @NotBlank(message = "Playlist name is required")
+    @Size(max = 50)
+    private String playlistName;
+    private String description;
+
+    @NotNull(message = "A rule is required")
+    private SmartRuleDto rule;
+
+    public String getPlaylistName() {
+        return playlistName;
+    }
+
+    public void setPlaylistName(String playlistName) {
+        this.playlistName = playlistName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public SmartRuleDto getRule() {
+        return rule;
+    }
+
+    public void setRule(SmartRuleDto rule) {
+        this.rule = rule;
+    }
+}
@@ -0,0 +1,31 @@
+package Rift.Radio.dto;
+
+import java.util.List;
+
+public class DuplicateClusterDto {
+
+    private final List<Long> songIds;
+    private final List<String> fileNames;
+    private final double similarity;
+
+    public DuplicateClusterDto(List<Long> songIds, List<String> fileNames, double similarity) {
+        this.songIds = songIds;
+        this.fileNames = fileNames;
+        this.similarity = similarity;
+    }
+
+    public List<Long> getSongIds() {
+        return songIds;
+    }
+
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    /**
+     * Lowest similarity among the matches that joined the cluster.
+     */
+    public double getSimilarity() {
+        return similarity;
+    }
+}
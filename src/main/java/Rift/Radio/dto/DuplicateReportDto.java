@@ -0,0 +1,45 @@
+package Rift.Radio.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+public class DuplicateReportDto {
+
+    private final Instant finishedAt;
+    private final int songs;
+    private final int fingerprinted;
+    private final long durationMs;
+    private final List<DuplicateClusterDto> clusters;
+
+    public DuplicateReportDto(Instant finishedAt, int songs, int fingerprinted, long durationMs,
+                              List<DuplicateClusterDto> clusters) {
+        this.finishedAt = finishedAt;
+        this.songs = songs;
+        this.fingerprinted = fingerprinted;
+        this.durationMs = durationMs;
+        this.clusters = clusters;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public int getSongs() {
+        return songs;
+    }
+
+    /**
+     * Files read during this scan; songs fingerprinted earlier are not read again.
+     */
+    public int getFingerprinted() {
+        return fingerprinted;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public List<DuplicateClusterDto> getClusters() {
+        return clusters;
+    }
+}
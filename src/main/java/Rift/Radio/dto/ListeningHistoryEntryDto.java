@@ -0,0 +1,34 @@
+package Rift.Radio.dto;
+
+import java.time.Instant;
+
+public class ListeningHistoryEntryDto {
+
+    private final Long songId;
+    private final Instant playedAt;
+    private final long positionMs;
+    private final String client;
+
+    public ListeningHistoryEntryDto(Long songId, Instant playedAt, long positionMs, String client) {
+        this.songId = songId;
+        this.playedAt = playedAt;
+        this.positionMs = positionMs;
+        this.client = client;
+    }
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public Instant getPlayedAt() {
+        return playedAt;
+    }
+
+    public long getPositionMs() {
+        return positionMs;
+    }
+
+    public String getClient() {
+        return client;
+    }
+}
@@ -0,0 +1,17 @@
+package Rift.Radio.dto;
+
+/**
+ * Target of a drag-and-drop move: the song the moved one should follow, or null for the top.
+ */
+public class MoveSongDto {
+
+    private Long afterSongId;
+
+    public Long getAfterSongId() {
+        return afterSongId;
+    }
+
+    public void setAfterSongId(Long afterSongId) {
+        this.afterSongId = afterSongId;
+    }
+}
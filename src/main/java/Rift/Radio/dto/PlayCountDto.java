@@ -0,0 +1,20 @@
+package Rift.Radio.dto;
+
+public class PlayCountDto {
+
+    private final Long songId;
+    private final long playCount;
+
+    public PlayCountDto(Long songId, long playCount) {
+        this.songId = songId;
+        this.playCount = playCount;
+    }
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public long getPlayCount() {
+        return playCount;
+    }
+}
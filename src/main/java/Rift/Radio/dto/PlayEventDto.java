@@ -0,0 +1,32 @@
+package Rift.Radio.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Optional details a client sends with a play.
+ */
+public class PlayEventDto {
+
+    @Min(0)
+    private long positionMs;
+
+    @Size(max = 64)
+    private String client;
+
+    public long getPositionMs() {
+        return positionMs;
+    }
+
+    public void setPositionMs(long positionMs) {
+        this.positionMs = positionMs;
+    }
+
+    public String getClient() {
+        return client;
+    }
+
+    public void setClient(String client) {
+        this.client = client;
+    }
+}
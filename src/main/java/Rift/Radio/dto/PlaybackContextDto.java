@@ -0,0 +1,66 @@
+package Rift.Radio.dto;
+
+import java.util.List;
+
+/**
+ * What the client is playing through, sent as query parameters on stream requests so the
+ * server can tell which track comes next: a playlist, a queue page position, or an explicit
+ * list of upcoming ids.
+ */
+public class PlaybackContextDto {
+
+    private Long playlist;
+    private String queue;
+    private String mode;
+    private Long seed;
+    private Integer position;
+    private List<Long> next;
+
+    public Long getPlaylist() {
+        return playlist;
+    }
+
+    public void setPlaylist(Long playlist) {
+        this.playlist = playlist;
+    }
+
+    public String getQueue() {
+        return queue;
+    }
+
+    public void setQueue(String queue) {
+        this.queue = queue;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    public Integer getPosition() {
+        return position;
+    }
+
+    public void setPosition(Integer position) {
+        this.position = position;
+    }
+
+    public List<Long> getNext() {
+        return next;
+    }
+
+    public void setNext(List<Long> next) {
+        this.next = next;
+    }
+}
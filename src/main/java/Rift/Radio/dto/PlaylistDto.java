@@ -1,7 +1,5 @@
 package Rift.Radio.dto;
 
-import Rift.Radio.modal.Song;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -9,7 +7,8 @@ public class PlaylistDto {
     private Long playlistId;
     private String playlistName;
     private String description;
-    private String totalSongs;
+    private int totalSongs;
+    private boolean smart;
     List<SongDto> songDtos = new ArrayList<>();
 
 
@@ -37,14 +36,22 @@ public class PlaylistDto {
         this.description = description;
     }
 
-    public String getTotalSongs() {
+    public int getTotalSongs() {
         return totalSongs;
     }
 
-    public void setTotalSongs(String totalSongs) {
+    public void setTotalSongs(int totalSongs) {
         this.totalSongs = totalSongs;
     }
 
+    public boolean isSmart() {
+        return smart;
+    }
+
+    public void setSmart(boolean smart) {
+        this.smart = smart;
+    }
+
     public List<SongDto> getSongDtos() {
         return songDtos;
     }
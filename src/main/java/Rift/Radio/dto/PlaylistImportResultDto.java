@@ -0,0 +1,58 @@
+package Rift.Radio.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a playlist file import. Only the first {@link #MAX_REPORTED_UNRESOLVED}
+ * unresolved entries are listed; {@code unresolvedCount} always has the full number.
+ */
+public class PlaylistImportResultDto {
+
+    public static final int MAX_REPORTED_UNRESOLVED = 1000;
+
+    private int entries;
+    private int added;
+    private int alreadyInPlaylist;
+    private int unresolvedCount;
+    private final List<UnresolvedEntryDto> unresolved = new ArrayList<>();
+
+    public void addUnresolved(UnresolvedEntryDto entry) {
+        unresolvedCount++;
+        if (unresolved.size() < MAX_REPORTED_UNRESOLVED) {
+            unresolved.add(entry);
+        }
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public void setEntries(int entries) {
+        this.entries = entries;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public void setAdded(int added) {
+        this.added = added;
+    }
+
+    public int getAlreadyInPlaylist() {
+        return alreadyInPlaylist;
+    }
+
+    public void setAlreadyInPlaylist(int alreadyInPlaylist) {
+        this.alreadyInPlaylist = alreadyInPlaylist;
+    }
+
+    public int getUnresolvedCount() {
+        return unresolvedCount;
+    }
+
+    public List<UnresolvedEntryDto> getUnresolved() {
+        return unresolved;
+    }
+}
@@ -0,0 +1,51 @@
+package Rift.Radio.dto;
+
+public class PlaylistSummaryDto {
+
+    private Long playlistId;
+    private String playlistName;
+    private String description;
+    private int totalSongs;
+
+    public PlaylistSummaryDto() {
+    }
+
+    public PlaylistSummaryDto(Long playlistId, String playlistName, String description, Integer totalSongs) {
+        this.playlistId = playlistId;
+        this.playlistName = playlistName;
+        this.description = description;
+        this.totalSongs = totalSongs == null ? 0 : totalSongs;
+    }
+
+    public Long getPlaylistId() {
+        return playlistId;
+    }
+
+    public void setPlaylistId(Long playlistId) {
+        this.playlistId = playlistId;
+    }
+
+    public String getPlaylistName() {
+        return playlistName;
+    }
+
+    public void setPlaylistName(String playlistName) {
+        this.playlistName = playlistName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public int getTotalSongs() {
+        return totalSongs;
+    }
+
+    public void setTotalSongs(int totalSongs) {
+        this.totalSongs = totalSongs;
+    }
+}
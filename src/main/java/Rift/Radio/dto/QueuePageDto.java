@@ -0,0 +1,48 @@
+package Rift.Radio.dto;
+
+/**
+ * One page of a generated play queue. Requesting the next offset with the same source, mode
+ * and seed continues the same queue as long as the source has not changed.
+ */
+public class QueuePageDto {
+
+    private final String source;
+    private final String mode;
+    private final long seed;
+    private final int total;
+    private final int offset;
+    private final long[] songIds;
+
+    public QueuePageDto(String source, String mode, long seed, int total, int offset, long[] songIds) {
+        this.source = source;
+        this.mode = mode;
+        this.seed = seed;
+        this.total = total;
+        this.offset = offset;
+        this.songIds = songIds;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public long[] getSongIds() {
+        return songIds;
+    }
+}
@@ -0,0 +1,47 @@
+package Rift.Radio.dto;
+
+public class ReconcileIssueDto {
+
+    private final ReconcileIssueType type;
+    private final Long songId;
+    private final String path;
+    private final String detail;
+    private volatile String repair;
+
+    public ReconcileIssueDto(ReconcileIssueType type, Long songId, String path, String detail) {
+        this.type = type;
+        this.songId = songId;
+        this.path = path;
+        this.detail = detail;
+    }
+
+    public ReconcileIssueType getType() {
+        return type;
+    }
+
+    /**
+     * Null for orphan files.
+     */
+    public Long getSongId() {
+        return songId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * What was done about the issue, or null when it was only reported.
+     */
+    public String getRepair() {
+        return repair;
+    }
+
+    public void setRepair(String repair) {
+        this.repair = repair;
+    }
+}
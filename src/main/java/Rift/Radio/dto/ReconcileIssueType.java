@@ -0,0 +1,12 @@
+package Rift.Radio.dto;
+
+public enum ReconcileIssueType {
+
+    // A song whose file is not in storage
+    MISSING_FILE,
+    // A file in storage that no song refers to
+    ORPHAN_FILE,
+    // A file whose size or content changed since it was last verified
+    CHANGED_FILE
+
+}
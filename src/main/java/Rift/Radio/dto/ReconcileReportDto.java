@@ -0,0 +1,92 @@
+package Rift.Radio.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+public class ReconcileReportDto {
+
+    private final String runId;
+    private final boolean running;
+    private final String phase;
+    private final boolean repair;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final long filesWalked;
+    private final long songsChecked;
+    private final long filesHashed;
+    private final long resumedAfterSongId;
+    private final List<ReconcileIssueDto> issues;
+    private final int issueCount;
+
+    public ReconcileReportDto(String runId, boolean running, String phase, boolean repair, Instant startedAt,
+                              Instant finishedAt, long filesWalked, long songsChecked, long filesHashed,
+                              long resumedAfterSongId, List<ReconcileIssueDto> issues, int issueCount) {
+        this.runId = runId;
+        this.running = running;
+        this.phase = phase;
+        this.repair = repair;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.filesWalked = filesWalked;
+        this.songsChecked = songsChecked;
+        this.filesHashed = filesHashed;
+        this.resumedAfterSongId = resumedAfterSongId;
+        this.issues = issues;
+        this.issueCount = issueCount;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public boolean isRepair() {
+        return repair;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getFilesWalked() {
+        return filesWalked;
+    }
+
+    public long getSongsChecked() {
+        return songsChecked;
+    }
+
+    public long getFilesHashed() {
+        return filesHashed;
+    }
+
+    /**
+     * Songs up to this id were verified by an earlier, interrupted attempt of the same run and
+     * were not hashed again; 0 for a fresh run.
+     */
+    public long getResumedAfterSongId() {
+        return resumedAfterSongId;
+    }
+
+    /**
+     * The first issues found; {@link #getIssueCount()} has the total.
+     */
+    public List<ReconcileIssueDto> getIssues() {
+        return issues;
+    }
+
+    public int getIssueCount() {
+        return issueCount;
+    }
+}
@@ -0,0 +1,32 @@
+package Rift.Radio.dto;
+
+public class SimilarSongDto {
+
+    private final Long songId;
+    private final String songName;
+    private final String artistName;
+    private final float score;
+
+    public SimilarSongDto(Long songId, String songName, String artistName, float score) {
+        this.songId = songId;
+        this.songName = songName;
+        this.artistName = artistName;
+        this.score = score;
+    }
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public String getSongName() {
+        return songName;
+    }
+
+    public String getArtistName() {
+        return artistName;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
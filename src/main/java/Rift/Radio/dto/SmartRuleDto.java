@@ -0,0 +1,56 @@
+package Rift.Radio.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conditions of a smart playlist. Every condition that is set must hold; unset ones are ignored.
+ */
+public class SmartRuleDto {
+
+    private String genreContains;
+    private Integer releaseYearFrom;
+    private Integer releaseYearTo;
+    private Boolean liked;
+    private List<String> artists = new ArrayList<>();
+
+    public String getGenreContains() {
+        return genreContains;
+    }
+
+    public void setGenreContains(String genreContains) {
+        this.genreContains = genreContains;
+    }
+
+    public Integer getReleaseYearFrom() {
+        return releaseYearFrom;
+    }
+
+    public void setReleaseYearFrom(Integer releaseYearFrom) {
+        this.releaseYearFrom = releaseYearFrom;
+    }
+
+    public Integer getReleaseYearTo() {
+        return releaseYearTo;
+    }
+
+    public void setReleaseYearTo(Integer releaseYearTo) {
+        this.releaseYearTo = releaseYearTo;
+    }
+
+    public Boolean getLiked() {
+        return liked;
+    }
+
+    public void setLiked(Boolean liked) {
+        this.liked = liked;
+    }
+
+    public List<String> getArtists() {
+        return artists;
+    }
+
+    public void setArtists(List<String> artists) {
+        this.artists = artists;
+    }
+}
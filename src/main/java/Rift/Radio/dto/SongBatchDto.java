@@ -0,0 +1,26 @@
+package Rift.Radio.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SongBatchDto {
+
+    private List<SongDto> songs = new ArrayList<>();
+    private List<Long> missingIds = new ArrayList<>();
+
+    public List<SongDto> getSongs() {
+        return songs;
+    }
+
+    public void setSongs(List<SongDto> songs) {
+        this.songs = songs;
+    }
+
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+
+    public void setMissingIds(List<Long> missingIds) {
+        this.missingIds = missingIds;
+    }
+}
@@ -18,6 +18,12 @@ public class SongDto {
 
     private String filePath;
 
+    private Long durationMs;
+
+    private Integer bitrate;
+
+    private String coverHash;
+
     private boolean liked;
 
     public Long getId() {
@@ -76,6 +82,30 @@ public class SongDto {
         this.filePath = filePath;
     }
 
+    public Long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(Long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public Integer getBitrate() {
+        return bitrate;
+    }
+
+    public void setBitrate(Integer bitrate) {
+        this.bitrate = bitrate;
+    }
+
+    public String getCoverHash() {
+        return coverHash;
+    }
+
+    public void setCoverHash(String coverHash) {
+        this.coverHash = coverHash;
+    }
+
     public boolean isLiked() {
         return liked;
     }
@@ -0,0 +1,22 @@
+package Rift.Radio.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SongIdsDto {
+
+    @NotEmpty(message = "At least one song id is required")
+    @Size(max = 1000, message = "At most 1000 song ids per request")
+    private List<Long> songIds = new ArrayList<>();
+
+    public List<Long> getSongIds() {
+        return songIds;
+    }
+
+    public void setSongIds(List<Long> songIds) {
+        this.songIds = songIds;
+    }
+}
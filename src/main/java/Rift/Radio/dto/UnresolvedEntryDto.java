@@ -0,0 +1,32 @@
+package Rift.Radio.dto;
+
+public class UnresolvedEntryDto {
+
+    private final int line;
+    private final String location;
+    private final String title;
+    private final String artist;
+
+    public UnresolvedEntryDto(int line, String location, String title, String artist) {
+        this.line = line;
+        this.location = location;
+        this.title = title;
+        this.artist = artist;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+}
@@ -10,6 +10,13 @@ public enum ErrorType {
     LIKED_SONG_ALREADY_EXISTS,
     SONG_NOT_IN_PLAYLIST,
     LIKED_SONG_NOT_FOUND,
-    PLAYLIST_ALREADY_EXISTS, FILE_STORAGE_ERROR, PLAYLIST_EMPTY, INVALID_DATE, MP3_ALREADY_EXIST
+    PLAYLIST_ALREADY_EXISTS, FILE_STORAGE_ERROR, PLAYLIST_EMPTY, INVALID_DATE, MP3_ALREADY_EXIST,
+    BATCH_TOO_LARGE,
+    INVALID_POSITION,
+    INVALID_SMART_RULE,
+    SMART_PLAYLIST_READ_ONLY,
+    INVALID_PLAYLIST_FILE,
+    ARCHIVE_TOO_LARGE,
+    INVALID_SONG_DATA
 
 }
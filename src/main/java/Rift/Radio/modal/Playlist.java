@@ -1,11 +1,7 @@
 package Rift.Radio.modal;
 
-import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 
-import java.util.HashSet;
-import java.util.Set;
-
 @Entity
 @SuppressWarnings("unused")
 public class Playlist {
@@ -18,16 +14,25 @@ public class Playlist {
 
     private String description;
 
-    private String totalSongs;
+    // Maintained with atomic UPDATE ... SET song_count = song_count + n next to every membership change
+    @Column(name = "song_count", nullable = false, columnDefinition = "INTEGER DEFAULT 0")
+    private int totalSongs;
+
+    // JSON rule for smart playlists, null for playlists edited by hand
+    @Column(name = "smart_rule", columnDefinition = "TEXT")
+    private String smartRule;
+
+    public String getSmartRule() {
+        return smartRule;
+    }
+
+    public void setSmartRule(String smartRule) {
+        this.smartRule = smartRule;
+    }
 
-    @ManyToMany
-    @JoinTable(
-            name = "playlist_song",
-            joinColumns = @JoinColumn(name = "playlist_id"),
-            inverseJoinColumns = @JoinColumn(name = "song_id")
-    )
-    @JsonManagedReference
-    private Set<Song> songs = new HashSet<>();
+    public boolean isSmart() {
+        return smartRule != null;
+    }
 
     public String getDescription() {
         return description;
@@ -37,11 +42,11 @@ public class Playlist {
         this.description = description;
     }
 
-    public String getTotalSongs() {
+    public int getTotalSongs() {
         return totalSongs;
     }
 
-    public void setTotalSongs(String totalSongs) {
+    public void setTotalSongs(int totalSongs) {
         this.totalSongs = totalSongs;
     }
 
@@ -61,20 +66,4 @@ public class Playlist {
     public void setName(String name) {
         this.name = name;
     }
-
-    public Set<Song> getSongs() {
-        return songs;
-    }
-
-    public void setSongs(Set<Song> songs) {
-        this.songs = songs;
-    }
-
-    public void addSong(Song song) {
-        this.songs.add(song);
-    }
-
-    public void removeSong(Song song) {
-        this.songs.remove(song);
-    }
 }
@@ -0,0 +1,51 @@
+package Rift.Radio.modal;
+
+import jakarta.persistence.*;
+
+/**
+ * One row of playlist membership. The composite primary key doubles as the unique
+ * constraint, so adding or removing a song is a single-row statement on playlist_song.
+ * <p>
+ * Track order comes from a sparse {@code sort_key}: new songs are appended
+ * {@link #POSITION_GAP} after the current last one, and a move takes the midpoint of its
+ * new neighbours, so reordering touches one row until a gap runs out.
+ */
+@Entity
+@Table(name = "playlist_song", indexes = {
+        @Index(name = "idx_playlist_song_song", columnList = "song_id"),
+        @Index(name = "idx_playlist_song_order", columnList = "playlist_id, sort_key")
+})
+@SuppressWarnings("unused")
+public class PlaylistSong {
+
+    public static final long POSITION_GAP = 1L << 16;
+
+    @EmbeddedId
+    private PlaylistSongId id;
+
+    @Column(name = "sort_key", nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private long position;
+
+    public PlaylistSong() {
+    }
+
+    public PlaylistSong(Long playlistId, Long songId) {
+        this.id = new PlaylistSongId(playlistId, songId);
+    }
+
+    public PlaylistSongId getId() {
+        return id;
+    }
+
+    public void setId(PlaylistSongId id) {
+        this.id = id;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+}
@@ -1,21 +1,28 @@
 package Rift.Radio.modal;
 
-import com.fasterxml.jackson.annotation.JsonBackReference;
 import jakarta.persistence.*;
-
-
-import java.util.HashSet;
-import java.util.Set;
+import org.hibernate.annotations.Where;
 
 
 @Entity
+// Deleted songs wait for SongPurgeService; entity loads and queries never see them
+@Where(clause = "deleted_at = 0")
+@Table(indexes = {
+        @Index(name = "idx_song_file_hash", columnList = "file_hash"),
+        @Index(name = "idx_song_deleted_at", columnList = "deleted_at")
+}, uniqueConstraints = {
+        // Back up the checks made under SongService's locks when several instances share the database.
+        // Keyed with deleted_at, so a deleted song waiting to be purged does not hold its name or path.
+        @UniqueConstraint(name = "uk_song_name", columnNames = {"song_name", "deleted_at"}),
+        @UniqueConstraint(name = "uk_song_file_path", columnNames = {"file_path", "deleted_at"})
+})
 @SuppressWarnings("unused")
 public class Song {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false)
+    @Column(name = "song_name", nullable = false)
     private String songName;
     @Column(nullable = false)
     private String artistName;
@@ -27,19 +34,34 @@ public class Song {
     @Column(nullable = false)
     private int releaseYear;
 
-    @Column(nullable = false)
+    @Column(name = "file_path", nullable = false)
     private String filePath;
 
+    // Read from the file on upload; null when it could not be worked out
+    private Long durationMs;
+
+    private Integer bitrate;
+
+    // SHA-256 of the embedded cover art, see CoverArtService
+    @Column(length = 64)
+    private String coverHash;
+
+    // SHA-256 of the file as uploaded, computed while it is written
+    @Column(name = "file_hash", length = 64)
+    private String fileHash;
+
     @Column(nullable = false, columnDefinition = "BOOLEAN DEFAULT false")
     private boolean liked;
 
+    // When the song was deleted, 0 while it is not. Only SongRepository.markDeleted writes it, so
+    // saving a song read before its deletion cannot bring it back.
+    @Column(name = "deleted_at", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "BIGINT DEFAULT 0")
+    private long deletedAt;
+
     @OneToOne(mappedBy = "song", cascade = CascadeType.REMOVE, orphanRemoval = true)
     private LikedSong likedSong;
 
-    @ManyToMany(mappedBy = "songs")
-    @JsonBackReference
-    private final Set<Playlist> playlists = new HashSet<>();
-
     public Song() {
     }
 
@@ -114,6 +136,38 @@ public class Song {
         this.filePath = filePath;
     }
 
+    public Long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(Long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public Integer getBitrate() {
+        return bitrate;
+    }
+
+    public void setBitrate(Integer bitrate) {
+        this.bitrate = bitrate;
+    }
+
+    public String getCoverHash() {
+        return coverHash;
+    }
+
+    public void setCoverHash(String coverHash) {
+        this.coverHash = coverHash;
+    }
+
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public void setFileHash(String fileHash) {
+        this.fileHash = fileHash;
+    }
+
     public boolean isLiked() {
         return liked;
     }
@@ -130,10 +184,6 @@ public class Song {
         this.likedSong = likedSong;
     }
 
-    public Set<Playlist> getPlaylists() {
-        return playlists;
-    }
-
     @Override
     public String toString() {
         return "Song{" +
@@ -0,0 +1,36 @@
+package Rift.Radio.modal;
+
+import jakarta.persistence.*;
+
+/**
+ * When a song's file was last streamed or downloaded, to within the tiering sample interval.
+ * Rows are written by batched flushes, never once per access.
+ */
+@Entity
+@Table(name = "song_access")
+@SuppressWarnings("unused")
+public class SongAccess {
+
+    @Id
+    @Column(name = "song_id")
+    private Long songId;
+
+    @Column(name = "last_accessed_at", nullable = false)
+    private long lastAccessedAt;
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public void setSongId(Long songId) {
+        this.songId = songId;
+    }
+
+    public long getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+
+    public void setLastAccessedAt(long lastAccessedAt) {
+        this.lastAccessedAt = lastAccessedAt;
+    }
+}
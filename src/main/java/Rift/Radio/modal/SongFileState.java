@@ -0,0 +1,69 @@
+package Rift.Radio.modal;
+
+import jakarta.persistence.*;
+
+/**
+ * Size, modification time and SHA-256 of a song's file when the reconciliation job last
+ * verified it. A later run only hashes the file again when size or time have changed.
+ */
+@Entity
+@Table(name = "song_file_state")
+@SuppressWarnings("unused")
+public class SongFileState {
+
+    @Id
+    @Column(name = "song_id")
+    private Long songId;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(name = "modified_at", nullable = false)
+    private long modifiedAt;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "checked_at", nullable = false)
+    private long checkedAt;
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public void setSongId(Long songId) {
+        this.songId = songId;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getModifiedAt() {
+        return modifiedAt;
+    }
+
+    public void setModifiedAt(long modifiedAt) {
+        this.modifiedAt = modifiedAt;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public long getCheckedAt() {
+        return checkedAt;
+    }
+
+    public void setCheckedAt(long checkedAt) {
+        this.checkedAt = checkedAt;
+    }
+}
@@ -0,0 +1,59 @@
+package Rift.Radio.modal;
+
+import jakarta.persistence.*;
+
+/**
+ * Audio fingerprint of a song's file, kept so the duplicate index can be rebuilt at startup
+ * without reading every file again.
+ */
+@Entity
+@Table(name = "song_fingerprint", indexes = @Index(name = "idx_song_fingerprint_content", columnList = "content_hash"))
+@SuppressWarnings("unused")
+public class SongFingerprint {
+
+    @Id
+    @Column(name = "song_id")
+    private Long songId;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(nullable = false)
+    private int frames;
+
+    // Sampled window hashes, eight big-endian bytes each
+    @Column(nullable = false, columnDefinition = "BYTEA")
+    private byte[] windows;
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public void setSongId(Long songId) {
+        this.songId = songId;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public void setFrames(int frames) {
+        this.frames = frames;
+    }
+
+    public byte[] getWindows() {
+        return windows;
+    }
+
+    public void setWindows(byte[] windows) {
+        this.windows = windows;
+    }
+}
@@ -0,0 +1,36 @@
+package Rift.Radio.modal;
+
+import jakarta.persistence.*;
+
+/**
+ * Total plays per song. Rows are only written by batched flushes of in-memory counters,
+ * never once per play.
+ */
+@Entity
+@Table(name = "song_play_count")
+@SuppressWarnings("unused")
+public class SongPlayCount {
+
+    @Id
+    @Column(name = "song_id")
+    private Long songId;
+
+    @Column(name = "play_count", nullable = false)
+    private long playCount;
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public void setSongId(Long songId) {
+        this.songId = songId;
+    }
+
+    public long getPlayCount() {
+        return playCount;
+    }
+
+    public void setPlayCount(long playCount) {
+        this.playCount = playCount;
+    }
+}
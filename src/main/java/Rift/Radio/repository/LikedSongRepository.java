@@ -3,11 +3,35 @@ package Rift.Radio.repository;
 import Rift.Radio.modal.LikedSong;
 import Rift.Radio.modal.Song;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LikedSongRepository extends JpaRepository<LikedSong, Long> {
     Optional<LikedSong> findBySong(Song song);
+
+    // Liked songs that are deleted but not purged yet are left out
+    @Query("select s from LikedSong l join l.song s where s.deletedAt = 0 order by l.id")
+    List<Song> findAllSongs();
+
+    @Query("select s.id from LikedSong l join l.song s where s.deletedAt = 0 order by l.id")
+    List<Long> findAllSongIds();
+
+    @Query("select s.id from LikedSong l join l.song s where s.id in :songIds and s.deletedAt = 0")
+    List<Long> findSongIdsIn(@Param("songIds") Collection<Long> songIds);
+
+    @Modifying
+    @Query(value = "insert into liked_song (song_id) select s.id from song s " +
+            "where s.id in (:songIds) and s.deleted_at = 0", nativeQuery = true)
+    int insertAll(@Param("songIds") Collection<Long> songIds);
+
+    @Modifying
+    @Query("delete from LikedSong l where l.song.id in :songIds")
+    int deleteAllBySongIds(@Param("songIds") Collection<Long> songIds);
 }
@@ -0,0 +1,56 @@
+package Rift.Radio.repository;
+
+import Rift.Radio.dto.ListeningHistoryEntryDto;
+import Rift.Radio.service.history.ListeningEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * listening_history has no JPA entity: on PostgreSQL it is a partitioned table managed by
+ * HistoryPartitionManager, which Hibernate's schema update must not try to recreate.
+ */
+@Repository
+public class ListeningHistoryRepository {
+
+    private static final String INSERT =
+            "insert into listening_history (song_id, played_at, position_ms, client) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ListeningHistoryRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertAll(List<ListeningEvent> events) {
+        List<Object[]> args = new ArrayList<>(events.size());
+        for (ListeningEvent event : events) {
+            args.add(new Object[]{event.getSongId(), Timestamp.from(event.getPlayedAt()),
+                    event.getPositionMs(), event.getClient()});
+        }
+        jdbcTemplate.batchUpdate(INSERT, args);
+    }
+
+    /**
+     * Latest plays since {@code since}. The lower bound on played_at lets PostgreSQL prune
+     * every partition older than the window.
+     */
+    public List<ListeningHistoryEntryDto> findRecent(Instant since, int limit) {
+        return jdbcTemplate.query(
+                "select song_id, played_at, position_ms, client from listening_history " +
+                        "where played_at >= ? order by played_at desc limit ?",
+                (rs, rowNum) -> new ListeningHistoryEntryDto(rs.getLong("song_id"),
+                        rs.getTimestamp("played_at").toInstant(), rs.getLong("position_ms"), rs.getString("client")),
+                Timestamp.from(since), limit);
+    }
+
+    public int deleteOlderThan(Instant cutoff) {
+        return jdbcTemplate.update("delete from listening_history where played_at < ?", Timestamp.from(cutoff));
+    }
+}
@@ -1,12 +1,37 @@
 package Rift.Radio.repository;
 
+import Rift.Radio.dto.PlaylistSummaryDto;
 import Rift.Radio.modal.Playlist;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PlaylistRepository extends JpaRepository<Playlist, Long> {
     boolean existsByName(String name);
+
+    List<Playlist> findBySmartRuleIsNotNull();
+
+    @Query("select new Rift.Radio.dto.PlaylistSummaryDto(p.id, p.name, p.description, p.totalSongs) " +
+            "from Playlist p order by p.id")
+    List<PlaylistSummaryDto> findAllSummaries();
+
+    @Query("select new Rift.Radio.dto.PlaylistSummaryDto(p.id, p.name, p.description, p.totalSongs) " +
+            "from Playlist p where p.id = :id")
+    Optional<PlaylistSummaryDto> findSummaryById(@Param("id") Long id);
+
+    @Modifying
+    @Query("update Playlist p set p.totalSongs = p.totalSongs + :delta where p.id = :id")
+    int adjustSongCount(@Param("id") Long id, @Param("delta") int delta);
+
+    @Modifying
+    @Query(value = "update playlist p set song_count = (select count(*) from playlist_song ps " +
+            "join song s on s.id = ps.song_id where ps.playlist_id = p.id and s.deleted_at = 0)", nativeQuery = true)
+    int recountSongs();
+
 }
@@ -0,0 +1,138 @@
+package Rift.Radio.repository;
+
+import Rift.Radio.modal.PlaylistSong;
+import Rift.Radio.modal.PlaylistSongId;
+import Rift.Radio.modal.Song;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PlaylistSongRepository extends JpaRepository<PlaylistSong, PlaylistSongId>, PlaylistSongRepositoryCustom {
+
+    /**
+     * Appends the song one gap after the playlist's current last sort key.
+     */
+    @Modifying
+    @Query(value = "insert into playlist_song (playlist_id, song_id, sort_key) " +
+            "select :playlistId, :songId, coalesce(max(ps.sort_key), 0) + " + PlaylistSong.POSITION_GAP + " " +
+            "from playlist_song ps where ps.playlist_id = :playlistId " +
+            "on conflict do nothing", nativeQuery = true)
+    int insertSong(@Param("playlistId") Long playlistId, @Param("songId") Long songId);
+
+    @Modifying
+    @Query("delete from PlaylistSong ps where ps.id.playlistId = :playlistId and ps.id.songId = :songId")
+    int deleteSong(@Param("playlistId") Long playlistId, @Param("songId") Long songId);
+
+    @Modifying
+    @Query("delete from PlaylistSong ps where ps.id.playlistId = :playlistId and ps.id.songId in :songIds")
+    int deleteSongs(@Param("playlistId") Long playlistId, @Param("songIds") Collection<Long> songIds);
+
+    @Query("select ps.id.songId from PlaylistSong ps where ps.id.playlistId = :playlistId and ps.id.songId in :songIds")
+    List<Long> findSongIdsInPlaylist(@Param("playlistId") Long playlistId, @Param("songIds") Collection<Long> songIds);
+
+    @Query("select s from PlaylistSong ps join Song s on s.id = ps.id.songId " +
+            "where ps.id.playlistId = :playlistId and s.deletedAt = 0 order by ps.position, ps.id.songId")
+    List<Song> findSongsByPlaylistId(@Param("playlistId") Long playlistId);
+
+    /**
+     * One page of a playlist in track order, read straight off the (playlist_id, sort_key) index.
+     */
+    @Query(value = "select s.* from playlist_song ps join song s on s.id = ps.song_id " +
+            "where ps.playlist_id = :playlistId and s.deleted_at = 0 order by ps.sort_key, ps.song_id " +
+            "limit :limit offset :offset", nativeQuery = true)
+    List<Song> findSongPage(@Param("playlistId") Long playlistId, @Param("offset") int offset, @Param("limit") int limit);
+
+    /**
+     * Keyset page of (sort key, song) after the given row, for streaming a playlist without
+     * rescanning skipped rows.
+     */
+    @Query("select ps.position, s from PlaylistSong ps join Song s on s.id = ps.id.songId " +
+            "where ps.id.playlistId = :playlistId and s.deletedAt = 0 and (ps.position > :afterPosition " +
+            "or (ps.position = :afterPosition and ps.id.songId > :afterSongId)) " +
+            "order by ps.position, ps.id.songId")
+    List<Object[]> findSongsAfter(@Param("playlistId") Long playlistId, @Param("afterPosition") long afterPosition,
+                                  @Param("afterSongId") long afterSongId, Pageable pageable);
+
+    @Query("select ps.id.playlistId, s from PlaylistSong ps join Song s on s.id = ps.id.songId " +
+            "where s.deletedAt = 0 order by ps.id.playlistId, ps.position, ps.id.songId")
+    List<Object[]> findAllPlaylistSongs();
+
+    @Query("select ps.id.songId from PlaylistSong ps join Song s on s.id = ps.id.songId " +
+            "where ps.id.playlistId = :playlistId and s.deletedAt = 0 order by ps.position, ps.id.songId")
+    List<Long> findOrderedSongIds(@Param("playlistId") Long playlistId);
+
+    /**
+     * Every row of the playlist in order, including songs that are deleted but not purged yet.
+     */
+    @Query("select ps.id.songId from PlaylistSong ps where ps.id.playlistId = :playlistId " +
+            "order by ps.position, ps.id.songId")
+    List<Long> findOrderedRowSongIds(@Param("playlistId") Long playlistId);
+
+    @Query("select coalesce(max(ps.position), 0) from PlaylistSong ps where ps.id.playlistId = :playlistId")
+    long findMaxPosition(@Param("playlistId") Long playlistId);
+
+    @Query("select ps.position from PlaylistSong ps where ps.id.playlistId = :playlistId and ps.id.songId = :songId")
+    Optional<Long> findPosition(@Param("playlistId") Long playlistId, @Param("songId") Long songId);
+
+    @Query("select min(ps.position) from PlaylistSong ps " +
+            "where ps.id.playlistId = :playlistId and ps.id.songId <> :excludedSongId")
+    Long findFirstPosition(@Param("playlistId") Long playlistId, @Param("excludedSongId") Long excludedSongId);
+
+    @Query("select min(ps.position) from PlaylistSong ps " +
+            "where ps.id.playlistId = :playlistId and ps.position > :after and ps.id.songId <> :excludedSongId")
+    Long findPositionAfter(@Param("playlistId") Long playlistId, @Param("after") long after,
+                           @Param("excludedSongId") Long excludedSongId);
+
+    @Modifying
+    @Query("update PlaylistSong ps set ps.position = :position " +
+            "where ps.id.playlistId = :playlistId and ps.id.songId = :songId")
+    int updatePosition(@Param("playlistId") Long playlistId, @Param("songId") Long songId,
+                       @Param("position") long position);
+
+    /**
+     * Playlists where two songs share a sort key, e.g. rows that predate ordering.
+     */
+    @Query(value = "select ps.playlist_id from playlist_song ps group by ps.playlist_id " +
+            "having count(*) > count(distinct ps.sort_key)", nativeQuery = true)
+    List<Long> findPlaylistIdsWithDuplicatePositions();
+
+    /**
+     * (playlistId, songId) pairs placing the given songs in smart playlists.
+     */
+    @Query("select ps.id.playlistId, ps.id.songId from PlaylistSong ps, Playlist p " +
+            "where p.id = ps.id.playlistId and p.smartRule is not null and ps.id.songId in :songIds")
+    List<Object[]> findSmartMemberships(@Param("songIds") Collection<Long> songIds);
+
+    /**
+     * (playlistId, songId) pairs of every regular playlist; smart playlists are derived from
+     * rules and say nothing about which songs users group together.
+     */
+    @Query("select ps.id.playlistId, ps.id.songId from PlaylistSong ps, Playlist p, Song s " +
+            "where p.id = ps.id.playlistId and p.smartRule is null and s.id = ps.id.songId and s.deletedAt = 0")
+    List<Object[]> findManualMemberships();
+
+    /**
+     * Removes the songs from every playlist. Song counts are not touched: they were lowered by
+     * {@link #decrementCountsForSongs} when the songs were deleted.
+     */
+    @Modifying
+    @Query("delete from PlaylistSong ps where ps.id.songId in :songIds")
+    int deleteBySongIds(@Param("songIds") Collection<Long> songIds);
+
+    // One statement for all playlists, each lowered by how many of the songs it holds
+    @Modifying
+    @Query(value = "update playlist p set song_count = p.song_count - m.removed " +
+            "from (select ps.playlist_id, count(*) as removed from playlist_song ps " +
+            "where ps.song_id in (:songIds) group by ps.playlist_id) m " +
+            "where p.id = m.playlist_id", nativeQuery = true)
+    int decrementCountsForSongs(@Param("songIds") Collection<Long> songIds);
+
+}
@@ -0,0 +1,23 @@
+package Rift.Radio.repository;
+
+import java.util.List;
+
+/**
+ * Batched JDBC writes for playlist_song that need a distinct value per row.
+ */
+public interface PlaylistSongRepositoryCustom {
+
+    /**
+     * Inserts the songs in list order, {@code PlaylistSong.POSITION_GAP} apart starting at
+     * {@code firstPosition}. Rows that already exist are skipped.
+     *
+     * @return the number of rows inserted
+     */
+    int insertSongsAt(Long playlistId, List<Long> songIds, long firstPosition);
+
+    /**
+     * Rewrites every sort key of the playlist so the songs sit evenly spaced in the given order.
+     */
+    void renumber(Long playlistId, List<Long> orderedSongIds);
+
+}
@@ -0,0 +1,68 @@
+package Rift.Radio.repository;
+
+import Rift.Radio.modal.PlaylistSong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+public class PlaylistSongRepositoryCustomImpl implements PlaylistSongRepositoryCustom {
+
+    private static final String INSERT_AT =
+            "insert into playlist_song (playlist_id, song_id, sort_key) values (?, ?, ?) on conflict do nothing";
+    private static final String UPDATE_POSITION =
+            "update playlist_song set sort_key = ? where playlist_id = ? and song_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public PlaylistSongRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int insertSongsAt(Long playlistId, List<Long> songIds, long firstPosition) {
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_AT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, playlistId);
+                ps.setLong(2, songIds.get(i));
+                ps.setLong(3, firstPosition + i * PlaylistSong.POSITION_GAP);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return songIds.size();
+            }
+        });
+        int inserted = 0;
+        for (int count : counts) {
+            // Some drivers only report that the statement ran; the caller already filtered members
+            if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                inserted++;
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public void renumber(Long playlistId, List<Long> orderedSongIds) {
+        jdbcTemplate.batchUpdate(UPDATE_POSITION, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, (i + 1) * PlaylistSong.POSITION_GAP);
+                ps.setLong(2, playlistId);
+                ps.setLong(3, orderedSongIds.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return orderedSongIds.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,17 @@
+package Rift.Radio.repository;
+
+import Rift.Radio.modal.SongAccess;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SongAccessRepository extends JpaRepository<SongAccess, Long>, SongAccessRepositoryCustom {
+
+    @Modifying
+    @Query("delete from SongAccess a where a.songId = :songId")
+    int deleteBySongId(@Param("songId") Long songId);
+
+}
@@ -0,0 +1,13 @@
+package Rift.Radio.repository;
+
+import java.util.Map;
+
+public interface SongAccessRepositoryCustom {
+
+    /**
+     * Sets the access times in song_access: one batched UPDATE, then one batched INSERT for
+     * the songs that had no row yet. A time never moves back.
+     */
+    void recordAccesses(Map<Long, Long> accessedAt);
+
+}
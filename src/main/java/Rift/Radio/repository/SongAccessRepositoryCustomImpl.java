@@ -0,0 +1,61 @@
+package Rift.Radio.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SongAccessRepositoryCustomImpl implements SongAccessRepositoryCustom {
+
+    // Also counts the row when the stored time is newer, so it is not inserted again
+    private static final String UPDATE =
+            "update song_access set last_accessed_at = case when last_accessed_at < ? then ? else last_accessed_at end"
+                    + " where song_id = ?";
+    // Portable between PostgreSQL and H2, unlike ON CONFLICT DO UPDATE
+    private static final String INSERT =
+            "insert into song_access (song_id, last_accessed_at) values (?, ?) on conflict do nothing";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public SongAccessRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void recordAccesses(Map<Long, Long> accessedAt) {
+        Map<Long, Long> missing = execute(UPDATE, accessedAt, true);
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> conflicted = execute(INSERT, missing, false);
+        if (!conflicted.isEmpty()) {
+            // Another writer created the row between our UPDATE and INSERT
+            execute(UPDATE, conflicted, true);
+        }
+    }
+
+    /**
+     * Runs one batch and returns the entries whose statement touched no row.
+     */
+    private Map<Long, Long> execute(String sql, Map<Long, Long> accessedAt, boolean update) {
+        List<Map.Entry<Long, Long>> rows = new ArrayList<>(accessedAt.entrySet());
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (Map.Entry<Long, Long> row : rows) {
+            args.add(update
+                    ? new Object[]{row.getValue(), row.getValue(), row.getKey()}
+                    : new Object[]{row.getKey(), row.getValue()});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(sql, args);
+        Map<Long, Long> untouched = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                untouched.put(rows.get(i).getKey(), rows.get(i).getValue());
+            }
+        }
+        return untouched;
+    }
+}
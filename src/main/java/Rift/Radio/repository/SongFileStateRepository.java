@@ -0,0 +1,17 @@
+package Rift.Radio.repository;
+
+import Rift.Radio.modal.SongFileState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SongFileStateRepository extends JpaRepository<SongFileState, Long> {
+
+    @Modifying
+    @Query("delete from SongFileState f where f.songId = :songId")
+    int deleteBySongId(@Param("songId") Long songId);
+
+}
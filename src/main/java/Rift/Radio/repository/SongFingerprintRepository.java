@@ -0,0 +1,22 @@
+package Rift.Radio.repository;
+
+import Rift.Radio.modal.SongFingerprint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SongFingerprintRepository extends JpaRepository<SongFingerprint, Long> {
+
+    @Modifying
+    @Query("delete from SongFingerprint f where f.songId = :songId")
+    int deleteBySongId(@Param("songId") Long songId);
+
+    // Rows of songs deleted while their fingerprint was being computed
+    @Modifying
+    @Query("delete from SongFingerprint f where f.songId not in (select s.id from Song s)")
+    int deleteOrphans();
+
+}
@@ -0,0 +1,26 @@
+package Rift.Radio.repository;
+
+import Rift.Radio.modal.SongPlayCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SongPlayCountRepository extends JpaRepository<SongPlayCount, Long>, SongPlayCountRepositoryCustom {
+
+    @Query("select p.songId, p.playCount from SongPlayCount p where p.songId in :songIds")
+    List<Object[]> findCounts(@Param("songIds") Collection<Long> songIds);
+
+    @Query("select p.songId, p.playCount from SongPlayCount p")
+    List<Object[]> findAllCounts();
+
+    @Modifying
+    @Query("delete from SongPlayCount p where p.songId = :songId")
+    int deleteBySongId(@Param("songId") Long songId);
+
+}
@@ -0,0 +1,13 @@
+package Rift.Radio.repository;
+
+import java.util.Map;
+
+public interface SongPlayCountRepositoryCustom {
+
+    /**
+     * Adds the deltas to song_play_count: one batched UPDATE, then one batched INSERT for
+     * the songs that had no row yet.
+     */
+    void addPlays(Map<Long, Long> deltas);
+
+}
@@ -1,15 +1,79 @@
 package Rift.Radio.repository;
 
 import Rift.Radio.modal.Song;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface SongRepository extends JpaRepository<Song, Long> {
+public interface SongRepository extends JpaRepository<Song, Long>, SongRepositoryCustom {
     boolean existsBySongName(String songName);
     boolean existsByFilePath(String filePath);
+    boolean existsByFileHash(String fileHash);
 
     boolean existsBySongNameAndIdNot(String songName, Long id);
 
+    @Query("select s.id from Song s where s.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select s.id from Song s order by s.id")
+    List<Long> findAllIds();
+
+    // Empty when the song does not exist, a single null when it has no cover
+    @Query("select s.coverHash from Song s where s.id = :id")
+    List<String> findCoverHash(@Param("id") Long id);
+
+    @Query("select distinct s.coverHash from Song s where s.coverHash is not null")
+    List<String> findCoverHashes();
+
+    @Query("select s.id, s.filePath from Song s")
+    List<Object[]> findAllFilePaths();
+
+    // Keyset page: rows after the given id, in id order
+    @Query("select s.id, s.filePath from Song s where s.id > :after order by s.id")
+    List<Object[]> findFilePathsAfter(@Param("after") Long after, Pageable page);
+
+    List<Song> findByFilePathIn(Collection<String> filePaths);
+
+    @Query("select s.filePath from Song s where s.filePath in :filePaths")
+    List<String> findExistingFilePaths(@Param("filePaths") Collection<String> filePaths);
+
+    // Also the paths of deleted songs not purged yet, whose files are still in storage
+    @Query(value = "select s.file_path from song s where s.file_path in (:filePaths)", nativeQuery = true)
+    List<String> findStoredFilePaths(@Param("filePaths") Collection<String> filePaths);
+
+    @Query("select s.fileHash from Song s where s.fileHash in :fileHashes")
+    List<String> findExistingFileHashes(@Param("fileHashes") Collection<String> fileHashes);
+
+    @Query("select s from Song s where lower(trim(s.songName)) in :titles")
+    List<Song> findByNormalizedTitleIn(@Param("titles") Collection<String> titles);
+
+    @Modifying
+    @Query("update Song s set s.liked = :liked where s.id in :ids")
+    int updateLiked(@Param("ids") Collection<Long> ids, @Param("liked") boolean liked);
+
+    /**
+     * Hides the song from every read until it is purged. Returns 0 when there is no such song,
+     * or it is deleted already.
+     */
+    @Modifying
+    @Query(value = "update song set deleted_at = :deletedAt where id = :id and deleted_at = 0", nativeQuery = true)
+    int markDeleted(@Param("id") Long id, @Param("deletedAt") long deletedAt);
+
+    // Keyset page of (id, file path) of deleted songs
+    @Query(value = "select s.id, s.file_path from song s where s.deleted_at > 0 and s.id > :after " +
+            "order by s.id limit :limit", nativeQuery = true)
+    List<Object[]> findDeletedAfter(@Param("after") long after, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "delete from song where id in (:ids) and deleted_at > 0", nativeQuery = true)
+    int deleteMarked(@Param("ids") Collection<Long> ids);
+
 }
 
@@ -0,0 +1,18 @@
+package Rift.Radio.repository;
+
+import Rift.Radio.modal.Song;
+
+import java.util.List;
+import java.util.Map;
+
+public interface SongRepositoryCustom {
+
+    /**
+     * Inserts the songs with one multi-row INSERT. Songs whose name or file path is taken are
+     * skipped rather than failing the others.
+     *
+     * @return the ids of the inserted songs by file path
+     */
+    Map<String, Long> insertSkippingTaken(List<Song> songs);
+
+}
@@ -0,0 +1,54 @@
+package Rift.Radio.repository;
+
+import Rift.Radio.modal.Song;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SongRepositoryCustomImpl implements SongRepositoryCustom {
+
+    private static final String INSERT = "insert into song (song_name, artist_name, album, genre, release_year,"
+            + " file_path, duration_ms, bitrate, cover_hash, file_hash, liked) values ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false)";
+    // Without a conflict target, any unique constraint skips the row
+    private static final String SKIP_TAKEN = " on conflict do nothing returning id, file_path";
+    private static final int[] ROW_TYPES = {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.INTEGER, Types.VARCHAR, Types.BIGINT, Types.INTEGER, Types.VARCHAR, Types.VARCHAR};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public SongRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Map<String, Long> insertSkippingTaken(List<Song> songs) {
+        Map<String, Long> inserted = new HashMap<>();
+        if (songs.isEmpty()) {
+            return inserted;
+        }
+        StringBuilder sql = new StringBuilder(INSERT);
+        Object[] args = new Object[songs.size() * ROW_TYPES.length];
+        int[] types = new int[args.length];
+        int i = 0;
+        for (Song song : songs) {
+            sql.append(i == 0 ? "" : ", ").append(ROW);
+            Object[] row = {song.getSongName(), song.getArtistName(), song.getAlbum(), song.getGenre(),
+                    song.getReleaseYear(), song.getFilePath(), song.getDurationMs(), song.getBitrate(),
+                    song.getCoverHash(), song.getFileHash()};
+            System.arraycopy(row, 0, args, i, row.length);
+            System.arraycopy(ROW_TYPES, 0, types, i, ROW_TYPES.length);
+            i += ROW_TYPES.length;
+        }
+        sql.append(SKIP_TAKEN);
+        jdbcTemplate.query(sql.toString(), args, types, rs -> {
+            inserted.put(rs.getString(2), rs.getLong(1));
+        });
+        return inserted;
+    }
+}
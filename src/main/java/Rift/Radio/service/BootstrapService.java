@@ -0,0 +1,65 @@
+package Rift.Radio.service;
+
+import Rift.Radio.dto.BootstrapDto;
+import Rift.Radio.dto.PlaylistSummaryDto;
+import Rift.Radio.dto.SongDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+@Service
+public class BootstrapService {
+
+    private final Logger log = LoggerFactory.getLogger(BootstrapService.class);
+
+    private final SongService songService;
+    private final PlaylistService playlistService;
+    private final LikedSongService likedService;
+    private final Executor catalogQueryExecutor;
+
+    @Autowired
+    public BootstrapService(SongService songService, PlaylistService playlistService, LikedSongService likedService,
+                            @Qualifier("catalogQueryExecutor") Executor catalogQueryExecutor) {
+        this.songService = songService;
+        this.playlistService = playlistService;
+        this.likedService = likedService;
+        this.catalogQueryExecutor = catalogQueryExecutor;
+    }
+
+    /**
+     * Assembles everything the player page needs on load. The three queries are independent,
+     * so they run concurrently and the response costs roughly the slowest of them.
+     */
+    public BootstrapDto bootstrap(int pageSize) {
+        CompletableFuture<List<SongDto>> songs =
+                CompletableFuture.supplyAsync(() -> songService.getAllSongs(0, pageSize), catalogQueryExecutor);
+        CompletableFuture<List<PlaylistSummaryDto>> playlists =
+                CompletableFuture.supplyAsync(playlistService::listPlaylistSummaries, catalogQueryExecutor);
+        CompletableFuture<List<Long>> likedSongIds =
+                CompletableFuture.supplyAsync(likedService::getLikedSongIds, catalogQueryExecutor);
+
+        BootstrapDto dto = new BootstrapDto();
+        dto.setPage(0);
+        dto.setPageSize(pageSize);
+        try {
+            dto.setSongs(songs.join());
+            dto.setPlaylists(playlists.join());
+            dto.setLikedSongIds(likedSongIds.join());
+        } catch (CompletionException e) {
+            log.error("Bootstrap query failed: {}", e.getCause().getMessage(), e.getCause());
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return dto;
+    }
+
+}
@@ -1,28 +1,39 @@
 package Rift.Radio.service;
 
+import Rift.Radio.dto.BatchItemStatus;
+import Rift.Radio.dto.BatchResultDto;
 import Rift.Radio.error.ErrorType;
 import Rift.Radio.error.LikedException;
 import Rift.Radio.modal.LikedSong;
 import Rift.Radio.modal.Song;
 import Rift.Radio.repository.LikedSongRepository;
 import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 public class LikedSongService {
 
     private final LikedSongRepository likedRepository;
     private final SongRepository songRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public LikedSongService(LikedSongRepository likedRepository, SongRepository songRepository) {
+    public LikedSongService(LikedSongRepository likedRepository, SongRepository songRepository,
+                            ApplicationEventPublisher eventPublisher) {
         this.likedRepository = likedRepository;
         this.songRepository = songRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -38,14 +49,18 @@ public class LikedSongService {
         likedSong.setSong(song);
         song.setLiked(true);
         songRepository.save(song);
-        return likedRepository.save(likedSong);
+        LikedSong saved = likedRepository.save(likedSong);
+        eventPublisher.publishEvent(CatalogChangeEvent.song(CatalogChangeType.SONG_LIKED, songId));
+        return saved;
     }
 
 
     public List<Song> getAllLikedSongs() {
-        return likedRepository.findAll().stream()
-                .map(LikedSong::getSong)
-                .collect(Collectors.toList());
+        return likedRepository.findAllSongs();
+    }
+
+    public List<Long> getLikedSongIds() {
+        return likedRepository.findAllSongIds();
     }
 
     @Transactional
@@ -57,6 +72,73 @@ public class LikedSongService {
         likedRepository.delete(likedSong);
         song.setLiked(false);
         songRepository.save(song);
+        eventPublisher.publishEvent(CatalogChangeEvent.song(CatalogChangeType.SONG_UNLIKED, songId));
+    }
+
+    /**
+     * Likes many songs in one transaction using set-based statements: one lookup of the
+     * existing ids, one of the already liked ids, one insert and one update.
+     */
+    @Transactional
+    public BatchResultDto likeSongs(List<Long> songIds) {
+        Set<Long> requested = new LinkedHashSet<>(songIds);
+        requested.remove(null);
+        if (requested.isEmpty()) {
+            return new BatchResultDto();
+        }
+        Set<Long> existing = new HashSet<>(songRepository.findExistingIds(requested));
+        Set<Long> alreadyLiked = new HashSet<>(likedRepository.findSongIdsIn(requested));
+
+        BatchResultDto result = new BatchResultDto();
+        List<Long> toLike = new ArrayList<>();
+        for (Long songId : requested) {
+            if (!existing.contains(songId)) {
+                result.add(songId, BatchItemStatus.SONG_NOT_FOUND);
+            } else if (alreadyLiked.contains(songId)) {
+                result.add(songId, BatchItemStatus.ALREADY_LIKED);
+            } else {
+                toLike.add(songId);
+                result.add(songId, BatchItemStatus.LIKED);
+            }
+        }
+
+        if (!toLike.isEmpty()) {
+            likedRepository.insertAll(toLike);
+            songRepository.updateLiked(toLike, true);
+            eventPublisher.publishEvent(new CatalogChangeEvent(CatalogChangeType.SONG_LIKED, null, toLike));
+        }
+        return result;
+    }
+
+    @Transactional
+    public BatchResultDto removeLikedSongs(List<Long> songIds) {
+        Set<Long> requested = new LinkedHashSet<>(songIds);
+        requested.remove(null);
+        if (requested.isEmpty()) {
+            return new BatchResultDto();
+        }
+        Set<Long> existing = new HashSet<>(songRepository.findExistingIds(requested));
+        Set<Long> liked = new HashSet<>(likedRepository.findSongIdsIn(requested));
+
+        BatchResultDto result = new BatchResultDto();
+        List<Long> toRemove = new ArrayList<>();
+        for (Long songId : requested) {
+            if (!existing.contains(songId)) {
+                result.add(songId, BatchItemStatus.SONG_NOT_FOUND);
+            } else if (!liked.contains(songId)) {
+                result.add(songId, BatchItemStatus.NOT_LIKED);
+            } else {
+                toRemove.add(songId);
+                result.add(songId, BatchItemStatus.UNLIKED);
+            }
+        }
+
+        if (!toRemove.isEmpty()) {
+            likedRepository.deleteAllBySongIds(toRemove);
+            songRepository.updateLiked(toRemove, false);
+            eventPublisher.publishEvent(new CatalogChangeEvent(CatalogChangeType.SONG_UNLIKED, null, toRemove));
+        }
+        return result;
     }
 
 }
@@ -0,0 +1,149 @@
+package Rift.Radio.service;
+
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.modal.PlaylistSong;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track order for playlists. A move rewrites only the moved row's sort key; when the
+ * space between two neighbours gets small the playlist is queued and renumbered in the
+ * background, so the synchronous renumber in {@link #moveSong} is a rare fallback.
+ */
+@Service
+public class PlaylistOrderService {
+
+    private final Logger log = LoggerFactory.getLogger(PlaylistOrderService.class);
+
+    /**
+     * A gap narrower than this after a move schedules a background renumber.
+     */
+    static final long RENUMBER_THRESHOLD = 64;
+
+    private final PlaylistRepository playlistRepository;
+    private final PlaylistSongRepository playlistSongRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Set<Long> pendingRenumber = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public PlaylistOrderService(PlaylistRepository playlistRepository, PlaylistSongRepository playlistSongRepository,
+                                ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager) {
+        this.playlistRepository = playlistRepository;
+        this.playlistSongRepository = playlistSongRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Moves a song directly after {@code afterSongId}, or to the top when it is null.
+     */
+    @Transactional
+    public void moveSong(Long playlistId, Long songId, Long afterSongId) {
+        if (!playlistRepository.existsById(playlistId)) {
+            throw new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found");
+        }
+        if (songId.equals(afterSongId)) {
+            throw new PlaylistException(ErrorType.INVALID_POSITION, "Cannot move a song after itself");
+        }
+        if (!playlistSongRepository.findPosition(playlistId, songId).isPresent()) {
+            throw new PlaylistException(ErrorType.SONG_NOT_IN_PLAYLIST, "Song not in playlist");
+        }
+
+        Long target = findTargetPosition(playlistId, songId, afterSongId);
+        if (target == null) {
+            // Neighbours are adjacent integers: spread the playlist out again and retry once
+            renumber(playlistId);
+            target = findTargetPosition(playlistId, songId, afterSongId);
+        }
+        playlistSongRepository.updatePosition(playlistId, songId, target);
+
+        eventPublisher.publishEvent(CatalogChangeEvent.playlist(CatalogChangeType.PLAYLIST_SONGS_MOVED,
+                playlistId, Collections.singletonList(songId)));
+    }
+
+    /**
+     * Returns the sort key between the anchor and its successor, or null if there is no room.
+     */
+    private Long findTargetPosition(Long playlistId, Long songId, Long afterSongId) {
+        if (afterSongId == null) {
+            Long first = playlistSongRepository.findFirstPosition(playlistId, songId);
+            return first == null ? PlaylistSong.POSITION_GAP : first - PlaylistSong.POSITION_GAP;
+        }
+        long previous = playlistSongRepository.findPosition(playlistId, afterSongId)
+                .orElseThrow(() -> new PlaylistException(ErrorType.SONG_NOT_IN_PLAYLIST, "Song not in playlist"));
+        Long next = playlistSongRepository.findPositionAfter(playlistId, previous, songId);
+        if (next == null) {
+            return previous + PlaylistSong.POSITION_GAP;
+        }
+        long gap = next - previous;
+        if (gap < 2) {
+            return null;
+        }
+        if (gap / 2 < RENUMBER_THRESHOLD) {
+            pendingRenumber.add(playlistId);
+        }
+        return previous + gap / 2;
+    }
+
+    /**
+     * Rewrites the playlist's sort keys evenly spaced in their current order.
+     */
+    @Transactional
+    public void renumber(Long playlistId) {
+        List<Long> ordered = playlistSongRepository.findOrderedRowSongIds(playlistId);
+        playlistSongRepository.renumber(playlistId, ordered);
+        pendingRenumber.remove(playlistId);
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void renumberPending() {
+        List<Long> playlistIds = new ArrayList<>(pendingRenumber);
+        for (Long playlistId : playlistIds) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> renumber(playlistId));
+            } catch (RuntimeException e) {
+                log.warn("Failed to renumber playlist {}", playlistId, e);
+            }
+        }
+    }
+
+    /**
+     * Rows written before ordering existed all share the default sort key; spread them out once.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void renumberUnordered() {
+        List<Long> playlistIds = playlistSongRepository.findPlaylistIdsWithDuplicatePositions();
+        if (!playlistIds.isEmpty()) {
+            log.info("Renumbering {} playlists with duplicate sort keys", playlistIds.size());
+            pendingRenumber.addAll(playlistIds);
+            renumberPending();
+        }
+    }
+
+    int pendingCount() {
+        return pendingRenumber.size();
+    }
+
+}
@@ -1,32 +1,62 @@
 package Rift.Radio.service;
 
+import Rift.Radio.dto.BatchItemStatus;
+import Rift.Radio.dto.BatchResultDto;
 import Rift.Radio.dto.CreatePlaylistDto;
 import Rift.Radio.dto.PlaylistDto;
+import Rift.Radio.dto.PlaylistSummaryDto;
 import Rift.Radio.dto.SongDto;
 import Rift.Radio.error.ErrorType;
 import Rift.Radio.error.PlaylistException;
 import Rift.Radio.modal.Playlist;
+import Rift.Radio.modal.PlaylistSong;
 import Rift.Radio.modal.Song;
 import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
 import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.smart.SmartPlaylistIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Service
 public class PlaylistService {
 
+    private final Logger log = LoggerFactory.getLogger(PlaylistService.class);
+
+    static final int MAX_PAGE_SIZE = 500;
+
     private final PlaylistRepository playlistRepository;
     private final SongRepository songRepository;
+    private final PlaylistSongRepository playlistSongRepository;
+    private final SmartPlaylistIndex smartPlaylistIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public PlaylistService(PlaylistRepository playlistRepository, SongRepository songRepository) {
+    public PlaylistService(PlaylistRepository playlistRepository, SongRepository songRepository,
+                           PlaylistSongRepository playlistSongRepository, SmartPlaylistIndex smartPlaylistIndex,
+                           ApplicationEventPublisher eventPublisher) {
         this.playlistRepository = playlistRepository;
         this.songRepository = songRepository;
+        this.playlistSongRepository = playlistSongRepository;
+        this.smartPlaylistIndex = smartPlaylistIndex;
+        this.eventPublisher = eventPublisher;
     }
 
     public CreatePlaylistDto createPlaylist(CreatePlaylistDto dto) {
@@ -38,33 +68,51 @@ public class PlaylistService {
         playlist.setName(dto.getPlaylistName());
         playlist.setDescription(dto.getDescription());
 
-        playlistRepository.save(playlist);
+        Playlist saved = playlistRepository.save(playlist);
+        eventPublisher.publishEvent(CatalogChangeEvent.playlist(CatalogChangeType.PLAYLIST_CREATED,
+                saved.getId(), Collections.<Long>emptyList()));
 
         return dto;
     }
 
-    public Playlist addSongToPlaylist(Long playlistId, Long songId) {
-        Playlist playlist = playlistRepository.findById(playlistId)
-                .orElseThrow(() -> new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found"));
-        Song song = songRepository.findById(songId)
-                .orElseThrow(() -> new PlaylistException(ErrorType.SONG_NOT_FOUND, "Song not found"));
-        if (playlist.getSongs().contains(song)) {
+    /**
+     * Adds one membership row. The primary key on playlist_song rejects duplicates, so the
+     * cost is the same for an empty playlist and a 50k-song one.
+     */
+    @Transactional
+    public PlaylistSummaryDto addSongToPlaylist(Long playlistId, Long songId) {
+        if (!playlistRepository.existsById(playlistId)) {
+            throw new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found");
+        }
+        rejectSmartPlaylist(playlistId);
+        if (!songRepository.existsById(songId)) {
+            throw new PlaylistException(ErrorType.SONG_NOT_FOUND, "Song not found");
+        }
+        if (playlistSongRepository.insertSong(playlistId, songId) == 0) {
             throw new PlaylistException(ErrorType.SONG_ALREADY_IN_PLAYLIST, "Song already in playlist");
         }
-        playlist.getSongs().add(song);
-        return playlistRepository.save(playlist);
+        playlistRepository.adjustSongCount(playlistId, 1);
+        eventPublisher.publishEvent(CatalogChangeEvent.playlist(CatalogChangeType.PLAYLIST_SONGS_ADDED,
+                playlistId, Collections.singletonList(songId)));
+        return findSummary(playlistId);
     }
 
-    public Playlist deleteSongFromPlaylist(Long playlistId, Long songId) {
-        Playlist playlist = playlistRepository.findById(playlistId)
-                .orElseThrow(() -> new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found"));
-        Song song = songRepository.findById(songId)
-                .orElseThrow(() -> new PlaylistException(ErrorType.SONG_NOT_FOUND, "Song not found"));
-        if (!playlist.getSongs().contains(song)) {
+    @Transactional
+    public PlaylistSummaryDto deleteSongFromPlaylist(Long playlistId, Long songId) {
+        if (!playlistRepository.existsById(playlistId)) {
+            throw new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found");
+        }
+        rejectSmartPlaylist(playlistId);
+        if (!songRepository.existsById(songId)) {
+            throw new PlaylistException(ErrorType.SONG_NOT_FOUND, "Song not found");
+        }
+        if (playlistSongRepository.deleteSong(playlistId, songId) == 0) {
             throw new PlaylistException(ErrorType.SONG_NOT_IN_PLAYLIST, "Song not in playlist");
         }
-        playlist.getSongs().remove(song);
-        return playlistRepository.save(playlist);
+        playlistRepository.adjustSongCount(playlistId, -1);
+        eventPublisher.publishEvent(CatalogChangeEvent.playlist(CatalogChangeType.PLAYLIST_SONGS_REMOVED,
+                playlistId, Collections.singletonList(songId)));
+        return findSummary(playlistId);
     }
 
     public PlaylistDto listSongsInPlaylist(Long playlistId) {
@@ -78,64 +126,193 @@ public class PlaylistService {
         dto.setPlaylistId(playlist.getId());
         dto.setPlaylistName(playlist.getName());
         dto.setDescription(playlist.getDescription());
+        dto.setSmart(playlist.isSmart());
 
         List<SongDto> songDtos = new ArrayList<>();
-
-        if (playlist.getSongs() != null) {
-            for (Song song : playlist.getSongs()) {
-                SongDto songDto = new SongDto();
-                songDto.setId(song.getId());
-                songDto.setSongName(song.getSongName());
-                songDto.setArtistName(song.getArtistName());
-                songDto.setGenre(song.getGenre());
-                songDto.setLiked(song.isLiked());
-                songDto.setReleaseYear(song.getReleaseYear());
-                songDto.setAlbum(song.getAlbum());
-                songDto.setFilePath(song.getFilePath());
-                songDtos.add(songDto);
-            }
+        for (Song song : playlistSongRepository.findSongsByPlaylistId(playlistId)) {
+            songDtos.add(toSongDto(song));
         }
 
         dto.setSongDtos(songDtos);
 
-        dto.setTotalSongs(String.valueOf(songDtos.size()));
+        dto.setTotalSongs(songDtos.size());
+
+        return dto;
+    }
+
+    /**
+     * Reads one window of the playlist in track order. Only the requested rows are loaded,
+     * and the total comes from the maintained song_count rather than a count query.
+     */
+    public PlaylistDto listSongsInPlaylist(Long playlistId, int offset, int limit) {
+        Playlist playlist = playlistRepository.findById(playlistId)
+                .orElseThrow(() -> new PlaylistException(
+                        ErrorType.PLAYLIST_NOT_FOUND,
+                        "Playlist not found"
+                ));
+        int safeOffset = Math.max(0, offset);
+        int safeLimit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        PlaylistDto dto = new PlaylistDto();
+        dto.setPlaylistId(playlist.getId());
+        dto.setPlaylistName(playlist.getName());
+        dto.setDescription(playlist.getDescription());
+        dto.setSmart(playlist.isSmart());
+        dto.setTotalSongs(playlist.getTotalSongs());
+
+        List<SongDto> songDtos = new ArrayList<>();
+        for (Song song : playlistSongRepository.findSongPage(playlistId, safeOffset, safeLimit)) {
+            songDtos.add(toSongDto(song));
+        }
+        dto.setSongDtos(songDtos);
 
         return dto;
     }
 
     public List<PlaylistDto> listAllPlaylists() {
         List<Playlist> playlists = playlistRepository.findAll();
-        List<PlaylistDto> result = new ArrayList<>();
 
+        // One query for every membership instead of one lazy collection load per playlist
+        Map<Long, List<SongDto>> songsByPlaylist = new HashMap<>();
+        for (Object[] row : playlistSongRepository.findAllPlaylistSongs()) {
+            Long playlistId = (Long) row[0];
+            Song song = (Song) row[1];
+            songsByPlaylist.computeIfAbsent(playlistId, id -> new ArrayList<>()).add(toSongDto(song));
+        }
+
+        List<PlaylistDto> result = new ArrayList<>();
         for (Playlist playlist : playlists) {
             PlaylistDto dto = new PlaylistDto();
             dto.setPlaylistId(playlist.getId());
             dto.setPlaylistName(playlist.getName());
             dto.setDescription(playlist.getDescription());
+            dto.setSmart(playlist.isSmart());
             dto.setTotalSongs(playlist.getTotalSongs());
+            dto.setSongDtos(songsByPlaylist.getOrDefault(playlist.getId(), new ArrayList<>()));
+            result.add(dto);
+        }
 
-            List<SongDto> songDtos = new ArrayList<>();
-            if (playlist.getSongs() != null) {
-                for (Song song : playlist.getSongs()) {
-                    SongDto songDto = new SongDto();
-                    songDto.setId(song.getId());
-                    songDto.setSongName(song.getSongName());
-                    songDto.setArtistName(song.getArtistName());
-                    songDto.setGenre(song.getGenre());
-                    songDto.setLiked(song.isLiked());
-                    songDto.setReleaseYear(song.getReleaseYear());
-                    songDto.setAlbum(song.getAlbum());
-                    songDto.setFilePath(song.getFilePath());
-                    songDtos.add(songDto);
-                }
+        return result;
+    }
+
+    public List<PlaylistSummaryDto> listPlaylistSummaries() {
+        return playlistRepository.findAllSummaries();
+    }
+
+    /**
+     * Adds many songs with one membership lookup and one batched insert into playlist_song,
+     * all in a single transaction. The songs are appended in request order.
+     */
+    @Transactional
+    public BatchResultDto addSongsToPlaylist(Long playlistId, List<Long> songIds) {
+        if (!playlistRepository.existsById(playlistId)) {
+            throw new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found");
+        }
+        rejectSmartPlaylist(playlistId);
+        Set<Long> requested = new LinkedHashSet<>(songIds);
+        requested.remove(null);
+        if (requested.isEmpty()) {
+            return new BatchResultDto();
+        }
+        Set<Long> existing = new HashSet<>(songRepository.findExistingIds(requested));
+        Set<Long> members = new HashSet<>(playlistSongRepository.findSongIdsInPlaylist(playlistId, requested));
+
+        BatchResultDto result = new BatchResultDto();
+        List<Long> toAdd = new ArrayList<>();
+        for (Long songId : requested) {
+            if (!existing.contains(songId)) {
+                result.add(songId, BatchItemStatus.SONG_NOT_FOUND);
+            } else if (members.contains(songId)) {
+                result.add(songId, BatchItemStatus.ALREADY_IN_PLAYLIST);
+            } else {
+                toAdd.add(songId);
+                result.add(songId, BatchItemStatus.ADDED);
             }
+        }
 
-            dto.setSongDtos(songDtos);
-            result.add(dto);
+        if (!toAdd.isEmpty()) {
+            long firstPosition = playlistSongRepository.findMaxPosition(playlistId) + PlaylistSong.POSITION_GAP;
+            int inserted = playlistSongRepository.insertSongsAt(playlistId, toAdd, firstPosition);
+            playlistRepository.adjustSongCount(playlistId, inserted);
+            eventPublisher.publishEvent(CatalogChangeEvent.playlist(CatalogChangeType.PLAYLIST_SONGS_ADDED,
+                    playlistId, toAdd));
         }
+        return result;
+    }
 
+    @Transactional
+    public BatchResultDto removeSongsFromPlaylist(Long playlistId, List<Long> songIds) {
+        if (!playlistRepository.existsById(playlistId)) {
+            throw new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found");
+        }
+        rejectSmartPlaylist(playlistId);
+        Set<Long> requested = new LinkedHashSet<>(songIds);
+        requested.remove(null);
+        if (requested.isEmpty()) {
+            return new BatchResultDto();
+        }
+        Set<Long> existing = new HashSet<>(songRepository.findExistingIds(requested));
+        Set<Long> members = new HashSet<>(playlistSongRepository.findSongIdsInPlaylist(playlistId, requested));
+
+        BatchResultDto result = new BatchResultDto();
+        List<Long> toRemove = new ArrayList<>();
+        for (Long songId : requested) {
+            if (!existing.contains(songId)) {
+                result.add(songId, BatchItemStatus.SONG_NOT_FOUND);
+            } else if (!members.contains(songId)) {
+                result.add(songId, BatchItemStatus.NOT_IN_PLAYLIST);
+            } else {
+                toRemove.add(songId);
+                result.add(songId, BatchItemStatus.REMOVED);
+            }
+        }
+
+        if (!toRemove.isEmpty()) {
+            int deleted = playlistSongRepository.deleteSongs(playlistId, toRemove);
+            playlistRepository.adjustSongCount(playlistId, -deleted);
+            eventPublisher.publishEvent(CatalogChangeEvent.playlist(CatalogChangeType.PLAYLIST_SONGS_REMOVED,
+                    playlistId, toRemove));
+        }
         return result;
     }
 
-}
+    /**
+     * Brings song_count in line with playlist_song once at startup, covering rows written
+     * before the column existed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void recountSongs() {
+        int updated = playlistRepository.recountSongs();
+        log.info("Recounted songs for {} playlists", updated);
+    }
+
+    private void rejectSmartPlaylist(Long playlistId) {
+        if (smartPlaylistIndex.isSmart(playlistId)) {
+            throw new PlaylistException(ErrorType.SMART_PLAYLIST_READ_ONLY,
+                    "Smart playlist songs are managed by its rule");
+        }
+    }
+
+    private PlaylistSummaryDto findSummary(Long playlistId) {
+        return playlistRepository.findSummaryById(playlistId)
+                .orElseThrow(() -> new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found"));
+    }
+
+    private SongDto toSongDto(Song song) {
+        SongDto songDto = new SongDto();
+        songDto.setId(song.getId());
+        songDto.setSongName(song.getSongName());
+        songDto.setArtistName(song.getArtistName());
+        songDto.setGenre(song.getGenre());
+        songDto.setLiked(song.isLiked());
+        songDto.setReleaseYear(song.getReleaseYear());
+        songDto.setAlbum(song.getAlbum());
+        songDto.setFilePath(song.getFilePath());
+        songDto.setDurationMs(song.getDurationMs());
+        songDto.setBitrate(song.getBitrate());
+        songDto.setCoverHash(song.getCoverHash());
+        return songDto;
+    }
 
+}
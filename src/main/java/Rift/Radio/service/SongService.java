@@ -1,43 +1,97 @@
 package Rift.Radio.service;
 
 import Rift.Radio.dto.CreateSongDto;
+import Rift.Radio.dto.SongBatchDto;
 import Rift.Radio.dto.SongDto;
 import Rift.Radio.error.ErrorType;
 import Rift.Radio.error.SongException;
 import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistSongRepository;
 import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.artwork.CoverArtService;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.fingerprint.AudioFingerprint;
+import Rift.Radio.service.fingerprint.FingerprintMatch;
+import Rift.Radio.service.fingerprint.FingerprintService;
+import Rift.Radio.service.metadata.AudioMetadata;
+import Rift.Radio.service.metadata.Mp3MetadataParser;
+import Rift.Radio.service.metadata.Mp3StreamCheck;
+import Rift.Radio.service.storage.FileRetirementService;
+import Rift.Radio.service.storage.SongStorage;
+import Rift.Radio.service.tiering.TieringService;
+import Rift.Radio.service.upload.StripedLocks;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 
 @Service
 public class SongService {
 
+    static final int MAX_BATCH_SIZE = 500;
+    static final long MAX_FILE_SIZE = 104857600;
+    private static final int STAGING_BUFFER_SIZE = 64 * 1024;
+    private static final int VERSION_LENGTH = 12;
+    private static final int LOCK_STRIPES = 64;
+
     private final Logger log = LoggerFactory.getLogger(SongService.class);
     private final SongRepository songRepository;
+    private final PlaylistSongRepository playlistSongRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Mp3MetadataParser metadataParser;
+    private final CoverArtService coverArtService;
+    private final FingerprintService fingerprintService;
+    private final SongStorage songStorage;
+    private final TieringService tieringService;
+    private final FileRetirementService fileRetirementService;
+    // Upload and edit commits on the same song, name or file key run one at a time
+    private final StripedLocks locks = new StripedLocks(LOCK_STRIPES);
 
     @Autowired
-    public SongService(SongRepository songRepository) {
+    public SongService(SongRepository songRepository, PlaylistSongRepository playlistSongRepository,
+                       ApplicationEventPublisher eventPublisher, Mp3MetadataParser metadataParser,
+                       CoverArtService coverArtService, FingerprintService fingerprintService,
+                       SongStorage songStorage, TieringService tieringService,
+                       FileRetirementService fileRetirementService) {
         this.songRepository = songRepository;
+        this.playlistSongRepository = playlistSongRepository;
+        this.eventPublisher = eventPublisher;
+        this.metadataParser = metadataParser;
+        this.coverArtService = coverArtService;
+        this.fingerprintService = fingerprintService;
+        this.songStorage = songStorage;
+        this.tieringService = tieringService;
+        this.fileRetirementService = fileRetirementService;
     }
 
     public Song uploadSong(MultipartFile file, CreateSongDto dto) {
@@ -45,34 +99,40 @@ public class SongService {
         log.info("Starting upload process for song '{}' by '{}'",
                 dto.getSongName(), dto.getArtistName());
 
-        if (songRepository.existsBySongName(dto.getSongName())) {
-            throw new SongException(ErrorType.Duplicated_SONG, "Song name already exists");
-        }
-
-        validateYear(dto.getReleaseYear());
+        checkNewSong(dto);
         validateFile(file);
+        String filePath = newFilePath(file.getOriginalFilename());
 
-        try {
-            Path resourceDirectory = Paths.get(System.getProperty("user.dir"),
-                    "src", "main", "resources", "localstorage", "mp3");
-
-            File storageDir = resourceDirectory.toFile();
-            if (!storageDir.exists() && !storageDir.mkdirs()) {
-                throw new SongException(ErrorType.FILE_STORAGE_ERROR, "Could not create storage directory");
-            }
-
-            String cleanName = StringUtils.hasText(file.getOriginalFilename())
-                    ? file.getOriginalFilename() : "untitled.mp3";
-            String fileName = StringUtils.cleanPath(cleanName);
+        try (InputStream content = file.getInputStream()) {
+            return uploadSong(content, filePath, dto);
+        } catch (IOException e) {
+            log.error("Could not read upload '{}': {}", file.getOriginalFilename(), e.getMessage(), e);
+            throw new SongException(ErrorType.FILE_STORAGE_ERROR, "Could not store the file", e);
+        }
+    }
 
-            String filePath = resourceDirectory.resolve(fileName).toString();
+    /**
+     * Checks an upload whose file has not been received yet, and returns the key to store the
+     * file under. Lets a streamed upload be turned down before its body is read.
+     */
+    public String prepareUpload(CreateSongDto dto, String originalFilename, String contentType) {
 
-            if (songRepository.existsByFilePath(filePath)) {
-                throw new SongException(ErrorType.MP3_ALREADY_EXIST, "MP3 file already uploaded");
-            }
+        log.info("Starting streamed upload for song '{}' by '{}'",
+                dto.getSongName(), dto.getArtistName());
 
-            file.transferTo(new File(filePath));
+        checkNewSong(dto);
+        validateFileType(originalFilename, contentType);
+        return newFilePath(originalFilename);
+    }
 
+    /**
+     * Stores the file read from content and creates its song. The file is checked and hashed
+     * while it is written, so a stream that is not an MP3 file is rejected from its first bytes.
+     */
+    public Song uploadSong(InputStream content, String filePath, CreateSongDto dto) {
+        StagedFile staged = stage(content, filePath);
+        try {
+            checkNotUploaded(staged.hash, filePath);
             Song song = new Song();
             song.setSongName(dto.getSongName());
             song.setArtistName(dto.getArtistName());
@@ -80,14 +140,246 @@ public class SongService {
             song.setReleaseYear(dto.getReleaseYear());
             song.setGenre(dto.getGenre());
             song.setFilePath(filePath);
+            song.setFileHash(staged.hash);
+            AudioMetadata metadata = metadataParser.parse(staged.path);
+            AudioFingerprint fingerprint = checkNotDuplicate(staged.path, metadata, null);
+            applyMetadata(song, metadata, staged.path);
+            if (dto.getReleaseYear() == 0) {
+                validateYear(song.getReleaseYear());
+            }
 
-            return songRepository.save(song);
+            Song saved;
+            // Another upload may have taken the name or the file since the first checks
+            try (StripedLocks.Held held = locks.lock("name:" + song.getSongName(), "file:" + filePath,
+                    "hash:" + staged.hash)) {
+                if (songRepository.existsBySongName(song.getSongName())) {
+                    throw new SongException(ErrorType.Duplicated_SONG, "Song name already exists");
+                }
+                checkNotUploaded(staged.hash, filePath);
+                if (songRepository.existsByFilePath(filePath) || !songStorage.store(staged.path, filePath)) {
+                    log.error("Upload rejected – a file is stored at '{}' already", filePath);
+                    throw new SongException(ErrorType.MP3_ALREADY_EXIST, "MP3 file already uploaded");
+                }
+                saved = saveStored(song, filePath);
+            }
+            fingerprintService.register(saved.getId(), fingerprint);
+            eventPublisher.publishEvent(CatalogChangeEvent.song(CatalogChangeType.SONG_CREATED, saved.getId()));
+            return saved;
 
         } catch (IOException e) {
             throw new SongException(ErrorType.FILE_NOT_FOUND, "Failed to upload the song", e);
+        } finally {
+            discard(staged.path);
+        }
+    }
+
+    /**
+     * Takes the locks uploads and edits hold while they store a file and save its song, for the
+     * given file keys and song names. Lets other writers of songs check and insert without
+     * racing them; closing the result releases the locks.
+     */
+    public StripedLocks.Held lockForStore(Collection<String> filePaths, Collection<String> songNames) {
+        List<String> keys = new ArrayList<>(filePaths.size() + songNames.size());
+        for (String filePath : filePaths) {
+            keys.add("file:" + filePath);
+        }
+        for (String songName : songNames) {
+            keys.add("name:" + songName);
+        }
+        return locks.lock(keys.toArray(new String[0]));
+    }
+
+    private void checkNotUploaded(String fileHash, String filePath) {
+        if (songRepository.existsByFileHash(fileHash)) {
+            log.error("Upload rejected – '{}' is byte for byte an uploaded file", filePath);
+            throw new SongException(ErrorType.MP3_ALREADY_EXIST, "MP3 file already uploaded");
+        }
+    }
+
+    /**
+     * Saves a song whose file may just have been stored. The unique name and file path turn the
+     * row down when another instance took either meanwhile; the stored file is removed again.
+     */
+    private Song saveStored(Song song, String storedFilePath) {
+        try {
+            return songRepository.save(song);
+        } catch (DataIntegrityViolationException e) {
+            log.error("Saving song '{}' failed on a unique constraint: {}", song.getSongName(), e.getMessage());
+            if (storedFilePath != null) {
+                try {
+                    songStorage.delete(storedFilePath);
+                } catch (IOException deleteFailed) {
+                    log.warn("Could not remove '{}' after the failed save", storedFilePath, deleteFailed);
+                }
+            }
+            boolean nameTaken = song.getId() == null
+                    ? songRepository.existsBySongName(song.getSongName())
+                    : songRepository.existsBySongNameAndIdNot(song.getSongName(), song.getId());
+            if (nameTaken) {
+                throw new SongException(ErrorType.Duplicated_SONG, "Song name already exists");
+            }
+            throw new SongException(ErrorType.MP3_ALREADY_EXIST, "MP3 file already uploaded");
+        }
+    }
+
+    private void checkNewSong(CreateSongDto dto) {
+        if (songRepository.existsBySongName(dto.getSongName())) {
+            throw new SongException(ErrorType.Duplicated_SONG, "Song name already exists");
+        }
+
+        // Without a year the file's tags may still have one, which is checked once the file is staged
+        if (dto.getReleaseYear() != 0) {
+            validateYear(dto.getReleaseYear());
+        }
+    }
+
+    private String newFilePath(String originalFilename) {
+        String filePath = songStorage.keyFor(storedFileName(originalFilename));
+        if (songRepository.existsByFilePath(filePath)) {
+            throw new SongException(ErrorType.MP3_ALREADY_EXIST, "MP3 file already uploaded");
+        }
+        return filePath;
+    }
+
+    // Only the base name of the client's file name is kept, so a file cannot land outside storage
+    private String storedFileName(String originalFilename) {
+        if (!StringUtils.hasText(originalFilename)) {
+            return "untitled.mp3";
+        }
+        Path fileName;
+        try {
+            fileName = Paths.get(StringUtils.cleanPath(originalFilename)).getFileName();
+        } catch (InvalidPathException e) {
+            fileName = null;
+        }
+        String name = fileName == null ? "" : fileName.toString().trim();
+        if (name.isEmpty() || ".".equals(name) || "..".equals(name)) {
+            log.error("Upload rejected – invalid file name '{}'", originalFilename);
+            throw new SongException(ErrorType.INVALID_SONG_DATA, "Invalid file name");
+        }
+        return name;
+    }
+
+    /**
+     * Writes the upload to a staging file, where it is checked before it goes to storage. For
+     * local storage the staging file sits next to its final place, and storing it is a rename.
+     */
+    private StagedFile stage(InputStream content, String filePath) {
+        Path staged;
+        try {
+            staged = songStorage.createStagingFile();
+        } catch (IOException e) {
+            log.error("Could not stage upload '{}': {}", filePath, e.getMessage(), e);
+            throw new SongException(ErrorType.FILE_STORAGE_ERROR, "Could not store the file", e);
+        }
+        boolean written = false;
+        try (OutputStream out = Files.newOutputStream(staged)) {
+            MessageDigest digest = sha256();
+            Mp3StreamCheck check = new Mp3StreamCheck();
+            byte[] buffer = new byte[STAGING_BUFFER_SIZE];
+            long size = 0;
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                size += read;
+                if (size > MAX_FILE_SIZE) {
+                    log.error("Upload rejected – '{}' exceeds the size limit", filePath);
+                    throw new SongException(ErrorType.FILE_NOT_FOUND, "File size exceeds the limit");
+                }
+                if (!check.update(buffer, 0, read)) {
+                    log.error("Upload rejected – '{}' is not an MP3 file", filePath);
+                    throw new SongException(ErrorType.FILE_NOT_FOUND, "Invalid file format. Only MP3 files are allowed.");
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+            if (size == 0) {
+                throw new SongException(ErrorType.FILE_NOT_FOUND, "File is empty");
+            }
+            if (!check.isMp3()) {
+                log.error("Upload rejected – '{}' is too short for an MP3 file", filePath);
+                throw new SongException(ErrorType.FILE_NOT_FOUND, "Invalid file format. Only MP3 files are allowed.");
+            }
+            written = true;
+            return new StagedFile(staged, hex(digest.digest()));
+        } catch (IOException e) {
+            log.error("Could not stage upload '{}': {}", filePath, e.getMessage(), e);
+            throw new SongException(ErrorType.FILE_STORAGE_ERROR, "Could not store the file", e);
+        } finally {
+            if (!written) {
+                discard(staged);
+            }
+        }
+    }
+
+    // A stored upload has been moved away already; anything left is a rejected one
+    private void discard(Path staged) {
+        try {
+            Files.deleteIfExists(staged);
+        } catch (IOException e) {
+            log.warn("Could not remove staged upload '{}': {}", staged, e.getMessage());
         }
     }
 
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Sets duration, bitrate and cover from the file, and fills in fields the upload left empty
+     * from its tags. Values given with the upload always win.
+     */
+    private void applyMetadata(Song song, AudioMetadata metadata, Path file) {
+        log.debug("Metadata of '{}': {}", song.getFilePath(), metadata);
+        applyFileInfo(song, metadata, file);
+        if (!StringUtils.hasText(song.getSongName())) {
+            song.setSongName(metadata.getTitle());
+        }
+        if (!StringUtils.hasText(song.getArtistName())) {
+            song.setArtistName(metadata.getArtist());
+        }
+        if (!StringUtils.hasText(song.getAlbum())) {
+            song.setAlbum(metadata.getAlbum());
+        }
+        if (!StringUtils.hasText(song.getGenre())) {
+            song.setGenre(metadata.getGenre());
+        }
+        if (song.getReleaseYear() == 0 && metadata.getYear() != null) {
+            song.setReleaseYear(metadata.getYear());
+        }
+    }
+
+    /**
+     * Fingerprints the staged file and rejects it when another song has the same audio.
+     */
+    private AudioFingerprint checkNotDuplicate(Path file, AudioMetadata metadata, Long songId) {
+        AudioFingerprint fingerprint = fingerprintService.fingerprint(file, metadata);
+        Optional<FingerprintMatch> duplicate = fingerprintService.findDuplicate(fingerprint, songId);
+        if (duplicate.isPresent()) {
+            log.error("Upload rejected – '{}' has the same audio as song ID {} ({}% of the sampled audio)",
+                    file, duplicate.get().getSongId(), Math.round(duplicate.get().getSimilarity() * 100));
+            throw new SongException(ErrorType.Duplicated_SONG, "Same audio already uploaded");
+        }
+        return fingerprint;
+    }
+
+    private void applyFileInfo(Song song, AudioMetadata metadata, Path file) {
+        song.setDurationMs(metadata.getDurationMs() > 0 ? metadata.getDurationMs() : null);
+        song.setBitrate(metadata.getBitrate() > 0 ? metadata.getBitrate() : null);
+        song.setCoverHash(coverArtService.ingest(file, metadata.getArtwork()));
+    }
+
     private void validateYear(int year) {
         if (year < 1800 || year > 2025) {
             throw new SongException(ErrorType.INVALID_DATE, "Year must be between 1800 and 2025");
@@ -103,22 +395,23 @@ public class SongService {
             throw new SongException(ErrorType.FILE_NOT_FOUND, "File is empty");
         }
 
-        long MAX_FILE_SIZE = 104857600;
-
         if (file.getSize() > MAX_FILE_SIZE) {
             log.error("Validation failed – file size {} exceeds limit", file.getSize());
             throw new SongException(ErrorType.FILE_NOT_FOUND, "File size exceeds the limit");
         }
 
-        String fileExtension = StringUtils.getFilenameExtension(file.getOriginalFilename());
+        validateFileType(file.getOriginalFilename(), file.getContentType());
+    }
+
+    private void validateFileType(String originalFilename, String contentType) {
+
+        String fileExtension = StringUtils.getFilenameExtension(originalFilename);
 
         if (!"mp3".equalsIgnoreCase(fileExtension)) {
             log.error("Validation failed – invalid extension: '{}'", fileExtension);
             throw new SongException(ErrorType.FILE_NOT_FOUND, "Invalid file format. Only MP3 files are allowed.");
         }
 
-        String contentType = file.getContentType();
-
         if (contentType == null || !MediaType.valueOf(contentType).equals(MediaType.valueOf("audio/mpeg"))) {
             log.error("Validation failed – unsupported content type: '{}'", contentType);
             throw new SongException(ErrorType.FILE_NOT_FOUND, "Invalid file format. Only MP3 files are allowed.");
@@ -148,9 +441,9 @@ public class SongService {
 
         try {
 
-            Path path = Paths.get(song.getFilePath());
-            Resource resource = new UrlResource(path.toUri());
+            Resource resource = songStorage.load(song.getFilePath());
             if (resource.exists()) {
+                tieringService.recordAccess(id, song.getFilePath());
                 return resource;
             } else {
                 log.error("Resource missing at '{}'", song.getFilePath());
@@ -163,6 +456,19 @@ public class SongService {
 
     }
 
+    /**
+     * A URL the client can fetch the song from directly, or empty when the storage backend
+     * has the app serve it. A {@code downloadName} makes the response an attachment.
+     */
+    public Optional<URI> getSongFileUrl(Long id, String downloadName) {
+
+        Song song = songRepository.findById(id).orElseThrow(() -> {
+            log.error("Song with ID {} not found", id);
+            return new SongException(ErrorType.SONG_NOT_FOUND, "Song not found");
+        });
+        return songStorage.presignedUrl(song.getFilePath(), downloadName);
+    }
+
     public List<SongDto> getAllSongs(int page, int pageSize) {
 
         List<Song> songs = songRepository.findAll(PageRequest.of(page, pageSize)).getContent();
@@ -171,52 +477,87 @@ public class SongService {
         List<SongDto> result = new ArrayList<>();
 
         for (Song song : songs) {
-            SongDto dto = new SongDto();
-            dto.setId(song.getId());
-            dto.setSongName(song.getSongName());
-            dto.setArtistName(song.getArtistName());
-            dto.setLiked(song.isLiked());
-            dto.setReleaseYear(song.getReleaseYear());
-            dto.setAlbum(song.getAlbum());
-            dto.setGenre(song.getGenre());
-            dto.setFilePath(song.getFilePath());
-            result.add(dto);
+            result.add(toDto(song));
         }
 
         return result;
     }
 
+    public SongBatchDto getSongsByIds(List<Long> ids) {
 
-    public void deleteSong(Long id) {
-
-        log.info("Commencing deletion for song ID {}", id);
-        Song song = songRepository.findById(id).orElseThrow(() -> {
-            log.error("Deletion failed – song with ID {} not found", id);
-            return new SongException(ErrorType.SONG_NOT_FOUND, "Song not found");
-        });
+        LinkedHashSet<Long> requested = new LinkedHashSet<>(ids);
+        requested.remove(null);
+        if (requested.size() > MAX_BATCH_SIZE) {
+            throw new SongException(ErrorType.BATCH_TOO_LARGE, "Too many ids in one request");
+        }
+        if (requested.isEmpty()) {
+            return new SongBatchDto();
+        }
 
-        String filePath = song.getFilePath();
-        songRepository.delete(song);
-        log.info("Song ID {} removed from repository", id);
-        File mp3File = new File(filePath);
+        Map<Long, Song> found = new HashMap<>();
+        for (Song song : songRepository.findAllById(requested)) {
+            found.put(song.getId(), song);
+        }
+        log.info("Fetched {} of {} requested songs", found.size(), requested.size());
 
-        if (mp3File.exists()) {
-            if (mp3File.delete()) {
-                log.info("File '{}' deleted", filePath);
+        SongBatchDto result = new SongBatchDto();
+        for (Long id : requested) {
+            Song song = found.get(id);
+            if (song != null) {
+                result.getSongs().add(toDto(song));
             } else {
-                log.error("File deletion unsuccessful for '{}'", filePath);
+                result.getMissingIds().add(id);
             }
-        } else {
-            log.warn("File '{}' not found during deletion", filePath);
         }
+        return result;
+    }
+
+    private SongDto toDto(Song song) {
+        SongDto dto = new SongDto();
+        dto.setId(song.getId());
+        dto.setSongName(song.getSongName());
+        dto.setArtistName(song.getArtistName());
+        dto.setLiked(song.isLiked());
+        dto.setReleaseYear(song.getReleaseYear());
+        dto.setAlbum(song.getAlbum());
+        dto.setGenre(song.getGenre());
+        dto.setFilePath(song.getFilePath());
+        dto.setDurationMs(song.getDurationMs());
+        dto.setBitrate(song.getBitrate());
+        dto.setCoverHash(song.getCoverHash());
+        return dto;
+    }
 
+
+    /**
+     * Deletes a song. Its row is only marked, which hides it from every read at once, and the
+     * playlists holding it count one song less; {@link Rift.Radio.service.purge.SongPurgeService} removes the row, its playlist and like
+     * rows and its file in the background.
+     */
+    @Transactional
+    public void deleteSong(Long id) {
+
+        log.info("Commencing deletion for song ID {}", id);
+        if (songRepository.markDeleted(id, System.currentTimeMillis()) == 0) {
+            log.error("Deletion failed – song with ID {} not found", id);
+            throw new SongException(ErrorType.SONG_NOT_FOUND, "Song not found");
+        }
+        // Playlists stop counting it with the same commit that hides it
+        playlistSongRepository.decrementCountsForSongs(Collections.singletonList(id));
+        log.info("Song ID {} deleted, its rows and file are purged in the background", id);
+        eventPublisher.publishEvent(CatalogChangeEvent.song(CatalogChangeType.SONG_DELETED, id));
     }
 
+    /**
+     * Updates a song, and its file when one is given. The new file is stored under a key of its
+     * own rather than over the old one, and the song is switched to it in one update. Streams
+     * of the old version keep reading it until {@link FileRetirementService} deletes it.
+     */
     public Song editSong(Long id, MultipartFile file, CreateSongDto dto) {
 
         log.info("Initiating update for song ID {}", id);
 
-        Song song = songRepository.findById(id).orElseThrow(() -> {
+        songRepository.findById(id).orElseThrow(() -> {
             log.error("Update failed – song with ID {} not found", id);
             return new SongException(ErrorType.SONG_NOT_FOUND, "Song not found");
         });
@@ -228,56 +569,90 @@ public class SongService {
 
         validateYear(dto.getReleaseYear());
 
-        if (file != null && !file.isEmpty()) {
-            log.info("Processing file update for song ID {}", id);
-
-            File oldFile = new File(song.getFilePath());
-            if (oldFile.exists() && oldFile.delete()) {
-                log.info("Old file '{}' removed", song.getFilePath());
-            } else {
-                log.warn("Old file '{}' could not be removed or did not exist", song.getFilePath());
+        StagedFile staged = null;
+        try {
+            AudioMetadata metadata = null;
+            AudioFingerprint fingerprint = null;
+            String newFilePath = null;
+            if (file != null && !file.isEmpty()) {
+                log.info("Processing file update for song ID {}", id);
+
+                validateFile(file);
+                try (InputStream content = file.getInputStream()) {
+                    staged = stage(content, file.getOriginalFilename());
+                }
+                newFilePath = versionedFilePath(file.getOriginalFilename(), staged.hash);
+                metadata = metadataParser.parse(staged.path);
+                fingerprint = checkNotDuplicate(staged.path, metadata, id);
             }
 
-            validateFile(file);
+            Song updatedSong;
+            // The song is read again under its lock, so concurrent edits each replace the version before them
+            try (StripedLocks.Held held = locks.lock("song:" + id, "name:" + dto.getSongName(),
+                    newFilePath == null ? null : "file:" + newFilePath)) {
+                Song song = songRepository.findById(id).orElseThrow(() -> {
+                    log.error("Update failed – song with ID {} was deleted meanwhile", id);
+                    return new SongException(ErrorType.SONG_NOT_FOUND, "Song not found");
+                });
+                if (songRepository.existsBySongNameAndIdNot(dto.getSongName(), id)) {
+                    log.error("Update aborted – duplicate song name: '{}'", dto.getSongName());
+                    throw new SongException(ErrorType.Duplicated_SONG, "Song name already exists");
+                }
 
-            Path resourceDirectory = Paths.get(System.getProperty("user.dir"),
-                    "src", "main", "resources", "localstorage", "mp3");
-            File storageDir = resourceDirectory.toFile();
-            if (!storageDir.exists() && !storageDir.mkdirs()) {
-                log.error("Failed to create storage directory at '{}'", storageDir.getAbsolutePath());
-                throw new SongException(ErrorType.FILE_STORAGE_ERROR, "Could not create storage directory");
-            }
+                String oldFilePath = song.getFilePath();
+                String storedFilePath = null;
+                if (staged != null) {
+                    applyFileInfo(song, metadata, staged.path);
+                    song.setFileHash(staged.hash);
+                    // The same bytes under the same name are the version in place
+                    if (!newFilePath.equals(oldFilePath)) {
+                        log.debug("Storing new file at '{}'", newFilePath);
+                        if (songRepository.existsByFilePath(newFilePath)
+                                || !songStorage.store(staged.path, newFilePath)) {
+                            log.error("Update aborted – file already exists at '{}'", newFilePath);
+                            throw new SongException(ErrorType.MP3_ALREADY_EXIST, "MP3 file already uploaded");
+                        }
+                        song.setFilePath(newFilePath);
+                        storedFilePath = newFilePath;
+                    }
+                }
 
-            String cleanName = StringUtils.hasText(file.getOriginalFilename())
-                    ? file.getOriginalFilename() : "untitled.mp3";
-            String fileName = StringUtils.cleanPath(cleanName);
-            String newFilePath = resourceDirectory.resolve(fileName).toString();
+                song.setSongName(dto.getSongName());
+                song.setArtistName(dto.getArtistName());
+                song.setAlbum(dto.getAlbum());
+                song.setReleaseYear(dto.getReleaseYear());
+                song.setGenre(dto.getGenre());
 
-            if (songRepository.existsByFilePath(newFilePath)) {
-                log.error("Update aborted – file already exists at '{}'", newFilePath);
-                throw new SongException(ErrorType.MP3_ALREADY_EXIST, "MP3 file already uploaded");
+                updatedSong = saveStored(song, storedFilePath);
+                if (storedFilePath != null) {
+                    fileRetirementService.retire(oldFilePath);
+                    log.info("File updated for song ID {}: '{}', '{}' retired", id, storedFilePath, oldFilePath);
+                }
+            }
+            if (fingerprint != null) {
+                fingerprintService.register(id, fingerprint);
             }
+            log.info("Song ID {} updated successfully", id);
+            eventPublisher.publishEvent(CatalogChangeEvent.song(CatalogChangeType.SONG_UPDATED, id));
+            return updatedSong;
 
-            try {
-                log.debug("Transferring new file to '{}'", newFilePath);
-                file.transferTo(new File(newFilePath));
-                song.setFilePath(newFilePath);
-                log.info("File updated for song ID {}: '{}'", id, newFilePath);
-            } catch (IOException e) {
-                log.error("File update error for song ID {}: {}", id, e.getMessage(), e);
-                throw new SongException(ErrorType.FILE_NOT_FOUND, "Failed to update the song", e);
+        } catch (IOException e) {
+            log.error("File update error for song ID {}: {}", id, e.getMessage(), e);
+            throw new SongException(ErrorType.FILE_NOT_FOUND, "Failed to update the song", e);
+        } finally {
+            if (staged != null) {
+                discard(staged.path);
             }
         }
+    }
 
-        song.setSongName(dto.getSongName());
-        song.setArtistName(dto.getArtistName());
-        song.setAlbum(dto.getAlbum());
-        song.setReleaseYear(dto.getReleaseYear());
-        song.setGenre(dto.getGenre());
-
-        Song updatedSong = songRepository.save(song);
-        log.info("Song ID {} updated successfully", id);
-        return updatedSong;
+    // Each version of a file gets its own key, so the one it replaces stays readable
+    private String versionedFilePath(String originalFilename, String fileHash) {
+        String fileName = storedFileName(originalFilename);
+        String extension = StringUtils.getFilenameExtension(fileName);
+        String version = fileHash.substring(0, VERSION_LENGTH);
+        return songStorage.keyFor(StringUtils.stripFilenameExtension(fileName) + "." + version
+                + (extension == null ? "" : "." + extension));
     }
 
     public void downloadSong(Long id, HttpServletResponse response) {
@@ -289,23 +664,31 @@ public class SongService {
         });
         try {
 
-            Path path = Paths.get(song.getFilePath());
-            Resource resource = new UrlResource(path.toUri());
+            Optional<URI> direct = songStorage.presignedUrl(song.getFilePath(), song.getSongName() + ".mp3");
+            if (direct.isPresent()) {
+                log.info("Download of song ID {} redirected to storage", id);
+                response.sendRedirect(direct.get().toString());
+                return;
+            }
+
+            Resource resource = songStorage.load(song.getFilePath());
 
             if (resource.exists()) {
+                tieringService.recordAccess(id, song.getFilePath());
                 response.setContentType("audio/mpeg");
                 response.setHeader("Content-Disposition",
                         "attachment; filename=\"" + song.getSongName() + ".mp3\"");
 
                 log.debug("Response headers set for song '{}'", song.getSongName());
-                InputStream is = resource.getInputStream();
-                OutputStream os = response.getOutputStream();
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = is.read(buffer)) != -1) {
-                    os.write(buffer, 0, len);
+                try (InputStream is = resource.getInputStream()) {
+                    OutputStream os = response.getOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int len;
+                    while ((len = is.read(buffer)) != -1) {
+                        os.write(buffer, 0, len);
+                    }
+                    os.flush();
                 }
-                os.flush();
                 log.info("Download completed for song ID {}", id);
             } else {
                 log.error("Download failed – resource missing at '{}'", song.getFilePath());
@@ -318,5 +701,14 @@ public class SongService {
 
     }
 
-}
+    private static final class StagedFile {
 
+        private final Path path;
+        private final String hash;
+
+        private StagedFile(Path path, String hash) {
+            this.path = path;
+            this.hash = hash;
+        }
+    }
+}
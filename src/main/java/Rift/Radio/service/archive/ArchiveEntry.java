@@ -0,0 +1,69 @@
+package Rift.Radio.service.archive;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * A file in a streamed archive. Size and modification time are captured when the layout is
+ * planned, so the same files always produce the same archive bytes.
+ */
+public final class ArchiveEntry {
+
+    private final String name;
+    private final byte[] nameBytes;
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+    private final int dosTime;
+    private final int dosDate;
+
+    public ArchiveEntry(String name, Path path, long size, long lastModified) {
+        this.name = name;
+        this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            time = LocalDateTime.of(1980, 1, 1, 0, 0);
+        }
+        this.dosTime = (time.getHour() << 11) | (time.getMinute() << 5) | (time.getSecond() >> 1);
+        this.dosDate = ((time.getYear() - 1980) << 9) | (time.getMonthValue() << 5) | time.getDayOfMonth();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    byte[] getNameBytes() {
+        return nameBytes;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    int getDosTime() {
+        return dosTime;
+    }
+
+    int getDosDate() {
+        return dosDate;
+    }
+
+    String cacheKey() {
+        return path.toAbsolutePath() + "|" + size + "|" + lastModified;
+    }
+}
@@ -0,0 +1,32 @@
+package Rift.Radio.service.archive;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CRC-32 of files already streamed, keyed by path, size and modification time. A resumed
+ * download needs the CRCs of the files before the resume point for the central directory;
+ * with this cache they usually do not have to be read again.
+ */
+@Component
+public class CrcCache {
+
+    private static final int MAX_ENTRIES = 10000;
+
+    private final Map<String, Long> crcs = new LinkedHashMap<String, Long>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public synchronized Long get(ArchiveEntry entry) {
+        return crcs.get(entry.cacheKey());
+    }
+
+    public synchronized void put(ArchiveEntry entry, long crc) {
+        crcs.put(entry.cacheKey(), crc);
+    }
+}
@@ -0,0 +1,123 @@
+package Rift.Radio.service.archive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A planned playlist archive. {@link #writeTo} produces any byte range of it; the files
+ * behind the range are read ahead on the given executor.
+ */
+public final class PlaylistArchive {
+
+    private final String fileName;
+    private final String etag;
+    private final ZipLayout layout;
+    private final CrcCache crcCache;
+    private final Executor executor;
+
+    PlaylistArchive(String fileName, String etag, ZipLayout layout, CrcCache crcCache, Executor executor) {
+        this.fileName = fileName;
+        this.etag = etag;
+        this.layout = layout;
+        this.crcCache = crcCache;
+        this.executor = executor;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long length() {
+        return layout.length();
+    }
+
+    /**
+     * Writes bytes {@code start} to {@code end} (inclusive) of the archive.
+     */
+    public void writeTo(OutputStream out, long start, long end) throws IOException {
+        int count = layout.size();
+        long[] crcs = new long[count];
+        boolean needsDirectory = end >= layout.centralDirectoryOffset();
+
+        // Decide per entry whether its bytes are sent, or only its CRC is needed
+        List<ReadAhead.Task> tasks = new ArrayList<>();
+        Set<Integer> reading = new HashSet<>();
+        for (int i = 0; i < count && layout.headerOffset(i) <= end; i++) {
+            ArchiveEntry entry = layout.entry(i);
+            boolean sendsData = entry.getSize() > 0
+                    && layout.dataOffset(i) <= end && layout.descriptorOffset(i) > start;
+            boolean sendsDescriptor = layout.descriptorOffset(i) <= end && layout.entryEnd(i) > start;
+            Long cached = crcCache.get(entry);
+            if (sendsData) {
+                tasks.add(new ReadAhead.Task(entry, true));
+                reading.add(i);
+            } else if ((sendsDescriptor || needsDirectory) && cached == null) {
+                tasks.add(new ReadAhead.Task(entry, false));
+                reading.add(i);
+            } else if (cached != null) {
+                crcs[i] = cached;
+            }
+        }
+
+        ReadAhead readAhead = new ReadAhead(tasks);
+        if (!tasks.isEmpty()) {
+            try {
+                executor.execute(readAhead);
+            } catch (RejectedExecutionException e) {
+                throw new IOException("Too many playlist downloads in progress", e);
+            }
+        }
+        try {
+            for (int i = 0; i < count && layout.headerOffset(i) <= end; i++) {
+                writeSlice(out, layout.localHeader(i), layout.headerOffset(i), start, end);
+                if (reading.contains(i)) {
+                    long offset = layout.dataOffset(i);
+                    while (true) {
+                        ReadAhead.Chunk chunk = readAhead.take();
+                        if (chunk.isEnd()) {
+                            crcs[i] = chunk.crc;
+                            crcCache.put(layout.entry(i), chunk.crc);
+                            break;
+                        }
+                        writeSlice(out, chunk.data, chunk.length, offset, start, end);
+                        offset += chunk.length;
+                    }
+                }
+                writeSlice(out, layout.descriptor(i, crcs[i]), layout.descriptorOffset(i), start, end);
+            }
+            if (needsDirectory) {
+                writeSlice(out, layout.centralDirectory(crcs), layout.centralDirectoryOffset(), start, end);
+            }
+            out.flush();
+        } finally {
+            readAhead.cancel();
+        }
+    }
+
+    private static void writeSlice(OutputStream out, byte[] bytes, long segmentOffset, long start, long end)
+            throws IOException {
+        writeSlice(out, bytes, bytes.length, segmentOffset, start, end);
+    }
+
+    /**
+     * Writes the part of a segment at {@code segmentOffset} that falls inside [start, end].
+     */
+    private static void writeSlice(OutputStream out, byte[] bytes, int length, long segmentOffset,
+                                   long start, long end) throws IOException {
+        long from = Math.max(start, segmentOffset);
+        long to = Math.min(end + 1, segmentOffset + length);
+        if (from < to) {
+            out.write(bytes, (int) (from - segmentOffset), (int) (to - from));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package Rift.Radio.service.archive;
+
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.modal.Playlist;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.service.storage.SongStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Plans playlist downloads as STORED zip archives built on the fly. The layout depends only
+ * on the playlist's songs and their files' sizes and timestamps, so the ETag derived from
+ * them identifies the exact bytes and a Range request can resume an interrupted download.
+ * <p>
+ * Archives are read straight from the files on disk, so they are only offered with local
+ * storage.
+ */
+@Service
+@ConditionalOnProperty(name = "riftradio.storage.type", havingValue = "local", matchIfMissing = true)
+public class PlaylistArchiveService {
+
+    private final Logger log = LoggerFactory.getLogger(PlaylistArchiveService.class);
+
+    private final PlaylistRepository playlistRepository;
+    private final PlaylistSongRepository playlistSongRepository;
+    private final SongStorage songStorage;
+    private final CrcCache crcCache;
+    private final Executor readAheadExecutor;
+
+    @Autowired
+    public PlaylistArchiveService(PlaylistRepository playlistRepository, PlaylistSongRepository playlistSongRepository,
+                                  SongStorage songStorage, CrcCache crcCache,
+                                  @Qualifier("archiveReadAheadExecutor") Executor readAheadExecutor) {
+        this.playlistRepository = playlistRepository;
+        this.playlistSongRepository = playlistSongRepository;
+        this.songStorage = songStorage;
+        this.crcCache = crcCache;
+        this.readAheadExecutor = readAheadExecutor;
+    }
+
+    public PlaylistArchive prepare(Long playlistId) {
+        Playlist playlist = playlistRepository.findById(playlistId)
+                .orElseThrow(() -> new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found"));
+        List<Song> songs = playlistSongRepository.findSongsByPlaylistId(playlistId);
+
+        int width = Math.max(2, String.valueOf(songs.size()).length());
+        List<ArchiveEntry> entries = new ArrayList<>(songs.size());
+        MessageDigest digest = sha256();
+        digest.update(String.valueOf(playlistId).getBytes(StandardCharsets.UTF_8));
+        for (Song song : songs) {
+            // Wherever the file is, in either tier
+            Path path = songStorage.localPath(song.getFilePath());
+            long size;
+            long lastModified;
+            try {
+                size = Files.size(path);
+                lastModified = Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException e) {
+                log.warn("Leaving song {} out of playlist archive, file unavailable: {}", song.getId(), path);
+                continue;
+            }
+            String name = entryName(entries.size() + 1, width, song, path);
+            entries.add(new ArchiveEntry(name, path, size, lastModified));
+            digest.update((name + '\n' + size + '\n' + lastModified + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+
+        ZipLayout layout = new ZipLayout(entries);
+        String etag = "\"zip-" + toHex(digest.digest(), 16) + "\"";
+        return new PlaylistArchive(safeName(playlist.getName()) + ".zip", etag, layout, crcCache, readAheadExecutor);
+    }
+
+    private static String entryName(int number, int width, Song song, Path path) {
+        String extension = StringUtils.getFilenameExtension(path.getFileName().toString());
+        String title = safeName(song.getArtistName()) + " - " + safeName(song.getSongName());
+        return String.format("%0" + width + "d - %s.%s", number, title, extension == null ? "mp3" : extension);
+    }
+
+    // Keeps names portable across Windows, macOS and Linux unzip tools
+    private static String safeName(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return "untitled";
+        }
+        StringBuilder name = new StringBuilder(value.trim().length());
+        for (char c : value.trim().toCharArray()) {
+            name.append(c < 0x20 || "\\/:*?\"<>|".indexOf(c) >= 0 ? '_' : c);
+        }
+        return name.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes, int length) {
+        StringBuilder hex = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            hex.append(String.format("%02x", bytes[i]));
+        }
+        return hex.toString();
+    }
+}
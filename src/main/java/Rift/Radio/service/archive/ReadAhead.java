@@ -0,0 +1,145 @@
+package Rift.Radio.service.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Reads archive entries on a background thread into a bounded queue of chunks, so disk reads
+ * for the next files overlap with the response writing the current one. Every task ends with
+ * a marker carrying the file's CRC; tasks that only need the CRC send no data chunks.
+ */
+final class ReadAhead implements Runnable {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    // 64 chunks of 64 KB: at most 4 MB buffered per download
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long TAKE_TIMEOUT_SECONDS = 60;
+
+    private final List<Task> tasks;
+    private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile boolean cancelled;
+
+    ReadAhead(List<Task> tasks) {
+        this.tasks = tasks;
+    }
+
+    @Override
+    public void run() {
+        for (Task task : tasks) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                if (!read(task)) {
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                put(Chunk.failure(e));
+                return;
+            }
+        }
+    }
+
+    private boolean read(Task task) throws IOException {
+        ArchiveEntry entry = task.entry;
+        CRC32 crc = new CRC32();
+        long total = 0;
+        try (InputStream in = Files.newInputStream(entry.getPath())) {
+            while (true) {
+                byte[] data = new byte[CHUNK_SIZE];
+                int length = in.read(data);
+                if (length < 0) {
+                    break;
+                }
+                crc.update(data, 0, length);
+                total += length;
+                if (total > entry.getSize()) {
+                    break;
+                }
+                if (task.emitData && !put(new Chunk(data, length, -1, null))) {
+                    return false;
+                }
+            }
+        }
+        if (total != entry.getSize()) {
+            throw new IOException("File changed while archiving: " + entry.getPath());
+        }
+        return put(new Chunk(null, 0, crc.getValue(), null));
+    }
+
+    private boolean put(Chunk chunk) {
+        try {
+            while (!queue.offer(chunk, 1, TimeUnit.SECONDS)) {
+                if (cancelled) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    Chunk take() throws IOException {
+        try {
+            Chunk chunk = queue.poll(TAKE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (chunk == null) {
+                throw new IOException("Timed out waiting for archive data");
+            }
+            if (chunk.failure != null) {
+                throw chunk.failure instanceof IOException
+                        ? (IOException) chunk.failure : new IOException(chunk.failure);
+            }
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for archive data", e);
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+        queue.clear();
+    }
+
+    static final class Task {
+
+        final ArchiveEntry entry;
+        final boolean emitData;
+
+        Task(ArchiveEntry entry, boolean emitData) {
+            this.entry = entry;
+            this.emitData = emitData;
+        }
+    }
+
+    static final class Chunk {
+
+        final byte[] data;
+        final int length;
+        final long crc;
+        final Throwable failure;
+
+        private Chunk(byte[] data, int length, long crc, Throwable failure) {
+            this.data = data;
+            this.length = length;
+            this.crc = crc;
+            this.failure = failure;
+        }
+
+        static Chunk failure(Throwable failure) {
+            return new Chunk(null, 0, -1, failure);
+        }
+
+        boolean isEnd() {
+            return data == null;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package Rift.Radio.service.archive;
+
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Byte layout of a STORED zip archive, computed from entry names and sizes alone.
+ * <p>
+ * Each entry is written as local header, file bytes and a data descriptor carrying the CRC
+ * (general purpose bit 3), so the CRC does not have to be known before the data is sent.
+ * Because no field depends on anything but name, size and timestamp, every offset is known
+ * up front and any byte range of the archive can be regenerated on its own. Zip64 is not
+ * supported, so archives are limited to 4 GB and 65535 entries.
+ */
+final class ZipLayout {
+
+    static final long MAX_ARCHIVE_SIZE = 0xFFFFFFFFL;
+    static final int MAX_ENTRIES = 0xFFFF;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int DESCRIPTOR_SIZE = 16;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    private static final int VERSION = 20;
+    // Bit 3: CRC in data descriptor; bit 11: names are UTF-8
+    private static final int FLAGS = 0x0008 | 0x0800;
+    private static final int METHOD_STORED = 0;
+
+    private final List<ArchiveEntry> entries;
+    private final long[] headerOffsets;
+    private final long centralDirectoryOffset;
+    private final long centralDirectorySize;
+    private final long length;
+
+    ZipLayout(List<ArchiveEntry> entries) {
+        if (entries.size() > MAX_ENTRIES) {
+            throw new PlaylistException(ErrorType.ARCHIVE_TOO_LARGE, "Playlist has too many songs for one archive");
+        }
+        this.entries = entries;
+        this.headerOffsets = new long[entries.size()];
+        long offset = 0;
+        long directorySize = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            ArchiveEntry entry = entries.get(i);
+            headerOffsets[i] = offset;
+            offset += LOCAL_HEADER_SIZE + entry.getNameBytes().length + entry.getSize() + DESCRIPTOR_SIZE;
+            directorySize += CENTRAL_HEADER_SIZE + entry.getNameBytes().length;
+        }
+        this.centralDirectoryOffset = offset;
+        this.centralDirectorySize = directorySize;
+        this.length = offset + directorySize + END_OF_CENTRAL_DIRECTORY_SIZE;
+        if (length > MAX_ARCHIVE_SIZE) {
+            throw new PlaylistException(ErrorType.ARCHIVE_TOO_LARGE, "Playlist archive would exceed 4 GB");
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    ArchiveEntry entry(int index) {
+        return entries.get(index);
+    }
+
+    long length() {
+        return length;
+    }
+
+    long headerOffset(int index) {
+        return headerOffsets[index];
+    }
+
+    long dataOffset(int index) {
+        return headerOffsets[index] + LOCAL_HEADER_SIZE + entries.get(index).getNameBytes().length;
+    }
+
+    long descriptorOffset(int index) {
+        return dataOffset(index) + entries.get(index).getSize();
+    }
+
+    long entryEnd(int index) {
+        return descriptorOffset(index) + DESCRIPTOR_SIZE;
+    }
+
+    long centralDirectoryOffset() {
+        return centralDirectoryOffset;
+    }
+
+    byte[] localHeader(int index) {
+        ArchiveEntry entry = entries.get(index);
+        ByteBuffer buffer = buffer(LOCAL_HEADER_SIZE + entry.getNameBytes().length);
+        buffer.putInt(0x04034b50);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) FLAGS);
+        buffer.putShort((short) METHOD_STORED);
+        buffer.putShort((short) entry.getDosTime());
+        buffer.putShort((short) entry.getDosDate());
+        buffer.putInt(0);
+        // Sizes are known for STORED entries; they let streaming readers find the descriptor
+        buffer.putInt((int) entry.getSize());
+        buffer.putInt((int) entry.getSize());
+        buffer.putShort((short) entry.getNameBytes().length);
+        buffer.putShort((short) 0);
+        buffer.put(entry.getNameBytes());
+        return buffer.array();
+    }
+
+    byte[] descriptor(int index, long crc) {
+        ArchiveEntry entry = entries.get(index);
+        ByteBuffer buffer = buffer(DESCRIPTOR_SIZE);
+        buffer.putInt(0x08074b50);
+        buffer.putInt((int) crc);
+        buffer.putInt((int) entry.getSize());
+        buffer.putInt((int) entry.getSize());
+        return buffer.array();
+    }
+
+    /**
+     * Central directory followed by the end-of-central-directory record.
+     */
+    byte[] centralDirectory(long[] crcs) {
+        ByteBuffer buffer = buffer((int) (centralDirectorySize + END_OF_CENTRAL_DIRECTORY_SIZE));
+        for (int i = 0; i < entries.size(); i++) {
+            ArchiveEntry entry = entries.get(i);
+            buffer.putInt(0x02014b50);
+            buffer.putShort((short) VERSION);
+            buffer.putShort((short) VERSION);
+            buffer.putShort((short) FLAGS);
+            buffer.putShort((short) METHOD_STORED);
+            buffer.putShort((short) entry.getDosTime());
+            buffer.putShort((short) entry.getDosDate());
+            buffer.putInt((int) crcs[i]);
+            buffer.putInt((int) entry.getSize());
+            buffer.putInt((int) entry.getSize());
+            buffer.putShort((short) entry.getNameBytes().length);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putInt(0);
+            buffer.putInt((int) headerOffsets[i]);
+            buffer.put(entry.getNameBytes());
+        }
+        buffer.putInt(0x06054b50);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) entries.size());
+        buffer.putShort((short) entries.size());
+        buffer.putInt((int) centralDirectorySize);
+        buffer.putInt((int) centralDirectoryOffset);
+        buffer.putShort((short) 0);
+        return buffer.array();
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,308 @@
+package Rift.Radio.service.artwork;
+
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.SongException;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.metadata.EmbeddedArtwork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Album art taken from the pictures embedded in uploaded files.
+ * <p>
+ * The picture is read once, when a file is ingested. It is stored under its SHA-256 together
+ * with JPEG variants scaled down to {@link #SIZES}, in directories named after the first two
+ * hex digits of the hash. Songs with the same picture share the stored files, and a song whose
+ * picture changes points at another hash, so a stored file never changes and can be cached by
+ * clients for good. Lookups are cached per hash and size, never per song.
+ */
+@Service
+public class CoverArtService {
+
+    private final Logger log = LoggerFactory.getLogger(CoverArtService.class);
+
+    static final int[] SIZES = {64, 256, 512};
+    static final int MAX_ARTWORK_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_CACHED = 4096;
+    // Files this young may belong to an upload whose song row is not committed yet
+    private static final long ORPHAN_GRACE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final String[] ORIGINAL_FORMATS = {"jpg", "png", "gif"};
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final SongRepository songRepository;
+    private final Path directory;
+
+    private final Map<String, CoverFile> resolved = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CoverArtService(SongRepository songRepository,
+                           @Value("${riftradio.artwork.dir:data/covers}") String directory) {
+        this.songRepository = songRepository;
+        this.directory = Paths.get(directory).toAbsolutePath();
+    }
+
+    /**
+     * Stores the picture embedded in {@code audioFile} and returns its hash, or null when there
+     * is none or it is not an image we can read. Storing a picture that is already stored only
+     * costs reading and hashing it.
+     */
+    public String ingest(Path audioFile, EmbeddedArtwork artwork) {
+        if (artwork == null || artwork.getLength() > MAX_ARTWORK_BYTES) {
+            return null;
+        }
+        try {
+            byte[] image = read(audioFile, artwork);
+            String format = format(image);
+            if (format == null) {
+                log.info("Ignoring {} artwork in '{}'", artwork.getMimeType(), audioFile);
+                return null;
+            }
+            String hash = sha256(image);
+            Path original = blob(hash, hash + "." + format);
+            if (Files.exists(original)) {
+                return hash;
+            }
+
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image));
+            if (decoded == null) {
+                log.info("Could not decode the artwork in '{}'", audioFile);
+                return null;
+            }
+            Files.createDirectories(original.getParent());
+            int largest = Math.max(decoded.getWidth(), decoded.getHeight());
+            for (int size : SIZES) {
+                if (size < largest) {
+                    BufferedImage variant = scale(decoded, size);
+                    writeAtomically(blob(hash, variantName(hash, size)),
+                            temp -> ImageIO.write(variant, "jpg", temp.toFile()));
+                }
+            }
+            // Written last: its presence means every variant is there
+            writeAtomically(original, temp -> Files.write(temp, image));
+            log.info("Stored {}x{} artwork {} from '{}'", decoded.getWidth(), decoded.getHeight(), hash, audioFile);
+            return hash;
+        } catch (IOException e) {
+            log.warn("Could not store the artwork of '{}'", audioFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Hash of the song's cover, or null when it has none.
+     */
+    public String getCoverHash(Long songId) {
+        List<String> hashes = songRepository.findCoverHash(songId);
+        if (hashes.isEmpty()) {
+            throw new SongException(ErrorType.SONG_NOT_FOUND, "Song not found");
+        }
+        return hashes.get(0);
+    }
+
+    /**
+     * The stored file for a hash and requested size: the smallest variant at least that large,
+     * or the original for size 0, sizes above the largest variant, and pictures smaller than
+     * the variant. Returns null for unknown hashes.
+     */
+    public CoverFile resolve(String hash, int size) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            return null;
+        }
+        int variant = bucket(size);
+        String key = hash + "/" + variant;
+        CoverFile cached = resolved.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        CoverFile file = locate(hash, variant);
+        if (file != null) {
+            if (resolved.size() >= MAX_CACHED) {
+                resolved.clear();
+            }
+            resolved.put(key, file);
+        }
+        return file;
+    }
+
+    /**
+     * The variant size a requested size is served from, 0 standing for the original.
+     */
+    public static int bucket(int size) {
+        if (size <= 0) {
+            return 0;
+        }
+        for (int variant : SIZES) {
+            if (size <= variant) {
+                return variant;
+            }
+        }
+        return 0;
+    }
+
+    private CoverFile locate(String hash, int variant) {
+        try {
+            if (variant > 0) {
+                Path path = blob(hash, variantName(hash, variant));
+                if (Files.exists(path)) {
+                    return new CoverFile(path, Files.size(path), "image/jpeg", "\"" + hash + "-" + variant + "\"");
+                }
+            }
+            for (String format : ORIGINAL_FORMATS) {
+                Path path = blob(hash, hash + "." + format);
+                if (Files.exists(path)) {
+                    return new CoverFile(path, Files.size(path), "image/" + ("jpg".equals(format) ? "jpeg" : format),
+                            "\"" + hash + "\"");
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read artwork {}", hash, e);
+        }
+        return null;
+    }
+
+    /**
+     * Deletes stored pictures no song refers to any more, such as those of deleted songs.
+     */
+    @Scheduled(cron = "${riftradio.cover-art.orphan-cron:0 30 4 * * *}")
+    public void removeOrphans() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Set<String> referenced = new HashSet<>(songRepository.findCoverHashes());
+        long cutoff = System.currentTimeMillis() - ORPHAN_GRACE_MILLIS;
+        int removed = 0;
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(directory)) {
+            for (Path shard : shards) {
+                if (!Files.isDirectory(shard)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+                    for (Path file : files) {
+                        String name = file.getFileName().toString();
+                        if (name.length() >= 64 && !referenced.contains(name.substring(0, 64))
+                                && Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                            Files.deleteIfExists(file);
+                            removed++;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Artwork clean-up stopped early", e);
+        }
+        if (removed > 0) {
+            resolved.clear();
+            log.info("Removed {} unused artwork files", removed);
+        }
+    }
+
+    private Path blob(String hash, String name) {
+        return directory.resolve(hash.substring(0, 2)).resolve(name);
+    }
+
+    private static String variantName(String hash, int size) {
+        return hash + "-" + size + ".jpg";
+    }
+
+    private void writeAtomically(Path target, BlobWriter writer) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            writer.write(temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private interface BlobWriter {
+        void write(Path file) throws IOException;
+    }
+
+    private static byte[] read(Path audioFile, EmbeddedArtwork artwork) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(artwork.getLength());
+        try (FileChannel channel = FileChannel.open(audioFile, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, artwork.getOffset() + buffer.position()) < 0) {
+                    throw new IOException("Artwork runs past the end of the file");
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    // The MIME type in the tag is often wrong, so the format comes from the data
+    static String format(byte[] image) {
+        if (image.length > 3 && (image[0] & 0xFF) == 0xFF && (image[1] & 0xFF) == 0xD8) {
+            return "jpg";
+        }
+        if (image.length > 8 && (image[0] & 0xFF) == 0x89 && image[1] == 'P' && image[2] == 'N' && image[3] == 'G') {
+            return "png";
+        }
+        if (image.length > 6 && image[0] == 'G' && image[1] == 'I' && image[2] == 'F') {
+            return "gif";
+        }
+        return null;
+    }
+
+    static BufferedImage scale(BufferedImage source, int size) {
+        double ratio = (double) size / Math.max(source.getWidth(), source.getHeight());
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        // Halving steps keep bilinear filtering from skipping pixels on large reductions
+        do {
+            w = Math.max(w / 2, width);
+            h = Math.max(h / 2, height);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(current, 0, 0, w, h, Color.WHITE, null);
+            graphics.dispose();
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
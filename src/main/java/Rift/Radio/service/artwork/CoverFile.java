@@ -0,0 +1,38 @@
+package Rift.Radio.service.artwork;
+
+import java.nio.file.Path;
+
+/**
+ * A stored cover image ready to be sent. Its content never changes, so the ETag only
+ * depends on the hash and the variant.
+ */
+public class CoverFile {
+
+    private final Path path;
+    private final long length;
+    private final String contentType;
+    private final String etag;
+
+    public CoverFile(Path path, long length, String contentType, String etag) {
+        this.path = path;
+        this.length = length;
+        this.contentType = contentType;
+        this.etag = etag;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+}
@@ -0,0 +1,167 @@
+package Rift.Radio.service.charts;
+
+import Rift.Radio.dto.ChartDto;
+import Rift.Radio.dto.ChartEntryDto;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Top songs of the last hour, day and week, kept in memory.
+ * <p>
+ * Every play updates a {@link SlidingWindowCounter} per window, so a chart read costs a walk
+ * over at most {@link #MAX_LIMIT} entries instead of a GROUP BY over raw plays. Counts are
+ * Count-Min estimates; the chart reports how far they may be off. The counters are written
+ * to a compressed snapshot file periodically and on shutdown and read back on startup; plays
+ * between the last snapshot and a crash are lost, which only makes the charts slightly low.
+ */
+@Service
+public class ChartService {
+
+    private final Logger log = LoggerFactory.getLogger(ChartService.class);
+
+    static final int SKETCH_WIDTH = 2048;
+    static final int SKETCH_DEPTH = 4;
+    static final int CANDIDATES = 256;
+    public static final int MAX_LIMIT = 100;
+
+    private static final int SNAPSHOT_MAGIC = 0x52524348;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Map<ChartWindow, SlidingWindowCounter> counters = new EnumMap<>(ChartWindow.class);
+    private final Path snapshotFile;
+    private final Clock clock;
+
+    @Autowired
+    public ChartService(@Value("${riftradio.charts.snapshot-file:data/charts/charts.snapshot}")
+                        String snapshotFile) {
+        this(Paths.get(snapshotFile), Clock.systemUTC());
+    }
+
+    ChartService(Path snapshotFile, Clock clock) {
+        this.snapshotFile = snapshotFile;
+        this.clock = clock;
+        for (ChartWindow window : ChartWindow.values()) {
+            counters.put(window, new SlidingWindowCounter(window, SKETCH_WIDTH, SKETCH_DEPTH, CANDIDATES));
+        }
+    }
+
+    public void recordPlay(Long songId) {
+        long now = clock.millis();
+        for (SlidingWindowCounter counter : counters.values()) {
+            counter.add(songId, now);
+        }
+    }
+
+    public ChartDto getChart(ChartWindow window, int limit) {
+        SlidingWindowCounter counter = counters.get(window);
+        long now = clock.millis();
+        List<long[]> top = counter.top(Math.max(1, Math.min(limit, MAX_LIMIT)), now);
+        List<ChartEntryDto> entries = new ArrayList<>(top.size());
+        for (long[] entry : top) {
+            entries.add(new ChartEntryDto(entries.size() + 1, entry[0], entry[1]));
+        }
+        long total = counter.total(now);
+        double epsilon = CountMinSketch.epsilon(SKETCH_WIDTH);
+        return new ChartDto(window.name().toLowerCase(), total, epsilon, 1 - CountMinSketch.delta(SKETCH_DEPTH),
+                (long) Math.ceil(epsilon * total), entries);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getType() != CatalogChangeType.SONG_DELETED) {
+            return;
+        }
+        for (Long songId : event.getSongIds()) {
+            for (SlidingWindowCounter counter : counters.values()) {
+                counter.remove(songId);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (!Files.exists(snapshotFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(snapshotFile))))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring chart snapshot {} with an unknown format", snapshotFile);
+                return;
+            }
+            int windows = in.readInt();
+            for (int i = 0; i < windows; i++) {
+                ChartWindow window = ChartWindow.valueOf(in.readUTF());
+                if (!counters.get(window).readFrom(in)) {
+                    // The rest of the file cannot be located without the old layout
+                    log.warn("Chart snapshot layout changed, starting {} and later windows empty", window);
+                    return;
+                }
+            }
+            log.info("Restored charts from {}", snapshotFile);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not restore charts from {}, starting empty", snapshotFile, e);
+        }
+    }
+
+    /**
+     * Writes all windows to a temporary file and moves it over the previous snapshot, so a
+     * crash mid-write never leaves a truncated snapshot behind.
+     */
+    @Scheduled(fixedDelayString = "${riftradio.charts.snapshot-interval-ms:60000}",
+            initialDelayString = "${riftradio.charts.snapshot-interval-ms:60000}")
+    public synchronized void snapshot() {
+        try {
+            Path dir = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "charts", ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                    out.writeInt(SNAPSHOT_MAGIC);
+                    out.writeInt(SNAPSHOT_VERSION);
+                    out.writeInt(counters.size());
+                    for (SlidingWindowCounter counter : counters.values()) {
+                        counter.writeTo(out);
+                    }
+                }
+                Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write chart snapshot {}", snapshotFile, e);
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshot();
+    }
+}
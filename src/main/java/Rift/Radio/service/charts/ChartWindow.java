@@ -0,0 +1,42 @@
+package Rift.Radio.service.charts;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chart windows. Each slides in steps of one bucket, so "hour" covers the current five-minute
+ * bucket and the eleven before it.
+ */
+public enum ChartWindow {
+
+    HOUR(TimeUnit.MINUTES.toMillis(5), 12),
+    DAY(TimeUnit.HOURS.toMillis(1), 24),
+    WEEK(TimeUnit.HOURS.toMillis(6), 28);
+
+    private final long bucketMillis;
+    private final int buckets;
+
+    ChartWindow(long bucketMillis, int buckets) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    public static ChartWindow fromName(String name) {
+        if (name != null) {
+            for (ChartWindow window : values()) {
+                if (window.name().equals(name.trim().toUpperCase(Locale.ROOT))) {
+                    return window;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unsupported chart window: " + name);
+    }
+}
@@ -0,0 +1,84 @@
+package Rift.Radio.service.charts;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min sketch over song ids. An estimate never undercounts, and with probability
+ * {@code 1 - delta} it overcounts by at most {@code epsilon * N}, where N is the number of
+ * items added, {@code epsilon = e / width} and {@code delta = e^-depth}.
+ * <p>
+ * Row hashes use fixed seeds so a sketch written to a snapshot reads back with the same
+ * layout after a restart.
+ */
+final class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final int[] counts;
+
+    CountMinSketch(int width, int depth) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Sketch width must be a power of two");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counts = new int[width * depth];
+    }
+
+    void add(long item) {
+        for (int row = 0; row < depth; row++) {
+            counts[index(row, item)]++;
+        }
+    }
+
+    long estimate(long item) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[index(row, item)]);
+        }
+        return min;
+    }
+
+    /**
+     * The counter {@code item} maps to in {@code row}. Summing cells of the same row across
+     * sketches before taking the minimum gives the estimate for their union.
+     */
+    int cell(int row, long item) {
+        return counts[index(row, item)];
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+    }
+
+    int[] counts() {
+        return counts;
+    }
+
+    int width() {
+        return width;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    static double epsilon(int width) {
+        return Math.E / width;
+    }
+
+    static double delta(int depth) {
+        return Math.exp(-depth);
+    }
+
+    private int index(int row, long item) {
+        return row * width + (int) (mix(item + (row + 1) * 0x9E3779B97F4A7C15L) & (width - 1));
+    }
+
+    // SplitMix64 finalizer; consecutive song ids spread evenly over the row
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,217 @@
+package Rift.Radio.service.charts;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Play counts for one {@link ChartWindow}: a ring of Count-Min sketches, one per bucket, and
+ * the current heavy hitters.
+ * <p>
+ * The heavy hitters are a bounded set ordered by estimated count. A play re-estimates its
+ * song over the whole window and replaces the weakest entry when it beats it, so every song
+ * whose windowed count exceeds the weakest entry's is present. Reads walk the set from the
+ * top and never touch the sketches. When the window slides, the expired bucket is cleared
+ * and the entries are re-estimated, which lets songs that stopped being played fall out.
+ */
+final class SlidingWindowCounter {
+
+    private static final Comparator<Candidate> BY_COUNT = Comparator
+            .comparingLong((Candidate c) -> c.count)
+            .thenComparingLong(c -> c.songId);
+
+    private final ChartWindow window;
+    private final int capacity;
+    private final CountMinSketch[] buckets;
+    private final long[] bucketTotals;
+    private final TreeSet<Candidate> ranking = new TreeSet<>(BY_COUNT);
+    private final Map<Long, Candidate> candidates = new HashMap<>();
+
+    private long currentBucket = Long.MIN_VALUE;
+    private long total;
+
+    SlidingWindowCounter(ChartWindow window, int width, int depth, int capacity) {
+        this.window = window;
+        this.capacity = capacity;
+        this.buckets = new CountMinSketch[window.getBuckets()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new CountMinSketch(width, depth);
+        }
+        this.bucketTotals = new long[buckets.length];
+    }
+
+    synchronized void add(long songId, long nowMillis) {
+        advance(nowMillis);
+        int slot = slot(currentBucket);
+        buckets[slot].add(songId);
+        bucketTotals[slot]++;
+        total++;
+        offer(songId, estimate(songId));
+    }
+
+    /**
+     * Songs with the highest estimated counts, each as {songId, estimatedPlays}.
+     */
+    synchronized List<long[]> top(int limit, long nowMillis) {
+        advance(nowMillis);
+        List<long[]> top = new ArrayList<>(Math.min(limit, ranking.size()));
+        Iterator<Candidate> it = ranking.descendingIterator();
+        while (it.hasNext() && top.size() < limit) {
+            Candidate candidate = it.next();
+            top.add(new long[]{candidate.songId, candidate.count});
+        }
+        return top;
+    }
+
+    synchronized long total(long nowMillis) {
+        advance(nowMillis);
+        return total;
+    }
+
+    synchronized void remove(long songId) {
+        Candidate candidate = candidates.remove(songId);
+        if (candidate != null) {
+            ranking.remove(candidate);
+        }
+    }
+
+    ChartWindow window() {
+        return window;
+    }
+
+    private void advance(long nowMillis) {
+        long bucket = Math.floorDiv(nowMillis, window.getBucketMillis());
+        if (currentBucket == Long.MIN_VALUE) {
+            currentBucket = bucket;
+            return;
+        }
+        if (bucket <= currentBucket) {
+            return;
+        }
+        long steps = Math.min(bucket - currentBucket, buckets.length);
+        for (long i = 1; i <= steps; i++) {
+            int slot = slot(currentBucket + i);
+            total -= bucketTotals[slot];
+            bucketTotals[slot] = 0;
+            buckets[slot].clear();
+        }
+        currentBucket = bucket;
+        rescore();
+    }
+
+    private void rescore() {
+        List<Candidate> previous = new ArrayList<>(ranking);
+        ranking.clear();
+        candidates.clear();
+        for (Candidate candidate : previous) {
+            long count = estimate(candidate.songId);
+            if (count > 0) {
+                put(new Candidate(candidate.songId, count));
+            }
+        }
+    }
+
+    private void offer(long songId, long count) {
+        Candidate existing = candidates.get(songId);
+        if (existing != null) {
+            ranking.remove(existing);
+        } else if (candidates.size() >= capacity) {
+            Candidate weakest = ranking.first();
+            if (weakest.count >= count) {
+                return;
+            }
+            ranking.pollFirst();
+            candidates.remove(weakest.songId);
+        }
+        put(new Candidate(songId, count));
+    }
+
+    private void put(Candidate candidate) {
+        candidates.put(candidate.songId, candidate);
+        ranking.add(candidate);
+    }
+
+    private long estimate(long songId) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < buckets[0].depth(); row++) {
+            long sum = 0;
+            for (CountMinSketch bucket : buckets) {
+                sum += bucket.cell(row, songId);
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) buckets.length);
+    }
+
+    synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeUTF(window.name());
+        out.writeLong(window.getBucketMillis());
+        out.writeInt(buckets.length);
+        out.writeInt(buckets[0].width());
+        out.writeInt(buckets[0].depth());
+        out.writeLong(currentBucket);
+        out.writeLong(total);
+        for (int i = 0; i < buckets.length; i++) {
+            out.writeLong(bucketTotals[i]);
+            for (int count : buckets[i].counts()) {
+                out.writeInt(count);
+            }
+        }
+        out.writeInt(candidates.size());
+        for (Candidate candidate : ranking) {
+            out.writeLong(candidate.songId);
+            out.writeLong(candidate.count);
+        }
+    }
+
+    /**
+     * Replaces this counter's state with a snapshot written by {@link #writeTo}. Returns false,
+     * leaving the counter empty, when the snapshot was taken with a different layout.
+     */
+    synchronized boolean readFrom(DataInputStream in) throws IOException {
+        if (in.readLong() != window.getBucketMillis() || in.readInt() != buckets.length
+                || in.readInt() != buckets[0].width() || in.readInt() != buckets[0].depth()) {
+            return false;
+        }
+        currentBucket = in.readLong();
+        total = in.readLong();
+        for (int i = 0; i < buckets.length; i++) {
+            bucketTotals[i] = in.readLong();
+            int[] counts = buckets[i].counts();
+            for (int j = 0; j < counts.length; j++) {
+                counts[j] = in.readInt();
+            }
+        }
+        ranking.clear();
+        candidates.clear();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            Candidate candidate = new Candidate(in.readLong(), in.readLong());
+            if (candidates.size() < capacity) {
+                put(candidate);
+            }
+        }
+        return true;
+    }
+
+    private static final class Candidate {
+        private final long songId;
+        private final long count;
+
+        private Candidate(long songId, long count) {
+            this.songId = songId;
+            this.count = count;
+        }
+    }
+}
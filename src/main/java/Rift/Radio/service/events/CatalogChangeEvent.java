@@ -0,0 +1,50 @@
+package Rift.Radio.service.events;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Published by the song, playlist and liked services after every catalog mutation.
+ * Listeners that must only see committed data should use {@code @TransactionalEventListener}.
+ */
+public class CatalogChangeEvent {
+
+    private final CatalogChangeType type;
+    private final Long playlistId;
+    private final List<Long> songIds;
+
+    public CatalogChangeEvent(CatalogChangeType type, Long playlistId, List<Long> songIds) {
+        this.type = type;
+        this.playlistId = playlistId;
+        this.songIds = songIds == null ? Collections.<Long>emptyList() : Collections.unmodifiableList(songIds);
+    }
+
+    public static CatalogChangeEvent song(CatalogChangeType type, Long songId) {
+        return new CatalogChangeEvent(type, null, Collections.singletonList(songId));
+    }
+
+    public static CatalogChangeEvent playlist(CatalogChangeType type, Long playlistId, List<Long> songIds) {
+        return new CatalogChangeEvent(type, playlistId, songIds);
+    }
+
+    public CatalogChangeType getType() {
+        return type;
+    }
+
+    public Long getPlaylistId() {
+        return playlistId;
+    }
+
+    public List<Long> getSongIds() {
+        return songIds;
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogChangeEvent{" +
+                "type=" + type +
+                ", playlistId=" + playlistId +
+                ", songIds=" + songIds +
+                '}';
+    }
+}
@@ -0,0 +1,15 @@
+package Rift.Radio.service.events;
+
+public enum CatalogChangeType {
+
+    SONG_CREATED,
+    SONG_UPDATED,
+    SONG_DELETED,
+    SONG_LIKED,
+    SONG_UNLIKED,
+    PLAYLIST_CREATED,
+    PLAYLIST_SONGS_ADDED,
+    PLAYLIST_SONGS_REMOVED,
+    PLAYLIST_SONGS_MOVED
+
+}
@@ -0,0 +1,233 @@
+package Rift.Radio.service.events;
+
+import Rift.Radio.dto.CatalogChangeDto;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans committed catalog changes out to Server-Sent Events subscribers.
+ * <p>
+ * Every change gets a sequential id, prefixed with an epoch that changes on every start, and
+ * is kept in a bounded replay buffer, so a client that reconnects with {@code Last-Event-ID}
+ * receives only what it missed. Appending and replaying run on one dispatcher thread, which
+ * keeps the feed gap-free without locking.
+ * <p>
+ * The dispatcher never writes to a socket. It queues each event per subscriber, and a sender
+ * thread drains that queue, so a slow client only delays itself. A subscriber whose queue is
+ * full is closed; it reconnects with its last id and catches up from the replay buffer.
+ */
+@Service
+public class CatalogEventStream {
+
+    static final int REPLAY_CAPACITY = 1024;
+    // Room for a full replay plus what arrives while it is written
+    static final int SUBSCRIBER_BACKLOG = REPLAY_CAPACITY + 256;
+    private static final long EMITTER_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(30);
+
+    private final Logger log = LoggerFactory.getLogger(CatalogEventStream.class);
+
+    // Sequences restart with the process; an id from another epoch says nothing about what was missed
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Deque<CatalogChangeDto> replayBuffer = new ArrayDeque<>(REPLAY_CAPACITY);
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "catalog-event-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Unbounded: a write stuck on a dead socket holds one thread until the container times it out
+    private final ExecutorService senders = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "catalog-event-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long sequence;
+
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        String resumeFrom = lastEventId == null || lastEventId.trim().isEmpty() ? null : lastEventId.trim();
+        dispatcher.execute(() -> {
+            if (resumeFrom != null && !replay(subscriber, resumeFrom)) {
+                return;
+            }
+            subscribers.add(subscriber);
+        });
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        dispatcher.execute(() -> {
+            CatalogChangeDto change = new CatalogChangeDto();
+            change.setId(++sequence);
+            change.setType(event.getType().name());
+            change.setPlaylistId(event.getPlaylistId());
+            change.setSongIds(new ArrayList<>(event.getSongIds()));
+
+            if (replayBuffer.size() == REPLAY_CAPACITY) {
+                replayBuffer.removeFirst();
+            }
+            replayBuffer.addLast(change);
+
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(event(change));
+            }
+        });
+    }
+
+    @Scheduled(fixedRate = 15000)
+    public void heartbeat() {
+        dispatcher.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(SseEmitter.event().comment("keep-alive"));
+            }
+        });
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private boolean replay(Subscriber subscriber, String lastEventId) {
+        Long lastSeen = parseEventId(lastEventId);
+        CatalogChangeDto oldest = replayBuffer.peekFirst();
+        if (lastSeen == null || lastSeen > sequence || (oldest != null && lastSeen < oldest.getId() - 1)) {
+            // From a previous process or too far behind: the client has to reload its catalog
+            return subscriber.offer(SseEmitter.event().id(eventId(sequence)).name("reset").data(""));
+        }
+        for (CatalogChangeDto change : replayBuffer) {
+            if (change.getId() > lastSeen && !subscriber.offer(event(change))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A builder is consumed by the send, so every subscriber gets its own
+    private SseEmitter.SseEventBuilder event(CatalogChangeDto change) {
+        return SseEmitter.event()
+                .id(eventId(change.getId()))
+                .name("catalog")
+                .data(change, MediaType.APPLICATION_JSON);
+    }
+
+    private String eventId(long id) {
+        return epoch + "-" + id;
+    }
+
+    // The sequence number of an id from this epoch, null for any other id
+    private Long parseEventId(String lastEventId) {
+        String prefix = epoch + "-";
+        if (!lastEventId.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(lastEventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One client's pending events. At most one sender drains it at a time, so events go out in
+     * the order they were queued.
+     */
+    private final class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> pending = new ArrayBlockingQueue<>(SUBSCRIBER_BACKLOG);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+        private volatile boolean fellBehind;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues the event without blocking. False when the subscriber is closed, including when
+         * this event did not fit.
+         */
+        boolean offer(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return false;
+            }
+            if (!pending.offer(event)) {
+                log.debug("Dropping catalog event subscriber {} events behind", SUBSCRIBER_BACKLOG);
+                fellBehind = true;
+                close();
+            }
+            // Completing the emitter may wait for a send in progress, so it is left to the sender
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this);
+            }
+            return !closed;
+        }
+
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+            pending.clear();
+        }
+
+        @Override
+        public void run() {
+            do {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = pending.poll()) != null) {
+                    try {
+                        emitter.send(event);
+                    } catch (IOException | IllegalStateException e) {
+                        log.debug("Dropping catalog event subscriber: {}", e.getMessage());
+                        close();
+                        emitter.completeWithError(e);
+                        return;
+                    }
+                }
+                if (closed) {
+                    if (fellBehind) {
+                        emitter.complete();
+                    }
+                    // Stays scheduled, so nothing is sent after this
+                    return;
+                }
+                scheduled.set(false);
+            } while (!pending.isEmpty() && scheduled.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package Rift.Radio.service.events;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic catalog version used to build strong ETags for the catalog read endpoints.
+ * The counter is bumped after commit so a reader can never tag stale rows with a new version.
+ */
+@Component
+public class CatalogVersion {
+
+    // Distinguishes restarts, otherwise version 0 of a new process could match a client's old tag
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        version.incrementAndGet();
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    public String etag(String resource, Object... qualifiers) {
+        StringBuilder tag = new StringBuilder("\"")
+                .append(resource).append('-')
+                .append(epoch).append('-')
+                .append(version.get());
+        for (Object qualifier : qualifiers) {
+            tag.append('-').append(qualifier);
+        }
+        return tag.append('"').toString();
+    }
+
+    /**
+     * Evaluates an If-None-Match header against a strong ETag. Weak validators are compared
+     * weakly, as RFC 9110 allows for GET requests.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+package Rift.Radio.service.fingerprint;
+
+import java.nio.ByteBuffer;
+
+/**
+ * What identifies the audio of a file: a SHA-256 over every frame payload, equal only for
+ * identical audio, and a sorted sample of hashes over runs of consecutive frames, of which
+ * trimmed or partly re-encoded copies still share most.
+ */
+public class AudioFingerprint {
+
+    private final String contentHash;
+    private final int frames;
+    private final long[] windows;
+
+    public AudioFingerprint(String contentHash, int frames, long[] windows) {
+        this.contentHash = contentHash;
+        this.frames = frames;
+        this.windows = windows;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * Sampled window hashes in ascending order, without repeats.
+     */
+    public long[] getWindows() {
+        return windows;
+    }
+
+    byte[] encodeWindows() {
+        ByteBuffer buffer = ByteBuffer.allocate(windows.length * Long.BYTES);
+        for (long window : windows) {
+            buffer.putLong(window);
+        }
+        return buffer.array();
+    }
+
+    static long[] decodeWindows(byte[] encoded) {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        long[] windows = new long[encoded.length / Long.BYTES];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = buffer.getLong();
+        }
+        return windows;
+    }
+}
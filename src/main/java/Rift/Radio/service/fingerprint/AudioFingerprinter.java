@@ -0,0 +1,180 @@
+package Rift.Radio.service.fingerprint;
+
+import Rift.Radio.service.metadata.AudioMetadata;
+import Rift.Radio.service.metadata.MpegFrameHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Fingerprints the audio of an MP3 file, whatever its tags and name.
+ * <p>
+ * Only frame payloads are read, from the audio range found by the metadata parser: ID3 tags,
+ * the Xing or VBRI header frame and the frame headers themselves are left out. Each payload
+ * gets a 64-bit hash; a window is the hash of {@link #WINDOW_FRAMES} consecutive frame hashes,
+ * and a window is kept when its low bits are zero. The choice depends on the content alone, so
+ * a copy with frames cut or added at either end keeps the same windows for the audio it
+ * shares. The file is read once, in large positional reads.
+ */
+@Component
+public class AudioFingerprinter {
+
+    private final Logger log = LoggerFactory.getLogger(AudioFingerprinter.class);
+
+    static final int WINDOW_FRAMES = 16;
+    // Keeps about one window in 16, a few per second of audio
+    static final long SAMPLE_MASK = 0xF;
+    static final int MAX_WINDOWS = 4096;
+    private static final int READ_SIZE = 64 * 1024;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Returns null when the file has no MPEG frames or cannot be read.
+     */
+    public AudioFingerprint fingerprint(Path file, AudioMetadata metadata) {
+        if (metadata.getAudioOffset() < 0) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return fingerprint(channel, metadata.getAudioOffset(), metadata.getAudioEnd());
+        } catch (IOException e) {
+            log.warn("Could not fingerprint '{}': {}", file, e.toString());
+            return null;
+        }
+    }
+
+    private AudioFingerprint fingerprint(FileChannel channel, long start, long end) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+        buffer.limit(0);
+        long bufferStart = start;
+        long[] recent = new long[WINDOW_FRAMES];
+        long[] sampled = new long[64];
+        int samples = 0;
+        int frames = 0;
+
+        long position = start;
+        while (position + MpegFrameHeader.SIZE <= end) {
+            int offset = (int) (position - bufferStart);
+            if (offset + MpegFrameHeader.SIZE > buffer.limit()) {
+                if (fill(channel, buffer, position, end) < MpegFrameHeader.SIZE) {
+                    break;
+                }
+                bufferStart = position;
+                offset = 0;
+            }
+            MpegFrameHeader frame = MpegFrameHeader.parse(buffer.getInt(offset));
+            if (frame == null) {
+                // Junk between frames: look for the next header byte by byte
+                position++;
+                continue;
+            }
+            int length = frame.length();
+            if (position + length > end) {
+                break;
+            }
+            if (offset + length > buffer.limit()) {
+                if (fill(channel, buffer, position, end) < length) {
+                    break;
+                }
+                bufferStart = position;
+                offset = 0;
+            }
+
+            int from = offset + frame.payloadOffset();
+            int to = offset + length;
+            digest.update(buffer.array(), from, to - from);
+            long hash = FNV_OFFSET;
+            for (int i = from; i < to; i++) {
+                hash = (hash ^ (buffer.get(i) & 0xFF)) * FNV_PRIME;
+            }
+            recent[frames % WINDOW_FRAMES] = hash;
+            frames++;
+
+            if (frames >= WINDOW_FRAMES) {
+                long window = window(recent, frames);
+                if ((window & SAMPLE_MASK) == 0) {
+                    if (samples == sampled.length) {
+                        sampled = Arrays.copyOf(sampled, samples * 2);
+                    }
+                    sampled[samples++] = window;
+                }
+            }
+            position += length;
+        }
+        if (frames == 0) {
+            return null;
+        }
+        return new AudioFingerprint(hex(digest.digest()), frames, distinctSmallest(sampled, samples));
+    }
+
+    // Hash of the last WINDOW_FRAMES frame hashes, oldest first
+    private static long window(long[] recent, int frames) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < WINDOW_FRAMES; i++) {
+            hash = (hash ^ recent[(frames + i) % WINDOW_FRAMES]) * FNV_PRIME;
+        }
+        // The FNV multiply leaves the low bits weak; mix before sampling on them
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Sorts and removes repeats. Very long files keep their {@link #MAX_WINDOWS} smallest
+     * hashes, which is again a choice by content, so two copies keep the same ones.
+     */
+    private static long[] distinctSmallest(long[] sampled, int count) {
+        long[] sorted = Arrays.copyOf(sampled, count);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length && distinct < MAX_WINDOWS; i++) {
+            if (distinct == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    // Reads from position on and returns how many bytes there are; fewer than asked if the file shrank
+    private static int fill(FileChannel channel, ByteBuffer buffer, long position, long end) throws IOException {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), end - position));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.limit();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
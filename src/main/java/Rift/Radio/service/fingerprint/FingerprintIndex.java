@@ -0,0 +1,162 @@
+package Rift.Radio.service.fingerprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Fingerprints of the library, indexed by content hash and by window hash.
+ * <p>
+ * Matching a fingerprint looks up its content hash and each of its windows, so it costs the
+ * same whatever the size of the library. Songs are counted per shared window and scored by
+ * the share of the smaller fingerprint they cover, which lets a trimmed copy match the full
+ * song. Lookups take the read lock and run in parallel; changes take the write lock.
+ */
+class FingerprintIndex {
+
+    // Fewer shared windows than this could be chance, unless one fingerprint is that small
+    static final int MIN_SHARED_WINDOWS = 4;
+
+    private static final long[] NO_SONGS = new long[0];
+
+    private final Map<Long, AudioFingerprint> bySong = new HashMap<>();
+    private final Map<String, Set<Long>> byContent = new HashMap<>();
+    private final Map<Long, long[]> byWindow = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    void put(Long songId, AudioFingerprint fingerprint) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(songId);
+            bySong.put(songId, fingerprint);
+            byContent.computeIfAbsent(fingerprint.getContentHash(), hash -> new HashSet<>()).add(songId);
+            for (long window : fingerprint.getWindows()) {
+                long[] songs = byWindow.getOrDefault(window, NO_SONGS);
+                long[] grown = Arrays.copyOf(songs, songs.length + 1);
+                grown[songs.length] = songId;
+                byWindow.put(window, grown);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Long songId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(songId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(Long songId) {
+        AudioFingerprint old = bySong.remove(songId);
+        if (old == null) {
+            return;
+        }
+        Set<Long> sameContent = byContent.get(old.getContentHash());
+        sameContent.remove(songId);
+        if (sameContent.isEmpty()) {
+            byContent.remove(old.getContentHash());
+        }
+        for (long window : old.getWindows()) {
+            long[] songs = byWindow.get(window);
+            if (songs == null) {
+                continue;
+            }
+            long[] kept = new long[songs.length];
+            int count = 0;
+            for (long song : songs) {
+                if (song != songId) {
+                    kept[count++] = song;
+                }
+            }
+            if (count == 0) {
+                byWindow.remove(window);
+            } else {
+                byWindow.put(window, Arrays.copyOf(kept, count));
+            }
+        }
+    }
+
+    boolean contains(Long songId) {
+        lock.readLock().lock();
+        try {
+            return bySong.containsKey(songId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    AudioFingerprint get(Long songId) {
+        lock.readLock().lock();
+        try {
+            return bySong.get(songId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Long> songIds() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(bySong.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return bySong.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Songs other than {@code excludeSongId} whose similarity is at least {@code threshold},
+     * most similar first.
+     */
+    List<FingerprintMatch> matches(AudioFingerprint fingerprint, Long excludeSongId, double threshold) {
+        Map<Long, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Long songId : byContent.getOrDefault(fingerprint.getContentHash(), Collections.<Long>emptySet())) {
+                scores.put(songId, 1.0);
+            }
+            Map<Long, Integer> shared = new HashMap<>();
+            for (long window : fingerprint.getWindows()) {
+                for (long songId : byWindow.getOrDefault(window, NO_SONGS)) {
+                    shared.merge(songId, 1, Integer::sum);
+                }
+            }
+            for (Map.Entry<Long, Integer> entry : shared.entrySet()) {
+                int smaller = Math.min(fingerprint.getWindows().length, bySong.get(entry.getKey()).getWindows().length);
+                if (entry.getValue() >= Math.min(MIN_SHARED_WINDOWS, smaller)) {
+                    scores.merge(entry.getKey(), (double) entry.getValue() / smaller, Math::max);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<FingerprintMatch> matches = new ArrayList<>();
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (!entry.getKey().equals(excludeSongId) && entry.getValue() >= threshold) {
+                matches.add(new FingerprintMatch(entry.getKey(), entry.getValue()));
+            }
+        }
+        matches.sort((a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity()));
+        return matches;
+    }
+}
@@ -0,0 +1,24 @@
+package Rift.Radio.service.fingerprint;
+
+/**
+ * A song whose audio matches a fingerprint, with the share of sampled windows the two have in
+ * common. Identical audio has similarity 1.
+ */
+public class FingerprintMatch {
+
+    private final Long songId;
+    private final double similarity;
+
+    public FingerprintMatch(Long songId, double similarity) {
+        this.songId = songId;
+        this.similarity = similarity;
+    }
+
+    public Long getSongId() {
+        return songId;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+}
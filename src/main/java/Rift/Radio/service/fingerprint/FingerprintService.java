@@ -0,0 +1,356 @@
+package Rift.Radio.service.fingerprint;
+
+import Rift.Radio.dto.DuplicateClusterDto;
+import Rift.Radio.dto.DuplicateReportDto;
+import Rift.Radio.modal.SongFingerprint;
+import Rift.Radio.repository.SongFingerprintRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.metadata.AudioMetadata;
+import Rift.Radio.service.metadata.Mp3MetadataParser;
+import Rift.Radio.service.storage.SongStorage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds songs with the same audio, whatever their tags and file names.
+ * <p>
+ * Every song's {@link AudioFingerprint} is stored in song_fingerprint and held in a
+ * {@link FingerprintIndex}, so an upload is checked against the whole library with a few hash
+ * lookups. A batch scan fingerprints the songs that have none yet, reading files in parallel
+ * on a dedicated fork-join pool, then matches every song against the index, also in parallel,
+ * and joins the matches into clusters. The scan runs after startup, nightly and on request.
+ */
+@Service
+public class FingerprintService {
+
+    private final Logger log = LoggerFactory.getLogger(FingerprintService.class);
+
+    private final SongFingerprintRepository fingerprintRepository;
+    private final SongRepository songRepository;
+    private final Mp3MetadataParser metadataParser;
+    private final AudioFingerprinter fingerprinter;
+    private final SongStorage songStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final double threshold;
+    private final ForkJoinPool pool;
+
+    private final FingerprintIndex index = new FingerprintIndex();
+    private final AtomicBoolean scanning = new AtomicBoolean();
+    private volatile DuplicateReportDto lastReport;
+
+    @Autowired
+    public FingerprintService(SongFingerprintRepository fingerprintRepository, SongRepository songRepository,
+                              Mp3MetadataParser metadataParser, AudioFingerprinter fingerprinter,
+                              SongStorage songStorage, PlatformTransactionManager transactionManager,
+                              @Value("${riftradio.fingerprint.threshold:0.8}") double threshold) {
+        this.fingerprintRepository = fingerprintRepository;
+        this.songRepository = songRepository;
+        this.metadataParser = metadataParser;
+        this.fingerprinter = fingerprinter;
+        this.songStorage = songStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Also used from after-commit listeners, where the finished transaction is still bound
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.threshold = threshold;
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    public AudioFingerprint fingerprint(Path file, AudioMetadata metadata) {
+        return fingerprinter.fingerprint(file, metadata);
+    }
+
+    /**
+     * The song whose audio is most similar to {@code fingerprint}, if one reaches the threshold.
+     */
+    public Optional<FingerprintMatch> findDuplicate(AudioFingerprint fingerprint, Long excludeSongId) {
+        if (fingerprint == null) {
+            return Optional.empty();
+        }
+        List<FingerprintMatch> matches = index.matches(fingerprint, excludeSongId, threshold);
+        return matches.isEmpty() ? Optional.empty() : Optional.of(matches.get(0));
+    }
+
+    /**
+     * Indexes and stores the fingerprint of a song's current file. A song whose fingerprint
+     * could not be stored is picked up again by the next scan.
+     */
+    public void register(Long songId, AudioFingerprint fingerprint) {
+        if (fingerprint == null) {
+            return;
+        }
+        index.put(songId, fingerprint);
+        try {
+            fingerprintRepository.save(toEntity(songId, fingerprint));
+        } catch (RuntimeException e) {
+            log.warn("Could not store the fingerprint of song {}", songId, e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getType() != CatalogChangeType.SONG_DELETED) {
+            return;
+        }
+        for (Long songId : event.getSongIds()) {
+            index.remove(songId);
+            try {
+                transactionTemplate.executeWithoutResult(status -> fingerprintRepository.deleteBySongId(songId));
+            } catch (RuntimeException e) {
+                log.warn("Could not remove the fingerprint of deleted song {}", songId, e);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        long started = System.currentTimeMillis();
+        for (SongFingerprint row : fingerprintRepository.findAll()) {
+            index.put(row.getSongId(), toFingerprint(row));
+        }
+        log.info("Loaded {} audio fingerprints in {} ms", index.size(), System.currentTimeMillis() - started);
+        startScan();
+    }
+
+    @Scheduled(cron = "${riftradio.fingerprint.scan-cron:0 0 4 * * *}")
+    public void scheduledScan() {
+        startScan();
+    }
+
+    /**
+     * Starts a scan in the background. Returns false when one is already running.
+     */
+    public boolean startScan() {
+        if (!scanning.compareAndSet(false, true)) {
+            return false;
+        }
+        pool.execute(() -> {
+            try {
+                scan();
+            } catch (RuntimeException e) {
+                log.warn("Duplicate scan failed", e);
+            } finally {
+                scanning.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Result of the last finished scan, or null before the first one.
+     */
+    public DuplicateReportDto getLastReport() {
+        return lastReport;
+    }
+
+    DuplicateReportDto scan() {
+        long started = System.currentTimeMillis();
+        Map<Long, String> files = new HashMap<>();
+        List<Callable<SongFingerprint>> reads = new ArrayList<>();
+        for (Object[] row : songRepository.findAllFilePaths()) {
+            Long songId = (Long) row[0];
+            String filePath = (String) row[1];
+            files.put(songId, filePath);
+            if (!index.contains(songId)) {
+                reads.add(() -> read(songId, filePath));
+            }
+        }
+
+        List<SongFingerprint> computed = new ArrayList<>();
+        for (SongFingerprint row : invokeAll(reads)) {
+            if (row != null) {
+                computed.add(row);
+            }
+        }
+        if (!computed.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                fingerprintRepository.saveAll(computed);
+                fingerprintRepository.deleteOrphans();
+            });
+            for (SongFingerprint row : computed) {
+                index.put(row.getSongId(), toFingerprint(row));
+            }
+        }
+
+        List<Long> songIds = new ArrayList<>(files.keySet());
+        Collections.sort(songIds);
+        int chunk = Math.max(64, songIds.size() / (pool.getParallelism() * 4) + 1);
+        List<Callable<List<Link>>> searches = new ArrayList<>();
+        for (int from = 0; from < songIds.size(); from += chunk) {
+            List<Long> part = songIds.subList(from, Math.min(from + chunk, songIds.size()));
+            searches.add(() -> links(part, files));
+        }
+        List<Link> links = new ArrayList<>();
+        for (List<Link> found : invokeAll(searches)) {
+            links.addAll(found);
+        }
+
+        DuplicateReportDto report = new DuplicateReportDto(Instant.now(), files.size(), computed.size(),
+                System.currentTimeMillis() - started, clusters(links, files));
+        lastReport = report;
+        log.info("Duplicate scan of {} songs fingerprinted {} files and found {} clusters in {} ms",
+                report.getSongs(), report.getFingerprinted(), report.getClusters().size(), report.getDurationMs());
+        return report;
+    }
+
+    // One unreadable file must not stop the scan
+    private SongFingerprint read(Long songId, String filePath) {
+        try {
+            Path file = songStorage.localPath(filePath);
+            if (file == null || !Files.isRegularFile(file)) {
+                return null;
+            }
+            AudioFingerprint fingerprint = fingerprinter.fingerprint(file, metadataParser.parse(file));
+            return fingerprint == null ? null : toEntity(songId, fingerprint);
+        } catch (RuntimeException e) {
+            log.warn("Could not fingerprint song {} at '{}'", songId, filePath, e);
+            return null;
+        }
+    }
+
+    // Each pair once, from its lower id
+    private List<Link> links(List<Long> songIds, Map<Long, String> files) {
+        List<Link> links = new ArrayList<>();
+        for (Long songId : songIds) {
+            AudioFingerprint fingerprint = index.get(songId);
+            if (fingerprint == null) {
+                continue;
+            }
+            for (FingerprintMatch match : index.matches(fingerprint, songId, threshold)) {
+                if (match.getSongId() > songId && files.containsKey(match.getSongId())) {
+                    links.add(new Link(songId, match.getSongId(), match.getSimilarity()));
+                }
+            }
+        }
+        return links;
+    }
+
+    private static List<DuplicateClusterDto> clusters(List<Link> links, Map<Long, String> files) {
+        Map<Long, Long> parent = new HashMap<>();
+        for (Link link : links) {
+            Long a = root(parent, link.first);
+            Long b = root(parent, link.second);
+            if (!a.equals(b)) {
+                parent.put(Math.max(a, b), Math.min(a, b));
+            }
+        }
+        Map<Long, List<Long>> members = new HashMap<>();
+        Map<Long, Double> similarity = new HashMap<>();
+        for (Long songId : parent.keySet()) {
+            members.computeIfAbsent(root(parent, songId), r -> new ArrayList<>()).add(songId);
+        }
+        for (Link link : links) {
+            similarity.merge(root(parent, link.first), link.similarity, Math::min);
+        }
+
+        List<DuplicateClusterDto> clusters = new ArrayList<>();
+        for (Map.Entry<Long, List<Long>> entry : members.entrySet()) {
+            List<Long> songIds = entry.getValue();
+            if (songIds.size() < 2) {
+                continue;
+            }
+            Collections.sort(songIds);
+            List<String> fileNames = new ArrayList<>(songIds.size());
+            for (Long songId : songIds) {
+                fileNames.add(new File(files.get(songId)).getName());
+            }
+            clusters.add(new DuplicateClusterDto(songIds, fileNames, similarity.get(entry.getKey())));
+        }
+        clusters.sort((a, b) -> a.getSongIds().size() != b.getSongIds().size()
+                ? b.getSongIds().size() - a.getSongIds().size()
+                : a.getSongIds().get(0).compareTo(b.getSongIds().get(0)));
+        return clusters;
+    }
+
+    private static Long root(Map<Long, Long> parent, Long songId) {
+        Long root = songId;
+        Long up;
+        while ((up = parent.get(root)) != null && !up.equals(root)) {
+            root = up;
+        }
+        parent.put(root, root);
+        // Path compression
+        Long current = songId;
+        while (!current.equals(root)) {
+            Long next = parent.get(current);
+            parent.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Duplicate scan interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Duplicate scan failed", e.getCause());
+        }
+        return results;
+    }
+
+    private static SongFingerprint toEntity(Long songId, AudioFingerprint fingerprint) {
+        SongFingerprint row = new SongFingerprint();
+        row.setSongId(songId);
+        row.setContentHash(fingerprint.getContentHash());
+        row.setFrames(fingerprint.getFrames());
+        row.setWindows(fingerprint.encodeWindows());
+        return row;
+    }
+
+    private static AudioFingerprint toFingerprint(SongFingerprint row) {
+        return new AudioFingerprint(row.getContentHash(), row.getFrames(),
+                AudioFingerprint.decodeWindows(row.getWindows()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static final class Link {
+
+        final Long first;
+        final Long second;
+        final double similarity;
+
+        Link(Long first, Long second, double similarity) {
+            this.first = first;
+            this.second = second;
+            this.similarity = similarity;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package Rift.Radio.service.history;
+
+import Rift.Radio.repository.ListeningHistoryRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owns the listening_history schema.
+ * <p>
+ * On PostgreSQL the table is range-partitioned on played_at by UTC day or month. Partitions
+ * are created {@link #PARTITIONS_AHEAD} periods in advance, and retention drops whole
+ * partitions, which frees their space at once instead of leaving dead rows for vacuum. A
+ * default partition catches plays with clock skew outside the prepared range. Other databases
+ * (H2 in tests) get a plain table and retention falls back to a DELETE.
+ */
+@Component
+public class HistoryPartitionManager {
+
+    private final Logger log = LoggerFactory.getLogger(HistoryPartitionManager.class);
+
+    public enum Granularity {
+        DAY("yyyyMMdd"),
+        MONTH("yyyyMM");
+
+        private final DateTimeFormatter suffix;
+
+        Granularity(String pattern) {
+            this.suffix = DateTimeFormatter.ofPattern(pattern);
+        }
+
+        LocalDate start(LocalDate date) {
+            return this == DAY ? date : date.withDayOfMonth(1);
+        }
+
+        LocalDate next(LocalDate start) {
+            return this == DAY ? start.plusDays(1) : start.plusMonths(1);
+        }
+    }
+
+    static final String TABLE = "listening_history";
+    static final int PARTITIONS_AHEAD = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ListeningHistoryRepository listeningHistoryRepository;
+    private final Granularity granularity;
+    private final int retentionDays;
+
+    private volatile boolean partitioned;
+
+    @Autowired
+    public HistoryPartitionManager(JdbcTemplate jdbcTemplate, ListeningHistoryRepository listeningHistoryRepository,
+                                   @Value("${riftradio.history.partition:DAY}") Granularity granularity,
+                                   @Value("${riftradio.history.retention-days:90}") int retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.listeningHistoryRepository = listeningHistoryRepository;
+        this.granularity = granularity;
+        this.retentionDays = retentionDays;
+    }
+
+    @PostConstruct
+    public void createSchema() {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        partitioned = "PostgreSQL".equalsIgnoreCase(product);
+        if (partitioned) {
+            jdbcTemplate.execute("create table if not exists " + TABLE + " (song_id bigint not null, " +
+                    "played_at timestamptz not null, position_ms bigint not null default 0, client varchar(64)) " +
+                    "partition by range (played_at)");
+            jdbcTemplate.execute("create table if not exists " + TABLE + "_default partition of " + TABLE + " default");
+            createPartitions(LocalDate.now(ZoneOffset.UTC));
+        } else {
+            jdbcTemplate.execute("create table if not exists " + TABLE + " (song_id bigint not null, " +
+                    "played_at timestamp with time zone not null, position_ms bigint default 0 not null, " +
+                    "client varchar(64))");
+        }
+        // Declared on the parent, PostgreSQL creates it on every partition
+        jdbcTemplate.execute("create index if not exists idx_listening_history_played_at on " + TABLE + " (played_at)");
+    }
+
+    @Scheduled(cron = "${riftradio.history.maintenance-cron:0 10 0 * * *}", zone = "UTC")
+    public void maintain() {
+        Instant cutoff = retentionCutoff();
+        if (!partitioned) {
+            int deleted = listeningHistoryRepository.deleteOlderThan(cutoff);
+            log.debug("Removed {} listening history rows older than {}", deleted, cutoff);
+            return;
+        }
+        createPartitions(LocalDate.now(ZoneOffset.UTC));
+        List<String> children = jdbcTemplate.queryForList(
+                "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid " +
+                        "join pg_class p on p.oid = i.inhparent where p.relname = ?", String.class, TABLE);
+        for (String child : children) {
+            if (isExpired(child, cutoff)) {
+                jdbcTemplate.execute("drop table if exists " + child);
+                log.info("Dropped listening history partition {}", child);
+            }
+        }
+        // Stray rows in the default partition are few; a delete keeps it bounded
+        jdbcTemplate.update("delete from " + TABLE + "_default where played_at < ?", Timestamp.from(cutoff));
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    private void createPartitions(LocalDate today) {
+        for (String ddl : partitionDdl(today)) {
+            try {
+                jdbcTemplate.execute(ddl);
+            } catch (RuntimeException e) {
+                // Fails when the default partition already holds rows for that range
+                log.warn("Could not create listening history partition: {}", ddl, e);
+            }
+        }
+    }
+
+    List<String> partitionDdl(LocalDate today) {
+        List<String> statements = new ArrayList<>();
+        LocalDate start = granularity.start(today);
+        for (int i = 0; i < PARTITIONS_AHEAD; i++) {
+            LocalDate end = granularity.next(start);
+            statements.add("create table if not exists " + partitionName(start) + " partition of " + TABLE +
+                    " for values from ('" + start + " 00:00:00+00') to ('" + end + " 00:00:00+00')");
+            start = end;
+        }
+        return statements;
+    }
+
+    String partitionName(LocalDate start) {
+        return TABLE + "_p" + granularity.suffix.format(start);
+    }
+
+    /**
+     * A partition expires once its whole range lies before the cutoff. Names that do not
+     * follow the partition pattern, such as the default partition, never expire.
+     */
+    boolean isExpired(String partition, Instant cutoff) {
+        String prefix = TABLE + "_p";
+        if (!partition.startsWith(prefix)) {
+            return false;
+        }
+        String suffix = partition.substring(prefix.length());
+        LocalDate start;
+        try {
+            start = granularity == Granularity.DAY
+                    ? LocalDate.parse(suffix, granularity.suffix)
+                    : LocalDate.parse(suffix + "01", Granularity.DAY.suffix);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+        return !granularity.next(start).atStartOfDay(ZoneOffset.UTC).toInstant().isAfter(cutoff);
+    }
+
+    private Instant retentionCutoff() {
+        return Instant.now().minus(retentionDays, ChronoUnit.DAYS);
+    }
+}
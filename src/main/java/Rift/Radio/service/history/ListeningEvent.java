@@ -0,0 +1,37 @@
+package Rift.Radio.service.history;
+
+import java.time.Instant;
+
+/**
+ * One play in the listening history.
+ */
+public final class ListeningEvent {
+
+    private final long songId;
+    private final Instant playedAt;
+    private final long positionMs;
+    private final String client;
+
+    public ListeningEvent(long songId, Instant playedAt, long positionMs, String client) {
+        this.songId = songId;
+        this.playedAt = playedAt;
+        this.positionMs = positionMs;
+        this.client = client;
+    }
+
+    public long getSongId() {
+        return songId;
+    }
+
+    public Instant getPlayedAt() {
+        return playedAt;
+    }
+
+    public long getPositionMs() {
+        return positionMs;
+    }
+
+    public String getClient() {
+        return client;
+    }
+}
@@ -0,0 +1,109 @@
+package Rift.Radio.service.history;
+
+import Rift.Radio.repository.ListeningHistoryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends plays to listening_history off the request thread.
+ * <p>
+ * Requests only offer the event to a bounded queue. One writer thread drains up to
+ * {@link #BATCH_SIZE} events at a time and writes them with a single batched insert, so under
+ * load the number of statements grows with batches rather than with plays. History is
+ * best-effort: when the queue is full or a write fails the events are dropped and counted
+ * instead of slowing down playback.
+ */
+@Component
+@DependsOn("historyPartitionManager")
+public class ListeningHistoryAppender {
+
+    private final Logger log = LoggerFactory.getLogger(ListeningHistoryAppender.class);
+
+    static final int BATCH_SIZE = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final ListeningHistoryRepository listeningHistoryRepository;
+    private final BlockingQueue<ListeningEvent> queue;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    @Autowired
+    public ListeningHistoryAppender(ListeningHistoryRepository listeningHistoryRepository,
+                                    @Value("${riftradio.history.queue-capacity:100000}") int queueCapacity) {
+        this.listeningHistoryRepository = listeningHistoryRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "listening-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void append(ListeningEvent event) {
+        if (!queue.offer(event) && dropped.incrementAndGet() % 10_000 == 1) {
+            log.warn("Listening history queue is full, {} plays dropped so far", dropped.get());
+        }
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops accepting new work and writes what is still queued before the connection pool closes.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(SHUTDOWN_TIMEOUT_MS);
+        }
+    }
+
+    private void writeLoop() {
+        List<ListeningEvent> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            ListeningEvent first;
+            try {
+                first = queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                running = false;
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<ListeningEvent> batch) {
+        try {
+            listeningHistoryRepository.insertAll(batch);
+        } catch (RuntimeException e) {
+            dropped.addAndGet(batch.size());
+            log.warn("Could not write {} listening history events", batch.size(), e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package Rift.Radio.service.history;
+
+import Rift.Radio.dto.ListeningHistoryEntryDto;
+import Rift.Radio.repository.ListeningHistoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@Service
+public class ListeningHistoryService {
+
+    static final int MAX_RECENT = 500;
+    static final int MAX_CLIENT_LENGTH = 64;
+
+    private final ListeningHistoryAppender listeningHistoryAppender;
+    private final ListeningHistoryRepository listeningHistoryRepository;
+    private final HistoryPartitionManager historyPartitionManager;
+
+    @Autowired
+    public ListeningHistoryService(ListeningHistoryAppender listeningHistoryAppender,
+                                   ListeningHistoryRepository listeningHistoryRepository,
+                                   HistoryPartitionManager historyPartitionManager) {
+        this.listeningHistoryAppender = listeningHistoryAppender;
+        this.listeningHistoryRepository = listeningHistoryRepository;
+        this.historyPartitionManager = historyPartitionManager;
+    }
+
+    public void recordPlay(Long songId, long positionMs, String client) {
+        if (client != null && client.length() > MAX_CLIENT_LENGTH) {
+            client = client.substring(0, MAX_CLIENT_LENGTH);
+        }
+        listeningHistoryAppender.append(new ListeningEvent(songId, Instant.now(), Math.max(0, positionMs), client));
+    }
+
+    /**
+     * Most recent plays of the last {@code days} days. Keeping the window short lets the
+     * database skip every older partition.
+     */
+    public List<ListeningHistoryEntryDto> getRecent(int limit, int days) {
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_RECENT));
+        int boundedDays = Math.max(1, Math.min(days, historyPartitionManager.getRetentionDays()));
+        Instant since = Instant.now().minus(boundedDays, ChronoUnit.DAYS);
+        return listeningHistoryRepository.findRecent(since, boundedLimit);
+    }
+}
@@ -0,0 +1,550 @@
+package Rift.Radio.service.ingest;
+
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.SongService;
+import Rift.Radio.service.artwork.CoverArtService;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.fingerprint.AudioFingerprint;
+import Rift.Radio.service.fingerprint.FingerprintService;
+import Rift.Radio.service.metadata.AudioMetadata;
+import Rift.Radio.service.metadata.Mp3MetadataParser;
+import Rift.Radio.service.metadata.Mp3StreamCheck;
+import Rift.Radio.service.storage.FileRetirementService;
+import Rift.Radio.service.storage.LocalSongStorage;
+import Rift.Radio.service.storage.SongStorage;
+import Rift.Radio.service.upload.StripedLocks;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adds MP3 files dropped straight into the local storage directory as songs, without an upload.
+ * <p>
+ * A daemon thread takes create and modify events from a {@link WatchService} on the directory
+ * and marks each file pending. A pending file is ingested once it has had no events for
+ * {@code riftradio.ingest.quiet-ms} and shows the same size and modification time on two looks
+ * that far apart, so a copy still in progress is left alone. Hidden files, among them the
+ * {@code .*.part} files of uploads and tier moves, and files not ending in .mp3 are ignored.
+ * <p>
+ * Settled files are read on the service's pool: hashed and checked to be MP3 in one pass, then
+ * parsed for their tags, which name the song (the file name when there is no title). Files a
+ * song refers to already, files an edit retired and files whose bytes or audio are uploaded
+ * already are skipped. The rest of a burst is inserted with one multi-row INSERT per
+ * {@link #BATCH_SIZE} files, under the same locks uploads take, so a file an upload is still
+ * saving is left to it. A file whose song name is taken stays out of the catalog.
+ * <p>
+ * The modification time up to which every file has been dealt with is kept in a checkpoint
+ * file. On start the directory is listed, and only files modified after it are looked at again.
+ */
+@Service
+@ConditionalOnProperty(name = "riftradio.ingest.enabled", havingValue = "true")
+public class DirectoryIngestService {
+
+    private final Logger log = LoggerFactory.getLogger(DirectoryIngestService.class);
+
+    static final int BATCH_SIZE = 500;
+    static final String UNKNOWN_ARTIST = "Unknown Artist";
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+
+    private final SongRepository songRepository;
+    private final SongService songService;
+    private final Mp3MetadataParser metadataParser;
+    private final CoverArtService coverArtService;
+    private final FingerprintService fingerprintService;
+    private final FileRetirementService fileRetirementService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LocalSongStorage storage;
+    private final long quietMillis;
+    private final Path checkpointFile;
+    private final ForkJoinPool pool;
+
+    private final Map<Path, PendingFile> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean ingesting = new AtomicBoolean();
+    private volatile WatchService watchService;
+    // Every file modified at or before this time has been dealt with
+    private volatile long checkpoint;
+
+    @Autowired
+    public DirectoryIngestService(SongRepository songRepository, SongService songService, SongStorage songStorage,
+                                  Mp3MetadataParser metadataParser, CoverArtService coverArtService,
+                                  FingerprintService fingerprintService, FileRetirementService fileRetirementService,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${riftradio.ingest.quiet-ms:2000}") long quietMillis,
+                                  @Value("${riftradio.ingest.checkpoint-file:data/ingest/checkpoint.properties}")
+                                  String checkpointFile) {
+        this.songRepository = songRepository;
+        this.songService = songService;
+        this.metadataParser = metadataParser;
+        this.coverArtService = coverArtService;
+        this.fingerprintService = fingerprintService;
+        this.fileRetirementService = fileRetirementService;
+        this.eventPublisher = eventPublisher;
+        this.storage = songStorage instanceof LocalSongStorage ? (LocalSongStorage) songStorage : null;
+        this.quietMillis = quietMillis;
+        this.checkpointFile = Paths.get(checkpointFile);
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Starts watching the storage directory, and marks the files changed since the checkpoint
+     * pending.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (storage == null) {
+            log.warn("Directory ingestion needs local storage, dropped files are not ingested");
+            return;
+        }
+        Path directory = storage.getDirectory();
+        try {
+            Files.createDirectories(directory);
+            checkpoint = loadCheckpoint();
+            WatchService watcher = directory.getFileSystem().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = watcher;
+            Thread thread = new Thread(() -> watch(watcher), "storage-ingest-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException e) {
+            log.warn("Could not watch '{}', dropped files are not ingested", directory, e);
+            return;
+        }
+        // Listed after registering, so a file dropped meanwhile is seen by one or the other
+        int changed = scan(checkpoint);
+        log.info("Watching '{}' for dropped files, {} changed since the last run", directory, changed);
+    }
+
+    private void watch(WatchService watcher) {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        log.warn("Missed events of '{}', listing it again", storage.getDirectory());
+                        scan(checkpoint);
+                    } else {
+                        offer(storage.getDirectory().resolve((Path) event.context()), System.currentTimeMillis());
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("'{}' can no longer be watched, dropped files are not ingested", storage.getDirectory());
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Shut down
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${riftradio.ingest.poll-interval-ms:1000}")
+    public void poll() {
+        if (watchService == null || pending.isEmpty() || !ingesting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    ingestSettled(System.currentTimeMillis());
+                } catch (RuntimeException e) {
+                    log.warn("Ingesting dropped files failed", e);
+                } finally {
+                    ingesting.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            // The pool is shutting down
+            ingesting.set(false);
+        }
+    }
+
+    /**
+     * Marks the files modified after the given time pending, and returns how many there were.
+     */
+    int scan(long modifiedAfter) {
+        int found = 0;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(storage.getDirectory())) {
+            for (Path entry : entries) {
+                BasicFileAttributes attributes = isCandidate(entry) ? stat(entry) : null;
+                if (attributes != null && attributes.lastModifiedTime().toMillis() > modifiedAfter
+                        && pending.putIfAbsent(entry, new PendingFile(now, attributes)) == null) {
+                    found++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list '{}'", storage.getDirectory(), e);
+        }
+        return found;
+    }
+
+    /**
+     * Marks a file pending after an event, which starts its quiet period over.
+     */
+    void offer(Path file, long now) {
+        BasicFileAttributes attributes = isCandidate(file) ? stat(file) : null;
+        if (attributes != null) {
+            pending.put(file, new PendingFile(now, attributes));
+        }
+    }
+
+    /**
+     * Ingests the pending files that have settled by the given time, and returns how many
+     * songs were added. Files that failed for reasons other than their content stay pending.
+     */
+    int ingestSettled(long now) {
+        List<Path> settled = new ArrayList<>();
+        for (Map.Entry<Path, PendingFile> entry : pending.entrySet()) {
+            Path file = entry.getKey();
+            PendingFile seen = entry.getValue();
+            if (now - seen.seenAt < quietMillis) {
+                continue;
+            }
+            BasicFileAttributes attributes = stat(file);
+            if (attributes == null) {
+                pending.remove(file, seen);
+            } else if (attributes.size() == seen.size && attributes.lastModifiedTime().toMillis() == seen.modifiedAt) {
+                if (pending.remove(file, seen)) {
+                    settled.add(file);
+                }
+            } else {
+                // Still being written
+                pending.replace(file, seen, new PendingFile(now, attributes));
+            }
+        }
+
+        int ingested = 0;
+        for (int from = 0; from < settled.size(); from += BATCH_SIZE) {
+            List<Path> batch = settled.subList(from, Math.min(from + BATCH_SIZE, settled.size()));
+            try {
+                ingested += ingest(batch);
+            } catch (RuntimeException e) {
+                log.warn("Could not ingest {} dropped files, they are tried again", batch.size(), e);
+                for (Path file : batch) {
+                    offer(file, now);
+                }
+            }
+        }
+        advanceCheckpoint(now - quietMillis);
+        return ingested;
+    }
+
+    private int ingest(List<Path> files) {
+        Map<String, Path> byKey = new LinkedHashMap<>();
+        for (Path file : files) {
+            String key = storage.keyFor(file.getFileName().toString());
+            if (!fileRetirementService.isRetired(key)) {
+                byKey.put(key, file);
+            }
+        }
+        // Uploads and edits store their files here too, and deleted songs keep theirs until purged
+        byKey.keySet().removeAll(songRepository.findStoredFilePaths(byKey.keySet()));
+        if (byKey.isEmpty()) {
+            return 0;
+        }
+
+        List<Callable<DroppedFile>> reads = new ArrayList<>(byKey.size());
+        for (Map.Entry<String, Path> entry : byKey.entrySet()) {
+            reads.add(() -> read(entry.getKey(), entry.getValue()));
+        }
+        List<DroppedFile> read = invokeAll(reads);
+
+        Set<String> hashes = new HashSet<>();
+        for (DroppedFile dropped : read) {
+            if (dropped != null) {
+                hashes.add(dropped.song.getFileHash());
+            }
+        }
+        Set<String> uploaded = hashes.isEmpty() ? Collections.<String>emptySet()
+                : new HashSet<>(songRepository.findExistingFileHashes(hashes));
+        Set<String> batchHashes = new HashSet<>();
+        Set<String> batchNames = new HashSet<>();
+        List<DroppedFile> accepted = new ArrayList<>();
+        List<Song> songs = new ArrayList<>();
+        for (DroppedFile dropped : read) {
+            if (dropped == null) {
+                continue;
+            }
+            Song song = dropped.song;
+            if (uploaded.contains(song.getFileHash()) || !batchHashes.add(song.getFileHash())) {
+                log.info("Not ingesting '{}', it is byte for byte an uploaded file", song.getFilePath());
+            } else if (fingerprintService.findDuplicate(dropped.fingerprint, null).isPresent()) {
+                log.info("Not ingesting '{}', its audio is uploaded already", song.getFilePath());
+            } else if (!batchNames.add(song.getSongName())) {
+                log.warn("Not ingesting '{}', the song name '{}' is taken", song.getFilePath(), song.getSongName());
+            } else {
+                accepted.add(dropped);
+                songs.add(song);
+            }
+        }
+
+        Map<String, Long> ids = insert(songs);
+        List<Long> created = new ArrayList<>(ids.size());
+        for (DroppedFile dropped : accepted) {
+            Long id = ids.get(dropped.song.getFilePath());
+            if (id == null) {
+                log.warn("Not ingesting '{}', the song name '{}' or the file is taken",
+                        dropped.song.getFilePath(), dropped.song.getSongName());
+                continue;
+            }
+            fingerprintService.register(id, dropped.fingerprint);
+            created.add(id);
+        }
+        if (!created.isEmpty()) {
+            log.info("Ingested {} dropped files", created.size());
+            eventPublisher.publishEvent(new CatalogChangeEvent(CatalogChangeType.SONG_CREATED, null, created));
+        }
+        return created.size();
+    }
+
+    /**
+     * Inserts the songs under the locks uploads and edits take. An upload stores its file here
+     * before it saves its song, so the files are checked again once no upload of them is under way.
+     */
+    private Map<String, Long> insert(List<Song> songs) {
+        if (songs.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Set<String> filePaths = new HashSet<>();
+        Set<String> songNames = new HashSet<>();
+        for (Song song : songs) {
+            filePaths.add(song.getFilePath());
+            songNames.add(song.getSongName());
+        }
+        try (StripedLocks.Held held = songService.lockForStore(filePaths, songNames)) {
+            Set<String> stored = new HashSet<>(songRepository.findStoredFilePaths(filePaths));
+            List<Song> remaining = new ArrayList<>(songs.size());
+            for (Song song : songs) {
+                if (stored.contains(song.getFilePath())) {
+                    log.info("Not ingesting '{}', an upload stored it meanwhile", song.getFilePath());
+                } else {
+                    remaining.add(song);
+                }
+            }
+            return remaining.isEmpty() ? Collections.<String, Long>emptyMap()
+                    : songRepository.insertSkippingTaken(remaining);
+        }
+    }
+
+    // Null when the file cannot be read or is not an MP3 file
+    private DroppedFile read(String key, Path file) {
+        MessageDigest digest = sha256();
+        Mp3StreamCheck check = new Mp3StreamCheck();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            boolean mp3 = true;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+                if (mp3) {
+                    mp3 = check.update(buffer, 0, read);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read dropped file '{}'", file, e);
+            return null;
+        }
+        if (!check.isMp3()) {
+            log.warn("Not ingesting '{}', it is not an MP3 file", file);
+            return null;
+        }
+
+        AudioMetadata metadata = metadataParser.parse(file);
+        Song song = new Song();
+        song.setSongName(StringUtils.hasText(metadata.getTitle()) ? metadata.getTitle()
+                : StringUtils.stripFilenameExtension(file.getFileName().toString()));
+        song.setArtistName(StringUtils.hasText(metadata.getArtist()) ? metadata.getArtist() : UNKNOWN_ARTIST);
+        song.setAlbum(metadata.getAlbum());
+        song.setGenre(metadata.getGenre());
+        song.setReleaseYear(metadata.getYear() != null ? metadata.getYear() : 0);
+        song.setFilePath(key);
+        song.setFileHash(hex(digest.digest()));
+        song.setDurationMs(metadata.getDurationMs() > 0 ? metadata.getDurationMs() : null);
+        song.setBitrate(metadata.getBitrate() > 0 ? metadata.getBitrate() : null);
+        song.setCoverHash(coverArtService.ingest(file, metadata.getArtwork()));
+        return new DroppedFile(song, fingerprintService.fingerprint(file, metadata));
+    }
+
+    // Pending files hold the checkpoint back until they are dealt with
+    private void advanceCheckpoint(long upTo) {
+        long mark = upTo;
+        for (PendingFile file : pending.values()) {
+            mark = Math.min(mark, file.modifiedAt - 1);
+        }
+        if (mark > checkpoint) {
+            checkpoint = mark;
+            saveCheckpoint(mark);
+        }
+    }
+
+    private long loadCheckpoint() {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            properties.load(in);
+            return Long.parseLong(properties.getProperty("modifiedUpTo"));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable ingestion checkpoint {}, listing every file", checkpointFile, e);
+            return 0;
+        }
+    }
+
+    private void saveCheckpoint(long modifiedUpTo) {
+        Properties properties = new Properties();
+        properties.setProperty("modifiedUpTo", Long.toString(modifiedUpTo));
+        try {
+            Path dir = checkpointFile.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "checkpoint", ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    properties.store(out, "Directory ingestion checkpoint");
+                }
+                Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not save ingestion checkpoint {}", checkpointFile, e);
+        }
+    }
+
+    private static boolean isCandidate(Path file) {
+        String name = file.getFileName().toString();
+        return !name.startsWith(".") && name.toLowerCase(Locale.ROOT).endsWith(".mp3");
+    }
+
+    // Null unless it is a regular file
+    private static BasicFileAttributes stat(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            return attributes.isRegularFile() ? attributes : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ingestion interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ingestion failed", e.getCause());
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        WatchService watcher = watchService;
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                log.debug("Could not close the storage watcher", e);
+            }
+        }
+        pool.shutdownNow();
+    }
+
+    long getCheckpoint() {
+        return checkpoint;
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    private static final class PendingFile {
+
+        final long seenAt;
+        final long size;
+        final long modifiedAt;
+
+        PendingFile(long seenAt, BasicFileAttributes attributes) {
+            this.seenAt = seenAt;
+            this.size = attributes.size();
+            this.modifiedAt = attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    private static final class DroppedFile {
+
+        final Song song;
+        final AudioFingerprint fingerprint;
+
+        DroppedFile(Song song, AudioFingerprint fingerprint) {
+            this.song = song;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package Rift.Radio.service.metadata;
+
+/**
+ * Tags and stream properties read from an audio file. Fields the file does not carry stay
+ * {@code null}, or 0 for the numeric stream properties.
+ */
+public class AudioMetadata {
+
+    private String title;
+    private String artist;
+    private String album;
+    private String genre;
+    private Integer year;
+    private long durationMs;
+    private int bitrate;
+    private EmbeddedArtwork artwork;
+    private long audioOffset = -1;
+    private long audioEnd = -1;
+
+    public String getTitle() {
+        return title;
+    }
+
+    void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    void setArtist(String artist) {
+        this.artist = artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    void setAlbum(String album) {
+        this.album = album;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    void setGenre(String genre) {
+        this.genre = genre;
+    }
+
+    public Integer getYear() {
+        return year;
+    }
+
+    void setYear(Integer year) {
+        this.year = year;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * Average bitrate in kbit/s.
+     */
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    void setBitrate(int bitrate) {
+        this.bitrate = bitrate;
+    }
+
+    /**
+     * The front cover if the file has one, otherwise the first embedded picture, or null.
+     */
+    public EmbeddedArtwork getArtwork() {
+        return artwork;
+    }
+
+    void setArtwork(EmbeddedArtwork artwork) {
+        this.artwork = artwork;
+    }
+
+    /**
+     * Position of the first frame that carries audio, or -1 when no MPEG frame was found. A
+     * Xing or VBRI header frame in front of the audio is not included.
+     */
+    public long getAudioOffset() {
+        return audioOffset;
+    }
+
+    /**
+     * Position just past the last audio byte, before any ID3v1 tag.
+     */
+    public long getAudioEnd() {
+        return audioEnd;
+    }
+
+    void setAudioRange(long audioOffset, long audioEnd) {
+        this.audioOffset = audioOffset;
+        this.audioEnd = audioEnd;
+    }
+
+    @Override
+    public String toString() {
+        return "AudioMetadata{" +
+                "title='" + title + '\'' +
+                ", artist='" + artist + '\'' +
+                ", album='" + album + '\'' +
+                ", genre='" + genre + '\'' +
+                ", year=" + year +
+                ", durationMs=" + durationMs +
+                ", bitrate=" + bitrate +
+                ", artwork=" + (artwork == null ? "none" : artwork.getMimeType() + " " + artwork.getLength() + " bytes") +
+                '}';
+    }
+}
@@ -0,0 +1,42 @@
+package Rift.Radio.service.metadata;
+
+/**
+ * Where a picture embedded in an audio file is stored, so it can be read without parsing the
+ * tag again.
+ */
+public class EmbeddedArtwork {
+
+    // ID3v2 APIC picture type of the front cover
+    public static final int FRONT_COVER = 3;
+
+    private final String mimeType;
+    private final int pictureType;
+    private final long offset;
+    private final int length;
+
+    public EmbeddedArtwork(String mimeType, int pictureType, long offset, int length) {
+        this.mimeType = mimeType;
+        this.pictureType = pictureType;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public int getPictureType() {
+        return pictureType;
+    }
+
+    /**
+     * Position of the image data in the file.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,445 @@
+package Rift.Radio.service.metadata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads tags and stream properties of an MP3 file without decoding any audio.
+ * <p>
+ * Only the start and the end of the file are read, with positional reads on a
+ * {@link FileChannel}: the ID3v2 tag (ID3v2.3 and ID3v2.4), the first MPEG frame header
+ * with its Xing/Info or VBRI header when the file has one, and the last 128 bytes for an
+ * ID3v1 tag. Values from the ID3v2 tag take precedence; ID3v1 only fills what is missing.
+ * Embedded pictures are not read, only located (see {@link EmbeddedArtwork}).
+ * Without a Xing or VBRI header the file is taken to be constant bitrate and the duration is
+ * worked out from the audio size. A file that cannot be read or is not an MP3 gives whatever
+ * was found before the problem, never an exception.
+ */
+@Component
+public class Mp3MetadataParser {
+
+    private final Logger log = LoggerFactory.getLogger(Mp3MetadataParser.class);
+
+    static final int HEAD_SIZE = 8 * 1024;
+    static final int ID3V1_SIZE = 128;
+    private static final int ID3V2_HEADER_SIZE = 10;
+    private static final int MAX_TEXT_FRAME = 4 * 1024;
+    // Enough for the MIME type and description that precede the picture data
+    private static final int PICTURE_HEADER = 512;
+    // Covers the longest MPEG frame, so a candidate at the start of a window can be confirmed
+    private static final int SCAN_WINDOW = 4 * 1024;
+    private static final int MAX_SYNC_SCAN = 64 * 1024;
+    private static final int VBRI_OFFSET = 36;
+
+    private static final String[] GENRES = {
+            "Blues", "Classic Rock", "Country", "Dance", "Disco", "Funk", "Grunge", "Hip-Hop", "Jazz",
+            "Metal", "New Age", "Oldies", "Other", "Pop", "R&B", "Rap", "Reggae", "Rock", "Techno",
+            "Industrial", "Alternative", "Ska", "Death Metal", "Pranks", "Soundtrack", "Euro-Techno",
+            "Ambient", "Trip-Hop", "Vocal", "Jazz+Funk", "Fusion", "Trance", "Classical", "Instrumental",
+            "Acid", "House", "Game", "Sound Clip", "Gospel", "Noise", "Alternative Rock", "Bass", "Soul",
+            "Punk", "Space", "Meditative", "Instrumental Pop", "Instrumental Rock", "Ethnic", "Gothic",
+            "Darkwave", "Techno-Industrial", "Electronic", "Pop-Folk", "Eurodance", "Dream",
+            "Southern Rock", "Comedy", "Cult", "Gangsta", "Top 40", "Christian Rap", "Pop/Funk", "Jungle",
+            "Native American", "Cabaret", "New Wave", "Psychedelic", "Rave", "Showtunes", "Trailer",
+            "Lo-Fi", "Tribal", "Acid Punk", "Acid Jazz", "Polka", "Retro", "Musical", "Rock & Roll",
+            "Hard Rock", "Folk", "Folk-Rock", "National Folk", "Swing", "Fast Fusion", "Bebop", "Latin",
+            "Revival", "Celtic", "Bluegrass", "Avantgarde", "Gothic Rock", "Progressive Rock",
+            "Psychedelic Rock", "Symphonic Rock", "Slow Rock", "Big Band", "Chorus", "Easy Listening",
+            "Acoustic", "Humour", "Speech", "Chanson", "Opera", "Chamber Music", "Sonata", "Symphony",
+            "Booty Bass", "Primus", "Porn Groove", "Satire", "Slow Jam", "Club", "Tango", "Samba",
+            "Folklore", "Ballad", "Power Ballad", "Rhythmic Soul", "Freestyle", "Duet", "Punk Rock",
+            "Drum Solo", "A Cappella", "Euro-House", "Dance Hall",
+    };
+
+    public AudioMetadata parse(Path file) {
+        AudioMetadata metadata = new AudioMetadata();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = read(channel, 0, (int) Math.min(HEAD_SIZE, size));
+            long audioStart = Math.min(readId3v2(channel, head, metadata), size);
+            long audioEnd = size;
+            if (size - audioStart >= ID3V1_SIZE
+                    && readId3v1(read(channel, size - ID3V1_SIZE, ID3V1_SIZE), metadata)) {
+                audioEnd -= ID3V1_SIZE;
+            }
+            readAudio(channel, head, audioStart, audioEnd, metadata);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read the metadata of '{}': {}", file, e.toString());
+        }
+        return metadata;
+    }
+
+    /**
+     * Reads the text frames of an ID3v2 tag, locates its pictures and returns the offset just
+     * past the tag, or 0 when the file does not start with one.
+     */
+    private long readId3v2(FileChannel channel, ByteBuffer head, AudioMetadata metadata) throws IOException {
+        if (head.limit() < ID3V2_HEADER_SIZE || head.get(0) != 'I' || head.get(1) != 'D' || head.get(2) != '3') {
+            return 0;
+        }
+        int major = head.get(3) & 0xFF;
+        int flags = head.get(5) & 0xFF;
+        long framesEnd = ID3V2_HEADER_SIZE + (long) syncsafe(head, 6);
+        long tagEnd = framesEnd + (major == 4 && (flags & 0x10) != 0 ? ID3V2_HEADER_SIZE : 0);
+        // ID3v2.2 uses other frame ids, and a v2.3 tag unsynchronised as a whole has altered frame data
+        if ((major != 3 && major != 4) || (major == 3 && (flags & 0x80) != 0)) {
+            return tagEnd;
+        }
+
+        long position = ID3V2_HEADER_SIZE;
+        if ((flags & 0x40) != 0) {
+            ByteBuffer extended = slice(channel, head, position, 4);
+            position += major == 4 ? syncsafe(extended, 0) : 4 + extended.getInt(0);
+        }
+        while (position + ID3V2_HEADER_SIZE <= framesEnd) {
+            ByteBuffer header = slice(channel, head, position, ID3V2_HEADER_SIZE);
+            if (!isFrameId(header)) {
+                break; // padding
+            }
+            String id = new String(new byte[]{header.get(0), header.get(1), header.get(2), header.get(3)},
+                    StandardCharsets.US_ASCII);
+            int size = major == 4 ? syncsafe(header, 4) : header.getInt(4);
+            if (size <= 0 || position + ID3V2_HEADER_SIZE + size > framesEnd) {
+                break;
+            }
+            // Compressed, encrypted or unsynchronised frames are rare for text and are skipped
+            int formatFlags = header.get(9) & 0xFF;
+            boolean plain = major == 4 ? (formatFlags & 0x0F) == 0 : (formatFlags & 0xC0) == 0;
+            if (plain && "APIC".equals(id)) {
+                long body = position + ID3V2_HEADER_SIZE;
+                locatePicture(slice(channel, head, body, Math.min(size, PICTURE_HEADER)), body, size, metadata);
+            } else if (plain && size <= MAX_TEXT_FRAME && isWanted(id)) {
+                String text = decodeText(slice(channel, head, position + ID3V2_HEADER_SIZE, size));
+                applyFrame(id, text, metadata);
+            }
+            position += ID3V2_HEADER_SIZE + size;
+        }
+        return tagEnd;
+    }
+
+    /**
+     * Records where the picture data of an APIC frame starts. The front cover wins over other
+     * pictures; otherwise the first one is kept.
+     */
+    private static void locatePicture(ByteBuffer frame, long framePosition, int size, AudioMetadata metadata) {
+        int limit = frame.limit();
+        int encoding = frame.get(0);
+        int i = 1;
+        while (i < limit && frame.get(i) != 0) {
+            i++;
+        }
+        String mimeType = latin1(frame, 1, Math.min(i, limit) - 1);
+        i++;
+        if (i >= limit) {
+            return;
+        }
+        int pictureType = frame.get(i++) & 0xFF;
+        if (encoding == 1 || encoding == 2) {
+            while (i + 1 < limit && (frame.get(i) != 0 || frame.get(i + 1) != 0)) {
+                i += 2;
+            }
+            i += 2;
+        } else {
+            while (i < limit && frame.get(i) != 0) {
+                i++;
+            }
+            i++;
+        }
+        // "-->" means the frame holds a URL instead of a picture
+        if (i > limit || size - i <= 0 || "-->".equals(mimeType)) {
+            return;
+        }
+        EmbeddedArtwork current = metadata.getArtwork();
+        if (current == null || (pictureType == EmbeddedArtwork.FRONT_COVER
+                && current.getPictureType() != EmbeddedArtwork.FRONT_COVER)) {
+            metadata.setArtwork(new EmbeddedArtwork(mimeType, pictureType, framePosition + i, size - i));
+        }
+    }
+
+    private static boolean isWanted(String id) {
+        return "TIT2".equals(id) || "TPE1".equals(id) || "TALB".equals(id) || "TCON".equals(id)
+                || "TYER".equals(id) || "TDRC".equals(id);
+    }
+
+    private static void applyFrame(String id, String text, AudioMetadata metadata) {
+        if (text == null) {
+            return;
+        }
+        switch (id) {
+            case "TIT2":
+                metadata.setTitle(text);
+                break;
+            case "TPE1":
+                metadata.setArtist(text);
+                break;
+            case "TALB":
+                metadata.setAlbum(text);
+                break;
+            case "TCON":
+                metadata.setGenre(genre(text));
+                break;
+            default:
+                // TYER in ID3v2.3, TDRC (a timestamp starting with the year) in ID3v2.4
+                metadata.setYear(year(text));
+                break;
+        }
+    }
+
+    /**
+     * Fills the fields the ID3v2 tag did not have and tells whether there was an ID3v1 tag.
+     */
+    private static boolean readId3v1(ByteBuffer tail, AudioMetadata metadata) {
+        if (tail.get(0) != 'T' || tail.get(1) != 'A' || tail.get(2) != 'G') {
+            return false;
+        }
+        if (metadata.getTitle() == null) {
+            metadata.setTitle(latin1(tail, 3, 30));
+        }
+        if (metadata.getArtist() == null) {
+            metadata.setArtist(latin1(tail, 33, 30));
+        }
+        if (metadata.getAlbum() == null) {
+            metadata.setAlbum(latin1(tail, 63, 30));
+        }
+        if (metadata.getYear() == null) {
+            metadata.setYear(year(latin1(tail, 93, 4)));
+        }
+        int genre = tail.get(127) & 0xFF;
+        if (metadata.getGenre() == null && genre < GENRES.length) {
+            metadata.setGenre(GENRES[genre]);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first MPEG frame at or after {@code start} and works out the duration and
+     * average bitrate of the audio between {@code start} and {@code end}.
+     */
+    private void readAudio(FileChannel channel, ByteBuffer head, long start, long end, AudioMetadata metadata)
+            throws IOException {
+        long scanEnd = Math.min(end, start + MAX_SYNC_SCAN);
+        long windowStart = start;
+        scan:
+        while (windowStart + 4 <= scanEnd) {
+            ByteBuffer window = slice(channel, head, windowStart, (int) Math.min(SCAN_WINDOW, end - windowStart));
+            int candidates = (int) Math.min(window.limit(), scanEnd - windowStart) - 3;
+            for (int i = 0; i < candidates; i++) {
+                MpegFrameHeader frame = MpegFrameHeader.parse(window.getInt(i));
+                if (frame == null) {
+                    continue;
+                }
+                int next = i + frame.length();
+                if (next + 4 <= window.limit()) {
+                    // A real frame is followed by another one; a stray sync pattern usually is not
+                    if (!frame.matches(MpegFrameHeader.parse(window.getInt(next)))) {
+                        continue;
+                    }
+                } else if (i > 0 && windowStart + next + 4 <= end) {
+                    windowStart += i;
+                    continue scan;
+                }
+                readStream(window, i, windowStart + i, end, frame, metadata);
+                return;
+            }
+            windowStart += Math.max(1, candidates);
+        }
+    }
+
+    private static void readStream(ByteBuffer window, int offset, long position, long end, MpegFrameHeader frame,
+                                   AudioMetadata metadata) {
+        long audioBytes = end - position;
+        metadata.setAudioRange(position, end);
+        int xing = offset + frame.xingOffset();
+        int vbri = offset + VBRI_OFFSET;
+        boolean hasXing = has(window, xing, 8) && (isTag(window, xing, "Xing") || isTag(window, xing, "Info"));
+        boolean hasVbri = has(window, vbri, 18) && isTag(window, vbri, "VBRI");
+        if (hasXing || hasVbri) {
+            // The frame only carries the header, no audio
+            metadata.setAudioRange(position + frame.length(), end);
+        }
+        if (hasXing) {
+            int flags = window.getInt(xing + 4);
+            int field = xing + 8;
+            long frames = 0;
+            long bytes = audioBytes;
+            if ((flags & 0x1) != 0 && has(window, field, 4)) {
+                frames = window.getInt(field) & 0xFFFFFFFFL;
+                field += 4;
+            }
+            if ((flags & 0x2) != 0 && has(window, field, 4) && window.getInt(field) != 0) {
+                bytes = window.getInt(field) & 0xFFFFFFFFL;
+            }
+            if (frames > 0) {
+                setFromFrameCount(frames, bytes, frame, metadata);
+                return;
+            }
+        }
+        if (hasVbri) {
+            long bytes = window.getInt(vbri + 10) & 0xFFFFFFFFL;
+            long frames = window.getInt(vbri + 14) & 0xFFFFFFFFL;
+            if (frames > 0) {
+                setFromFrameCount(frames, bytes > 0 ? bytes : audioBytes, frame, metadata);
+                return;
+            }
+        }
+        // Constant bitrate: kbit/s is bits per millisecond
+        metadata.setBitrate(frame.getBitrate());
+        metadata.setDurationMs(audioBytes * 8 / frame.getBitrate());
+    }
+
+    private static void setFromFrameCount(long frames, long bytes, MpegFrameHeader frame, AudioMetadata metadata) {
+        long durationMs = frames * frame.samplesPerFrame() * 1000 / frame.getSampleRate();
+        metadata.setDurationMs(durationMs);
+        if (durationMs > 0) {
+            metadata.setBitrate((int) Math.round(bytes * 8.0 / durationMs));
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Bytes at {@code position} of the file, taken from the already read head when it has
+     * them. Near the end of the file the result can be shorter than {@code length}.
+     */
+    private static ByteBuffer slice(FileChannel channel, ByteBuffer head, long position, int length)
+            throws IOException {
+        if (position + length <= head.limit()) {
+            ByteBuffer view = head.duplicate();
+            view.position((int) position);
+            view.limit((int) position + length);
+            return view.slice();
+        }
+        return read(channel, position, length);
+    }
+
+    private static int syncsafe(ByteBuffer buffer, int offset) {
+        return (buffer.get(offset) & 0x7F) << 21 | (buffer.get(offset + 1) & 0x7F) << 14
+                | (buffer.get(offset + 2) & 0x7F) << 7 | (buffer.get(offset + 3) & 0x7F);
+    }
+
+    private static boolean isFrameId(ByteBuffer header) {
+        for (int i = 0; i < 4; i++) {
+            byte b = header.get(i);
+            if (!((b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean has(ByteBuffer buffer, int offset, int length) {
+        return offset + length <= buffer.limit();
+    }
+
+    private static boolean isTag(ByteBuffer buffer, int offset, String tag) {
+        for (int i = 0; i < tag.length(); i++) {
+            if (buffer.get(offset + i) != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a text frame: an encoding byte followed by one or more null separated values,
+     * of which the first is used.
+     */
+    private static String decodeText(ByteBuffer frame) {
+        if (frame.remaining() < 2) {
+            return null;
+        }
+        Charset charset;
+        switch (frame.get(0)) {
+            case 1:
+                charset = StandardCharsets.UTF_16; // byte order mark first
+                break;
+            case 2:
+                charset = StandardCharsets.UTF_16BE;
+                break;
+            case 3:
+                charset = StandardCharsets.UTF_8;
+                break;
+            default:
+                charset = StandardCharsets.ISO_8859_1;
+                break;
+        }
+        byte[] bytes = new byte[frame.remaining() - 1];
+        ByteBuffer data = frame.duplicate();
+        data.position(1);
+        data.get(bytes);
+        return clean(new String(bytes, charset));
+    }
+
+    private static String latin1(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return clean(new String(bytes, StandardCharsets.ISO_8859_1));
+    }
+
+    private static String clean(String text) {
+        int end = text.indexOf('\0');
+        String value = (end < 0 ? text : text.substring(0, end)).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Integer year(String text) {
+        if (text == null || text.length() < 4) {
+            return null;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return null;
+            }
+        }
+        return Integer.valueOf(text.substring(0, 4));
+    }
+
+    /**
+     * TCON is free text, an ID3v1 genre number, or a number in parentheses optionally
+     * followed by a refinement, as in "(17)" or "(79)Hard Rock".
+     */
+    static String genre(String text) {
+        String number = text;
+        if (text.startsWith("(")) {
+            int close = text.indexOf(')');
+            if (close < 0) {
+                return text;
+            }
+            String refinement = text.substring(close + 1).trim();
+            if (!refinement.isEmpty()) {
+                return refinement;
+            }
+            number = text.substring(1, close);
+        }
+        if (number.isEmpty() || number.length() > 3) {
+            return text;
+        }
+        for (int i = 0; i < number.length(); i++) {
+            if (!Character.isDigit(number.charAt(i))) {
+                return text;
+            }
+        }
+        int index = Integer.parseInt(number);
+        return index < GENRES.length ? GENRES[index] : null;
+    }
+}
@@ -0,0 +1,124 @@
+package Rift.Radio.service.metadata;
+
+/**
+ * Tells whether a stream is an MP3 file while it is being received, from its first bytes.
+ * <p>
+ * The stream has to start with an ID3v2 tag or an MPEG frame header. A tag is skipped by its
+ * declared size, and the audio after it may start with up to {@link #MAX_SYNC_SCAN} bytes of
+ * padding, as the metadata parser allows. The audio must begin with two consecutive frames
+ * of the same stream. Only the start of the audio is buffered; the tag is never held.
+ */
+public class Mp3StreamCheck {
+
+    static final int MAX_SYNC_SCAN = 64 * 1024;
+    private static final int ID3V2_HEADER_SIZE = 10;
+    // MPEG-2 layer II at 160 kbit/s and 8 kHz, with padding
+    private static final int MAX_FRAME_LENGTH = 2881;
+
+    private final byte[] head = new byte[ID3V2_HEADER_SIZE];
+    private int headLength;
+    private long position;
+    private long audioStart = -1;
+    // Whether the audio may start after padding, which is only allowed behind a tag
+    private boolean padded;
+    private byte[] window;
+    private int windowLength;
+    private int scanned;
+    private Boolean mp3;
+
+    /**
+     * Looks at the next bytes of the stream. Returns false once the stream cannot be an MP3
+     * file, and from then on.
+     */
+    public boolean update(byte[] bytes, int offset, int length) {
+        if (mp3 != null) {
+            return mp3;
+        }
+        if (headLength < ID3V2_HEADER_SIZE) {
+            int copied = Math.min(ID3V2_HEADER_SIZE - headLength, length);
+            System.arraycopy(bytes, offset, head, headLength, copied);
+            headLength += copied;
+            if (headLength == ID3V2_HEADER_SIZE) {
+                if (!readHead()) {
+                    mp3 = false;
+                    return false;
+                }
+                if (audioStart < position) {
+                    // Audio from the start of the stream; earlier updates were only kept in the head
+                    int earlier = (int) (position - audioStart);
+                    System.arraycopy(head, (int) audioStart, window, 0, earlier);
+                    windowLength = earlier;
+                }
+            }
+        }
+        long end = position + length;
+        if (audioStart >= 0 && end > audioStart) {
+            int from = (int) Math.max(0, audioStart - position);
+            int copied = Math.min(length - from, window.length - windowLength);
+            System.arraycopy(bytes, offset + from, window, windowLength, copied);
+            windowLength += copied;
+            scan();
+        }
+        position = end;
+        return mp3 == null || mp3;
+    }
+
+    /**
+     * True once the stream has been seen to be an MP3 file.
+     */
+    public boolean isMp3() {
+        return Boolean.TRUE.equals(mp3);
+    }
+
+    private boolean readHead() {
+        if (head[0] == 'I' && head[1] == 'D' && head[2] == '3') {
+            int major = head[3];
+            if (major < 2 || major > 4 || head[4] == (byte) 0xFF) {
+                return false;
+            }
+            int size = 0;
+            for (int i = 6; i < ID3V2_HEADER_SIZE; i++) {
+                if ((head[i] & 0x80) != 0) {
+                    return false;
+                }
+                size = size << 7 | head[i];
+            }
+            boolean footer = major == 4 && (head[5] & 0x10) != 0;
+            audioStart = ID3V2_HEADER_SIZE + (long) size + (footer ? ID3V2_HEADER_SIZE : 0);
+            padded = true;
+            window = new byte[MAX_SYNC_SCAN + MAX_FRAME_LENGTH + MpegFrameHeader.SIZE];
+        } else {
+            if (MpegFrameHeader.parse(intAt(head, 0)) == null) {
+                return false;
+            }
+            audioStart = 0;
+            window = new byte[MAX_FRAME_LENGTH + MpegFrameHeader.SIZE];
+        }
+        return true;
+    }
+
+    private void scan() {
+        while (scanned + MpegFrameHeader.SIZE <= windowLength) {
+            MpegFrameHeader frame = MpegFrameHeader.parse(intAt(window, scanned));
+            if (frame != null) {
+                int next = scanned + frame.length();
+                if (next + MpegFrameHeader.SIZE > windowLength) {
+                    return;
+                }
+                if (frame.matches(MpegFrameHeader.parse(intAt(window, next)))) {
+                    mp3 = true;
+                    return;
+                }
+            }
+            if (!padded || ++scanned >= MAX_SYNC_SCAN) {
+                mp3 = false;
+                return;
+            }
+        }
+    }
+
+    private static int intAt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+}
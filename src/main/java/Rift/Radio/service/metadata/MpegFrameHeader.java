@@ -0,0 +1,116 @@
+package Rift.Radio.service.metadata;
+
+/**
+ * The fields of an MPEG audio frame header needed to walk a stream frame by frame.
+ */
+public final class MpegFrameHeader {
+
+    public static final int SIZE = 4;
+
+    private static final int[][] BITRATES = {
+            // MPEG-1 layer I, II, III
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG-2 and 2.5 layer I, II and III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+    };
+
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},   // MPEG-2.5
+            null,                   // reserved
+            {22050, 24000, 16000},  // MPEG-2
+            {44100, 48000, 32000},  // MPEG-1
+    };
+
+    private final int version;    // 3 = MPEG-1, 2 = MPEG-2, 0 = MPEG-2.5
+    private final int layer;      // 1, 2 or 3
+    private final int bitrate;    // kbit/s
+    private final int sampleRate;
+    private final int padding;
+    private final boolean mono;
+    private final boolean crc;
+
+    private MpegFrameHeader(int version, int layer, int bitrate, int sampleRate, int padding, boolean mono,
+                            boolean crc) {
+        this.version = version;
+        this.layer = layer;
+        this.bitrate = bitrate;
+        this.sampleRate = sampleRate;
+        this.padding = padding;
+        this.mono = mono;
+        this.crc = crc;
+    }
+
+    /**
+     * Decodes four header bytes, or returns null when they are not a valid header.
+     * Free format streams (bitrate index 0) are not supported.
+     */
+    public static MpegFrameHeader parse(int header) {
+        if ((header & 0xFFE00000) != 0xFFE00000) {
+            return null;
+        }
+        int version = (header >>> 19) & 0x3;
+        int layerBits = (header >>> 17) & 0x3;
+        int bitrateIndex = (header >>> 12) & 0xF;
+        int sampleRateIndex = (header >>> 10) & 0x3;
+        if (version == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return null;
+        }
+        int layer = 4 - layerBits;
+        int table = version == 3 ? layer - 1 : (layer == 1 ? 3 : 4);
+        return new MpegFrameHeader(version, layer, BITRATES[table][bitrateIndex],
+                SAMPLE_RATES[version][sampleRateIndex], (header >>> 9) & 0x1, ((header >>> 6) & 0x3) == 3,
+                ((header >>> 16) & 0x1) == 0);
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Length of the whole frame, header included.
+     */
+    public int length() {
+        if (layer == 1) {
+            return (12 * bitrate * 1000 / sampleRate + padding) * 4;
+        }
+        int coefficient = layer == 3 && version != 3 ? 72 : 144;
+        return coefficient * bitrate * 1000 / sampleRate + padding;
+    }
+
+    /**
+     * Where the audio data starts in the frame: after the header and its optional CRC.
+     */
+    public int payloadOffset() {
+        return crc ? SIZE + 2 : SIZE;
+    }
+
+    public int samplesPerFrame() {
+        if (layer == 1) {
+            return 384;
+        }
+        return layer == 3 && version != 3 ? 576 : 1152;
+    }
+
+    // The Xing header follows the side information, whose size depends on version and channels
+    public int xingOffset() {
+        if (version == 3) {
+            return mono ? SIZE + 17 : SIZE + 32;
+        }
+        return mono ? SIZE + 9 : SIZE + 17;
+    }
+
+    /**
+     * Whether {@code other} can be the next frame of the same stream.
+     */
+    public boolean matches(MpegFrameHeader other) {
+        return other != null && other.version == version && other.layer == layer
+                && other.sampleRate == sampleRate;
+    }
+}
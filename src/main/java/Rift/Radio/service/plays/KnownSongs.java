@@ -0,0 +1,66 @@
+package Rift.Radio.service.plays;
+
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tells whether a song id reported by a client is a song, before its play reaches the charts
+ * and the history. Ids found recently are cached, so replays of popular songs cost a map
+ * lookup; ids not found are looked up every time, so a new song counts from its first play.
+ */
+@Component
+public class KnownSongs {
+
+    private static final int MAX_ENTRIES = 10000;
+
+    private final SongRepository songRepository;
+
+    private final Map<Long, Boolean> known = new LinkedHashMap<Long, Boolean>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    @Autowired
+    public KnownSongs(SongRepository songRepository) {
+        this.songRepository = songRepository;
+    }
+
+    public boolean exists(Long songId) {
+        if (songId == null) {
+            return false;
+        }
+        synchronized (known) {
+            if (known.get(songId) != null) {
+                return true;
+            }
+        }
+        if (!songRepository.existsById(songId)) {
+            return false;
+        }
+        synchronized (known) {
+            known.put(songId, Boolean.TRUE);
+        }
+        return true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getType() != CatalogChangeType.SONG_DELETED) {
+            return;
+        }
+        synchronized (known) {
+            for (Long songId : event.getSongIds()) {
+                known.remove(songId);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package Rift.Radio.service.plays;
+
+import Rift.Radio.repository.SongPlayCountRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts plays in memory and writes them to song_play_count in batches.
+ * <p>
+ * Recording a play is a {@link LongAdder} increment, which stays uncontended under many
+ * concurrent streams of the same song. A scheduled flush drains every adder with
+ * {@code sumThenReset} and writes the deltas with batched statements of
+ * {@link #FLUSH_BATCH_SIZE} rows, so the SQL cost depends on how many distinct songs were
+ * played, not on how many plays there were. Adders stay in the map between flushes, which
+ * avoids losing increments to a remove/increment race; they are dropped when a song is deleted.
+ */
+@Service
+public class PlayCountService {
+
+    private final Logger log = LoggerFactory.getLogger(PlayCountService.class);
+
+    static final int FLUSH_BATCH_SIZE = 500;
+
+    private final SongPlayCountRepository songPlayCountRepository;
+    private final SongRepository songRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PlayCountService(SongPlayCountRepository songPlayCountRepository, SongRepository songRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.songPlayCountRepository = songPlayCountRepository;
+        this.songRepository = songRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Also used from after-commit listeners, where the finished transaction is still bound
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void recordPlay(Long songId) {
+        pending.computeIfAbsent(songId, id -> new LongAdder()).increment();
+    }
+
+    /**
+     * Persisted count plus plays not flushed yet.
+     */
+    public long getPlayCount(Long songId) {
+        long stored = songPlayCountRepository.findById(songId).map(p -> p.getPlayCount()).orElse(0L);
+        LongAdder unflushed = pending.get(songId);
+        return stored + (unflushed == null ? 0 : unflushed.sum());
+    }
+
+    public Map<Long, Long> getPlayCounts(Collection<Long> songIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        if (songIds.isEmpty()) {
+            return counts;
+        }
+        for (Object[] row : songPlayCountRepository.findCounts(songIds)) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        for (Long songId : songIds) {
+            LongAdder unflushed = pending.get(songId);
+            if (unflushed != null && unflushed.sum() > 0) {
+                counts.merge(songId, unflushed.sum(), Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts of every song that has been played. Cheaper than {@link #getPlayCounts} when the
+     * caller needs most of the catalog, and not limited by the database's parameter count.
+     */
+    public Map<Long, Long> getAllPlayCounts() {
+        Map<Long, Long> counts = new HashMap<>();
+        for (Object[] row : songPlayCountRepository.findAllCounts()) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long unflushed = entry.getValue().sum();
+            if (unflushed > 0) {
+                counts.merge(entry.getKey(), unflushed, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    @Scheduled(fixedDelayString = "${riftradio.plays.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta > 0) {
+                deltas.put(entry.getKey(), delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Long> songIds = new ArrayList<>(deltas.keySet());
+        for (int from = 0; from < songIds.size(); from += FLUSH_BATCH_SIZE) {
+            List<Long> chunk = songIds.subList(from, Math.min(from + FLUSH_BATCH_SIZE, songIds.size()));
+            Map<Long, Long> batch = new LinkedHashMap<>();
+            for (Long songId : chunk) {
+                batch.put(songId, deltas.get(songId));
+            }
+            try {
+                Set<Long> unknown = transactionTemplate.execute(status -> writeBatch(batch));
+                if (unknown != null) {
+                    // Keeps ids that were never songs from accumulating adders
+                    pending.keySet().removeAll(unknown);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Play count flush failed for {} songs, keeping the counts for the next run",
+                        batch.size(), e);
+                for (Map.Entry<Long, Long> entry : batch.entrySet()) {
+                    pending.computeIfAbsent(entry.getKey(), id -> new LongAdder()).add(entry.getValue());
+                }
+            }
+        }
+        log.debug("Flushed plays for {} songs", deltas.size());
+    }
+
+    /**
+     * Writes the batch and returns the ids that are not songs. Their plays are dropped, which
+     * also covers songs deleted between the play and the flush.
+     */
+    private Set<Long> writeBatch(Map<Long, Long> batch) {
+        Set<Long> unknown = new HashSet<>(batch.keySet());
+        unknown.removeAll(songRepository.findExistingIds(batch.keySet()));
+        batch.keySet().removeAll(unknown);
+        if (!batch.isEmpty()) {
+            songPlayCountRepository.addPlays(batch);
+        }
+        return unknown;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getType() != CatalogChangeType.SONG_DELETED) {
+            return;
+        }
+        for (Long songId : event.getSongIds()) {
+            pending.remove(songId);
+            try {
+                transactionTemplate.executeWithoutResult(status -> songPlayCountRepository.deleteBySongId(songId));
+            } catch (RuntimeException e) {
+                log.warn("Could not remove play count of deleted song {}", songId, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the last deltas on a graceful shutdown, before the connection pool closes.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    int trackedSongs() {
+        return pending.size();
+    }
+}
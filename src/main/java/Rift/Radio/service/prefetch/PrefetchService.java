@@ -0,0 +1,193 @@
+package Rift.Radio.service.prefetch;
+
+import Rift.Radio.dto.PlaybackContextDto;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.queue.QueueMode;
+import Rift.Radio.service.queue.QueueService;
+import Rift.Radio.service.queue.QueueSource;
+import Rift.Radio.service.storage.SongStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helps clients play tracks back to back without a gap.
+ * <p>
+ * From the playback context of a stream request it works out the next tracks, so the
+ * response can carry a {@code Link: rel=preload} hint for the next one, and reads the first
+ * {@code riftradio.prefetch.warmup-bytes} of each upcoming file on a background thread. The
+ * read data is discarded; the point is that the operating system keeps it in the page cache,
+ * so the next stream request starts without waiting on the disk. Files the storage backend
+ * keeps off the local disk are not warmed up.
+ */
+@Service
+public class PrefetchService {
+
+    private final Logger log = LoggerFactory.getLogger(PrefetchService.class);
+
+    static final long WARM_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_TRACKED = 1000;
+    private static final int READ_SIZE = 64 * 1024;
+
+    private final SongRepository songRepository;
+    private final PlaylistSongRepository playlistSongRepository;
+    private final QueueService queueService;
+    private final SongStorage songStorage;
+    private final Executor warmupExecutor;
+    private final int tracks;
+    private final long warmupBytes;
+
+    private final Map<Long, Long> warmedAt = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PrefetchService(SongRepository songRepository, PlaylistSongRepository playlistSongRepository,
+                           QueueService queueService, SongStorage songStorage, @Qualifier("trackWarmupExecutor") Executor warmupExecutor,
+                           @Value("${riftradio.prefetch.tracks:2}") int tracks,
+                           @Value("${riftradio.prefetch.warmup-bytes:524288}") long warmupBytes) {
+        this.songRepository = songRepository;
+        this.playlistSongRepository = playlistSongRepository;
+        this.queueService = queueService;
+        this.songStorage = songStorage;
+        this.warmupExecutor = warmupExecutor;
+        this.tracks = tracks;
+        this.warmupBytes = warmupBytes;
+    }
+
+    /**
+     * Ids of the tracks that follow {@code songId} in the context, nearest first. A context
+     * that cannot be resolved yields no hints rather than failing the stream.
+     */
+    public List<Long> upcoming(Long songId, PlaybackContextDto context) {
+        try {
+            if (context.getNext() != null && !context.getNext().isEmpty()) {
+                return new ArrayList<>(context.getNext().subList(0, Math.min(tracks, context.getNext().size())));
+            }
+            if (context.getPlaylist() != null) {
+                return nextInPlaylist(context.getPlaylist(), songId);
+            }
+            if (context.getQueue() != null && context.getSeed() != null && context.getPosition() != null) {
+                QueueMode mode = context.getMode() == null ? QueueMode.SHUFFLE : QueueMode.fromName(context.getMode());
+                long[] ids = queueService.getQueue(QueueSource.parse(context.getQueue()), mode, context.getSeed(),
+                        context.getPosition() + 1, tracks).getSongIds();
+                List<Long> result = new ArrayList<>(ids.length);
+                for (long id : ids) {
+                    result.add(id);
+                }
+                return result;
+            }
+        } catch (RuntimeException e) {
+            log.debug("No prefetch hints for song {}: {}", songId, e.getMessage());
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * A preload link for the next track, carrying the context forward so the next response
+     * can hint the track after it.
+     */
+    public List<String> preloadLinks(List<Long> upcoming, PlaybackContextDto context) {
+        if (upcoming.isEmpty()) {
+            return Collections.emptyList();
+        }
+        UriComponentsBuilder uri = UriComponentsBuilder.fromPath("/api/v1/songs/{id}/file");
+        if (context.getNext() != null && context.getNext().size() > 1) {
+            for (Long id : context.getNext().subList(1, context.getNext().size())) {
+                uri.queryParam("next", id);
+            }
+        } else if (context.getPlaylist() != null) {
+            uri.queryParam("playlist", context.getPlaylist());
+        } else if (context.getQueue() != null) {
+            uri.queryParam("queue", context.getQueue())
+                    .queryParam("mode", context.getMode() == null ? "shuffle" : context.getMode())
+                    .queryParam("seed", context.getSeed())
+                    .queryParam("position", context.getPosition() + 1);
+        }
+        String target = uri.buildAndExpand(upcoming.get(0)).encode().toUriString();
+        return Collections.singletonList("<" + target + ">; rel=preload; as=audio");
+    }
+
+    public void warmUp(List<Long> songIds) {
+        if (songIds.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Long> cold = new ArrayList<>(songIds.size());
+        for (Long songId : songIds) {
+            Long last = warmedAt.get(songId);
+            if (last == null || now - last > WARM_TTL_MILLIS) {
+                cold.add(songId);
+            }
+        }
+        if (cold.isEmpty()) {
+            return;
+        }
+        if (warmedAt.size() > MAX_TRACKED) {
+            warmedAt.values().removeIf(at -> now - at > WARM_TTL_MILLIS);
+        }
+        for (Song song : songRepository.findAllById(cold)) {
+            warmedAt.put(song.getId(), now);
+            Path path = songStorage.localPath(song.getFilePath());
+            if (path == null) {
+                continue;
+            }
+            try {
+                warmupExecutor.execute(() -> readHead(path));
+            } catch (RejectedExecutionException e) {
+                warmedAt.remove(song.getId());
+            }
+        }
+    }
+
+    /**
+     * Reads up to {@code warmupBytes} from the start of the file and returns how many were read.
+     */
+    long readHead(Path path) {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+        long read = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int n;
+            while (read < warmupBytes && (n = channel.read(buffer)) > 0) {
+                read += n;
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            log.debug("Could not warm up {}: {}", path, e.getMessage());
+        }
+        return read;
+    }
+
+    private List<Long> nextInPlaylist(Long playlistId, Long songId) {
+        Optional<Long> position = playlistSongRepository.findPosition(playlistId, songId);
+        if (!position.isPresent()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(tracks);
+        for (Object[] row : playlistSongRepository.findSongsAfter(playlistId, position.get(), songId,
+                PageRequest.of(0, tracks))) {
+            ids.add(((Song) row[1]).getId());
+        }
+        return ids;
+    }
+}
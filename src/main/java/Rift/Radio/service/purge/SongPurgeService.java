@@ -0,0 +1,166 @@
+package Rift.Radio.service.purge;
+
+import Rift.Radio.repository.LikedSongRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.storage.SongStorage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Removes the songs {@link Rift.Radio.service.SongService#deleteSong} marked deleted.
+ * <p>
+ * Deleted songs are read in keyset pages of {@link #BATCH_SIZE}. Their files are deleted first,
+ * {@link #DELETE_THREADS} at a time, unless a live song refers to the same file. Then, in one
+ * transaction per page, the playlist, like and song rows of the songs whose file is gone are
+ * deleted, one statement each; playlist counts were lowered when the songs were deleted. A
+ * file that cannot be deleted keeps its song's rows, so the next run tries it again and
+ * nothing is left behind by a crash.
+ */
+@Service
+public class SongPurgeService {
+
+    private final Logger log = LoggerFactory.getLogger(SongPurgeService.class);
+
+    static final int BATCH_SIZE = 500;
+    private static final int DELETE_THREADS = 8;
+
+    private final SongRepository songRepository;
+    private final PlaylistSongRepository playlistSongRepository;
+    private final LikedSongRepository likedSongRepository;
+    private final SongStorage songStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final ForkJoinPool pool;
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    @Autowired
+    public SongPurgeService(SongRepository songRepository, PlaylistSongRepository playlistSongRepository,
+                            LikedSongRepository likedSongRepository, SongStorage songStorage,
+                            PlatformTransactionManager transactionManager) {
+        this.songRepository = songRepository;
+        this.playlistSongRepository = playlistSongRepository;
+        this.likedSongRepository = likedSongRepository;
+        this.songStorage = songStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pool = new ForkJoinPool(DELETE_THREADS);
+    }
+
+    @Scheduled(fixedDelayString = "${riftradio.purge.interval-ms:5000}")
+    public void purge() {
+        if (!purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int purged = purgeDeleted();
+            if (purged > 0) {
+                log.info("Purged {} deleted songs", purged);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Purge of deleted songs failed", e);
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    /**
+     * Purges every song marked deleted whose file can be deleted, and returns how many.
+     */
+    int purgeDeleted() {
+        int purged = 0;
+        long after = 0;
+        while (true) {
+            List<Object[]> rows = songRepository.findDeletedAfter(after, BATCH_SIZE);
+            if (rows.isEmpty()) {
+                break;
+            }
+            purged += purgeBatch(rows);
+            after = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+        }
+        return purged;
+    }
+
+    private int purgeBatch(List<Object[]> rows) {
+        Set<String> filePaths = new HashSet<>();
+        for (Object[] row : rows) {
+            if (row[1] != null) {
+                filePaths.add((String) row[1]);
+            }
+        }
+        // An upload may store a file under the name a deleted song had
+        Set<String> inUse = filePaths.isEmpty() ? new HashSet<>()
+                : new HashSet<>(songRepository.findExistingFilePaths(filePaths));
+
+        List<Future<Boolean>> deletions = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            String filePath = (String) row[1];
+            deletions.add(pool.submit(deleteFile(filePath, filePath == null || inUse.contains(filePath))));
+        }
+        List<Long> gone = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (await(deletions.get(i))) {
+                gone.add(((Number) rows.get(i)[0]).longValue());
+            }
+        }
+        if (gone.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            playlistSongRepository.deleteBySongIds(gone);
+            likedSongRepository.deleteAllBySongIds(gone);
+            songRepository.deleteMarked(gone);
+        });
+        return gone.size();
+    }
+
+    // True once the file is gone, or is not this song's to delete
+    private Callable<Boolean> deleteFile(String filePath, boolean keep) {
+        return () -> {
+            if (keep) {
+                return true;
+            }
+            try {
+                if (!songStorage.delete(filePath)) {
+                    log.debug("File '{}' of a deleted song was gone already", filePath);
+                }
+                return true;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not delete file '{}' of a deleted song, trying again on the next run: {}",
+                        filePath, e.getMessage());
+                return false;
+            }
+        };
+    }
+
+    private boolean await(Future<Boolean> deletion) {
+        try {
+            return deletion.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
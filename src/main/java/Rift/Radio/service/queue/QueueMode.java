@@ -0,0 +1,22 @@
+package Rift.Radio.service.queue;
+
+import java.util.Locale;
+
+public enum QueueMode {
+
+    /** Every song once, in uniformly random order. */
+    SHUFFLE,
+    /** Songs drawn by weight, so liked and often played songs come up more often. */
+    WEIGHTED;
+
+    public static QueueMode fromName(String name) {
+        if (name != null) {
+            for (QueueMode mode : values()) {
+                if (mode.name().equals(name.trim().toUpperCase(Locale.ROOT))) {
+                    return mode;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unsupported queue mode: " + name);
+    }
+}
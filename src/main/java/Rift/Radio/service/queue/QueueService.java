@@ -0,0 +1,220 @@
+package Rift.Radio.service.queue;
+
+import Rift.Radio.dto.QueuePageDto;
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.repository.LikedSongRepository;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogVersion;
+import Rift.Radio.service.plays.PlayCountService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds play queues on the server.
+ * <p>
+ * A queue is a pure function of its source's songs, the mode and a seed, so pages are
+ * generated independently: the client passes back the seed from the first page and each
+ * request regenerates only up to the end of the page it asks for. Shuffle is a partial
+ * Fisher-Yates over the source ids. Weighted draws from an {@link AliasSampler} whose weights
+ * favour liked and often played songs, skipping songs drawn in the last few positions.
+ * <p>
+ * The source's ids and sampler are cached per source until the catalog changes or
+ * {@code riftradio.queue.cache-ttl-ms} passes, so later pages cost no queries.
+ */
+@Service
+public class QueueService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+    static final int RECENT_WINDOW = 25;
+    static final int MAX_REDRAWS = 16;
+    private static final int CACHED_SOURCES = 16;
+
+    private final SongRepository songRepository;
+    private final PlaylistRepository playlistRepository;
+    private final PlaylistSongRepository playlistSongRepository;
+    private final LikedSongRepository likedSongRepository;
+    private final PlayCountService playCountService;
+    private final CatalogVersion catalogVersion;
+    private final double likedWeight;
+    private final long cacheTtlMillis;
+
+    private final Map<String, PreparedSource> cache = new LinkedHashMap<String, PreparedSource>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedSource> eldest) {
+            return size() > CACHED_SOURCES;
+        }
+    };
+
+    @Autowired
+    public QueueService(SongRepository songRepository, PlaylistRepository playlistRepository,
+                        PlaylistSongRepository playlistSongRepository, LikedSongRepository likedSongRepository,
+                        PlayCountService playCountService, CatalogVersion catalogVersion,
+                        @Value("${riftradio.queue.liked-weight:3.0}") double likedWeight,
+                        @Value("${riftradio.queue.cache-ttl-ms:60000}") long cacheTtlMillis) {
+        this.songRepository = songRepository;
+        this.playlistRepository = playlistRepository;
+        this.playlistSongRepository = playlistSongRepository;
+        this.likedSongRepository = likedSongRepository;
+        this.playCountService = playCountService;
+        this.catalogVersion = catalogVersion;
+        this.likedWeight = likedWeight;
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    /**
+     * @param seed the seed of an earlier page, or null to start a new queue
+     */
+    public QueuePageDto getQueue(QueueSource source, QueueMode mode, Long seed, int offset, int limit) {
+        if (offset < 0 || limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("offset must be >= 0 and limit between 1 and " + MAX_PAGE_SIZE);
+        }
+        long queueSeed = seed != null ? seed : ThreadLocalRandom.current().nextLong();
+        PreparedSource prepared = prepare(source);
+        long[] ids = prepared.ids;
+        int end = (int) Math.min((long) offset + limit, ids.length);
+        long[] page = offset >= end ? new long[0]
+                : mode == QueueMode.SHUFFLE
+                ? shuffled(ids, queueSeed, offset, end)
+                : weighted(prepared, queueSeed, offset, end);
+        return new QueuePageDto(source.toString(), mode.name().toLowerCase(), queueSeed, ids.length, offset, page);
+    }
+
+    /**
+     * Positions {@code [from, to)} of a Fisher-Yates shuffle; only the first {@code to} swaps
+     * are performed.
+     */
+    static long[] shuffled(long[] ids, long seed, int from, int to) {
+        long[] order = ids.clone();
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < to; i++) {
+            int j = i + random.nextInt(order.length - i);
+            long swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return Arrays.copyOfRange(order, from, to);
+    }
+
+    /**
+     * Positions {@code [from, to)} of a weighted queue as long as the source. A draw that
+     * repeats one of the last {@link #RECENT_WINDOW} songs, fewer for small sources, is
+     * redrawn up to {@link #MAX_REDRAWS} times, so heavy songs come back often but not back
+     * to back.
+     */
+    static long[] weighted(PreparedSource prepared, long seed, int from, int to) {
+        AliasSampler sampler = prepared.sampler();
+        SplittableRandom random = new SplittableRandom(seed);
+        // A window close to the source size would turn the draws into a plain shuffle
+        int window = Math.min(RECENT_WINDOW, prepared.ids.length / 4);
+        int[] recent = new int[Math.max(window, 1)];
+        Set<Integer> recentSet = new HashSet<>();
+        long[] page = new long[to - from];
+        for (int position = 0; position < to; position++) {
+            int drawn = sampler.draw(random);
+            for (int attempt = 0; attempt < MAX_REDRAWS && recentSet.contains(drawn); attempt++) {
+                drawn = sampler.draw(random);
+            }
+            if (window > 0) {
+                if (position >= window) {
+                    recentSet.remove(recent[position % window]);
+                }
+                recent[position % window] = drawn;
+                recentSet.add(drawn);
+            }
+            if (position >= from) {
+                page[position - from] = prepared.ids[drawn];
+            }
+        }
+        return page;
+    }
+
+    private PreparedSource prepare(QueueSource source) {
+        String key = source.toString();
+        long version = catalogVersion.current();
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            PreparedSource cached = cache.get(key);
+            if (cached != null && cached.version == version && now - cached.createdAt < cacheTtlMillis) {
+                return cached;
+            }
+        }
+        PreparedSource prepared = new PreparedSource(loadIds(source), version, now);
+        synchronized (cache) {
+            cache.put(key, prepared);
+        }
+        return prepared;
+    }
+
+    private long[] loadIds(QueueSource source) {
+        List<Long> ids;
+        switch (source.getKind()) {
+            case LIKED:
+                ids = likedSongRepository.findAllSongIds();
+                break;
+            case PLAYLIST:
+                if (!playlistRepository.existsById(source.getPlaylistId())) {
+                    throw new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found");
+                }
+                ids = playlistSongRepository.findOrderedSongIds(source.getPlaylistId());
+                break;
+            default:
+                ids = songRepository.findAllIds();
+                break;
+        }
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * 1 + ln(1 + plays), multiplied by the liked weight for liked songs. The logarithm keeps a
+     * song played a thousand times from drowning out the rest of the library.
+     */
+    private double[] weights(long[] ids) {
+        Set<Long> liked = new HashSet<>(likedSongRepository.findAllSongIds());
+        Map<Long, Long> plays = playCountService.getAllPlayCounts();
+        double[] weights = new double[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            Long count = plays.get(ids[i]);
+            double weight = 1 + Math.log1p(count == null ? 0 : count);
+            weights[i] = liked.contains(ids[i]) ? weight * likedWeight : weight;
+        }
+        return weights;
+    }
+
+    final class PreparedSource {
+        private final long[] ids;
+        private final long version;
+        private final long createdAt;
+        private AliasSampler sampler;
+
+        private PreparedSource(long[] ids, long version, long createdAt) {
+            this.ids = ids;
+            this.version = version;
+            this.createdAt = createdAt;
+        }
+
+        // Built on first weighted use; shuffle queues never need the weights
+        synchronized AliasSampler sampler() {
+            if (sampler == null) {
+                sampler = new AliasSampler(weights(ids));
+            }
+            return sampler;
+        }
+    }
+}
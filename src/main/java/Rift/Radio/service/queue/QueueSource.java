@@ -0,0 +1,54 @@
+package Rift.Radio.service.queue;
+
+/**
+ * Where a queue's songs come from: {@code catalog}, {@code liked} or {@code playlist:{id}}.
+ */
+public final class QueueSource {
+
+    enum Kind {
+        CATALOG,
+        LIKED,
+        PLAYLIST
+    }
+
+    private static final String PLAYLIST_PREFIX = "playlist:";
+
+    private final Kind kind;
+    private final Long playlistId;
+
+    private QueueSource(Kind kind, Long playlistId) {
+        this.kind = kind;
+        this.playlistId = playlistId;
+    }
+
+    public static QueueSource parse(String source) {
+        String value = source == null ? "" : source.trim();
+        if ("catalog".equalsIgnoreCase(value)) {
+            return new QueueSource(Kind.CATALOG, null);
+        }
+        if ("liked".equalsIgnoreCase(value)) {
+            return new QueueSource(Kind.LIKED, null);
+        }
+        if (value.regionMatches(true, 0, PLAYLIST_PREFIX, 0, PLAYLIST_PREFIX.length())) {
+            try {
+                return new QueueSource(Kind.PLAYLIST, Long.parseLong(value.substring(PLAYLIST_PREFIX.length())));
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+        }
+        throw new IllegalArgumentException("Unsupported queue source: " + source);
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    Long getPlaylistId() {
+        return playlistId;
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.PLAYLIST ? PLAYLIST_PREFIX + playlistId : kind.name().toLowerCase();
+    }
+}
@@ -0,0 +1,15 @@
+package Rift.Radio.service.reconcile;
+
+/**
+ * Size and modification time of a file, as read by the {@link StorageWalker}.
+ */
+final class FileState {
+
+    final long size;
+    final long modifiedAt;
+
+    FileState(long size, long modifiedAt) {
+        this.size = size;
+        this.modifiedAt = modifiedAt;
+    }
+}
@@ -0,0 +1,78 @@
+package Rift.Radio.service.reconcile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * How far a reconciliation run got: songs up to {@link #lastSongId} have been verified. Saved
+ * after every batch, so a run cut short by a restart resumes there instead of hashing the
+ * whole library again, and removed when the run finishes.
+ */
+final class ReconcileCheckpoint {
+
+    final String runId;
+    final boolean repair;
+    final boolean deep;
+    final long startedAt;
+    volatile long lastSongId;
+
+    ReconcileCheckpoint(String runId, boolean repair, boolean deep, long startedAt, long lastSongId) {
+        this.runId = runId;
+        this.repair = repair;
+        this.deep = deep;
+        this.startedAt = startedAt;
+        this.lastSongId = lastSongId;
+    }
+
+    static ReconcileCheckpoint start(boolean repair, boolean deep) {
+        return new ReconcileCheckpoint(UUID.randomUUID().toString(), repair, deep, System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * The checkpoint of an unfinished run, or null when there is none.
+     */
+    static ReconcileCheckpoint load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        try {
+            return new ReconcileCheckpoint(properties.getProperty("runId"),
+                    Boolean.parseBoolean(properties.getProperty("repair")),
+                    Boolean.parseBoolean(properties.getProperty("deep")),
+                    Long.parseLong(properties.getProperty("startedAt")),
+                    Long.parseLong(properties.getProperty("lastSongId")));
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed reconciliation checkpoint " + file, e);
+        }
+    }
+
+    void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("runId", runId);
+        properties.setProperty("repair", Boolean.toString(repair));
+        properties.setProperty("deep", Boolean.toString(deep));
+        properties.setProperty("startedAt", Long.toString(startedAt));
+        properties.setProperty("lastSongId", Long.toString(lastSongId));
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "checkpoint", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, "Reconciliation checkpoint");
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
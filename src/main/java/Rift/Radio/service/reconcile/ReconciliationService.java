@@ -0,0 +1,564 @@
+package Rift.Radio.service.reconcile;
+
+import Rift.Radio.dto.ReconcileIssueDto;
+import Rift.Radio.dto.ReconcileIssueType;
+import Rift.Radio.dto.ReconcileReportDto;
+import Rift.Radio.modal.Song;
+import Rift.Radio.modal.SongFileState;
+import Rift.Radio.repository.SongFileStateRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.SongService;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.fingerprint.FingerprintService;
+import Rift.Radio.service.metadata.AudioMetadata;
+import Rift.Radio.service.metadata.Mp3MetadataParser;
+import Rift.Radio.service.storage.FileRetirementService;
+import Rift.Radio.service.storage.LocalSongStorage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the song table with the files in storage.
+ * <p>
+ * A run walks the storage directory with a parallel {@link StorageWalker}, then reads song
+ * rows in keyset pages of {@link #BATCH_SIZE}. Each row claims its file; a row without one is
+ * a missing file, and files no row claims are orphans. Claimed files are compared with the
+ * size, time and SHA-256 recorded in song_file_state the last time they were verified, and
+ * are only hashed again when size or time changed, or on a deep run. Hashing runs in parallel
+ * on the service's pool. After every page the last song id is written to a checkpoint, so a
+ * run interrupted by a restart continues from there. A file moved to the cold storage tier is
+ * looked up through {@link LocalSongStorage}; the cold tier itself is not walked. Files an edit
+ * replaced are not orphans until {@link FileRetirementService} has deleted them.
+ * <p>
+ * With repair on, a missing file is linked to an orphan with the same name when there is one,
+ * and its song is deleted otherwise; remaining orphans are moved to a quarantine directory; a
+ * changed file is accepted, refreshing the song's duration, bitrate and fingerprint.
+ */
+@Service
+// Walks the local storage directory; object storage has nothing to walk
+@ConditionalOnProperty(name = "riftradio.storage.type", havingValue = "local", matchIfMissing = true)
+public class ReconciliationService {
+
+    private final Logger log = LoggerFactory.getLogger(ReconciliationService.class);
+
+    static final int BATCH_SIZE = 500;
+    static final int MAX_REPORTED_ISSUES = 1000;
+    // Files this young may belong to an upload whose song row is not committed yet
+    static final long ORPHAN_GRACE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int HASH_BUFFER_SIZE = 256 * 1024;
+
+    private final SongRepository songRepository;
+    private final SongFileStateRepository fileStateRepository;
+    private final SongService songService;
+    private final Mp3MetadataParser metadataParser;
+    private final FingerprintService fingerprintService;
+    private final LocalSongStorage songStorage;
+    private final FileRetirementService fileRetirementService;
+    private final TransactionTemplate transactionTemplate;
+    private final Path storageDir;
+    private final Path quarantineDir;
+    private final Path checkpointFile;
+    private final ForkJoinPool pool;
+    private final StorageWalker walker;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Run current;
+
+    @Autowired
+    public ReconciliationService(SongRepository songRepository, SongFileStateRepository fileStateRepository,
+                                 SongService songService, Mp3MetadataParser metadataParser,
+                                 FingerprintService fingerprintService, LocalSongStorage songStorage,
+                                 FileRetirementService fileRetirementService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${riftradio.reconcile.quarantine-dir:data/orphans}")
+                                 String quarantineDir,
+                                 @Value("${riftradio.reconcile.checkpoint-file:data/reconcile/checkpoint.properties}")
+                                 String checkpointFile) {
+        this.songRepository = songRepository;
+        this.fileStateRepository = fileStateRepository;
+        this.songService = songService;
+        this.metadataParser = metadataParser;
+        this.fingerprintService = fingerprintService;
+        this.songStorage = songStorage;
+        this.fileRetirementService = fileRetirementService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Also used from after-commit listeners, where the finished transaction is still bound
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.storageDir = songStorage.getDirectory();
+        this.quarantineDir = Paths.get(quarantineDir).toAbsolutePath().normalize();
+        this.checkpointFile = Paths.get(checkpointFile);
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this.walker = new StorageWalker(pool);
+    }
+
+    /**
+     * Starts a run in the background. Returns false when one is already running.
+     */
+    public boolean start(boolean repair, boolean deep) {
+        return start(ReconcileCheckpoint.start(repair, deep));
+    }
+
+    private boolean start(ReconcileCheckpoint checkpoint) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Run run = new Run(checkpoint);
+        current = run;
+        pool.execute(() -> {
+            try {
+                execute(run);
+            } catch (RuntimeException e) {
+                run.phase = "failed";
+                log.warn("Reconciliation run {} failed after song {}, its checkpoint is kept",
+                        checkpoint.runId, checkpoint.lastSongId, e);
+            } finally {
+                run.finishedAt = Instant.now();
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Continues a run that a shutdown interrupted.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        try {
+            ReconcileCheckpoint checkpoint = ReconcileCheckpoint.load(checkpointFile);
+            if (checkpoint != null) {
+                log.info("Resuming reconciliation run {} after song {}", checkpoint.runId, checkpoint.lastSongId);
+                start(checkpoint);
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable reconciliation checkpoint {}", checkpointFile, e);
+        }
+    }
+
+    // Report only; repairs are left to an administrator
+    @Scheduled(cron = "${riftradio.reconcile.cron:0 0 5 * * *}")
+    public void scheduledRun() {
+        start(false, false);
+    }
+
+    /**
+     * Progress of the current run, or the result of the last one; null before the first run.
+     */
+    public ReconcileReportDto getReport() {
+        Run run = current;
+        return run == null ? null : run.report(running.get() && run.finishedAt == null);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getType() != CatalogChangeType.SONG_DELETED) {
+            return;
+        }
+        for (Long songId : event.getSongIds()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> fileStateRepository.deleteBySongId(songId));
+            } catch (RuntimeException e) {
+                log.warn("Could not remove the file state of deleted song {}", songId, e);
+            }
+        }
+    }
+
+    private void execute(Run run) {
+        ReconcileCheckpoint checkpoint = run.checkpoint;
+        long started = System.currentTimeMillis();
+        run.phase = "walking storage";
+        Map<Path, FileState> unclaimed = walker.walk(storageDir, run.walked);
+
+        run.phase = "checking songs";
+        List<ReconcileIssueDto> missing = new ArrayList<>();
+        long after = 0;
+        while (true) {
+            List<Object[]> rows = songRepository.findFilePathsAfter(after, PageRequest.of(0, BATCH_SIZE));
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Claim> toVerify = new ArrayList<>();
+            for (Object[] row : rows) {
+                Long songId = (Long) row[0];
+                String filePath = (String) row[1];
+                Path path = normalize(filePath);
+                FileState state = path == null ? null : unclaimed.remove(path);
+                if (state == null && path != null && !path.startsWith(storageDir)) {
+                    state = stat(path);
+                }
+                if (state == null && path != null) {
+                    // In the cold tier, or moved there or back since the walk
+                    Path local = songStorage.localPath(filePath).toAbsolutePath().normalize();
+                    state = stat(local);
+                    path = local;
+                }
+                if (state == null) {
+                    ReconcileIssueDto issue = new ReconcileIssueDto(ReconcileIssueType.MISSING_FILE, songId, filePath,
+                            "No file at this path");
+                    missing.add(issue);
+                    run.add(issue);
+                } else if (songId > checkpoint.lastSongId) {
+                    toVerify.add(new Claim(songId, path, state));
+                }
+            }
+            verify(run, toVerify);
+            after = (Long) rows.get(rows.size() - 1)[0];
+            run.checked.addAndGet(rows.size());
+            if (after > checkpoint.lastSongId) {
+                checkpoint.lastSongId = after;
+                saveCheckpoint(checkpoint);
+            }
+        }
+
+        run.phase = "finding orphans";
+        long cutoff = System.currentTimeMillis() - ORPHAN_GRACE_MILLIS;
+        Map<Path, FileState> candidates = new HashMap<>();
+        for (Map.Entry<Path, FileState> entry : unclaimed.entrySet()) {
+            // A file an edit replaced is still served until it is retired
+            if (entry.getValue().modifiedAt < cutoff && !fileRetirementService.isRetired(entry.getKey().toString())) {
+                candidates.put(entry.getKey(), entry.getValue());
+            }
+        }
+        candidates.keySet().removeAll(deletedSongFiles(candidates.keySet()));
+        Map<Path, ReconcileIssueDto> orphans = new HashMap<>();
+        for (Map.Entry<Path, FileState> entry : candidates.entrySet()) {
+            ReconcileIssueDto issue = new ReconcileIssueDto(ReconcileIssueType.ORPHAN_FILE, null,
+                    entry.getKey().toString(), entry.getValue().size + " bytes, no song refers to it");
+            orphans.put(entry.getKey(), issue);
+            run.add(issue);
+        }
+
+        if (checkpoint.repair) {
+            run.phase = "repairing";
+            repairMissing(missing, orphans);
+            quarantine(orphans);
+        }
+
+        run.phase = "done";
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            log.warn("Could not remove reconciliation checkpoint {}", checkpointFile, e);
+        }
+        log.info("Reconciliation run {} checked {} songs and {} files in {} ms: {} issues",
+                checkpoint.runId, run.checked.get(), run.walked.get(), System.currentTimeMillis() - started,
+                run.issueCount.get());
+    }
+
+    // Files of deleted songs are not orphans while SongPurgeService has yet to delete them
+    private Set<Path> deletedSongFiles(Set<Path> files) {
+        List<String> keys = new ArrayList<>(files.size());
+        for (Path file : files) {
+            keys.add(file.toString());
+        }
+        Set<Path> stored = new HashSet<>();
+        for (int from = 0; from < keys.size(); from += BATCH_SIZE) {
+            List<String> batch = keys.subList(from, Math.min(from + BATCH_SIZE, keys.size()));
+            for (String key : songRepository.findStoredFilePaths(batch)) {
+                stored.add(Paths.get(key));
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Compares claimed files with their recorded state, hashing in parallel where needed, and
+     * stores the new state of files that were hashed.
+     */
+    private void verify(Run run, List<Claim> claims) {
+        if (claims.isEmpty()) {
+            return;
+        }
+        List<Long> songIds = new ArrayList<>(claims.size());
+        for (Claim claim : claims) {
+            songIds.add(claim.songId);
+        }
+        Map<Long, SongFileState> recorded = new HashMap<>();
+        for (SongFileState state : fileStateRepository.findAllById(songIds)) {
+            recorded.put(state.getSongId(), state);
+        }
+
+        List<Callable<String>> hashes = new ArrayList<>();
+        List<Claim> hashed = new ArrayList<>();
+        for (Claim claim : claims) {
+            SongFileState before = recorded.get(claim.songId);
+            if (run.checkpoint.deep || before == null || before.getSize() != claim.state.size
+                    || before.getModifiedAt() != claim.state.modifiedAt) {
+                hashed.add(claim);
+                hashes.add(() -> {
+                    String hash = sha256(claim.path);
+                    run.hashed.incrementAndGet();
+                    return hash;
+                });
+            }
+        }
+        List<String> results = invokeAll(hashes);
+
+        List<SongFileState> updates = new ArrayList<>();
+        for (int i = 0; i < hashed.size(); i++) {
+            Claim claim = hashed.get(i);
+            String hash = results.get(i);
+            if (hash == null) {
+                continue;
+            }
+            SongFileState before = recorded.get(claim.songId);
+            boolean changed = before != null
+                    && (before.getSize() != claim.state.size || !before.getSha256().equals(hash));
+            if (changed) {
+                ReconcileIssueDto issue = new ReconcileIssueDto(ReconcileIssueType.CHANGED_FILE, claim.songId,
+                        claim.path.toString(), before.getSize() != claim.state.size
+                        ? "Size changed from " + before.getSize() + " to " + claim.state.size + " bytes"
+                        : "Content changed, same size");
+                run.add(issue);
+                if (!run.checkpoint.repair) {
+                    // Keeps the old state, so the change is reported again until it is repaired
+                    continue;
+                }
+                refresh(claim, hash);
+                issue.setRepair("Accepted the new file and refreshed the song");
+            }
+            updates.add(state(claim, hash));
+        }
+        if (!updates.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> fileStateRepository.saveAll(updates));
+        }
+    }
+
+    private void refresh(Claim claim, String hash) {
+        AudioMetadata metadata = metadataParser.parse(claim.path);
+        songRepository.findById(claim.songId).ifPresent(song -> {
+            song.setFileHash(hash);
+            song.setDurationMs(metadata.getDurationMs() > 0 ? metadata.getDurationMs() : null);
+            song.setBitrate(metadata.getBitrate() > 0 ? metadata.getBitrate() : null);
+            songRepository.save(song);
+        });
+        fingerprintService.register(claim.songId, fingerprintService.fingerprint(claim.path, metadata));
+    }
+
+    private void repairMissing(List<ReconcileIssueDto> missing, Map<Path, ReconcileIssueDto> orphans) {
+        Map<String, Path> orphansByName = new HashMap<>();
+        for (Path orphan : orphans.keySet()) {
+            orphansByName.put(orphan.getFileName().toString().toLowerCase(Locale.ROOT), orphan);
+        }
+        for (ReconcileIssueDto issue : missing) {
+            try {
+                Path path = normalize(issue.getPath());
+                Path match = path == null ? null
+                        : orphansByName.remove(path.getFileName().toString().toLowerCase(Locale.ROOT));
+                if (match != null) {
+                    Song song = songRepository.findById(issue.getSongId()).orElse(null);
+                    if (song != null) {
+                        song.setFilePath(match.toString());
+                        songRepository.save(song);
+                        orphans.remove(match).setRepair("Linked to song " + issue.getSongId());
+                        issue.setRepair("Linked to " + match);
+                        continue;
+                    }
+                }
+                songService.deleteSong(issue.getSongId());
+                issue.setRepair("Deleted the song");
+            } catch (RuntimeException e) {
+                log.warn("Could not repair missing file of song {}", issue.getSongId(), e);
+            }
+        }
+    }
+
+    private void quarantine(Map<Path, ReconcileIssueDto> orphans) {
+        for (Iterator<Map.Entry<Path, ReconcileIssueDto>> it = orphans.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, ReconcileIssueDto> entry = it.next();
+            Path target = quarantineDir.resolve(storageDir.relativize(entry.getKey()));
+            try {
+                Files.createDirectories(target.getParent());
+                Files.move(entry.getKey(), target);
+                entry.getValue().setRepair("Moved to " + target);
+            } catch (IOException e) {
+                log.warn("Could not move orphan '{}' to quarantine", entry.getKey(), e);
+            }
+            it.remove();
+        }
+    }
+
+    private void saveCheckpoint(ReconcileCheckpoint checkpoint) {
+        try {
+            checkpoint.save(checkpointFile);
+        } catch (IOException e) {
+            log.warn("Could not save reconciliation checkpoint {}", checkpointFile, e);
+        }
+    }
+
+    // Seed rows hold paths relative to the working directory, uploads hold absolute ones
+    private static Path normalize(String filePath) {
+        try {
+            return filePath == null ? null : Paths.get(filePath).toAbsolutePath().normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private static FileState stat(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            return attributes.isRegularFile()
+                    ? new FileState(attributes.size(), attributes.lastModifiedTime().toMillis()) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static SongFileState state(Claim claim, String hash) {
+        SongFileState state = new SongFileState();
+        state.setSongId(claim.songId);
+        state.setSize(claim.state.size);
+        state.setModifiedAt(claim.state.modifiedAt);
+        state.setSha256(hash);
+        state.setCheckedAt(System.currentTimeMillis());
+        return state;
+    }
+
+    // Null when the file cannot be read, which leaves it for the next run
+    private String sha256(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (IOException e) {
+            log.warn("Could not hash '{}'", file, e);
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Reconciliation failed", e.getCause());
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // Runs in the calling thread
+    ReconcileReportDto runNow(ReconcileCheckpoint checkpoint) {
+        Run run = new Run(checkpoint);
+        current = run;
+        execute(run);
+        run.finishedAt = Instant.now();
+        return run.report(false);
+    }
+
+    private static final class Claim {
+
+        final Long songId;
+        final Path path;
+        final FileState state;
+
+        Claim(Long songId, Path path, FileState state) {
+            this.songId = songId;
+            this.path = path;
+            this.state = state;
+        }
+    }
+
+    private static final class Run {
+
+        final ReconcileCheckpoint checkpoint;
+        final long resumedAfter;
+        final AtomicLong walked = new AtomicLong();
+        final AtomicLong checked = new AtomicLong();
+        final AtomicLong hashed = new AtomicLong();
+        final AtomicLong issueCount = new AtomicLong();
+        final List<ReconcileIssueDto> issues = Collections.synchronizedList(new ArrayList<ReconcileIssueDto>());
+        volatile String phase = "starting";
+        volatile Instant finishedAt;
+
+        Run(ReconcileCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            this.resumedAfter = checkpoint.lastSongId;
+        }
+
+        void add(ReconcileIssueDto issue) {
+            if (issueCount.getAndIncrement() < MAX_REPORTED_ISSUES) {
+                issues.add(issue);
+            }
+        }
+
+        ReconcileReportDto report(boolean running) {
+            List<ReconcileIssueDto> copy;
+            synchronized (issues) {
+                copy = new ArrayList<>(issues);
+            }
+            return new ReconcileReportDto(checkpoint.runId, running, phase, checkpoint.repair,
+                    Instant.ofEpochMilli(checkpoint.startedAt), finishedAt, walked.get(), checked.get(), hashed.get(),
+                    resumedAfter, copy, (int) issueCount.get());
+        }
+    }
+}
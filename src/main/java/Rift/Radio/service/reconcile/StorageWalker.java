@@ -0,0 +1,118 @@
+package Rift.Radio.service.reconcile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lists every regular file under a directory with its size and modification time.
+ * <p>
+ * Each directory is a fork-join task, and the attributes of a directory's files are read in
+ * chunks of {@link #CHUNK} by further tasks, so the many small stat calls of a large flat
+ * library run on all cores. Symbolic links are not followed. Paths are absolute and
+ * normalized, so they can be compared with the normalized paths of song rows.
+ */
+class StorageWalker {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageWalker.class);
+
+    static final int CHUNK = 256;
+
+    private final ForkJoinPool pool;
+
+    StorageWalker(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    Map<Path, FileState> walk(Path root, AtomicLong walked) {
+        Path directory = root.toAbsolutePath().normalize();
+        if (!Files.isDirectory(directory)) {
+            return new HashMap<>();
+        }
+        return pool.invoke(new DirectoryTask(directory, walked));
+    }
+
+    private static final class DirectoryTask extends RecursiveTask<Map<Path, FileState>> {
+
+        private final Path directory;
+        private final AtomicLong walked;
+
+        DirectoryTask(Path directory, AtomicLong walked) {
+            this.directory = directory;
+            this.walked = walked;
+        }
+
+        @Override
+        protected Map<Path, FileState> compute() {
+            List<Path> files = new ArrayList<>();
+            List<RecursiveTask<Map<Path, FileState>>> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        tasks.add(new DirectoryTask(entry, walked));
+                    } else {
+                        files.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Could not list '{}', its files are left out of this run", directory, e);
+                return new HashMap<>();
+            }
+            for (int from = 0; from < files.size(); from += CHUNK) {
+                tasks.add(new AttributeTask(files.subList(from, Math.min(from + CHUNK, files.size())), walked));
+            }
+            for (RecursiveTask<Map<Path, FileState>> task : tasks) {
+                task.fork();
+            }
+            Map<Path, FileState> result = new HashMap<>(files.size() * 2);
+            // Joined in reverse, so the last forked task is usually still queued and runs here
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                result.putAll(tasks.get(i).join());
+            }
+            return result;
+        }
+    }
+
+    private static final class AttributeTask extends RecursiveTask<Map<Path, FileState>> {
+
+        private final List<Path> files;
+        private final AtomicLong walked;
+
+        AttributeTask(List<Path> files, AtomicLong walked) {
+            this.files = files;
+            this.walked = walked;
+        }
+
+        @Override
+        protected Map<Path, FileState> compute() {
+            Map<Path, FileState> result = new HashMap<>(files.size() * 2);
+            for (Path file : files) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isRegularFile()) {
+                        result.put(file, new FileState(attributes.size(), attributes.lastModifiedTime().toMillis()));
+                        walked.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    // Deleted since the listing
+                }
+            }
+            return result.isEmpty() ? Collections.<Path, FileState>emptyMap() : result;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package Rift.Radio.service.similar;
+
+import java.util.Arrays;
+
+/**
+ * Baskets as int arrays over a dense numbering of song ids, in both directions: the members
+ * of each basket and the baskets of each song. Built once per computation and only read by
+ * the scoring tasks.
+ */
+final class CompactBaskets {
+
+    private final long[] songIds;
+    private final int[][] members;
+    private final int[][] songBaskets;
+
+    CompactBaskets(long[] songIds, int[][] members, int[][] songBaskets) {
+        this.songIds = songIds;
+        this.members = members;
+        this.songBaskets = songBaskets;
+    }
+
+    int songCount() {
+        return songIds.length;
+    }
+
+    long songId(int index) {
+        return songIds[index];
+    }
+
+    /**
+     * Dense index of the song, or a negative value when it is in no basket.
+     */
+    int indexOf(long songId) {
+        return Arrays.binarySearch(songIds, songId);
+    }
+
+    int[] members(int basket) {
+        return members[basket];
+    }
+
+    int[] basketsOf(int song) {
+        return songBaskets[song];
+    }
+}
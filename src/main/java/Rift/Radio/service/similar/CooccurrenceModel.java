@@ -0,0 +1,135 @@
+package Rift.Radio.service.similar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which songs are grouped together: one basket per regular playlist plus one for the liked
+ * songs. Baskets larger than {@code maxBasketSize} are ignored for scoring, since a
+ * thousand-song playlist says little about any pair in it and would make the pair count
+ * quadratic. Not thread-safe; the owning service serializes access.
+ */
+final class CooccurrenceModel {
+
+    static final long LIKED_BASKET = -1L;
+
+    private final int maxBasketSize;
+    private final Map<Long, Set<Long>> baskets = new HashMap<>();
+    private final Map<Long, Set<Long>> songBaskets = new HashMap<>();
+
+    CooccurrenceModel(int maxBasketSize) {
+        this.maxBasketSize = maxBasketSize;
+    }
+
+    void clear() {
+        baskets.clear();
+        songBaskets.clear();
+    }
+
+    void add(long basket, Collection<Long> songIds) {
+        Set<Long> members = baskets.computeIfAbsent(basket, id -> new HashSet<>());
+        for (Long songId : songIds) {
+            if (members.add(songId)) {
+                songBaskets.computeIfAbsent(songId, id -> new HashSet<>()).add(basket);
+            }
+        }
+    }
+
+    void remove(long basket, Collection<Long> songIds) {
+        Set<Long> members = baskets.get(basket);
+        if (members == null) {
+            return;
+        }
+        for (Long songId : songIds) {
+            if (members.remove(songId)) {
+                Set<Long> in = songBaskets.get(songId);
+                in.remove(basket);
+                if (in.isEmpty()) {
+                    songBaskets.remove(songId);
+                }
+            }
+        }
+        if (members.isEmpty()) {
+            baskets.remove(basket);
+        }
+    }
+
+    void removeSong(long songId) {
+        Set<Long> in = songBaskets.get(songId);
+        if (in == null) {
+            return;
+        }
+        for (Long basket : new ArrayList<>(in)) {
+            remove(basket, Collections.singletonList(songId));
+        }
+    }
+
+    /**
+     * Songs sharing a scored basket with any of {@code songIds}. Their scores against those
+     * songs depend on the songs' basket counts, so they must be recomputed with them.
+     */
+    Set<Long> coOccurring(Collection<Long> songIds) {
+        Set<Long> result = new HashSet<>();
+        for (Long songId : songIds) {
+            Set<Long> in = songBaskets.get(songId);
+            if (in == null) {
+                continue;
+            }
+            for (Long basket : in) {
+                Set<Long> members = baskets.get(basket);
+                if (members.size() <= maxBasketSize) {
+                    result.addAll(members);
+                }
+            }
+        }
+        return result;
+    }
+
+    int songCount() {
+        return songBaskets.size();
+    }
+
+    CompactBaskets compact() {
+        long[] songIds = new long[songBaskets.size()];
+        int i = 0;
+        for (Long songId : songBaskets.keySet()) {
+            songIds[i++] = songId;
+        }
+        Arrays.sort(songIds);
+
+        List<int[]> members = new ArrayList<>();
+        int[] basketCounts = new int[songIds.length];
+        for (Set<Long> basket : baskets.values()) {
+            if (basket.size() < 2 || basket.size() > maxBasketSize) {
+                continue;
+            }
+            int[] indexes = new int[basket.size()];
+            int j = 0;
+            for (Long songId : basket) {
+                indexes[j] = Arrays.binarySearch(songIds, songId);
+                basketCounts[indexes[j]]++;
+                j++;
+            }
+            members.add(indexes);
+        }
+
+        int[][] songBasketIndexes = new int[songIds.length][];
+        for (int song = 0; song < songIds.length; song++) {
+            songBasketIndexes[song] = new int[basketCounts[song]];
+        }
+        int[] filled = new int[songIds.length];
+        for (int basket = 0; basket < members.size(); basket++) {
+            for (int song : members.get(basket)) {
+                songBasketIndexes[song][filled[song]++] = basket;
+            }
+        }
+        return new CompactBaskets(songIds, members.toArray(new int[0][]), songBasketIndexes);
+    }
+}
@@ -0,0 +1,241 @@
+package Rift.Radio.service.similar;
+
+import Rift.Radio.dto.SimilarSongDto;
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.SongException;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.LikedSongRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.smart.SmartPlaylistIndex;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * "Similar songs" from co-occurrence: two songs are similar when the same playlists, or the
+ * liked songs, contain both.
+ * <p>
+ * A full build scores every song on a dedicated fork-join pool and keeps its top
+ * {@code neighbours} in a {@link SimilarityIndex}. Afterwards, catalog events are queued and
+ * applied by a periodic refresh that recomputes only the rows they can change: the touched
+ * songs and every song sharing a basket with them. A nightly full build corrects any drift.
+ */
+@Service
+public class SimilarSongsService {
+
+    private final Logger log = LoggerFactory.getLogger(SimilarSongsService.class);
+
+    public static final int MAX_LIMIT = 50;
+
+    private final PlaylistSongRepository playlistSongRepository;
+    private final LikedSongRepository likedSongRepository;
+    private final SongRepository songRepository;
+    private final SmartPlaylistIndex smartPlaylistIndex;
+    private final Similarity similarity;
+    private final int neighbours;
+    private final ForkJoinPool pool;
+
+    private final ConcurrentLinkedQueue<CatalogChangeEvent> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final CooccurrenceModel model;
+    private volatile SimilarityIndex index = SimilarityIndex.EMPTY;
+
+    @Autowired
+    public SimilarSongsService(PlaylistSongRepository playlistSongRepository, LikedSongRepository likedSongRepository,
+                               SongRepository songRepository, SmartPlaylistIndex smartPlaylistIndex,
+                               @Value("${riftradio.similar.scoring:COSINE}") Similarity similarity,
+                               @Value("${riftradio.similar.neighbours:20}") int neighbours,
+                               @Value("${riftradio.similar.max-basket-size:1000}") int maxBasketSize) {
+        this.playlistSongRepository = playlistSongRepository;
+        this.likedSongRepository = likedSongRepository;
+        this.songRepository = songRepository;
+        this.smartPlaylistIndex = smartPlaylistIndex;
+        this.similarity = similarity;
+        this.neighbours = neighbours;
+        this.model = new CooccurrenceModel(maxBasketSize);
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    public List<SimilarSongDto> getSimilar(Long songId, int limit) {
+        List<SimilarityIndex.Neighbour> similar = index.neighbours(songId, Math.max(1, Math.min(limit, MAX_LIMIT)));
+        if (similar.isEmpty()) {
+            if (!songRepository.existsById(songId)) {
+                throw new SongException(ErrorType.SONG_NOT_FOUND, "Song not found");
+            }
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(similar.size());
+        for (SimilarityIndex.Neighbour neighbour : similar) {
+            ids.add(neighbour.getSongId());
+        }
+        Map<Long, Song> songs = new HashMap<>();
+        for (Song song : songRepository.findAllById(ids)) {
+            songs.put(song.getId(), song);
+        }
+        List<SimilarSongDto> result = new ArrayList<>(similar.size());
+        for (SimilarityIndex.Neighbour neighbour : similar) {
+            Song song = songs.get(neighbour.getSongId());
+            if (song != null) {
+                result.add(new SimilarSongDto(song.getId(), song.getSongName(), song.getArtistName(),
+                        neighbour.getScore()));
+            }
+        }
+        return result;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        switch (event.getType()) {
+            case PLAYLIST_CREATED:
+            case PLAYLIST_SONGS_ADDED:
+            case PLAYLIST_SONGS_REMOVED:
+                if (!smartPlaylistIndex.isSmart(event.getPlaylistId())) {
+                    pendingChanges.add(event);
+                }
+                break;
+            case SONG_LIKED:
+            case SONG_UNLIKED:
+            case SONG_DELETED:
+                pendingChanges.add(event);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Rebuilds the model from the database and scores every song. Changes queued while the
+     * memberships load are replayed on top; applying one twice is harmless.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${riftradio.similar.rebuild-cron:0 30 3 * * *}")
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        List<CatalogChangeEvent> queued = new ArrayList<>(pendingChanges);
+        List<Object[]> memberships = playlistSongRepository.findManualMemberships();
+        List<Long> liked = likedSongRepository.findAllSongIds();
+
+        model.clear();
+        for (Object[] row : memberships) {
+            model.add((Long) row[0], Collections.singletonList((Long) row[1]));
+        }
+        model.add(CooccurrenceModel.LIKED_BASKET, liked);
+        for (CatalogChangeEvent event : queued) {
+            apply(event);
+        }
+        pendingChanges.removeAll(queued);
+
+        CompactBaskets data = model.compact();
+        int[] all = new int[data.songCount()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        index = SimilarityIndex.of(score(data, all));
+        log.info("Built similar songs for {} songs in {} ms", index.size(), System.currentTimeMillis() - started);
+    }
+
+    @Scheduled(fixedDelayString = "${riftradio.similar.refresh-interval-ms:30000}")
+    public synchronized void refresh() {
+        List<CatalogChangeEvent> changes = new ArrayList<>();
+        CatalogChangeEvent next;
+        while ((next = pendingChanges.poll()) != null) {
+            changes.add(next);
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        Set<Long> touched = new HashSet<>();
+        for (CatalogChangeEvent change : changes) {
+            touched.addAll(change.getSongIds());
+        }
+        // Neighbours before the change cover removals, neighbours after it cover additions
+        Set<Long> dirty = new HashSet<>(touched);
+        dirty.addAll(model.coOccurring(touched));
+        for (CatalogChangeEvent change : changes) {
+            apply(change);
+        }
+        dirty.addAll(model.coOccurring(touched));
+
+        CompactBaskets data = model.compact();
+        List<Integer> targets = new ArrayList<>(dirty.size());
+        Map<Long, SimilarityIndex.Row> changed = new HashMap<>();
+        for (Long songId : dirty) {
+            int i = data.indexOf(songId);
+            if (i >= 0) {
+                targets.add(i);
+            } else {
+                changed.put(songId, new SimilarityIndex.Row(new long[0], new float[0]));
+            }
+        }
+        int[] indexes = new int[targets.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = targets.get(i);
+        }
+        changed.putAll(score(data, indexes));
+        index = index.merge(changed);
+        log.debug("Refreshed similar songs of {} songs after {} changes", changed.size(), changes.size());
+    }
+
+    private void apply(CatalogChangeEvent event) {
+        switch (event.getType()) {
+            case PLAYLIST_CREATED:
+            case PLAYLIST_SONGS_ADDED:
+                model.add(event.getPlaylistId(), event.getSongIds());
+                break;
+            case PLAYLIST_SONGS_REMOVED:
+                model.remove(event.getPlaylistId(), event.getSongIds());
+                break;
+            case SONG_LIKED:
+                model.add(CooccurrenceModel.LIKED_BASKET, event.getSongIds());
+                break;
+            case SONG_UNLIKED:
+                model.remove(CooccurrenceModel.LIKED_BASKET, event.getSongIds());
+                break;
+            case SONG_DELETED:
+                for (Long songId : event.getSongIds()) {
+                    model.removeSong(songId);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Map<Long, SimilarityIndex.Row> score(CompactBaskets data, int[] targets) {
+        SimilarityIndex.Row[] rows = new SimilarityIndex.Row[targets.length];
+        pool.invoke(new SimilarityTask(data, targets, similarity, neighbours, rows));
+        Map<Long, SimilarityIndex.Row> result = new HashMap<>(targets.length * 2);
+        for (int i = 0; i < targets.length; i++) {
+            result.put(data.songId(targets[i]), rows[i]);
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    SimilarityIndex currentIndex() {
+        return index;
+    }
+}
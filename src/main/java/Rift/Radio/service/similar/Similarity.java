@@ -0,0 +1,23 @@
+package Rift.Radio.service.similar;
+
+/**
+ * How two songs' co-occurrence count is turned into a score, given how many baskets each
+ * appears in.
+ */
+public enum Similarity {
+
+    COSINE {
+        @Override
+        double score(int together, int left, int right) {
+            return together / Math.sqrt((double) left * right);
+        }
+    },
+    JACCARD {
+        @Override
+        double score(int together, int left, int right) {
+            return (double) together / (left + right - together);
+        }
+    };
+
+    abstract double score(int together, int left, int right);
+}
@@ -0,0 +1,132 @@
+package Rift.Radio.service.similar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable top-N neighbours of every song, stored as flat arrays: the sorted song ids, an
+ * offset per song into the neighbour arrays, and the neighbours' ids and scores. A lookup is
+ * a binary search and a slice; the whole index is a handful of arrays regardless of how many
+ * songs it holds.
+ */
+final class SimilarityIndex {
+
+    static final SimilarityIndex EMPTY = new SimilarityIndex(new long[0], new int[]{0}, new long[0], new float[0]);
+
+    private final long[] songIds;
+    private final int[] offsets;
+    private final long[] neighbourIds;
+    private final float[] scores;
+
+    private SimilarityIndex(long[] songIds, int[] offsets, long[] neighbourIds, float[] scores) {
+        this.songIds = songIds;
+        this.offsets = offsets;
+        this.neighbourIds = neighbourIds;
+        this.scores = scores;
+    }
+
+    /**
+     * Neighbours of one song, best first.
+     */
+    static final class Row {
+        final long[] songIds;
+        final float[] scores;
+
+        Row(long[] songIds, float[] scores) {
+            this.songIds = songIds;
+            this.scores = scores;
+        }
+    }
+
+    static final class Neighbour {
+        private final long songId;
+        private final float score;
+
+        Neighbour(long songId, float score) {
+            this.songId = songId;
+            this.score = score;
+        }
+
+        long getSongId() {
+            return songId;
+        }
+
+        float getScore() {
+            return score;
+        }
+    }
+
+    List<Neighbour> neighbours(long songId, int limit) {
+        int i = Arrays.binarySearch(songIds, songId);
+        if (i < 0) {
+            return Collections.emptyList();
+        }
+        int end = Math.min(offsets[i + 1], offsets[i] + limit);
+        List<Neighbour> result = new ArrayList<>(end - offsets[i]);
+        for (int j = offsets[i]; j < end; j++) {
+            result.add(new Neighbour(neighbourIds[j], scores[j]));
+        }
+        return result;
+    }
+
+    int size() {
+        return songIds.length;
+    }
+
+    static SimilarityIndex of(Map<Long, Row> rows) {
+        return build(new TreeMap<>(rows));
+    }
+
+    /**
+     * A new index with {@code changed} replacing this index's rows for the same songs.
+     * Songs whose new row is empty are dropped.
+     */
+    SimilarityIndex merge(Map<Long, Row> changed) {
+        TreeMap<Long, Row> rows = new TreeMap<>();
+        for (int i = 0; i < songIds.length; i++) {
+            if (!changed.containsKey(songIds[i])) {
+                int from = offsets[i];
+                int to = offsets[i + 1];
+                rows.put(songIds[i], new Row(Arrays.copyOfRange(neighbourIds, from, to),
+                        Arrays.copyOfRange(scores, from, to)));
+            }
+        }
+        rows.putAll(changed);
+        return build(rows);
+    }
+
+    private static SimilarityIndex build(TreeMap<Long, Row> rows) {
+        int songs = 0;
+        int total = 0;
+        for (Row row : rows.values()) {
+            if (row.songIds.length > 0) {
+                songs++;
+                total += row.songIds.length;
+            }
+        }
+        long[] songIds = new long[songs];
+        int[] offsets = new int[songs + 1];
+        long[] neighbourIds = new long[total];
+        float[] scores = new float[total];
+        int i = 0;
+        int at = 0;
+        for (Map.Entry<Long, Row> entry : rows.entrySet()) {
+            Row row = entry.getValue();
+            if (row.songIds.length == 0) {
+                continue;
+            }
+            songIds[i] = entry.getKey();
+            offsets[i] = at;
+            System.arraycopy(row.songIds, 0, neighbourIds, at, row.songIds.length);
+            System.arraycopy(row.scores, 0, scores, at, row.scores.length);
+            at += row.songIds.length;
+            i++;
+        }
+        offsets[songs] = at;
+        return new SimilarityIndex(songIds, offsets, neighbourIds, scores);
+    }
+}
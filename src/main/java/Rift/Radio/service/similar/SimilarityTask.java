@@ -0,0 +1,143 @@
+package Rift.Radio.service.similar;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scores the rows of {@code targets} on a fork-join pool, splitting until a slice is small
+ * enough to run on one worker.
+ * <p>
+ * A leaf counts co-occurrences of one song at a time in a dense int array indexed by song,
+ * remembering which entries it touched so resetting costs only those, then keeps the best
+ * {@code topN} with a small min-heap. The pair matrix is never materialized; each row lives
+ * only until its top-N is taken.
+ */
+final class SimilarityTask extends RecursiveAction {
+
+    static final int LEAF_SIZE = 256;
+
+    private final CompactBaskets data;
+    private final int[] targets;
+    private final int from;
+    private final int to;
+    private final Similarity similarity;
+    private final int topN;
+    private final SimilarityIndex.Row[] rows;
+
+    SimilarityTask(CompactBaskets data, int[] targets, Similarity similarity, int topN, SimilarityIndex.Row[] rows) {
+        this(data, targets, 0, targets.length, similarity, topN, rows);
+    }
+
+    private SimilarityTask(CompactBaskets data, int[] targets, int from, int to, Similarity similarity, int topN,
+                           SimilarityIndex.Row[] rows) {
+        this.data = data;
+        this.targets = targets;
+        this.from = from;
+        this.to = to;
+        this.similarity = similarity;
+        this.topN = topN;
+        this.rows = rows;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= LEAF_SIZE) {
+            scoreSlice();
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new SimilarityTask(data, targets, from, mid, similarity, topN, rows),
+                new SimilarityTask(data, targets, mid, to, similarity, topN, rows));
+    }
+
+    private void scoreSlice() {
+        int[] together = new int[data.songCount()];
+        int[] touched = new int[data.songCount()];
+        int[] heapSongs = new int[topN];
+        float[] heapScores = new float[topN];
+        for (int t = from; t < to; t++) {
+            int song = targets[t];
+            int touchedCount = 0;
+            for (int basket : data.basketsOf(song)) {
+                for (int other : data.members(basket)) {
+                    if (other != song && together[other]++ == 0) {
+                        touched[touchedCount++] = other;
+                    }
+                }
+            }
+
+            int ownBaskets = data.basketsOf(song).length;
+            int size = 0;
+            for (int k = 0; k < touchedCount; k++) {
+                int other = touched[k];
+                float score = (float) similarity.score(together[other], ownBaskets, data.basketsOf(other).length);
+                together[other] = 0;
+                if (size < topN) {
+                    heapSongs[size] = other;
+                    heapScores[size] = score;
+                    siftUp(heapSongs, heapScores, size++);
+                } else if (better(score, other, heapScores[0], heapSongs[0])) {
+                    heapSongs[0] = other;
+                    heapScores[0] = score;
+                    siftDown(heapSongs, heapScores, size);
+                }
+            }
+
+            // Popping the min-heap yields the row worst first; fill it from the back
+            long[] songIds = new long[size];
+            float[] scores = new float[size];
+            for (int k = size - 1; k >= 0; k--) {
+                songIds[k] = data.songId(heapSongs[0]);
+                scores[k] = heapScores[0];
+                heapSongs[0] = heapSongs[k];
+                heapScores[0] = heapScores[k];
+                siftDown(heapSongs, heapScores, k);
+            }
+            rows[t] = new SimilarityIndex.Row(songIds, scores);
+        }
+    }
+
+    // Higher score wins; on a tie the lower index does, which keeps rows deterministic
+    private static boolean better(float score, int song, float otherScore, int otherSong) {
+        return score > otherScore || (score == otherScore && song < otherSong);
+    }
+
+    private static void siftUp(int[] songs, float[] scores, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(scores[parent], songs[parent], scores[i], songs[i])) {
+                break;
+            }
+            swap(songs, scores, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] songs, float[] scores, int size) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && better(scores[left], songs[left], scores[right], songs[right])) {
+                worst = right;
+            }
+            if (!better(scores[i], songs[i], scores[worst], songs[worst])) {
+                return;
+            }
+            swap(songs, scores, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void swap(int[] songs, float[] scores, int a, int b) {
+        int song = songs[a];
+        songs[a] = songs[b];
+        songs[b] = song;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,91 @@
+package Rift.Radio.service.smart;
+
+import Rift.Radio.dto.SmartRuleDto;
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.modal.Song;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A smart playlist rule normalised once so that matching a song is a few field comparisons,
+ * with no parsing or allocation per call.
+ */
+public final class CompiledRule {
+
+    private final Long playlistId;
+    private final String genreContains;
+    private final int releaseYearFrom;
+    private final int releaseYearTo;
+    private final Boolean liked;
+    private final Set<String> artists;
+
+    private CompiledRule(Long playlistId, String genreContains, int releaseYearFrom, int releaseYearTo,
+                         Boolean liked, Set<String> artists) {
+        this.playlistId = playlistId;
+        this.genreContains = genreContains;
+        this.releaseYearFrom = releaseYearFrom;
+        this.releaseYearTo = releaseYearTo;
+        this.liked = liked;
+        this.artists = artists;
+    }
+
+    public static CompiledRule compile(Long playlistId, SmartRuleDto rule) {
+        String genre = rule.getGenreContains() == null ? null : normalize(rule.getGenreContains());
+        if (genre != null && genre.isEmpty()) {
+            genre = null;
+        }
+        int from = rule.getReleaseYearFrom() == null ? Integer.MIN_VALUE : rule.getReleaseYearFrom();
+        int to = rule.getReleaseYearTo() == null ? Integer.MAX_VALUE : rule.getReleaseYearTo();
+        if (from > to) {
+            throw new PlaylistException(ErrorType.INVALID_SMART_RULE, "Release year range is empty");
+        }
+        Set<String> artists = new HashSet<>();
+        if (rule.getArtists() != null) {
+            for (String artist : rule.getArtists()) {
+                if (artist != null && !normalize(artist).isEmpty()) {
+                    artists.add(normalize(artist));
+                }
+            }
+        }
+        if (genre == null && rule.getReleaseYearFrom() == null && rule.getReleaseYearTo() == null
+                && rule.getLiked() == null && artists.isEmpty()) {
+            throw new PlaylistException(ErrorType.INVALID_SMART_RULE, "Smart playlist rule has no conditions");
+        }
+        return new CompiledRule(playlistId, genre, from, to, rule.getLiked(), Collections.unmodifiableSet(artists));
+    }
+
+    public boolean matches(Song song) {
+        if (liked != null && song.isLiked() != liked) {
+            return false;
+        }
+        if (song.getReleaseYear() < releaseYearFrom || song.getReleaseYear() > releaseYearTo) {
+            return false;
+        }
+        if (!artists.isEmpty()
+                && (song.getArtistName() == null || !artists.contains(normalize(song.getArtistName())))) {
+            return false;
+        }
+        return genreContains == null
+                || (song.getGenre() != null && normalize(song.getGenre()).contains(genreContains));
+    }
+
+    public Long getPlaylistId() {
+        return playlistId;
+    }
+
+    public Set<String> getArtists() {
+        return artists;
+    }
+
+    public boolean dependsOnLiked() {
+        return liked != null;
+    }
+
+    static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,100 @@
+package Rift.Radio.service.smart;
+
+import Rift.Radio.modal.Song;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of every smart playlist rule. Rules that name artists are keyed by artist,
+ * so a changed song is only checked against rules for its own artist plus the rules that
+ * accept any artist; like/unlike only touches rules that mention liked.
+ * <p>
+ * Readers work on an immutable snapshot; writers rebuild it under a lock, which is cheap
+ * because rules change far less often than songs.
+ */
+@Component
+public class SmartPlaylistIndex {
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.<Long, CompiledRule>emptyMap());
+
+    public synchronized void put(CompiledRule rule) {
+        Map<Long, CompiledRule> rules = new HashMap<>(snapshot.rules);
+        rules.put(rule.getPlaylistId(), rule);
+        snapshot = new Snapshot(rules);
+    }
+
+    public synchronized void replaceAll(Collection<CompiledRule> compiledRules) {
+        Map<Long, CompiledRule> rules = new HashMap<>();
+        for (CompiledRule rule : compiledRules) {
+            rules.put(rule.getPlaylistId(), rule);
+        }
+        snapshot = new Snapshot(rules);
+    }
+
+    public boolean isSmart(Long playlistId) {
+        return snapshot.rules.containsKey(playlistId);
+    }
+
+    public CompiledRule get(Long playlistId) {
+        return snapshot.rules.get(playlistId);
+    }
+
+    public boolean isEmpty() {
+        return snapshot.rules.isEmpty();
+    }
+
+    /**
+     * Rules that could match the song after a metadata change. Any rule the song matches is
+     * in this set, so rules outside it only need to drop the song.
+     */
+    public Set<CompiledRule> candidatesFor(Song song) {
+        Snapshot current = snapshot;
+        Set<CompiledRule> candidates = new LinkedHashSet<>(current.anyArtist);
+        if (song.getArtistName() != null) {
+            List<CompiledRule> byArtist = current.byArtist.get(CompiledRule.normalize(song.getArtistName()));
+            if (byArtist != null) {
+                candidates.addAll(byArtist);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Rules whose outcome can change when a song is liked or unliked.
+     */
+    public List<CompiledRule> likedRules() {
+        return snapshot.likedRules;
+    }
+
+    private static final class Snapshot {
+
+        private final Map<Long, CompiledRule> rules;
+        private final Map<String, List<CompiledRule>> byArtist = new HashMap<>();
+        private final List<CompiledRule> anyArtist = new ArrayList<>();
+        private final List<CompiledRule> likedRules = new ArrayList<>();
+
+        private Snapshot(Map<Long, CompiledRule> rules) {
+            this.rules = rules;
+            for (CompiledRule rule : rules.values()) {
+                if (rule.getArtists().isEmpty()) {
+                    anyArtist.add(rule);
+                } else {
+                    for (String artist : rule.getArtists()) {
+                        byArtist.computeIfAbsent(artist, a -> new ArrayList<>()).add(rule);
+                    }
+                }
+                if (rule.dependsOnLiked()) {
+                    likedRules.add(rule);
+                }
+            }
+        }
+    }
+}
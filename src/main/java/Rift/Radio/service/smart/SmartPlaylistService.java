@@ -0,0 +1,273 @@
+package Rift.Radio.service.smart;
+
+import Rift.Radio.dto.CreateSmartPlaylistDto;
+import Rift.Radio.dto.PlaylistSummaryDto;
+import Rift.Radio.dto.SmartRuleDto;
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.modal.Playlist;
+import Rift.Radio.modal.PlaylistSong;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Smart playlists are ordinary playlists whose playlist_song rows are written by their rule,
+ * so reading one costs the same as reading a static playlist. Rules are re-evaluated only
+ * for the songs named in a catalog change, and only against the rules the
+ * {@link SmartPlaylistIndex} says could be affected.
+ */
+@Service
+public class SmartPlaylistService {
+
+    private final Logger log = LoggerFactory.getLogger(SmartPlaylistService.class);
+
+    private final PlaylistRepository playlistRepository;
+    private final SongRepository songRepository;
+    private final PlaylistSongRepository playlistSongRepository;
+    private final SmartPlaylistIndex smartPlaylistIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public SmartPlaylistService(PlaylistRepository playlistRepository, SongRepository songRepository,
+                                PlaylistSongRepository playlistSongRepository, SmartPlaylistIndex smartPlaylistIndex,
+                                ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.playlistRepository = playlistRepository;
+        this.songRepository = songRepository;
+        this.playlistSongRepository = playlistSongRepository;
+        this.smartPlaylistIndex = smartPlaylistIndex;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        // Change events arrive after the triggering transaction committed, so writes need their own
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Transactional
+    public PlaylistSummaryDto createSmartPlaylist(CreateSmartPlaylistDto dto) {
+        if (playlistRepository.existsByName(dto.getPlaylistName())) {
+            throw new PlaylistException(ErrorType.PLAYLIST_ALREADY_EXISTS, "Playlist name already exists");
+        }
+        // Validate before anything is written
+        CompiledRule.compile(null, dto.getRule());
+
+        Playlist playlist = new Playlist();
+        playlist.setName(dto.getPlaylistName());
+        playlist.setDescription(dto.getDescription());
+        playlist.setSmartRule(writeRule(dto.getRule()));
+        Playlist saved = playlistRepository.save(playlist);
+        eventPublisher.publishEvent(CatalogChangeEvent.playlist(CatalogChangeType.PLAYLIST_CREATED,
+                saved.getId(), Collections.<Long>emptyList()));
+
+        CompiledRule rule = CompiledRule.compile(saved.getId(), dto.getRule());
+        materialize(rule);
+        eventPublisher.publishEvent(new SmartRuleChangedEvent(rule));
+        return findSummary(saved.getId());
+    }
+
+    @Transactional
+    public PlaylistSummaryDto updateRule(Long playlistId, SmartRuleDto dto) {
+        Playlist playlist = playlistRepository.findById(playlistId)
+                .orElseThrow(() -> new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found"));
+        if (!playlist.isSmart()) {
+            throw new PlaylistException(ErrorType.INVALID_SMART_RULE, "Playlist is not a smart playlist");
+        }
+        CompiledRule rule = CompiledRule.compile(playlistId, dto);
+        playlist.setSmartRule(writeRule(dto));
+        playlistRepository.save(playlist);
+
+        materialize(rule);
+        eventPublisher.publishEvent(new SmartRuleChangedEvent(rule));
+        return findSummary(playlistId);
+    }
+
+    /**
+     * Full evaluation over the catalog, used only when a rule is created or changed.
+     * Existing members keep their position; new matches are appended in song id order.
+     */
+    void materialize(CompiledRule rule) {
+        Long playlistId = rule.getPlaylistId();
+        List<Long> matching = new ArrayList<>();
+        for (Song song : songRepository.findAll(Sort.by("id"))) {
+            if (rule.matches(song)) {
+                matching.add(song.getId());
+            }
+        }
+        Set<Long> current = new HashSet<>(playlistSongRepository.findOrderedSongIds(playlistId));
+
+        List<Long> toRemove = new ArrayList<>(current);
+        toRemove.removeAll(new HashSet<>(matching));
+        List<Long> toAdd = new ArrayList<>();
+        for (Long songId : matching) {
+            if (!current.contains(songId)) {
+                toAdd.add(songId);
+            }
+        }
+        removeMembers(playlistId, toRemove);
+        addMembers(playlistId, toAdd);
+    }
+
+    // A rolled back rule never reaches the index, where song changes would be checked against it
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRuleChanged(SmartRuleChangedEvent event) {
+        smartPlaylistIndex.put(event.getRule());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (smartPlaylistIndex.isEmpty() || event.getSongIds().isEmpty()) {
+            return;
+        }
+        switch (event.getType()) {
+            case SONG_CREATED:
+            case SONG_UPDATED:
+                refresh(event.getSongIds(), false);
+                break;
+            case SONG_LIKED:
+            case SONG_UNLIKED:
+                refresh(event.getSongIds(), true);
+                break;
+            default:
+                // Deleted songs leave every playlist at once; playlist events are our own or static edits
+                break;
+        }
+    }
+
+    void refresh(List<Long> songIds, boolean likeChange) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> applyChanges(songIds, likeChange));
+        } catch (RuntimeException e) {
+            log.warn("Failed to update smart playlists for songs {}", songIds, e);
+        }
+    }
+
+    private void applyChanges(List<Long> songIds, boolean likeChange) {
+        Map<Long, Set<Long>> membershipsBySong = new HashMap<>();
+        for (Object[] row : playlistSongRepository.findSmartMemberships(songIds)) {
+            membershipsBySong.computeIfAbsent((Long) row[1], id -> new HashSet<>()).add((Long) row[0]);
+        }
+
+        Map<Long, List<Long>> additions = new LinkedHashMap<>();
+        Map<Long, List<Long>> removals = new LinkedHashMap<>();
+        for (Song song : songRepository.findAllById(songIds)) {
+            Set<Long> memberOf = membershipsBySong.getOrDefault(song.getId(), Collections.<Long>emptySet());
+            Collection<CompiledRule> candidates = likeChange
+                    ? smartPlaylistIndex.likedRules()
+                    : smartPlaylistIndex.candidatesFor(song);
+
+            Set<Long> evaluated = new HashSet<>();
+            for (CompiledRule rule : candidates) {
+                Long playlistId = rule.getPlaylistId();
+                evaluated.add(playlistId);
+                boolean matches = rule.matches(song);
+                if (matches && !memberOf.contains(playlistId)) {
+                    additions.computeIfAbsent(playlistId, id -> new ArrayList<>()).add(song.getId());
+                } else if (!matches && memberOf.contains(playlistId)) {
+                    removals.computeIfAbsent(playlistId, id -> new ArrayList<>()).add(song.getId());
+                }
+            }
+            if (!likeChange) {
+                // Not a candidate any more (e.g. the artist changed), so the song cannot match
+                for (Long playlistId : memberOf) {
+                    if (!evaluated.contains(playlistId) && smartPlaylistIndex.isSmart(playlistId)) {
+                        removals.computeIfAbsent(playlistId, id -> new ArrayList<>()).add(song.getId());
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<Long, List<Long>> entry : removals.entrySet()) {
+            removeMembers(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Long, List<Long>> entry : additions.entrySet()) {
+            addMembers(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void addMembers(Long playlistId, List<Long> songIds) {
+        if (songIds.isEmpty()) {
+            return;
+        }
+        long firstPosition = playlistSongRepository.findMaxPosition(playlistId) + PlaylistSong.POSITION_GAP;
+        int inserted = playlistSongRepository.insertSongsAt(playlistId, songIds, firstPosition);
+        playlistRepository.adjustSongCount(playlistId, inserted);
+        eventPublisher.publishEvent(CatalogChangeEvent.playlist(CatalogChangeType.PLAYLIST_SONGS_ADDED,
+                playlistId, songIds));
+    }
+
+    private void removeMembers(Long playlistId, List<Long> songIds) {
+        if (songIds.isEmpty()) {
+            return;
+        }
+        int deleted = playlistSongRepository.deleteSongs(playlistId, songIds);
+        playlistRepository.adjustSongCount(playlistId, -deleted);
+        eventPublisher.publishEvent(CatalogChangeEvent.playlist(CatalogChangeType.PLAYLIST_SONGS_REMOVED,
+                playlistId, songIds));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRules() {
+        List<CompiledRule> rules = new ArrayList<>();
+        for (Playlist playlist : playlistRepository.findBySmartRuleIsNotNull()) {
+            try {
+                rules.add(CompiledRule.compile(playlist.getId(), readRule(playlist.getSmartRule())));
+            } catch (PlaylistException e) {
+                log.warn("Ignoring smart playlist {} with unreadable rule: {}", playlist.getId(), e.getMessage());
+            }
+        }
+        smartPlaylistIndex.replaceAll(rules);
+        log.info("Loaded {} smart playlist rules", rules.size());
+    }
+
+    private String writeRule(SmartRuleDto rule) {
+        try {
+            return objectMapper.writeValueAsString(rule);
+        } catch (JsonProcessingException e) {
+            throw new PlaylistException(ErrorType.INVALID_SMART_RULE, "Could not store smart playlist rule", e);
+        }
+    }
+
+    private SmartRuleDto readRule(String json) {
+        try {
+            return objectMapper.readValue(json, SmartRuleDto.class);
+        } catch (JsonProcessingException e) {
+            throw new PlaylistException(ErrorType.INVALID_SMART_RULE, "Could not read smart playlist rule", e);
+        }
+    }
+
+    private PlaylistSummaryDto findSummary(Long playlistId) {
+        return playlistRepository.findSummaryById(playlistId)
+                .orElseThrow(() -> new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found"));
+    }
+}
@@ -0,0 +1,18 @@
+package Rift.Radio.service.smart;
+
+/**
+ * Published when a smart playlist rule is created or changed. The index only picks it up
+ * once the transaction that stored the rule has committed.
+ */
+final class SmartRuleChangedEvent {
+
+    private final CompiledRule rule;
+
+    SmartRuleChangedEvent(CompiledRule rule) {
+        this.rule = rule;
+    }
+
+    CompiledRule getRule() {
+        return rule;
+    }
+}
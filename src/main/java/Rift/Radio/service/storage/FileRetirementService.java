@@ -0,0 +1,98 @@
+package Rift.Radio.service.storage;
+
+import Rift.Radio.repository.SongRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deletes the files an edit replaced, once streams of them have had time to finish. The song
+ * points at its new version from the moment the edit commits; responses and presigned URLs
+ * handed out before keep reading the old one until it is deleted here, after
+ * {@code riftradio.storage.retire-after-ms}.
+ * <p>
+ * A file some song refers to again is kept. Files still waiting when the app stops are
+ * deleted then, as their streams end with it.
+ */
+@Service
+public class FileRetirementService {
+
+    private final Logger log = LoggerFactory.getLogger(FileRetirementService.class);
+
+    private final SongRepository songRepository;
+    private final SongStorage songStorage;
+    private final long retireAfterMillis;
+
+    // Key to when it was retired
+    private final Map<String, Long> retired = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FileRetirementService(SongRepository songRepository, SongStorage songStorage,
+                                 @Value("${riftradio.storage.retire-after-ms:1200000}") long retireAfterMillis) {
+        this.songRepository = songRepository;
+        this.songStorage = songStorage;
+        this.retireAfterMillis = retireAfterMillis;
+    }
+
+    public void retire(String key) {
+        retired.put(key, System.currentTimeMillis());
+    }
+
+    /**
+     * True while the file is waiting to be deleted.
+     */
+    public boolean isRetired(String key) {
+        return retired.containsKey(key);
+    }
+
+    @Scheduled(fixedDelayString = "${riftradio.storage.retire-sweep-ms:60000}")
+    public void sweep() {
+        deleteRetired(System.currentTimeMillis() - retireAfterMillis);
+    }
+
+    /**
+     * Deletes the files retired at or before the cutoff and returns how many were deleted.
+     * One that cannot be deleted is tried again on the next sweep.
+     */
+    synchronized int deleteRetired(long cutoff) {
+        int deleted = 0;
+        for (Map.Entry<String, Long> entry : retired.entrySet()) {
+            String key = entry.getKey();
+            long at = entry.getValue();
+            if (at > cutoff || !retired.remove(key, at)) {
+                continue;
+            }
+            try {
+                if (songRepository.existsByFilePath(key)) {
+                    log.debug("Retired file '{}' is in use again and kept", key);
+                } else if (songStorage.delete(key)) {
+                    deleted++;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not delete retired file '{}': {}", key, e.getMessage());
+                retired.putIfAbsent(key, at);
+            }
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} replaced song files", deleted);
+        }
+        return deleted;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deleteRetired(Long.MAX_VALUE);
+    }
+
+    int pending() {
+        return retired.size();
+    }
+}
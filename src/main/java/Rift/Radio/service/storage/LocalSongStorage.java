@@ -0,0 +1,254 @@
+package Rift.Radio.service.storage;
+
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.SongException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Keeps songs in a directory on the local filesystem. Keys are file paths, so rows written
+ * before storage was configurable keep working.
+ * <p>
+ * Uploads are staged next to the stored files, which lets {@link #store} link them into
+ * place instead of copying. Linking, unlike a rename, never replaces a file already there.
+ * <p>
+ * With {@code riftradio.storage.cold-dir} set, files can also be moved to a cold tier, a
+ * directory on a slower volume mirroring the layout of the main one. A file keeps its key
+ * wherever it is, and every lookup finds it in either tier. Moves copy the file next to its
+ * target and rename it into place before removing the source, so at any time one of the two
+ * exists; a stream opened on the source keeps reading it after it is removed.
+ */
+@Component
+@ConditionalOnProperty(name = "riftradio.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalSongStorage implements SongStorage {
+
+    static final String STAGING_PREFIX = ".upload-";
+    static final String MOVE_PREFIX = ".move-";
+    static final String PART_SUFFIX = ".part";
+
+    private final Path directory;
+    private final Path coldDirectory;
+
+    @Autowired
+    public LocalSongStorage(@Value("${riftradio.storage.dir:data/mp3}") String directory,
+                            @Value("${riftradio.storage.cold-dir:}") String coldDirectory) {
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.coldDirectory = StringUtils.hasText(coldDirectory)
+                ? Paths.get(coldDirectory).toAbsolutePath().normalize() : null;
+    }
+
+    public LocalSongStorage(String directory) {
+        this(directory, null);
+    }
+
+    @Override
+    public String keyFor(String fileName) {
+        Path key;
+        try {
+            key = directory.resolve(fileName).normalize();
+        } catch (InvalidPathException e) {
+            key = null;
+        }
+        if (key == null || !key.startsWith(directory) || key.equals(directory)) {
+            throw new SongException(ErrorType.INVALID_SONG_DATA, "Invalid file name");
+        }
+        return key.toString();
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        Files.createDirectories(directory);
+        return Files.createTempFile(directory, STAGING_PREFIX, PART_SUFFIX);
+    }
+
+    @Override
+    public boolean store(Path staged, String key) throws IOException {
+        Path target = Paths.get(key);
+        Path cold = coldPath(key);
+        if (cold != null && Files.exists(cold)) {
+            return false;
+        }
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try {
+            // Linking fails if the target exists, in the same step that creates it
+            Files.createLink(target, staged);
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // No hard links on this filesystem; callers hold the key's lock instead
+            try {
+                Files.move(staged, target);
+                return true;
+            } catch (FileAlreadyExistsException exists) {
+                return false;
+            }
+        }
+        Files.delete(staged);
+        return true;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public Resource load(String key) {
+        Path hot = Paths.get(key);
+        Path cold = coldPath(key);
+        if (cold == null) {
+            return new FileSystemResource(hot);
+        }
+        Path path = resolve(key);
+        return new TieredFileResource(path, path.equals(cold) ? hot : cold);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        Path cold = coldPath(key);
+        boolean deleted = cold != null && Files.deleteIfExists(cold);
+        return Files.deleteIfExists(Paths.get(key)) || deleted;
+    }
+
+    @Override
+    public Optional<URI> presignedUrl(String key, String downloadName) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return resolve(key);
+    }
+
+    /**
+     * The directory of the hot tier, where new files are stored.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public boolean isTiered() {
+        return coldDirectory != null;
+    }
+
+    /**
+     * True when the file is only in the cold tier.
+     */
+    public boolean isCold(String key) {
+        Path cold = coldPath(key);
+        return cold != null && !Files.exists(Paths.get(key)) && Files.exists(cold);
+    }
+
+    /**
+     * Moves the file to the cold tier; false when it is not in the main one.
+     */
+    public boolean demote(String key) throws IOException {
+        Path cold = coldPath(key);
+        return cold != null && relocate(Paths.get(key), cold);
+    }
+
+    /**
+     * Moves the file back from the cold tier; false when it is not there.
+     */
+    public boolean promote(String key) throws IOException {
+        Path cold = coldPath(key);
+        return cold != null && relocate(cold, Paths.get(key));
+    }
+
+    private boolean relocate(Path from, Path to) throws IOException {
+        if (!Files.isRegularFile(from)) {
+            return false;
+        }
+        Path parent = to.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            // Another volume: copy under a temporary name, so the target never holds a partial file
+        }
+        Path part = Files.createTempFile(parent, MOVE_PREFIX, PART_SUFFIX);
+        try {
+            Files.copy(from, part, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            Files.move(part, to, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+        Files.delete(from);
+        return true;
+    }
+
+    private Path resolve(String key) {
+        Path hot = Paths.get(key);
+        Path cold = coldPath(key);
+        return cold != null && !Files.exists(hot) && Files.exists(cold) ? cold : hot;
+    }
+
+    /**
+     * Where the file is kept in the cold tier, or null without one. Files outside the storage
+     * directory stay where they are.
+     */
+    Path coldPath(String key) {
+        if (coldDirectory == null) {
+            return null;
+        }
+        Path hot = Paths.get(key).toAbsolutePath().normalize();
+        return hot.startsWith(directory) ? coldDirectory.resolve(directory.relativize(hot)) : null;
+    }
+
+    /**
+     * Falls back to the other tier when the file has moved between loading and reading.
+     */
+    private static class TieredFileResource extends FileSystemResource {
+
+        private final Path other;
+
+        TieredFileResource(Path path, Path other) {
+            super(path);
+            this.other = other;
+        }
+
+        @Override
+        public boolean exists() {
+            return super.exists() || Files.exists(other);
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            try {
+                return super.contentLength();
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                return Files.size(other);
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            try {
+                return super.getInputStream();
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                return Files.newInputStream(other);
+            }
+        }
+    }
+}
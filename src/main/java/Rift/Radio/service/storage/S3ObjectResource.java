@@ -0,0 +1,99 @@
+package Rift.Radio.service.storage;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An object in the song bucket. Its stream only sends the GET on the first read, asking for
+ * the bytes after whatever was skipped until then; that is how Spring serves a Range request
+ * from a resource, so each range becomes a ranged GET.
+ */
+class S3ObjectResource extends AbstractResource {
+
+    private final S3SongStorage storage;
+    private final String key;
+    private volatile long contentLength = -1;
+
+    S3ObjectResource(S3SongStorage storage, String key) {
+        this.storage = storage;
+        this.key = key;
+    }
+
+    @Override
+    public boolean exists() {
+        try {
+            contentLength();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        if (contentLength < 0) {
+            contentLength = storage.size(key);
+        }
+        return contentLength;
+    }
+
+    @Override
+    public String getFilename() {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public String getDescription() {
+        return "S3 object [" + key + "]";
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new RangeInputStream();
+    }
+
+    private class RangeInputStream extends InputStream {
+
+        private long offset;
+        private InputStream in;
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (in != null) {
+                return in.skip(n);
+            }
+            if (n <= 0) {
+                return 0;
+            }
+            offset += n;
+            return n;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return open().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return open().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+
+        private InputStream open() throws IOException {
+            if (in == null) {
+                in = offset < contentLength() ? storage.open(key, offset) : new ByteArrayInputStream(new byte[0]);
+            }
+            return in;
+        }
+    }
+}
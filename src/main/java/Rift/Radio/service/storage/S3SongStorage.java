@@ -0,0 +1,258 @@
+package Rift.Radio.service.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.FileRequestBodyConfiguration;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Keeps songs in an S3 bucket, or in anything that speaks the S3 API when
+ * {@code riftradio.storage.s3.endpoint} is set.
+ * <p>
+ * Files larger than one part are sent as a multipart upload with all parts in flight at once,
+ * each part read straight from the staged file. Reads are ranged GETs, so seeking in a stream
+ * served by the app only fetches what is played. With a presign TTL above zero the song
+ * endpoints redirect clients to presigned URLs and the bytes do not pass through the app.
+ */
+@Component
+@ConditionalOnProperty(name = "riftradio.storage.type", havingValue = "s3")
+public class S3SongStorage implements SongStorage {
+
+    private final Logger log = LoggerFactory.getLogger(S3SongStorage.class);
+
+    // S3 rejects parts below 5 MB, except the last
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final String CONTENT_TYPE = "audio/mpeg";
+
+    private final S3AsyncClient client;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final String prefix;
+    private final long partSize;
+    private final Duration presignTtl;
+
+    @Autowired
+    public S3SongStorage(@Value("${riftradio.storage.s3.bucket}") String bucket,
+                         @Value("${riftradio.storage.s3.endpoint:}") String endpoint,
+                         @Value("${riftradio.storage.s3.region:us-east-1}") String region,
+                         @Value("${riftradio.storage.s3.access-key:}") String accessKey,
+                         @Value("${riftradio.storage.s3.secret-key:}") String secretKey,
+                         @Value("${riftradio.storage.s3.prefix:mp3/}") String prefix,
+                         @Value("${riftradio.storage.s3.part-size:8388608}") long partSize,
+                         @Value("${riftradio.storage.s3.presign-ttl-seconds:900}") long presignTtlSeconds) {
+        AwsCredentialsProvider credentials = StringUtils.hasText(accessKey)
+                ? StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey))
+                : DefaultCredentialsProvider.create();
+        // Most S3-compatible servers only support path-style bucket addressing
+        S3Configuration configuration = S3Configuration.builder()
+                .pathStyleAccessEnabled(StringUtils.hasText(endpoint))
+                .build();
+        S3AsyncClientBuilder clientBuilder = S3AsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(configuration);
+        S3Presigner.Builder presignerBuilder = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(configuration);
+        if (StringUtils.hasText(endpoint)) {
+            clientBuilder.endpointOverride(URI.create(endpoint));
+            presignerBuilder.endpointOverride(URI.create(endpoint));
+        }
+        this.client = clientBuilder.build();
+        this.presigner = presignerBuilder.build();
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.presignTtl = presignTtlSeconds > 0 ? Duration.ofSeconds(presignTtlSeconds) : null;
+    }
+
+    @Override
+    public String keyFor(String fileName) {
+        return prefix + fileName;
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile("riftradio-upload-", ".mp3");
+    }
+
+    @Override
+    public boolean store(Path staged, String key) throws IOException {
+        // Not atomic: callers hold the key's lock, and the unique file path catches other instances
+        if (exists(key)) {
+            return false;
+        }
+        long size = Files.size(staged);
+        if (size <= partSize) {
+            await(client.putObject(PutObjectRequest.builder()
+                    .bucket(bucket).key(key).contentType(CONTENT_TYPE).contentLength(size)
+                    .build(), AsyncRequestBody.fromFile(staged)));
+        } else {
+            storeMultipart(staged, key, size);
+        }
+        Files.delete(staged);
+        return true;
+    }
+
+    private void storeMultipart(Path staged, String key, long size) throws IOException {
+        String uploadId = await(client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket).key(key).contentType(CONTENT_TYPE)
+                .build())).uploadId();
+        try {
+            List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += partSize) {
+                int number = parts.size() + 1;
+                long length = Math.min(partSize, size - offset);
+                AsyncRequestBody body = AsyncRequestBody.fromFile(FileRequestBodyConfiguration.builder()
+                        .path(staged).position(offset).numBytesToRead(length)
+                        .build());
+                parts.add(client.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucket).key(key).uploadId(uploadId).partNumber(number).contentLength(length)
+                                .build(), body)
+                        .thenApply(response -> CompletedPart.builder().partNumber(number).eTag(response.eTag()).build()));
+            }
+            List<CompletedPart> completed = new ArrayList<>(parts.size());
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completed.add(await(part));
+            }
+            await(client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                    .build()));
+            log.debug("Stored '{}' in {} parts", key, completed.size());
+        } catch (IOException | RuntimeException e) {
+            client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket).key(key).uploadId(uploadId)
+                    .build());
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            size(key);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    long size(String key) throws IOException {
+        return await(client.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build())).contentLength();
+    }
+
+    @Override
+    public Resource load(String key) {
+        return new S3ObjectResource(this, key);
+    }
+
+    /**
+     * The object's bytes from {@code offset} to the end.
+     */
+    InputStream open(String key, long offset) throws IOException {
+        GetObjectRequest.Builder request = GetObjectRequest.builder().bucket(bucket).key(key);
+        if (offset > 0) {
+            request.range("bytes=" + offset + "-");
+        }
+        return await(client.getObject(request.build(), AsyncResponseTransformer.toBlockingInputStream()));
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        if (!exists(key)) {
+            return false;
+        }
+        await(client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build()));
+        return true;
+    }
+
+    @Override
+    public Optional<URI> presignedUrl(String key, String downloadName) {
+        if (presignTtl == null) {
+            return Optional.empty();
+        }
+        GetObjectRequest.Builder request = GetObjectRequest.builder().bucket(bucket).key(key);
+        if (downloadName != null) {
+            request.responseContentDisposition(ContentDisposition.attachment()
+                    .filename(downloadName, StandardCharsets.UTF_8).build().toString());
+        }
+        try {
+            return Optional.of(presigner.presignGetObject(GetObjectPresignRequest.builder()
+                    .signatureDuration(presignTtl)
+                    .getObjectRequest(request.build())
+                    .build()).url().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        client.close();
+        presigner.close();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            if (cause instanceof S3Exception && ((S3Exception) cause).statusCode() == 404) {
+                throw new FileNotFoundException(cause.getMessage());
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package Rift.Radio.service.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where song files are kept. {@code Song.filePath} holds the key a file is stored under.
+ * <p>
+ * Uploads are written to a staging file first, so they can be parsed, fingerprinted and
+ * rejected before anything is stored, and then handed over with {@link #store}. The backend is
+ * chosen with {@code riftradio.storage.type}: {@code local} (the default) or {@code s3}.
+ */
+public interface SongStorage {
+
+    /**
+     * The key a file with this name is stored under.
+     */
+    String keyFor(String fileName);
+
+    /**
+     * A new empty file to write an upload to before it is stored.
+     */
+    Path createStagingFile() throws IOException;
+
+    /**
+     * Moves a staged file into storage under {@code key}, unless a file is stored there
+     * already. Returns false then, and the staged file is left where it was; otherwise it is
+     * gone afterwards. A stored file is never replaced, so an edit stores a new version under
+     * a new key.
+     */
+    boolean store(Path staged, String key) throws IOException;
+
+    boolean exists(String key);
+
+    /**
+     * The stored bytes. Skipping ahead in the resource's stream before the first read only
+     * fetches the bytes after the skipped ones, so Range requests stay cheap.
+     */
+    Resource load(String key) throws IOException;
+
+    /**
+     * Deletes the stored file; false when there was none.
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * A short-lived URL clients can fetch the file from without going through the app, or
+     * empty when the app has to serve it. A {@code downloadName} makes it an attachment.
+     */
+    Optional<URI> presignedUrl(String key, String downloadName);
+
+    /**
+     * The file on local disk, or null when the backend keeps its files elsewhere.
+     */
+    Path localPath(String key);
+}
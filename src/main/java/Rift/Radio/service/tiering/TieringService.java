@@ -0,0 +1,291 @@
+package Rift.Radio.service.tiering;
+
+import Rift.Radio.modal.SongAccess;
+import Rift.Radio.repository.SongAccessRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.storage.LocalSongStorage;
+import Rift.Radio.service.storage.SongStorage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves rarely played songs to the cold tier of {@link LocalSongStorage} and back. Does
+ * nothing unless {@code riftradio.storage.cold-dir} is set.
+ * <p>
+ * Accesses are sampled: a song's access is recorded at most once per sample interval, so any
+ * other stream of it only costs a map lookup. Recorded times are written to song_access in
+ * batches of {@link #BATCH_SIZE}. A scheduled job reads songs in keyset pages and demotes files
+ * not accessed for {@code cold-after-days}; a song never streamed counts from its file's
+ * modification time. Streaming a cold song serves it from the cold tier while it is promoted
+ * in the background. There is only ever one move per file: concurrent first plays share one
+ * promotion, and promotions run on their own pool so they never wait for the demotion job.
+ */
+@Service
+public class TieringService {
+
+    private final Logger log = LoggerFactory.getLogger(TieringService.class);
+
+    static final int BATCH_SIZE = 500;
+    private static final int PROMOTION_THREADS = 2;
+
+    private final SongRepository songRepository;
+    private final SongAccessRepository songAccessRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LocalSongStorage storage;
+    private final long coldAfterMillis;
+    private final long sampleIntervalMillis;
+    private final ForkJoinPool pool;
+
+    // When each song's access was last recorded; pending holds those not written yet
+    private final Map<Long, Long> recordedAt = new ConcurrentHashMap<>();
+    private final Map<Long, Long> pending = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Boolean>> moves = new ConcurrentHashMap<>();
+    private final AtomicBoolean demoting = new AtomicBoolean();
+
+    @Autowired
+    public TieringService(SongRepository songRepository, SongAccessRepository songAccessRepository,
+                          SongStorage songStorage, PlatformTransactionManager transactionManager,
+                          @Value("${riftradio.tiering.cold-after-days:30}") int coldAfterDays,
+                          @Value("${riftradio.tiering.sample-interval-ms:3600000}") long sampleIntervalMillis) {
+        this.songRepository = songRepository;
+        this.songAccessRepository = songAccessRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Also used from after-commit listeners, where the finished transaction is still bound
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.storage = songStorage instanceof LocalSongStorage && ((LocalSongStorage) songStorage).isTiered()
+                ? (LocalSongStorage) songStorage : null;
+        this.coldAfterMillis = TimeUnit.DAYS.toMillis(coldAfterDays);
+        this.sampleIntervalMillis = sampleIntervalMillis;
+        this.pool = new ForkJoinPool(PROMOTION_THREADS);
+    }
+
+    public boolean isEnabled() {
+        return storage != null;
+    }
+
+    /**
+     * Notes that the song's file is being read, and starts promoting it when it is cold.
+     */
+    public void recordAccess(Long songId, String filePath) {
+        if (storage == null) {
+            return;
+        }
+        if (storage.isCold(filePath)) {
+            move(filePath, true, pool);
+        }
+        long now = System.currentTimeMillis();
+        Long last = recordedAt.get(songId);
+        if (last != null && now - last < sampleIntervalMillis) {
+            return;
+        }
+        recordedAt.put(songId, now);
+        pending.put(songId, now);
+    }
+
+    /**
+     * Moves the file to the other tier, unless a move of it is running already, in which case
+     * the caller shares that one. Completes with false when the file was not where the move
+     * expected it.
+     */
+    CompletableFuture<Boolean> move(String filePath, boolean promote, Executor executor) {
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = moves.putIfAbsent(filePath, created);
+        if (running != null) {
+            return running;
+        }
+        Runnable task = () -> {
+            try {
+                boolean moved = promote ? storage.promote(filePath) : storage.demote(filePath);
+                if (moved) {
+                    log.debug("{} '{}'", promote ? "Promoted" : "Demoted", filePath);
+                }
+                created.complete(moved);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not {} '{}': {}", promote ? "promote" : "demote", filePath, e.getMessage());
+                created.completeExceptionally(e);
+            } finally {
+                moves.remove(filePath, created);
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            moves.remove(filePath, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    @Scheduled(fixedDelayString = "${riftradio.tiering.flush-interval-ms:60000}")
+    public synchronized void flush() {
+        long now = System.currentTimeMillis();
+        recordedAt.values().removeIf(at -> now - at >= sampleIntervalMillis);
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> accesses = new LinkedHashMap<>();
+        for (Map.Entry<Long, Long> entry : pending.entrySet()) {
+            // A newer access recorded meanwhile stays pending
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                accesses.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        List<Long> songIds = new ArrayList<>(accesses.keySet());
+        for (int from = 0; from < songIds.size(); from += BATCH_SIZE) {
+            Map<Long, Long> batch = new LinkedHashMap<>();
+            for (Long songId : songIds.subList(from, Math.min(from + BATCH_SIZE, songIds.size()))) {
+                batch.put(songId, accesses.get(songId));
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+            } catch (RuntimeException e) {
+                log.warn("Access time flush failed for {} songs, keeping them for the next run", batch.size(), e);
+                for (Map.Entry<Long, Long> entry : batch.entrySet()) {
+                    pending.merge(entry.getKey(), entry.getValue(), Math::max);
+                }
+            }
+        }
+        log.debug("Flushed access times of {} songs", accesses.size());
+    }
+
+    // Songs deleted between the access and the flush are dropped
+    private void writeBatch(Map<Long, Long> batch) {
+        batch.keySet().retainAll(new HashSet<>(songRepository.findExistingIds(batch.keySet())));
+        if (!batch.isEmpty()) {
+            songAccessRepository.recordAccesses(batch);
+        }
+    }
+
+    @Scheduled(cron = "${riftradio.tiering.demote-cron:0 30 3 * * *}")
+    public void scheduledDemotion() {
+        if (storage == null || !demoting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            demoteColdFiles();
+        } catch (RuntimeException e) {
+            log.warn("Demotion of cold files failed", e);
+        } finally {
+            demoting.set(false);
+        }
+    }
+
+    /**
+     * Demotes every file not accessed since the cutoff and returns how many were moved. Runs on
+     * the calling thread, one file at a time, to keep the load on the slow volume steady.
+     */
+    int demoteColdFiles() {
+        flush();
+        long started = System.currentTimeMillis();
+        long cutoff = started - coldAfterMillis;
+        int demoted = 0;
+        long after = 0;
+        while (true) {
+            List<Object[]> rows = songRepository.findFilePathsAfter(after, PageRequest.of(0, BATCH_SIZE));
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Long> songIds = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                songIds.add((Long) row[0]);
+            }
+            Map<Long, Long> stored = new HashMap<>();
+            for (SongAccess access : songAccessRepository.findAllById(songIds)) {
+                stored.put(access.getSongId(), access.getLastAccessedAt());
+            }
+            for (Object[] row : rows) {
+                Long songId = (Long) row[0];
+                String filePath = (String) row[1];
+                if (filePath == null || accessedSince(songId, stored.get(songId), filePath, cutoff)) {
+                    continue;
+                }
+                try {
+                    if (move(filePath, false, Runnable::run).join()) {
+                        demoted++;
+                    }
+                } catch (CompletionException e) {
+                    // Logged by the move; the file stays where it is
+                }
+            }
+            after = songIds.get(songIds.size() - 1);
+        }
+        log.info("Demoted {} files to the cold tier in {} ms", demoted, System.currentTimeMillis() - started);
+        return demoted;
+    }
+
+    private boolean accessedSince(Long songId, Long storedAt, String filePath, long cutoff) {
+        Long recorded = recordedAt.get(songId);
+        if (recorded != null && recorded >= cutoff) {
+            return true;
+        }
+        if (storedAt != null) {
+            return storedAt >= cutoff;
+        }
+        Path file = storage.localPath(filePath);
+        try {
+            return Files.getLastModifiedTime(file).toMillis() >= cutoff;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChange(CatalogChangeEvent event) {
+        if (event.getType() != CatalogChangeType.SONG_DELETED) {
+            return;
+        }
+        for (Long songId : event.getSongIds()) {
+            recordedAt.remove(songId);
+            pending.remove(songId);
+            if (storage == null) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> songAccessRepository.deleteBySongId(songId));
+            } catch (RuntimeException e) {
+                log.warn("Could not remove the access time of deleted song {}", songId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        pool.shutdownNow();
+    }
+
+    int pendingAccesses() {
+        return pending.size();
+    }
+}
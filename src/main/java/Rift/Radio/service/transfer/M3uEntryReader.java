@@ -0,0 +1,62 @@
+package Rift.Radio.service.transfer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Reads M3U and extended M3U ({@code #EXTINF:seconds,Artist - Title} before each path).
+ */
+class M3uEntryReader implements PlaylistEntryReader {
+
+    private static final String EXTINF = "#EXTINF:";
+
+    private final BufferedReader reader;
+    private int lineNumber;
+
+    M3uEntryReader(InputStream in, Charset charset) {
+        this.reader = new BufferedReader(new InputStreamReader(in, charset));
+    }
+
+    @Override
+    public PlaylistEntry next() throws IOException {
+        String title = null;
+        String artist = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1 && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                line = line.substring(1);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith(EXTINF)) {
+                int comma = line.indexOf(',');
+                String info = comma < 0 ? "" : line.substring(comma + 1).trim();
+                int dash = info.indexOf(" - ");
+                if (dash > 0) {
+                    artist = info.substring(0, dash).trim();
+                    title = info.substring(dash + 3).trim();
+                } else {
+                    artist = null;
+                    title = info.isEmpty() ? null : info;
+                }
+                continue;
+            }
+            if (line.startsWith("#")) {
+                continue;
+            }
+            return new PlaylistEntry(lineNumber, line, title, artist);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,35 @@
+package Rift.Radio.service.transfer;
+
+/**
+ * One track reference read from a playlist file. Any field may be missing.
+ */
+public class PlaylistEntry {
+
+    private final int line;
+    private final String location;
+    private final String title;
+    private final String artist;
+
+    public PlaylistEntry(int line, String location, String title, String artist) {
+        this.line = line;
+        this.location = location;
+        this.title = title;
+        this.artist = artist;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+}
@@ -0,0 +1,24 @@
+package Rift.Radio.service.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pull parser over a playlist file: entries are produced one at a time so an import never
+ * holds more than one batch in memory.
+ */
+public interface PlaylistEntryReader extends Closeable {
+
+    /**
+     * @return the next entry, or null at the end of the file
+     */
+    PlaylistEntry next() throws IOException;
+
+    static PlaylistEntryReader open(PlaylistFormat format, InputStream in) throws IOException {
+        if (format == PlaylistFormat.XSPF) {
+            return new XspfEntryReader(in);
+        }
+        return new M3uEntryReader(in, format.getCharset());
+    }
+}
@@ -0,0 +1,49 @@
+package Rift.Radio.service.transfer;
+
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+public enum PlaylistFormat {
+
+    // Plain .m3u has no declared encoding; UTF-8 is what current players write
+    M3U("audio/x-mpegurl", "m3u", StandardCharsets.UTF_8),
+    M3U8("audio/x-mpegurl; charset=utf-8", "m3u8", StandardCharsets.UTF_8),
+    XSPF("application/xspf+xml", "xspf", StandardCharsets.UTF_8);
+
+    private final String contentType;
+    private final String extension;
+    private final Charset charset;
+
+    PlaylistFormat(String contentType, String extension, Charset charset) {
+        this.contentType = contentType;
+        this.extension = extension;
+        this.charset = charset;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public static PlaylistFormat fromName(String name) {
+        if (name != null) {
+            for (PlaylistFormat format : values()) {
+                if (format.extension.equals(name.trim().toLowerCase(Locale.ROOT))) {
+                    return format;
+                }
+            }
+        }
+        throw new PlaylistException(ErrorType.INVALID_PLAYLIST_FILE, "Unsupported playlist format: " + name);
+    }
+}
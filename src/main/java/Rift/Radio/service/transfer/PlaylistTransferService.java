@@ -0,0 +1,332 @@
+package Rift.Radio.service.transfer;
+
+import Rift.Radio.dto.BatchItemResultDto;
+import Rift.Radio.dto.BatchResultDto;
+import Rift.Radio.dto.PlaylistImportResultDto;
+import Rift.Radio.dto.UnresolvedEntryDto;
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.modal.Playlist;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.PlaylistService;
+import Rift.Radio.service.smart.SmartPlaylistIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports and exports playlist files without holding the whole playlist in memory.
+ * <p>
+ * Imports read entries in batches of {@link #BATCH_SIZE}; each batch is resolved with two
+ * IN queries (file path, then title) and added through
+ * {@link PlaylistService#addSongsToPlaylist}, so one file becomes a handful of bulk inserts.
+ * Exports walk the playlist with keyset pages and write each page straight to the response.
+ */
+@Service
+public class PlaylistTransferService {
+
+    static final int BATCH_SIZE = 500;
+
+    private static final XMLOutputFactory XML_OUTPUT = XMLOutputFactory.newInstance();
+
+    private final PlaylistRepository playlistRepository;
+    private final SongRepository songRepository;
+    private final PlaylistSongRepository playlistSongRepository;
+    private final PlaylistService playlistService;
+    private final SmartPlaylistIndex smartPlaylistIndex;
+
+    @Autowired
+    public PlaylistTransferService(PlaylistRepository playlistRepository, SongRepository songRepository,
+                                   PlaylistSongRepository playlistSongRepository, PlaylistService playlistService,
+                                   SmartPlaylistIndex smartPlaylistIndex) {
+        this.playlistRepository = playlistRepository;
+        this.songRepository = songRepository;
+        this.playlistSongRepository = playlistSongRepository;
+        this.playlistService = playlistService;
+        this.smartPlaylistIndex = smartPlaylistIndex;
+    }
+
+    public PlaylistImportResultDto importPlaylist(Long playlistId, PlaylistFormat format, InputStream in) {
+        if (!playlistRepository.existsById(playlistId)) {
+            throw new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found");
+        }
+        if (smartPlaylistIndex.isSmart(playlistId)) {
+            throw new PlaylistException(ErrorType.SMART_PLAYLIST_READ_ONLY,
+                    "Smart playlist songs are managed by its rule");
+        }
+
+        PlaylistImportResultDto result = new PlaylistImportResultDto();
+        try (PlaylistEntryReader reader = PlaylistEntryReader.open(format, in)) {
+            List<PlaylistEntry> batch = new ArrayList<>(BATCH_SIZE);
+            PlaylistEntry entry;
+            while ((entry = reader.next()) != null) {
+                result.setEntries(result.getEntries() + 1);
+                batch.add(entry);
+                if (batch.size() == BATCH_SIZE) {
+                    importBatch(playlistId, batch, result);
+                    batch.clear();
+                }
+            }
+            importBatch(playlistId, batch, result);
+        } catch (IOException e) {
+            throw new PlaylistException(ErrorType.INVALID_PLAYLIST_FILE, "Could not read playlist file", e);
+        }
+        return result;
+    }
+
+    private void importBatch(Long playlistId, List<PlaylistEntry> batch, PlaylistImportResultDto result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<String> paths = new HashSet<>();
+        for (PlaylistEntry entry : batch) {
+            if (entry.getLocation() != null) {
+                paths.add(entry.getLocation());
+            }
+        }
+        Map<String, Long> idsByPath = new HashMap<>();
+        if (!paths.isEmpty()) {
+            for (Song song : songRepository.findByFilePathIn(paths)) {
+                idsByPath.put(song.getFilePath(), song.getId());
+            }
+        }
+
+        // Second pass only for entries the path lookup missed
+        Set<String> titles = new HashSet<>();
+        for (PlaylistEntry entry : batch) {
+            if (!idsByPath.containsKey(entry.getLocation()) && titleOf(entry) != null) {
+                titles.add(normalize(titleOf(entry)));
+            }
+        }
+        Map<String, List<Song>> songsByTitle = new HashMap<>();
+        if (!titles.isEmpty()) {
+            for (Song song : songRepository.findByNormalizedTitleIn(titles)) {
+                songsByTitle.computeIfAbsent(normalize(song.getSongName()), t -> new ArrayList<>()).add(song);
+            }
+        }
+
+        Set<Long> songIds = new LinkedHashSet<>();
+        for (PlaylistEntry entry : batch) {
+            Long songId = idsByPath.get(entry.getLocation());
+            if (songId == null) {
+                songId = resolveByTitle(entry, songsByTitle);
+            }
+            if (songId == null) {
+                result.addUnresolved(new UnresolvedEntryDto(entry.getLine(), entry.getLocation(),
+                        titleOf(entry), artistOf(entry)));
+            } else if (!songIds.add(songId)) {
+                result.setAlreadyInPlaylist(result.getAlreadyInPlaylist() + 1);
+            }
+        }
+        if (songIds.isEmpty()) {
+            return;
+        }
+
+        BatchResultDto added = playlistService.addSongsToPlaylist(playlistId, new ArrayList<>(songIds));
+        for (BatchItemResultDto item : added.getResults()) {
+            if (item.getStatus().isSuccess()) {
+                result.setAdded(result.getAdded() + 1);
+            } else {
+                result.setAlreadyInPlaylist(result.getAlreadyInPlaylist() + 1);
+            }
+        }
+    }
+
+    private Long resolveByTitle(PlaylistEntry entry, Map<String, List<Song>> songsByTitle) {
+        String title = titleOf(entry);
+        if (title == null) {
+            return null;
+        }
+        List<Song> candidates = songsByTitle.get(normalize(title));
+        if (candidates == null) {
+            return null;
+        }
+        String artist = artistOf(entry);
+        if (artist == null) {
+            // Without an artist only an unambiguous title is trusted
+            return candidates.size() == 1 ? candidates.get(0).getId() : null;
+        }
+        for (Song song : candidates) {
+            if (song.getArtistName() != null && normalize(song.getArtistName()).equals(normalize(artist))) {
+                return song.getId();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Title from the entry, falling back to an "Artist - Title.mp3" file name.
+     */
+    private static String titleOf(PlaylistEntry entry) {
+        if (entry.getTitle() != null) {
+            return entry.getTitle();
+        }
+        String name = baseName(entry.getLocation());
+        if (name == null) {
+            return null;
+        }
+        int dash = name.indexOf(" - ");
+        return dash > 0 ? name.substring(dash + 3).trim() : name;
+    }
+
+    private static String artistOf(PlaylistEntry entry) {
+        if (entry.getTitle() != null) {
+            return entry.getArtist();
+        }
+        String name = baseName(entry.getLocation());
+        if (name == null) {
+            return null;
+        }
+        int dash = name.indexOf(" - ");
+        return dash > 0 ? name.substring(0, dash).trim() : null;
+    }
+
+    private static String baseName(String location) {
+        if (location == null) {
+            return null;
+        }
+        String name = location.substring(Math.max(location.lastIndexOf('/'), location.lastIndexOf('\\')) + 1);
+        int dot = name.lastIndexOf('.');
+        name = dot > 0 ? name.substring(0, dot) : name;
+        return name.trim().isEmpty() ? null : name.trim();
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public Playlist requirePlaylist(Long playlistId) {
+        return playlistRepository.findById(playlistId)
+                .orElseThrow(() -> new PlaylistException(ErrorType.PLAYLIST_NOT_FOUND, "Playlist not found"));
+    }
+
+    public void exportPlaylist(Playlist playlist, PlaylistFormat format, OutputStream out) throws IOException {
+        if (format == PlaylistFormat.XSPF) {
+            try {
+                writeXspf(playlist, out);
+            } catch (XMLStreamException e) {
+                throw new IOException("Could not write XSPF", e);
+            }
+        } else {
+            writeM3u(playlist, format, out);
+        }
+    }
+
+    private void writeM3u(Playlist playlist, PlaylistFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, format.getCharset()));
+        writer.write("#EXTM3U\n");
+        writer.write("#PLAYLIST:" + oneLine(playlist.getName()) + "\n");
+        SongCursor cursor = new SongCursor(playlist.getId());
+        List<Song> page;
+        while (!(page = cursor.nextPage()).isEmpty()) {
+            for (Song song : page) {
+                writer.write("#EXTINF:-1," + oneLine(song.getArtistName()) + " - " + oneLine(song.getSongName()) + "\n");
+                writer.write(song.getFilePath() + "\n");
+            }
+            writer.flush();
+        }
+        writer.flush();
+    }
+
+    private void writeXspf(Playlist playlist, OutputStream out) throws XMLStreamException {
+        XMLStreamWriter xml = XML_OUTPUT.createXMLStreamWriter(out, "UTF-8");
+        xml.writeStartDocument("UTF-8", "1.0");
+        xml.writeStartElement("playlist");
+        xml.writeDefaultNamespace("http://xspf.org/ns/0/");
+        xml.writeAttribute("version", "1");
+        writeElement(xml, "title", playlist.getName());
+        if (playlist.getDescription() != null) {
+            writeElement(xml, "annotation", playlist.getDescription());
+        }
+        xml.writeStartElement("trackList");
+        SongCursor cursor = new SongCursor(playlist.getId());
+        List<Song> page;
+        while (!(page = cursor.nextPage()).isEmpty()) {
+            for (Song song : page) {
+                xml.writeStartElement("track");
+                writeElement(xml, "location", toUri(song.getFilePath()));
+                writeElement(xml, "title", song.getSongName());
+                writeElement(xml, "creator", song.getArtistName());
+                writeElement(xml, "album", song.getAlbum());
+                xml.writeEndElement();
+            }
+            xml.flush();
+        }
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.flush();
+    }
+
+    private static void writeElement(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        if (value == null) {
+            return;
+        }
+        xml.writeStartElement(name);
+        xml.writeCharacters(value.trim());
+        xml.writeEndElement();
+    }
+
+    // XSPF locations are URIs; keep stored paths relative so an export re-imports by path
+    private static String toUri(String path) {
+        try {
+            return new URI(null, null, path.replace('\\', '/'), null).toASCIIString();
+        } catch (URISyntaxException e) {
+            return path;
+        }
+    }
+
+    private static String oneLine(String value) {
+        return value == null ? "" : value.replace('\r', ' ').replace('\n', ' ').trim();
+    }
+
+    /**
+     * Keyset iteration over a playlist in track order.
+     */
+    private final class SongCursor {
+
+        private final Long playlistId;
+        private long afterPosition = Long.MIN_VALUE;
+        private long afterSongId = Long.MIN_VALUE;
+
+        private SongCursor(Long playlistId) {
+            this.playlistId = playlistId;
+        }
+
+        private List<Song> nextPage() {
+            List<Object[]> rows = playlistSongRepository.findSongsAfter(playlistId, afterPosition, afterSongId,
+                    PageRequest.of(0, BATCH_SIZE));
+            List<Song> songs = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                Song song = (Song) row[1];
+                afterPosition = (Long) row[0];
+                afterSongId = song.getId();
+                songs.add(song);
+            }
+            return songs;
+        }
+    }
+}
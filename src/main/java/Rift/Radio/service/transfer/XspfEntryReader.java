@@ -0,0 +1,103 @@
+package Rift.Radio.service.transfer;
+
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.PlaylistException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * StAX reader for XSPF: walks the document event by event and emits each {@code <track>}
+ * as soon as it closes. DTDs and external entities are disabled.
+ */
+class XspfEntryReader implements PlaylistEntryReader {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final XMLStreamReader reader;
+
+    XspfEntryReader(InputStream in) throws IOException {
+        try {
+            this.reader = FACTORY.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not open XSPF document", e);
+        }
+    }
+
+    @Override
+    public PlaylistEntry next() throws IOException {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "track".equals(reader.getLocalName())) {
+                    return readTrack();
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new PlaylistException(ErrorType.INVALID_PLAYLIST_FILE, "Malformed XSPF: " + e.getMessage(), e);
+        }
+    }
+
+    private PlaylistEntry readTrack() throws XMLStreamException {
+        int line = reader.getLocation().getLineNumber();
+        String location = null;
+        String title = null;
+        String creator = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (depth == 1 && "location".equals(name) && location == null) {
+                    location = fromUri(reader.getElementText().trim());
+                } else if (depth == 1 && "title".equals(name)) {
+                    title = reader.getElementText().trim();
+                } else if (depth == 1 && "creator".equals(name)) {
+                    creator = reader.getElementText().trim();
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return new PlaylistEntry(line, location, title, creator);
+    }
+
+    static String fromUri(String location) {
+        if (location.isEmpty()) {
+            return null;
+        }
+        try {
+            URI uri = new URI(location);
+            if (uri.getScheme() == null || "file".equalsIgnoreCase(uri.getScheme())) {
+                return uri.getPath();
+            }
+        } catch (URISyntaxException ignored) {
+            // Not a valid URI; many exporters write raw paths
+        }
+        return location;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
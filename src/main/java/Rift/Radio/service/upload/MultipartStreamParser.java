@@ -0,0 +1,293 @@
+package Rift.Radio.service.upload;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.multipart.MultipartException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a multipart/form-data body part by part as it arrives, instead of spooling it to
+ * temp files first. Each part's content is an {@link InputStream} that ends at the next
+ * delimiter; moving to the next part skips whatever was not read.
+ * <p>
+ * The body goes through one buffer of {@link #BUFFER_SIZE} bytes. Content is handed out up
+ * to the point where a delimiter could begin, and every byte is searched for the delimiter
+ * once. A body that is cut off or not framed as multipart fails with a
+ * {@link MultipartException}.
+ */
+public class MultipartStreamParser {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 8 * 1024;
+    private static final int MAX_BOUNDARY = 70;
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    // No delimiter starts before scanned; delimiterAt is the next one found, or -1
+    private int scanned;
+    private int delimiterAt = -1;
+
+    private PartStream part;
+    private boolean finished;
+    private String name;
+    private String fileName;
+    private String contentType;
+
+    public MultipartStreamParser(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[BUFFER_SIZE + delimiter.length];
+        // The first delimiter has no line break before it; the preamble is read as a part
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        limit = 2;
+        part = new PartStream();
+    }
+
+    /**
+     * The boundary of a multipart/form-data content type, or null for any other type.
+     */
+    public static String boundary(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        MediaType type;
+        try {
+            type = MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        String boundary = MediaType.MULTIPART_FORM_DATA.includes(type) ? type.getParameter("boundary") : null;
+        if (boundary != null && boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        return boundary == null || boundary.isEmpty() || boundary.length() > MAX_BOUNDARY ? null : boundary;
+    }
+
+    /**
+     * Moves to the next part and reads its headers. Returns false after the last one.
+     */
+    public boolean nextPart() throws IOException {
+        if (finished) {
+            return false;
+        }
+        part.skipRest();
+        if (!ensure(2)) {
+            throw malformed();
+        }
+        if (buffer[position] == '-' && buffer[position + 1] == '-') {
+            finished = true;
+            return false;
+        }
+        readHeaders();
+        part = new PartStream();
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * The content of the current part. Only valid until {@link #nextPart()} is called.
+     */
+    public InputStream getPartStream() {
+        return part;
+    }
+
+    private void readHeaders() throws IOException {
+        name = null;
+        fileName = null;
+        contentType = null;
+        // Whitespace may follow the delimiter before its line break
+        String rest = readLine(0);
+        if (!rest.trim().isEmpty()) {
+            throw malformed();
+        }
+        int read = 0;
+        while (true) {
+            String line = readLine(read);
+            read += line.length() + 2;
+            if (line.isEmpty()) {
+                return;
+            }
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String header = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if ("Content-Disposition".equalsIgnoreCase(header)) {
+                ContentDisposition disposition;
+                try {
+                    disposition = ContentDisposition.parse(value);
+                } catch (IllegalArgumentException e) {
+                    throw malformed();
+                }
+                name = disposition.getName();
+                fileName = disposition.getFilename();
+            } else if ("Content-Type".equalsIgnoreCase(header)) {
+                contentType = value;
+            }
+        }
+    }
+
+    // Browsers send file names as raw UTF-8
+    private String readLine(int headerBytes) throws IOException {
+        int from = position;
+        int i = position;
+        while (true) {
+            if (i + 1 >= limit) {
+                int consumed = i - from;
+                position = from;
+                if (!ensure(consumed + 2)) {
+                    throw malformed();
+                }
+                from = position;
+                i = from + consumed;
+                continue;
+            }
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                break;
+            }
+            if (headerBytes + i - from >= MAX_HEADER_SIZE) {
+                throw new MultipartException("Part headers too large");
+            }
+            i++;
+        }
+        String line = new String(buffer, from, i - from, StandardCharsets.UTF_8);
+        position = i + 2;
+        return line;
+    }
+
+    /**
+     * Makes at least count bytes available from position on; false when the body ends first.
+     */
+    private boolean ensure(int count) throws IOException {
+        while (limit - position < count) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Moves what is left to the front of the buffer and reads behind it
+    private boolean fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            scanned = Math.max(0, scanned - position);
+            if (delimiterAt >= 0) {
+                delimiterAt -= position;
+            }
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            throw new MultipartException("Part headers too large");
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private void findDelimiter() {
+        int last = limit - delimiter.length;
+        for (int i = Math.max(scanned, position); i <= last; i++) {
+            if (buffer[i] == '\r' && matchesDelimiter(i)) {
+                delimiterAt = i;
+                scanned = i;
+                return;
+            }
+        }
+        scanned = Math.max(scanned, last + 1);
+    }
+
+    private boolean matchesDelimiter(int at) {
+        for (int j = 1; j < delimiter.length; j++) {
+            if (buffer[at + j] != delimiter[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MultipartException malformed() {
+        return new MultipartException("Malformed multipart body");
+    }
+
+    private class PartStream extends InputStream {
+
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int read = read(one, 0, 1);
+            return read < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (done) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            while (true) {
+                if (delimiterAt < 0) {
+                    findDelimiter();
+                }
+                int available;
+                if (delimiterAt >= 0) {
+                    available = delimiterAt - position;
+                    if (available == 0) {
+                        position += delimiter.length;
+                        delimiterAt = -1;
+                        scanned = position;
+                        done = true;
+                        return -1;
+                    }
+                } else {
+                    // The end of the buffer may hold the start of a delimiter
+                    available = scanned - position;
+                }
+                if (available > 0) {
+                    int count = Math.min(length, available);
+                    System.arraycopy(buffer, position, target, offset, count);
+                    position += count;
+                    return count;
+                }
+                if (!fill()) {
+                    throw malformed();
+                }
+            }
+        }
+
+        void skipRest() throws IOException {
+            byte[] skipped = new byte[8 * 1024];
+            while (read(skipped, 0, skipped.length) >= 0) {
+                // Discarded
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package Rift.Radio.service.upload;
+
+import Rift.Radio.dto.CreateSongDto;
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.SongException;
+import Rift.Radio.modal.Song;
+import Rift.Radio.service.SongService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+/**
+ * Uploads a song from a multipart body as it is received, without the servlet spooling it to
+ * a temp file first. The body has the same parts as for {@code /upload}: "data", the song as
+ * JSON, and then "file". As the file is not buffered, "data" has to come first.
+ * <p>
+ * The song data is checked before any of the file is read, so a duplicate name is turned down
+ * without receiving the file. The file is then written to storage in one pass while it is
+ * checked and hashed, see {@link SongService#uploadSong(InputStream, String, CreateSongDto)}.
+ */
+@Service
+public class StreamingUploadService {
+
+    static final int MAX_DATA_SIZE = 64 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(StreamingUploadService.class);
+
+    private final SongService songService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Autowired
+    public StreamingUploadService(SongService songService, ObjectMapper objectMapper, Validator validator) {
+        this.songService = songService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    public Song upload(String contentType, InputStream body) {
+        String boundary = MultipartStreamParser.boundary(contentType);
+        if (boundary == null) {
+            throw new MultipartException("Expected a multipart/form-data body");
+        }
+        MultipartStreamParser parser = new MultipartStreamParser(body, boundary);
+        CreateSongDto dto = null;
+        try {
+            while (parser.nextPart()) {
+                if ("data".equals(parser.getName())) {
+                    dto = readData(parser.getPartStream());
+                } else if ("file".equals(parser.getName())) {
+                    if (dto == null) {
+                        throw new MultipartException("The data part must come before the file part");
+                    }
+                    String filePath = songService.prepareUpload(dto, parser.getFileName(), parser.getContentType());
+                    return songService.uploadSong(parser.getPartStream(), filePath, dto);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Streamed upload failed: {}", e.getMessage(), e);
+            throw new SongException(ErrorType.FILE_STORAGE_ERROR, "Could not store the file", e);
+        }
+        throw new MultipartException("Missing file part");
+    }
+
+    private CreateSongDto readData(InputStream part) throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8 * 1024];
+        int read;
+        while ((read = part.read(buffer)) != -1) {
+            if (json.size() + read > MAX_DATA_SIZE) {
+                log.error("Streamed upload rejected – song data over {} bytes", MAX_DATA_SIZE);
+                throw new SongException(ErrorType.INVALID_SONG_DATA, "Invalid song data");
+            }
+            json.write(buffer, 0, read);
+        }
+        CreateSongDto dto;
+        try {
+            dto = objectMapper.readValue(json.toByteArray(), CreateSongDto.class);
+        } catch (IOException e) {
+            log.error("Streamed upload rejected – unreadable song data: {}", e.getMessage());
+            throw new SongException(ErrorType.INVALID_SONG_DATA, "Invalid song data");
+        }
+        Set<ConstraintViolation<CreateSongDto>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            log.error("Streamed upload rejected – invalid song data: {}", violations);
+            throw new SongException(ErrorType.INVALID_SONG_DATA, "Invalid song data");
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,72 @@
+package Rift.Radio.service.upload;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of locks shared out over any number of keys by hash. Work on one key is
+ * serialised while work on other keys mostly is not, without a lock per key to create and
+ * clean up. Two keys may share a stripe, which only costs some waiting.
+ * <p>
+ * Several keys are locked in stripe order, so two callers locking overlapping keys cannot
+ * deadlock.
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+
+    public StripedLocks(int count) {
+        int size = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Locks the stripes of all keys; null keys are left out. Closing the result unlocks them.
+     */
+    public Held lock(String... keys) {
+        int[] indexes = new int[keys.length];
+        int count = 0;
+        for (String key : keys) {
+            if (key != null) {
+                indexes[count++] = stripe(key);
+            }
+        }
+        Arrays.sort(indexes, 0, count);
+        ReentrantLock[] held = new ReentrantLock[count];
+        int locked = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || indexes[i] != indexes[i - 1]) {
+                ReentrantLock lock = stripes[indexes[i]];
+                lock.lock();
+                held[locked++] = lock;
+            }
+        }
+        return new Held(held, locked);
+    }
+
+    int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    public static final class Held implements AutoCloseable {
+
+        private final ReentrantLock[] locks;
+        private int count;
+
+        private Held(ReentrantLock[] locks, int count) {
+            this.locks = locks;
+            this.count = count;
+        }
+
+        @Override
+        public void close() {
+            while (count > 0) {
+                locks[--count].unlock();
+            }
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package Rift.Radio.controller;
 
 import Rift.Radio.api.SongController;
+import Rift.Radio.dto.CreateSongDto;
 import Rift.Radio.error.ErrorType;
 import Rift.Radio.error.SongException;
 import Rift.Radio.modal.Song;
 import Rift.Radio.service.SongService;
+import Rift.Radio.service.charts.ChartService;
+import Rift.Radio.service.events.CatalogVersion;
+import Rift.Radio.service.history.ListeningHistoryService;
+import Rift.Radio.service.plays.KnownSongs;
+import Rift.Radio.service.plays.PlayCountService;
+import Rift.Radio.service.prefetch.PrefetchService;
+import Rift.Radio.service.upload.StreamingUploadService;
 import Rift.Radio.Tests;
 import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -30,6 +39,27 @@ public class SongControllerUnitTest extends Tests {
     @Mock
     private SongService songService;
 
+    @Mock
+    private CatalogVersion catalogVersion;
+
+    @Mock
+    private PlayCountService playCountService;
+
+    @Mock
+    private ListeningHistoryService listeningHistoryService;
+
+    @Mock
+    private ChartService chartService;
+
+    @Mock
+    private KnownSongs knownSongs;
+
+    @Mock
+    private PrefetchService prefetchService;
+
+    @Mock
+    private StreamingUploadService streamingUploadService;
+
     @InjectMocks
     private SongController songController;
 
@@ -41,39 +71,32 @@ public class SongControllerUnitTest extends Tests {
     @Test
     public void testUploadFile_Success() {
         MultipartFile file = new MockMultipartFile("file", "new_song.mp3", "audio/mpeg", new byte[]{1, 2, 3});
-        when(songService.uploadSong(file, SONG_SHOT_IN_THE_DARK.getSongName(), SONG_SHOT_IN_THE_DARK.getArtistName(),
-                SONG_SHOT_IN_THE_DARK.getAlbum(), SONG_SHOT_IN_THE_DARK.getReleaseYear(), SONG_SHOT_IN_THE_DARK.getGenre()))
-                .thenReturn(SONG_SHOT_IN_THE_DARK);
+        CreateSongDto dto = createSongDto(SONG_SHOT_IN_THE_DARK.getSongName(), SONG_SHOT_IN_THE_DARK.getArtistName(),
+                SONG_SHOT_IN_THE_DARK.getAlbum(), SONG_SHOT_IN_THE_DARK.getReleaseYear(), SONG_SHOT_IN_THE_DARK.getGenre());
+        when(songService.uploadSong(file, dto)).thenReturn(SONG_SHOT_IN_THE_DARK);
 
-        ResponseEntity<?> response = songController.uploadFile(file, SONG_SHOT_IN_THE_DARK.getSongName(),
-                SONG_SHOT_IN_THE_DARK.getArtistName(), SONG_SHOT_IN_THE_DARK.getAlbum(),
-                SONG_SHOT_IN_THE_DARK.getReleaseYear(), SONG_SHOT_IN_THE_DARK.getGenre());
+        ResponseEntity<?> response = songController.uploadFile(file, dto);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(SONG_SHOT_IN_THE_DARK, response.getBody());
-        verify(songService, times(1)).uploadSong(file, SONG_SHOT_IN_THE_DARK.getSongName(),
-                SONG_SHOT_IN_THE_DARK.getArtistName(), SONG_SHOT_IN_THE_DARK.getAlbum(),
-                SONG_SHOT_IN_THE_DARK.getReleaseYear(), SONG_SHOT_IN_THE_DARK.getGenre());
+        verify(songService, times(1)).uploadSong(file, dto);
     }
 
     @Test
     public void testUploadFile_SongNameExistsException() {
         MultipartFile file = new MockMultipartFile("file", "song.mp3", "audio/mpeg", new byte[]{1, 2, 3});
-        when(songService.uploadSong(file, SONG_SHOT_IN_THE_DARK.getSongName(), SONG_SHOT_IN_THE_DARK.getArtistName(),
-                SONG_SHOT_IN_THE_DARK.getAlbum(), SONG_SHOT_IN_THE_DARK.getReleaseYear(), SONG_SHOT_IN_THE_DARK.getGenre()))
+        CreateSongDto dto = createSongDto(SONG_SHOT_IN_THE_DARK.getSongName(), SONG_SHOT_IN_THE_DARK.getArtistName(),
+                SONG_SHOT_IN_THE_DARK.getAlbum(), SONG_SHOT_IN_THE_DARK.getReleaseYear(), SONG_SHOT_IN_THE_DARK.getGenre());
+        when(songService.uploadSong(file, dto))
                 .thenThrow(new SongException(ErrorType.Duplicated_SONG, "Song name already exists"));
 
-        ResponseEntity<?> response = songController.uploadFile(file, SONG_SHOT_IN_THE_DARK.getSongName(),
-                SONG_SHOT_IN_THE_DARK.getArtistName(), SONG_SHOT_IN_THE_DARK.getAlbum(),
-                SONG_SHOT_IN_THE_DARK.getReleaseYear(), SONG_SHOT_IN_THE_DARK.getGenre());
+        ResponseEntity<?> response = songController.uploadFile(file, dto);
 
         assertNotNull(response);
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertTrue(Objects.requireNonNull(response.getBody()).toString().contains("Song name already exists"));
-        verify(songService, times(1)).uploadSong(file, SONG_SHOT_IN_THE_DARK.getSongName(),
-                SONG_SHOT_IN_THE_DARK.getArtistName(), SONG_SHOT_IN_THE_DARK.getAlbum(),
-                SONG_SHOT_IN_THE_DARK.getReleaseYear(), SONG_SHOT_IN_THE_DARK.getGenre());
+        verify(songService, times(1)).uploadSong(file, dto);
     }
 
     @Test
@@ -129,62 +152,68 @@ public class SongControllerUnitTest extends Tests {
     @Test
     public void testEditSong_Success() {
         MultipartFile file = new MockMultipartFile("file", "edited_song.mp3", "audio/mpeg", new byte[]{1, 2, 3});
-        when(songService.editSong(eq(SONG_SHOT_IN_THE_DARK.getId()), any(), eq("Edited Song"),
-                eq("Edited Artist"), eq("Edited Album"), eq(2021), eq("Edited Genre")))
-                .thenReturn(SONG_SHOT_IN_THE_DARK);
+        CreateSongDto dto = createSongDto("Edited Song", "Edited Artist", "Edited Album", 2021, "Edited Genre");
+        when(songService.editSong(SONG_SHOT_IN_THE_DARK.getId(), file, dto)).thenReturn(SONG_SHOT_IN_THE_DARK);
 
-        ResponseEntity<?> response = songController.editSong(SONG_SHOT_IN_THE_DARK.getId(), file, "Edited Song",
-                "Edited Artist", "Edited Album", 2021, "Edited Genre");
+        ResponseEntity<?> response = songController.editSong(SONG_SHOT_IN_THE_DARK.getId(), file, dto);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(SONG_SHOT_IN_THE_DARK, response.getBody());
-        verify(songService, times(1)).editSong(eq(SONG_SHOT_IN_THE_DARK.getId()), any(), eq("Edited Song"),
-                eq("Edited Artist"), eq("Edited Album"), eq(2021), eq("Edited Genre"));
+        verify(songService, times(1)).editSong(SONG_SHOT_IN_THE_DARK.getId(), file, dto);
     }
 
     @Test
     public void testEditSong_SongNameExistsException() {
         MultipartFile file = new MockMultipartFile("file", "edited_song.mp3", "audio/mpeg", new byte[]{1, 2, 3});
-        when(songService.editSong(eq(SONG_SHOT_IN_THE_DARK.getId()), any(), eq(SONG_BACK_IN_THE_SADDLE.getSongName()),
-                eq(SONG_SHOT_IN_THE_DARK.getArtistName()), eq(SONG_SHOT_IN_THE_DARK.getAlbum()), eq(2021), eq("Edited Genre")))
+        CreateSongDto dto = createSongDto(SONG_BACK_IN_THE_SADDLE.getSongName(), SONG_SHOT_IN_THE_DARK.getArtistName(),
+                SONG_SHOT_IN_THE_DARK.getAlbum(), 2021, "Edited Genre");
+        when(songService.editSong(SONG_SHOT_IN_THE_DARK.getId(), file, dto))
                 .thenThrow(new SongException(ErrorType.Duplicated_SONG, "Song name already exists"));
 
-        ResponseEntity<?> response = songController.editSong(SONG_SHOT_IN_THE_DARK.getId(), file,
-                SONG_BACK_IN_THE_SADDLE.getSongName(), SONG_SHOT_IN_THE_DARK.getArtistName(),
-                SONG_SHOT_IN_THE_DARK.getAlbum(), 2021, "Edited Genre");
+        ResponseEntity<?> response = songController.editSong(SONG_SHOT_IN_THE_DARK.getId(), file, dto);
 
         assertNotNull(response);
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertTrue(Objects.requireNonNull(response.getBody()).toString().contains("Song name already exists"));
-        verify(songService, times(1)).editSong(eq(SONG_SHOT_IN_THE_DARK.getId()), any(), eq(SONG_BACK_IN_THE_SADDLE.getSongName()),
-                eq(SONG_SHOT_IN_THE_DARK.getArtistName()), eq(SONG_SHOT_IN_THE_DARK.getAlbum()), eq(2021), eq("Edited Genre"));
+        verify(songService, times(1)).editSong(SONG_SHOT_IN_THE_DARK.getId(), file, dto);
     }
 
     @Test
     public void testEditSong_NotFoundException() {
         MultipartFile file = new MockMultipartFile("file", "edited_song.mp3", "audio/mpeg", new byte[]{1, 2, 3});
-        when(songService.editSong(eq(1000L), any(), eq("Edited Song"), eq("Edited Artist"),
-                eq("Edited Album"), eq(2021), eq("Edited Genre")))
+        CreateSongDto dto = createSongDto("Edited Song", "Edited Artist", "Edited Album", 2021, "Edited Genre");
+        when(songService.editSong(1000L, file, dto))
                 .thenThrow(new SongException(ErrorType.SONG_NOT_FOUND, "Song not found"));
 
-        ResponseEntity<?> response = songController.editSong(1000L, file, "Edited Song", "Edited Artist",
-                "Edited Album", 2021, "Edited Genre");
+        ResponseEntity<?> response = songController.editSong(1000L, file, dto);
 
         assertNotNull(response);
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         assertTrue(Objects.requireNonNull(response.getBody()).toString().contains("Song not found"));
-        verify(songService, times(1)).editSong(eq(1000L), any(), eq("Edited Song"), eq("Edited Artist"),
-                eq("Edited Album"), eq(2021), eq("Edited Genre"));
+        verify(songService, times(1)).editSong(1000L, file, dto);
     }
 
     @Test
     public void testDownloadSong_Success() throws IOException {
+        HttpServletRequest mockRequest = mock(HttpServletRequest.class);
         HttpServletResponse mockResponse = mock(HttpServletResponse.class);
         ServletOutputStream outputStream = mock(ServletOutputStream.class);
         when(mockResponse.getOutputStream()).thenReturn(outputStream);
 
-        songController.downloadSong(SONG_SHOT_IN_THE_DARK.getId(), mockResponse);
+        songController.downloadSong(SONG_SHOT_IN_THE_DARK.getId(), null, null, mockRequest, mockResponse);
         verify(songService, times(1)).downloadSong(SONG_SHOT_IN_THE_DARK.getId(), mockResponse);
+        verify(playCountService, times(1)).recordPlay(SONG_SHOT_IN_THE_DARK.getId());
+    }
+
+    private static CreateSongDto createSongDto(String songName, String artistName, String album, int releaseYear,
+                                               String genre) {
+        CreateSongDto dto = new CreateSongDto();
+        dto.setSongName(songName);
+        dto.setArtistName(artistName);
+        dto.setAlbum(album);
+        dto.setReleaseYear(releaseYear);
+        dto.setGenre(genre);
+        return dto;
     }
 }
@@ -0,0 +1,66 @@
+package Rift.Radio.service;
+
+import Rift.Radio.dto.BootstrapDto;
+import Rift.Radio.dto.PlaylistSummaryDto;
+import Rift.Radio.dto.SongDto;
+import Rift.Radio.error.ErrorType;
+import Rift.Radio.error.LikedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BootstrapServiceUnitTest {
+
+    @Mock
+    private SongService songService;
+
+    @Mock
+    private PlaylistService playlistService;
+
+    @Mock
+    private LikedSongService likedService;
+
+    private BootstrapService bootstrapService;
+
+    @BeforeEach
+    public void setUp() {
+        bootstrapService = new BootstrapService(songService, playlistService, likedService, Runnable::run);
+    }
+
+    @Test
+    public void testBootstrap_AssemblesAllSections() {
+        SongDto song = new SongDto();
+        song.setId(1L);
+        PlaylistSummaryDto playlist = new PlaylistSummaryDto(10L, "Road trip", "desc", 3);
+
+        when(songService.getAllSongs(0, 50)).thenReturn(Collections.singletonList(song));
+        when(playlistService.listPlaylistSummaries()).thenReturn(Collections.singletonList(playlist));
+        when(likedService.getLikedSongIds()).thenReturn(Arrays.asList(1L, 7L));
+
+        BootstrapDto dto = bootstrapService.bootstrap(50);
+
+        assertEquals(50, dto.getPageSize());
+        assertEquals(1, dto.getSongs().size());
+        assertEquals(3, dto.getPlaylists().get(0).getTotalSongs());
+        assertEquals(Arrays.asList(1L, 7L), dto.getLikedSongIds());
+        verify(songService, times(1)).getAllSongs(0, 50);
+    }
+
+    @Test
+    public void testBootstrap_PropagatesServiceException() {
+        when(songService.getAllSongs(0, 50)).thenReturn(Collections.<SongDto>emptyList());
+        when(playlistService.listPlaylistSummaries()).thenReturn(Collections.<PlaylistSummaryDto>emptyList());
+        when(likedService.getLikedSongIds()).thenThrow(new LikedException(ErrorType.SONG_NOT_FOUND, "Song not found"));
+
+        assertThrows(LikedException.class, () -> bootstrapService.bootstrap(50));
+    }
+}
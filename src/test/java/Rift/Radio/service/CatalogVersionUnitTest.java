@@ -0,0 +1,40 @@
+package Rift.Radio.service;
+
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.events.CatalogVersion;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogVersionUnitTest {
+
+    @Test
+    public void testEtagChangesAfterMutation() {
+        CatalogVersion catalogVersion = new CatalogVersion();
+        String before = catalogVersion.etag("songs", 0, 50);
+
+        catalogVersion.onCatalogChange(CatalogChangeEvent.song(CatalogChangeType.SONG_CREATED, 1L));
+
+        String after = catalogVersion.etag("songs", 0, 50);
+        assertNotEquals(before, after);
+        assertEquals(1, catalogVersion.current());
+    }
+
+    @Test
+    public void testEtagDependsOnPage() {
+        CatalogVersion catalogVersion = new CatalogVersion();
+        assertNotEquals(catalogVersion.etag("songs", 0, 50), catalogVersion.etag("songs", 1, 50));
+    }
+
+    @Test
+    public void testMatches() {
+        String etag = "\"songs-abc-3-0-50\"";
+        assertTrue(CatalogVersion.matches(etag, etag));
+        assertTrue(CatalogVersion.matches("W/" + etag, etag));
+        assertTrue(CatalogVersion.matches("\"other\", " + etag, etag));
+        assertTrue(CatalogVersion.matches("*", etag));
+        assertFalse(CatalogVersion.matches("\"songs-abc-2-0-50\"", etag));
+        assertFalse(CatalogVersion.matches(null, etag));
+    }
+}
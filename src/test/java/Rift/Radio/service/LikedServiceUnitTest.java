@@ -1,5 +1,7 @@
 package Rift.Radio.service;
 
+import Rift.Radio.dto.BatchItemStatus;
+import Rift.Radio.dto.BatchResultDto;
 import Rift.Radio.error.LikedException;
 import Rift.Radio.modal.LikedSong;
 import Rift.Radio.modal.Song;
@@ -11,13 +13,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +34,9 @@ public class LikedServiceUnitTest {
     @Mock
     private SongRepository songRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private LikedSongService likedService;
 
@@ -99,15 +107,14 @@ public class LikedServiceUnitTest {
 
     @Test
     public void testGetAllLikedSongs() {
-        List<LikedSong> likedSongs = Collections.singletonList(testLikedSong);
-        when(likedRepository.findAll()).thenReturn(likedSongs);
+        when(likedRepository.findAllSongs()).thenReturn(Collections.singletonList(testSong));
 
         List<Song> songs = likedService.getAllLikedSongs();
         assertNotNull(songs);
         assertEquals(1, songs.size());
         assertEquals(testSong, songs.get(0));
 
-        verify(likedRepository, times(1)).findAll();
+        verify(likedRepository, times(1)).findAllSongs();
     }
 
     @Test
@@ -145,4 +152,33 @@ public class LikedServiceUnitTest {
         verify(songRepository, never()).save(any(Song.class));
         verify(likedRepository, never()).delete(any(LikedSong.class));
     }
+
+    @Test
+    public void testLikeSongs_ReportsPerItem() {
+        when(songRepository.findExistingIds(anyCollection())).thenReturn(Arrays.asList(1L, 2L));
+        when(likedRepository.findSongIdsIn(anyCollection())).thenReturn(Collections.singletonList(2L));
+
+        BatchResultDto result = likedService.likeSongs(Arrays.asList(1L, 2L, 3L, 1L));
+
+        assertEquals(1, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals(BatchItemStatus.LIKED, result.getResults().get(0).getStatus());
+        assertEquals(BatchItemStatus.ALREADY_LIKED, result.getResults().get(1).getStatus());
+        assertEquals(BatchItemStatus.SONG_NOT_FOUND, result.getResults().get(2).getStatus());
+
+        verify(likedRepository, times(1)).insertAll(Collections.singletonList(1L));
+        verify(songRepository, times(1)).updateLiked(Collections.singletonList(1L), true);
+    }
+
+    @Test
+    public void testRemoveLikedSongs_NothingToRemove() {
+        when(songRepository.findExistingIds(anyCollection())).thenReturn(Collections.singletonList(1L));
+        when(likedRepository.findSongIdsIn(anyCollection())).thenReturn(Collections.<Long>emptyList());
+
+        BatchResultDto result = likedService.removeLikedSongs(Collections.singletonList(1L));
+
+        assertEquals(0, result.getSucceeded());
+        assertEquals(BatchItemStatus.NOT_LIKED, result.getResults().get(0).getStatus());
+        verify(likedRepository, never()).deleteAllBySongIds(anyCollection());
+    }
 }
@@ -0,0 +1,125 @@
+package Rift.Radio.service;
+
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.modal.PlaylistSong;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PlaylistOrderServiceUnitTest {
+
+    private static final long GAP = PlaylistSong.POSITION_GAP;
+
+    @Mock
+    private PlaylistRepository playlistRepository;
+
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PlaylistOrderService playlistOrderService;
+
+    @BeforeEach
+    public void setUp() {
+        playlistOrderService = new PlaylistOrderService(playlistRepository, playlistSongRepository,
+                eventPublisher, transactionManager);
+        when(playlistRepository.existsById(1L)).thenReturn(true);
+    }
+
+    @Test
+    public void testMoveSong_TakesMidpointOfNeighbours() {
+        when(playlistSongRepository.findPosition(1L, 30L)).thenReturn(Optional.of(3 * GAP));
+        when(playlistSongRepository.findPosition(1L, 10L)).thenReturn(Optional.of(GAP));
+        when(playlistSongRepository.findPositionAfter(1L, GAP, 30L)).thenReturn(2 * GAP);
+
+        playlistOrderService.moveSong(1L, 30L, 10L);
+
+        verify(playlistSongRepository, times(1)).updatePosition(1L, 30L, GAP + GAP / 2);
+        verify(playlistSongRepository, never()).renumber(anyLong(), anyList());
+        assertEquals(0, playlistOrderService.pendingCount());
+    }
+
+    @Test
+    public void testMoveSong_ToTop() {
+        when(playlistSongRepository.findPosition(1L, 30L)).thenReturn(Optional.of(3 * GAP));
+        when(playlistSongRepository.findFirstPosition(1L, 30L)).thenReturn(GAP);
+
+        playlistOrderService.moveSong(1L, 30L, null);
+
+        verify(playlistSongRepository, times(1)).updatePosition(1L, 30L, 0L);
+    }
+
+    @Test
+    public void testMoveSong_AfterLastSong() {
+        when(playlistSongRepository.findPosition(1L, 10L)).thenReturn(Optional.of(GAP));
+        when(playlistSongRepository.findPosition(1L, 30L)).thenReturn(Optional.of(3 * GAP));
+        when(playlistSongRepository.findPositionAfter(1L, 3 * GAP, 10L)).thenReturn(null);
+
+        playlistOrderService.moveSong(1L, 10L, 30L);
+
+        verify(playlistSongRepository, times(1)).updatePosition(1L, 10L, 4 * GAP);
+    }
+
+    @Test
+    public void testMoveSong_RenumbersWhenGapExhausted() {
+        when(playlistSongRepository.findPosition(1L, 30L)).thenReturn(Optional.of(3 * GAP));
+        when(playlistSongRepository.findPosition(1L, 10L)).thenReturn(Optional.of(100L)).thenReturn(Optional.of(GAP));
+        when(playlistSongRepository.findPositionAfter(1L, 100L, 30L)).thenReturn(101L);
+        when(playlistSongRepository.findPositionAfter(1L, GAP, 30L)).thenReturn(2 * GAP);
+        when(playlistSongRepository.findOrderedRowSongIds(1L)).thenReturn(Arrays.asList(10L, 20L, 30L));
+
+        playlistOrderService.moveSong(1L, 30L, 10L);
+
+        verify(playlistSongRepository, times(1)).renumber(1L, Arrays.asList(10L, 20L, 30L));
+        verify(playlistSongRepository, times(1)).updatePosition(1L, 30L, GAP + GAP / 2);
+    }
+
+    @Test
+    public void testMoveSong_NarrowGapQueuesRenumber() {
+        when(playlistSongRepository.findPosition(1L, 30L)).thenReturn(Optional.of(3 * GAP));
+        when(playlistSongRepository.findPosition(1L, 10L)).thenReturn(Optional.of(100L));
+        when(playlistSongRepository.findPositionAfter(1L, 100L, 30L)).thenReturn(120L);
+
+        playlistOrderService.moveSong(1L, 30L, 10L);
+
+        verify(playlistSongRepository, times(1)).updatePosition(1L, 30L, 110L);
+        assertEquals(1, playlistOrderService.pendingCount());
+    }
+
+    @Test
+    public void testMoveSong_SongNotInPlaylist() {
+        when(playlistSongRepository.findPosition(1L, 30L)).thenReturn(Optional.empty());
+
+        PlaylistException ex = assertThrows(PlaylistException.class, () ->
+                playlistOrderService.moveSong(1L, 30L, 10L));
+        assertTrue(ex.getMessage().contains("Song not in playlist"));
+
+        verify(playlistSongRepository, never()).updatePosition(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testMoveSong_AfterItself() {
+        PlaylistException ex = assertThrows(PlaylistException.class, () ->
+                playlistOrderService.moveSong(1L, 30L, 30L));
+        assertTrue(ex.getMessage().contains("Cannot move a song after itself"));
+    }
+
+}
@@ -1,19 +1,29 @@
 package Rift.Radio.service;
 
+import Rift.Radio.dto.BatchItemStatus;
+import Rift.Radio.dto.BatchResultDto;
+import Rift.Radio.dto.CreatePlaylistDto;
 import Rift.Radio.error.PlaylistException;
 import Rift.Radio.modal.Playlist;
+import Rift.Radio.modal.PlaylistSong;
 import Rift.Radio.modal.Song;
+import Rift.Radio.dto.PlaylistDto;
+import Rift.Radio.dto.PlaylistSummaryDto;
 import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
 import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.smart.SmartPlaylistIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,6 +39,15 @@ public class PlaylistServiceUnitTest {
     @Mock
     private SongRepository songRepository;
 
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private SmartPlaylistIndex smartPlaylistIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private PlaylistService playlistService;
 
@@ -52,28 +71,35 @@ public class PlaylistServiceUnitTest {
         testPlaylist.setId(100L);
         testPlaylist.setName("Test Playlist");
         testPlaylist.setDescription("Test Description");
-        testPlaylist.setSongs(new HashSet<>());
     }
 
     @Test
     public void testCreatePlaylist_Success() {
+        CreatePlaylistDto dto = new CreatePlaylistDto();
+        dto.setPlaylistName(testPlaylist.getName());
+        dto.setDescription(testPlaylist.getDescription());
         when(playlistRepository.existsByName(testPlaylist.getName())).thenReturn(false);
-        when(playlistRepository.save(testPlaylist)).thenReturn(testPlaylist);
+        when(playlistRepository.save(any(Playlist.class))).thenReturn(testPlaylist);
 
-        Playlist created = playlistService.createPlaylist(testPlaylist);
+        CreatePlaylistDto created = playlistService.createPlaylist(dto);
         assertNotNull(created);
-        assertEquals(testPlaylist.getName(), created.getName());
+        assertEquals(testPlaylist.getName(), created.getPlaylistName());
 
         verify(playlistRepository, times(1)).existsByName(testPlaylist.getName());
-        verify(playlistRepository, times(1)).save(testPlaylist);
+        verify(playlistRepository, times(1)).save(argThat(playlist ->
+                testPlaylist.getName().equals(playlist.getName())
+                        && testPlaylist.getDescription().equals(playlist.getDescription())));
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangeEvent.class));
     }
 
     @Test
     public void testCreatePlaylist_AlreadyExists() {
+        CreatePlaylistDto dto = new CreatePlaylistDto();
+        dto.setPlaylistName(testPlaylist.getName());
         when(playlistRepository.existsByName(testPlaylist.getName())).thenReturn(true);
 
         PlaylistException ex = assertThrows(PlaylistException.class, () ->
-                playlistService.createPlaylist(testPlaylist));
+                playlistService.createPlaylist(dto));
         assertTrue(ex.getMessage().contains("Playlist name already exists"));
 
         verify(playlistRepository, times(1)).existsByName(testPlaylist.getName());
@@ -82,125 +108,132 @@ public class PlaylistServiceUnitTest {
 
     @Test
     public void testAddSongToPlaylist_Success() {
-        when(playlistRepository.findById(testPlaylist.getId())).thenReturn(Optional.of(testPlaylist));
-        when(songRepository.findById(testSong.getId())).thenReturn(Optional.of(testSong));
-        when(playlistRepository.save(any(Playlist.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(playlistRepository.existsById(testPlaylist.getId())).thenReturn(true);
+        when(songRepository.existsById(testSong.getId())).thenReturn(true);
+        when(playlistSongRepository.insertSong(testPlaylist.getId(), testSong.getId())).thenReturn(1);
+        when(playlistRepository.findSummaryById(testPlaylist.getId()))
+                .thenReturn(Optional.of(new PlaylistSummaryDto(testPlaylist.getId(), "Test Playlist", "Test Description", 1)));
 
-        Playlist updatedPlaylist = playlistService.addSongToPlaylist(testPlaylist.getId(), testSong.getId());
-        assertTrue(updatedPlaylist.getSongs().contains(testSong));
+        PlaylistSummaryDto updatedPlaylist = playlistService.addSongToPlaylist(testPlaylist.getId(), testSong.getId());
+        assertEquals(1, updatedPlaylist.getTotalSongs());
 
-        verify(playlistRepository, times(1)).findById(testPlaylist.getId());
-        verify(songRepository, times(1)).findById(testSong.getId());
-        verify(playlistRepository, times(1)).save(testPlaylist);
+        verify(playlistSongRepository, times(1)).insertSong(testPlaylist.getId(), testSong.getId());
+        verify(playlistRepository, times(1)).adjustSongCount(testPlaylist.getId(), 1);
     }
 
     @Test
     public void testAddSongToPlaylist_PlaylistNotFound() {
-        when(playlistRepository.findById(999L)).thenReturn(Optional.empty());
+        when(playlistRepository.existsById(999L)).thenReturn(false);
 
         PlaylistException ex = assertThrows(PlaylistException.class, () ->
                 playlistService.addSongToPlaylist(999L, testSong.getId()));
         assertTrue(ex.getMessage().contains("Playlist not found"));
 
-        verify(playlistRepository, times(1)).findById(999L);
-        verify(songRepository, never()).findById(anyLong());
+        verify(playlistRepository, times(1)).existsById(999L);
+        verify(songRepository, never()).existsById(anyLong());
     }
 
     @Test
     public void testAddSongToPlaylist_SongNotFound() {
-        when(playlistRepository.findById(testPlaylist.getId())).thenReturn(Optional.of(testPlaylist));
-        when(songRepository.findById(999L)).thenReturn(Optional.empty());
+        when(playlistRepository.existsById(testPlaylist.getId())).thenReturn(true);
+        when(songRepository.existsById(999L)).thenReturn(false);
 
         PlaylistException ex = assertThrows(PlaylistException.class, () ->
                 playlistService.addSongToPlaylist(testPlaylist.getId(), 999L));
         assertTrue(ex.getMessage().contains("Song not found"));
 
-        verify(playlistRepository, times(1)).findById(testPlaylist.getId());
-        verify(songRepository, times(1)).findById(999L);
+        verify(playlistRepository, times(1)).existsById(testPlaylist.getId());
+        verify(songRepository, times(1)).existsById(999L);
     }
 
     @Test
     public void testAddSongToPlaylist_AlreadyInPlaylist() {
-        // Add song initially
-        testPlaylist.getSongs().add(testSong);
-        when(playlistRepository.findById(testPlaylist.getId())).thenReturn(Optional.of(testPlaylist));
-        when(songRepository.findById(testSong.getId())).thenReturn(Optional.of(testSong));
+        when(playlistRepository.existsById(testPlaylist.getId())).thenReturn(true);
+        when(songRepository.existsById(testSong.getId())).thenReturn(true);
+        when(playlistSongRepository.insertSong(testPlaylist.getId(), testSong.getId())).thenReturn(0);
 
         PlaylistException ex = assertThrows(PlaylistException.class, () ->
                 playlistService.addSongToPlaylist(testPlaylist.getId(), testSong.getId()));
         assertTrue(ex.getMessage().contains("Song already in playlist"));
 
-        verify(playlistRepository, times(1)).findById(testPlaylist.getId());
-        verify(songRepository, times(1)).findById(testSong.getId());
-        verify(playlistRepository, never()).save(any(Playlist.class));
+        verify(playlistRepository, never()).adjustSongCount(anyLong(), anyInt());
+    }
+
+    @Test
+    public void testAddSongToPlaylist_SmartPlaylistIsReadOnly() {
+        when(playlistRepository.existsById(testPlaylist.getId())).thenReturn(true);
+        when(smartPlaylistIndex.isSmart(testPlaylist.getId())).thenReturn(true);
+
+        PlaylistException ex = assertThrows(PlaylistException.class, () ->
+                playlistService.addSongToPlaylist(testPlaylist.getId(), testSong.getId()));
+        assertTrue(ex.getMessage().contains("managed by its rule"));
+
+        verify(playlistSongRepository, never()).insertSong(anyLong(), anyLong());
     }
 
     @Test
     public void testDeleteSongFromPlaylist_Success() {
-        // Setup playlist with song inside
-        testPlaylist.getSongs().add(testSong);
-        when(playlistRepository.findById(testPlaylist.getId())).thenReturn(Optional.of(testPlaylist));
-        when(songRepository.findById(testSong.getId())).thenReturn(Optional.of(testSong));
-        when(playlistRepository.save(any(Playlist.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(playlistRepository.existsById(testPlaylist.getId())).thenReturn(true);
+        when(songRepository.existsById(testSong.getId())).thenReturn(true);
+        when(playlistSongRepository.deleteSong(testPlaylist.getId(), testSong.getId())).thenReturn(1);
+        when(playlistRepository.findSummaryById(testPlaylist.getId()))
+                .thenReturn(Optional.of(new PlaylistSummaryDto(testPlaylist.getId(), "Test Playlist", "Test Description", 0)));
 
-        Playlist updatedPlaylist = playlistService.deleteSongFromPlaylist(testPlaylist.getId(), testSong.getId());
-        assertFalse(updatedPlaylist.getSongs().contains(testSong));
+        PlaylistSummaryDto updatedPlaylist = playlistService.deleteSongFromPlaylist(testPlaylist.getId(), testSong.getId());
+        assertEquals(0, updatedPlaylist.getTotalSongs());
 
-        verify(playlistRepository, times(1)).findById(testPlaylist.getId());
-        verify(songRepository, times(1)).findById(testSong.getId());
-        verify(playlistRepository, times(1)).save(testPlaylist);
+        verify(playlistSongRepository, times(1)).deleteSong(testPlaylist.getId(), testSong.getId());
+        verify(playlistRepository, times(1)).adjustSongCount(testPlaylist.getId(), -1);
     }
 
     @Test
     public void testDeleteSongFromPlaylist_PlaylistNotFound() {
-        when(playlistRepository.findById(999L)).thenReturn(Optional.empty());
+        when(playlistRepository.existsById(999L)).thenReturn(false);
 
         PlaylistException ex = assertThrows(PlaylistException.class, () ->
                 playlistService.deleteSongFromPlaylist(999L, testSong.getId()));
         assertTrue(ex.getMessage().contains("Playlist not found"));
 
-        verify(playlistRepository, times(1)).findById(999L);
-        verify(songRepository, never()).findById(anyLong());
+        verify(playlistRepository, times(1)).existsById(999L);
+        verify(songRepository, never()).existsById(anyLong());
     }
 
     @Test
     public void testDeleteSongFromPlaylist_SongNotFound() {
-        when(playlistRepository.findById(testPlaylist.getId())).thenReturn(Optional.of(testPlaylist));
-        when(songRepository.findById(999L)).thenReturn(Optional.empty());
+        when(playlistRepository.existsById(testPlaylist.getId())).thenReturn(true);
+        when(songRepository.existsById(999L)).thenReturn(false);
 
         PlaylistException ex = assertThrows(PlaylistException.class, () ->
                 playlistService.deleteSongFromPlaylist(testPlaylist.getId(), 999L));
         assertTrue(ex.getMessage().contains("Song not found"));
 
-        verify(playlistRepository, times(1)).findById(testPlaylist.getId());
-        verify(songRepository, times(1)).findById(999L);
+        verify(playlistRepository, times(1)).existsById(testPlaylist.getId());
+        verify(songRepository, times(1)).existsById(999L);
     }
 
     @Test
     public void testDeleteSongFromPlaylist_SongNotInPlaylist() {
-        // Playlist is empty
-        when(playlistRepository.findById(testPlaylist.getId())).thenReturn(Optional.of(testPlaylist));
-        when(songRepository.findById(testSong.getId())).thenReturn(Optional.of(testSong));
+        when(playlistRepository.existsById(testPlaylist.getId())).thenReturn(true);
+        when(songRepository.existsById(testSong.getId())).thenReturn(true);
+        when(playlistSongRepository.deleteSong(testPlaylist.getId(), testSong.getId())).thenReturn(0);
 
         PlaylistException ex = assertThrows(PlaylistException.class, () ->
                 playlistService.deleteSongFromPlaylist(testPlaylist.getId(), testSong.getId()));
         assertTrue(ex.getMessage().contains("Song not in playlist"));
 
-        verify(playlistRepository, times(1)).findById(testPlaylist.getId());
-        verify(songRepository, times(1)).findById(testSong.getId());
-        verify(playlistRepository, never()).save(any(Playlist.class));
+        verify(playlistRepository, never()).adjustSongCount(anyLong(), anyInt());
     }
 
     @Test
     public void testListSongsInPlaylist_Success() {
-        // Setup playlist with one song
-        testPlaylist.getSongs().add(testSong);
         when(playlistRepository.findById(testPlaylist.getId())).thenReturn(Optional.of(testPlaylist));
+        when(playlistSongRepository.findSongsByPlaylistId(testPlaylist.getId()))
+                .thenReturn(Collections.singletonList(testSong));
 
-        List<Song> result = playlistService.listSongsInPlaylist(testPlaylist.getId());
+        PlaylistDto result = playlistService.listSongsInPlaylist(testPlaylist.getId());
         assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals(testSong, result.get(0));
+        assertEquals(1, result.getTotalSongs());
+        assertEquals(testSong.getId(), result.getSongDtos().get(0).getId());
 
         verify(playlistRepository, times(1)).findById(testPlaylist.getId());
     }
@@ -215,16 +248,65 @@ public class PlaylistServiceUnitTest {
         verify(playlistRepository, times(1)).findById(999L);
     }
 
+    @Test
+    public void testListSongsInPlaylist_PageClampsLimit() {
+        testPlaylist.setTotalSongs(1200);
+        when(playlistRepository.findById(testPlaylist.getId())).thenReturn(Optional.of(testPlaylist));
+        when(playlistSongRepository.findSongPage(testPlaylist.getId(), 0, PlaylistService.MAX_PAGE_SIZE))
+                .thenReturn(Collections.singletonList(testSong));
+
+        PlaylistDto result = playlistService.listSongsInPlaylist(testPlaylist.getId(), -5, 10000);
+        assertEquals(1200, result.getTotalSongs());
+        assertEquals(1, result.getSongDtos().size());
+
+        verify(playlistSongRepository, never()).findSongsByPlaylistId(anyLong());
+    }
+
     @Test
     public void testListAllPlaylists_Success() {
         List<Playlist> playlists = Collections.singletonList(testPlaylist);
         when(playlistRepository.findAll()).thenReturn(playlists);
+        when(playlistSongRepository.findAllPlaylistSongs())
+                .thenReturn(Collections.singletonList(new Object[]{testPlaylist.getId(), testSong}));
 
-        List<Playlist> result = playlistService.listAllPlaylists();
+        List<PlaylistDto> result = playlistService.listAllPlaylists();
         assertNotNull(result);
         assertEquals(1, result.size());
-        assertEquals(testPlaylist, result.get(0));
+        assertEquals(testPlaylist.getId(), result.get(0).getPlaylistId());
+        assertEquals(1, result.get(0).getSongDtos().size());
 
         verify(playlistRepository, times(1)).findAll();
+        verify(playlistSongRepository, times(1)).findAllPlaylistSongs();
+    }
+
+    @Test
+    public void testAddSongsToPlaylist_ReportsPerItem() {
+        when(playlistRepository.existsById(testPlaylist.getId())).thenReturn(true);
+        when(songRepository.findExistingIds(anyCollection())).thenReturn(Arrays.asList(1L, 2L));
+        when(playlistSongRepository.findSongIdsInPlaylist(eq(testPlaylist.getId()), anyCollection()))
+                .thenReturn(Collections.singletonList(2L));
+        when(playlistSongRepository.findMaxPosition(testPlaylist.getId())).thenReturn(PlaylistSong.POSITION_GAP);
+        when(playlistSongRepository.insertSongsAt(testPlaylist.getId(), Collections.singletonList(1L),
+                2 * PlaylistSong.POSITION_GAP)).thenReturn(1);
+
+        BatchResultDto result = playlistService.addSongsToPlaylist(testPlaylist.getId(), Arrays.asList(1L, 2L, 3L));
+
+        assertEquals(1, result.getSucceeded());
+        assertEquals(BatchItemStatus.ADDED, result.getResults().get(0).getStatus());
+        assertEquals(BatchItemStatus.ALREADY_IN_PLAYLIST, result.getResults().get(1).getStatus());
+        assertEquals(BatchItemStatus.SONG_NOT_FOUND, result.getResults().get(2).getStatus());
+        verify(playlistSongRepository, times(1)).insertSongsAt(testPlaylist.getId(), Collections.singletonList(1L),
+                2 * PlaylistSong.POSITION_GAP);
+        verify(playlistRepository, times(1)).adjustSongCount(testPlaylist.getId(), 1);
+    }
+
+    @Test
+    public void testRemoveSongsFromPlaylist_PlaylistNotFound() {
+        when(playlistRepository.existsById(999L)).thenReturn(false);
+
+        PlaylistException ex = assertThrows(PlaylistException.class, () ->
+                playlistService.removeSongsFromPlaylist(999L, Collections.singletonList(1L)));
+        assertTrue(ex.getMessage().contains("Playlist not found"));
+        verify(playlistSongRepository, never()).deleteSongs(anyLong(), anyCollection());
     }
 }
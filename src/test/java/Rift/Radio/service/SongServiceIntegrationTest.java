@@ -1,9 +1,12 @@
 package Rift.Radio.service;
 
+import Rift.Radio.dto.CreateSongDto;
 import Rift.Radio.error.SongException;
 import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistSongRepository;
 import Rift.Radio.repository.SongRepository;
 import Rift.Radio.Tests;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -20,11 +23,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @SpringBootTest
@@ -37,65 +40,66 @@ public class SongServiceIntegrationTest extends Tests {
     @MockBean
     private SongRepository songRepository;
 
+    @MockBean
+    private PlaylistSongRepository playlistSongRepository;
+
+    private String storedFilePath;
+
     @BeforeEach
     public void setup() {
     }
 
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (storedFilePath != null) {
+            Files.deleteIfExists(Paths.get(storedFilePath));
+        }
+    }
+
     @Test
     public void testUploadSong_Success() throws IOException {
         Long EXISTING_SONG_ID = 1L;
 
-        Song song = new Song();
-        song.setId(EXISTING_SONG_ID);
-        song.setSongName(SONG_SHOT_IN_THE_DARK.getSongName());
-        song.setArtistName(SONG_SHOT_IN_THE_DARK.getArtistName());
-        song.setAlbum(SONG_SHOT_IN_THE_DARK.getAlbum());
-        song.setReleaseYear(SONG_SHOT_IN_THE_DARK.getReleaseYear());
-        song.setGenre(SONG_SHOT_IN_THE_DARK.getGenre());
-        song.setFilePath(FILE_DIRECTORY + SHOT_IN_THE_DARK_MP3);
-
         // Prepare test data
         MultipartFile file = createMockMultipartFile(SONG_SHOT_IN_THE_DARK.getFilePath());
-        String songName = SONG_SHOT_IN_THE_DARK.getSongName();
-        String artistName = SONG_SHOT_IN_THE_DARK.getArtistName();
-        String album = SONG_SHOT_IN_THE_DARK.getAlbum();
-        int releaseYear = SONG_SHOT_IN_THE_DARK.getReleaseYear();
-        String genre = SONG_SHOT_IN_THE_DARK.getGenre();
+        CreateSongDto dto = createSongDto(SONG_SHOT_IN_THE_DARK);
 
         when(songRepository.existsBySongName(anyString())).thenReturn(false);
         when(songRepository.existsByFilePath(anyString())).thenReturn(false);
-        when(songRepository.save(any())).thenReturn(song);
+        when(songRepository.save(any())).thenAnswer(invocation -> {
+            Song saved = invocation.getArgument(0);
+            saved.setId(EXISTING_SONG_ID);
+            return saved;
+        });
 
         // Perform the upload
-        Song uploadedSong = songService.uploadSong(file, songName, artistName, album, releaseYear, genre);
-        System.out.println(uploadedSong);
+        Song uploadedSong = songService.uploadSong(file, dto);
+        storedFilePath = uploadedSong.getFilePath();
 
         // Assertions
         assertNotNull(uploadedSong);
-        assertEquals(songName, uploadedSong.getSongName());
-        assertEquals(artistName, uploadedSong.getArtistName());
-        assertEquals(album, uploadedSong.getAlbum());
-        assertEquals(releaseYear, uploadedSong.getReleaseYear());
-        assertEquals(genre, uploadedSong.getGenre());
+        assertEquals(dto.getSongName(), uploadedSong.getSongName());
+        assertEquals(dto.getArtistName(), uploadedSong.getArtistName());
+        assertEquals(dto.getAlbum(), uploadedSong.getAlbum());
+        assertEquals(dto.getReleaseYear(), uploadedSong.getReleaseYear());
+        assertEquals(dto.getGenre(), uploadedSong.getGenre());
+        assertArrayEquals(file.getBytes(), Files.readAllBytes(Paths.get(storedFilePath)));
 
         // Verify interactions
-        verify(songRepository, times(1)).existsBySongName(anyString());
-        verify(songRepository, times(1)).existsByFilePath(anyString());
         verify(songRepository, times(1)).save(any());
     }
 
     @Test
     public void testUploadSong_MP3FileExistsException() throws IOException {
         // Prepare test data
-        MultipartFile file = createMockMultipartFile(SONG_BACK_IN_THE_SADDLE.getFilePath());
+        MultipartFile file = createMockMultipartFile(SONG_SHARP_DRESSED_MAN.getFilePath());
 
         when(songRepository.existsBySongName(anyString())).thenReturn(false);
         when(songRepository.existsByFilePath(anyString())).thenReturn(true);
 
         // Perform the upload and assert the exception
-        SongException ex = assertThrows(SongException.class, () -> songService.uploadSong(file, SONG_BACK_IN_THE_SADDLE.getSongName(),
-                SONG_BACK_IN_THE_SADDLE.getArtistName(), SONG_BACK_IN_THE_SADDLE.getAlbum(),
-                SONG_BACK_IN_THE_SADDLE.getReleaseYear(), SONG_BACK_IN_THE_SADDLE.getGenre()));
+        SongException ex = assertThrows(SongException.class,
+                () -> songService.uploadSong(file, createSongDto(SONG_SHARP_DRESSED_MAN)));
         assertTrue(ex.getMessage().contains("MP3 file already uploaded"));
 
         // Verify interactions
@@ -112,9 +116,8 @@ public class SongServiceIntegrationTest extends Tests {
         when(songRepository.existsBySongName(anyString())).thenReturn(true);
 
         // Perform the upload and assert the exception
-        SongException ex = assertThrows(SongException.class, () -> songService.uploadSong(file, SONG_SHOT_IN_THE_DARK.getSongName(),
-                SONG_SHOT_IN_THE_DARK.getArtistName(), SONG_SHOT_IN_THE_DARK.getAlbum(),
-                SONG_SHOT_IN_THE_DARK.getReleaseYear(), SONG_SHOT_IN_THE_DARK.getGenre()));
+        SongException ex = assertThrows(SongException.class,
+                () -> songService.uploadSong(file, createSongDto(SONG_SHOT_IN_THE_DARK)));
         assertTrue(ex.getMessage().contains("Song name already exists"));
 
         // Verify interactions
@@ -126,27 +129,19 @@ public class SongServiceIntegrationTest extends Tests {
     @Test
     public void testDeleteSong_Success(@TempDir Path tempDir) throws IOException {
         Long EXISTING_SONG_ID = 1L;
-        Song existingSong = new Song();
-        existingSong.setId(EXISTING_SONG_ID);
-        existingSong.setSongName("Test Song");
-        existingSong.setArtistName("Test Artist");
-        existingSong.setAlbum("Test Album");
-        existingSong.setReleaseYear(2022);
-        existingSong.setGenre("Test Genre");
-        existingSong.setFilePath(tempDir.resolve("test_song.mp3").toString());
+        Path songFile = tempDir.resolve("test_song.mp3");
+        Files.copy(Paths.get(FILE_DIRECTORY, SHOT_IN_THE_DARK_MP3), songFile);
 
-        Files.copy(Paths.get(FILE_DIRECTORY, SHOT_IN_THE_DARK_MP3), tempDir.resolve("test_song.mp3"));
-
-        when(songRepository.findById(EXISTING_SONG_ID)).thenReturn(Optional.of(existingSong));
-        doNothing().when(songRepository).delete(existingSong);
+        when(songRepository.markDeleted(eq(EXISTING_SONG_ID), anyLong())).thenReturn(1);
 
         // Perform the delete
         songService.deleteSong(EXISTING_SONG_ID);
 
-        // Verify interactions
-        verify(songRepository, times(1)).findById(EXISTING_SONG_ID);
-        verify(songRepository, times(1)).delete(existingSong);
-        verifyNoMoreInteractions(songRepository);
+        // The song is only marked deleted, its rows and file are left to the purge
+        verify(songRepository, times(1)).markDeleted(eq(EXISTING_SONG_ID), anyLong());
+        verify(playlistSongRepository, times(1)).decrementCountsForSongs(Collections.singletonList(EXISTING_SONG_ID));
+        verify(songRepository, never()).delete(any());
+        assertTrue(Files.exists(songFile));
     }
 
     @Test
@@ -186,11 +181,7 @@ public class SongServiceIntegrationTest extends Tests {
         Song editedSong = songService.editSong(
                 EXISTING_SONG_ID,
                 null, // No new file provided
-                "Edited Song Name",
-                "Edited Artist",
-                "Edited Album",
-                2023,
-                "Edited Genre"
+                createSongDto(songToBeSaved)
         );
 
         // Assertions for the edited song metadata
@@ -202,7 +193,7 @@ public class SongServiceIntegrationTest extends Tests {
         assertEquals("Edited Genre", editedSong.getGenre());
 
         // Verify interactions
-        verify(songRepository, times(1)).findById(EXISTING_SONG_ID);
+        verify(songRepository, atLeastOnce()).findById(EXISTING_SONG_ID);
         verify(songRepository, times(1)).save(any());
 
         // Check that the MP3 file exists (not deleted during metadata edit)
@@ -214,6 +205,16 @@ public class SongServiceIntegrationTest extends Tests {
         assertTrue(savedMp3File.exists());
     }
 
+    private CreateSongDto createSongDto(Song song) {
+        CreateSongDto dto = new CreateSongDto();
+        dto.setSongName(song.getSongName());
+        dto.setArtistName(song.getArtistName());
+        dto.setAlbum(song.getAlbum());
+        dto.setReleaseYear(song.getReleaseYear());
+        dto.setGenre(song.getGenre());
+        return dto;
+    }
+
     private MultipartFile createMockMultipartFile(String filePath) throws IOException {
         File file = new File(filePath);
         byte[] content = Files.readAllBytes(file.toPath());
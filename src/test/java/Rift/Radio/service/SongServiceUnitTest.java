@@ -1,9 +1,18 @@
 package Rift.Radio.service;
 
 
+import Rift.Radio.dto.CreateSongDto;
 import Rift.Radio.error.SongException;
 import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistSongRepository;
 import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.artwork.CoverArtService;
+import Rift.Radio.service.fingerprint.FingerprintService;
+import Rift.Radio.service.metadata.Mp3MetadataParser;
+import Rift.Radio.service.storage.FileRetirementService;
+import Rift.Radio.service.storage.SongStorage;
+import Rift.Radio.service.tiering.TieringService;
 import Rift.Radio.Tests;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import jakarta.servlet.http.HttpServletResponse;
@@ -11,12 +20,14 @@ import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.mock.web.MockMultipartFile;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Optional;
 
 import java.nio.file.Files;
@@ -27,6 +38,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.test.context.TestPropertySource;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -44,6 +56,30 @@ public class SongServiceUnitTest extends Tests {
     @Mock
     private SongRepository songRepository;
 
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private Mp3MetadataParser metadataParser = new Mp3MetadataParser();
+
+    @Mock
+    private CoverArtService coverArtService;
+
+    @Mock
+    private FingerprintService fingerprintService;
+
+    @Mock
+    private SongStorage songStorage;
+
+    @Mock
+    private TieringService tieringService;
+
+    @Mock
+    private FileRetirementService fileRetirementService;
+
     @InjectMocks
     private SongService songService;
 
@@ -58,17 +94,20 @@ public class SongServiceUnitTest extends Tests {
 
     // Test for uploading a song successfully
     @Test
-    public void testUploadSong_Success() throws IOException {
+    public void testUploadSong_Success(@TempDir Path tempDir) throws IOException {
         byte[] fileContent = Files.readAllBytes(Paths.get(FILE_DIRECTORY + SHOT_IN_THE_DARK_MP3));
-        // Use spy to stub transferTo so it does nothing
-        MockMultipartFile file = spy(new MockMultipartFile("file", SHOT_IN_THE_DARK_MP3, "audio/mpeg", fileContent));
-        doNothing().when(file).transferTo(any(File.class));
+        MockMultipartFile file = new MockMultipartFile("file", SHOT_IN_THE_DARK_MP3, "audio/mpeg", fileContent);
+        String filePath = FILE_DIRECTORY + SHOT_IN_THE_DARK_MP3;
 
+        when(songStorage.keyFor(SHOT_IN_THE_DARK_MP3)).thenReturn(filePath);
+        when(songStorage.createStagingFile()).thenReturn(Files.createTempFile(tempDir, "upload-", ".part"));
+        when(songStorage.store(any(Path.class), eq(filePath))).thenReturn(true);
         when(songRepository.existsBySongName(any())).thenReturn(false);
         when(songRepository.existsByFilePath(any())).thenReturn(false);
-        when(songRepository.save(any(Song.class))).thenReturn(SONG_SHOT_IN_THE_DARK);
+        when(songRepository.save(any(Song.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        Song uploadedSong = songService.uploadSong(file, "Shot in the dark", "AC DC", "Power Up", 2020, "Klassisk rock");
+        Song uploadedSong = songService.uploadSong(file,
+                songDto("Shot in the dark", "AC DC", "Power Up", 2020, "Klassisk rock"));
 
         assertNotNull(uploadedSong);
         assertEquals("Shot in the dark", uploadedSong.getSongName());
@@ -76,11 +115,12 @@ public class SongServiceUnitTest extends Tests {
         assertEquals("Power Up", uploadedSong.getAlbum());
         assertEquals(2020, uploadedSong.getReleaseYear());
         assertEquals("Klassisk rock", uploadedSong.getGenre());
-        assertEquals(FILE_DIRECTORY + SHOT_IN_THE_DARK_MP3, uploadedSong.getFilePath());
+        assertEquals(filePath, uploadedSong.getFilePath());
+        assertNotNull(uploadedSong.getFileHash());
 
-        verify(songRepository, times(1)).existsBySongName(any());
-        verify(songRepository, times(1)).existsByFilePath(any());
+        verify(songStorage, times(1)).store(any(Path.class), eq(filePath));
         verify(songRepository, times(1)).save(any(Song.class));
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangeEvent.class));
     }
 
     // Test for handling SongNameExistsException during song upload
@@ -89,13 +129,14 @@ public class SongServiceUnitTest extends Tests {
         MockMultipartFile file = new MockMultipartFile("file", "song.mp3", "audio/mpeg", new byte[]{});
         when(songRepository.existsBySongName(any())).thenReturn(true);
 
-        SongException ex = assertThrows(SongException.class,
-                () -> songService.uploadSong(file, "Shot in the dark", "AC DC", "Power Up", 2020, "Klassisk rock"));
+        SongException ex = assertThrows(SongException.class, () -> songService.uploadSong(file,
+                songDto("Shot in the dark", "AC DC", "Power Up", 2020, "Klassisk rock")));
         assertTrue(ex.getMessage().contains("Song name already exists"));
 
         verify(songRepository, times(1)).existsBySongName(any());
         verify(songRepository, never()).existsByFilePath(any());
         verify(songRepository, never()).save(any(Song.class));
+        verifyNoInteractions(songStorage);
     }
 
     // Test for getting the file path when song is not found
@@ -117,6 +158,7 @@ public class SongServiceUnitTest extends Tests {
         song.setId(1L);
         song.setFilePath(tempFile.toString());
         when(songRepository.findById(1L)).thenReturn(Optional.of(song));
+        when(songStorage.load(tempFile.toString())).thenReturn(new FileSystemResource(tempFile));
 
         Resource resource = songService.getSongFile(1L);
         assertNotNull(resource);
@@ -134,9 +176,9 @@ public class SongServiceUnitTest extends Tests {
         verify(songRepository, times(1)).findById(10L);
     }
 
-    // Test for editing a song successfully
+    // Test for editing a song successfully: the new file is stored under a key of its own
     @Test
-    public void testEditSong_Success() throws IOException {
+    public void testEditSong_Success(@TempDir Path tempDir) throws IOException {
         Song existingSong = new Song();
         existingSong.setId(EXISTING_SONG_ID);
         existingSong.setSongName("Old Song Name");
@@ -144,20 +186,21 @@ public class SongServiceUnitTest extends Tests {
         existingSong.setAlbum("Old Album");
         existingSong.setReleaseYear(2000);
         existingSong.setGenre("Old Genre");
-        existingSong.setFilePath("src/main/resources/LocalStorage/MP3/old_song.mp3");
+        existingSong.setFilePath("data/mp3/old_song.mp3");
 
         when(songRepository.findById(EXISTING_SONG_ID)).thenReturn(Optional.of(existingSong));
         when(songRepository.existsBySongNameAndIdNot(anyString(), anyLong())).thenReturn(false);
         when(songRepository.existsByFilePath(anyString())).thenReturn(false);
         when(songRepository.save(any(Song.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(songStorage.createStagingFile()).thenReturn(Files.createTempFile(tempDir, "upload-", ".part"));
+        when(songStorage.keyFor(anyString())).thenAnswer(invocation -> "data/mp3/" + invocation.getArgument(0));
+        when(songStorage.store(any(Path.class), anyString())).thenReturn(true);
 
-        // Use spy to stub transferTo for the new file
-        MockMultipartFile newFile = spy(new MockMultipartFile("file", "new_song.mp3", "audio/mpeg", "New Song Content".getBytes()));
-        doNothing().when(newFile).transferTo(any(File.class));
+        byte[] fileContent = Files.readAllBytes(Paths.get(FILE_DIRECTORY + SHOT_IN_THE_DARK_MP3));
+        MockMultipartFile newFile = new MockMultipartFile("file", "new_song.mp3", "audio/mpeg", fileContent);
 
-        Song editedSong = songService.editSong(
-                EXISTING_SONG_ID, newFile, "New Song Name", "New Artist", "New Album", 2022, "New Genre"
-        );
+        Song editedSong = songService.editSong(EXISTING_SONG_ID, newFile,
+                songDto("New Song Name", "New Artist", "New Album", 2022, "New Genre"));
 
         assertNotNull(editedSong);
         assertEquals(EXISTING_SONG_ID, editedSong.getId());
@@ -166,10 +209,10 @@ public class SongServiceUnitTest extends Tests {
         assertEquals("New Album", editedSong.getAlbum());
         assertEquals(2022, editedSong.getReleaseYear());
         assertEquals("New Genre", editedSong.getGenre());
+        assertTrue(editedSong.getFilePath().startsWith("data/mp3/new_song."), editedSong.getFilePath());
 
-        verify(songRepository, times(1)).findById(EXISTING_SONG_ID);
-        verify(songRepository, times(1)).existsBySongNameAndIdNot(anyString(), anyLong());
-        verify(songRepository, times(1)).existsByFilePath(anyString());
+        verify(songStorage, times(1)).store(any(Path.class), eq(editedSong.getFilePath()));
+        verify(fileRetirementService, times(1)).retire("data/mp3/old_song.mp3");
         verify(songRepository, times(1)).save(any(Song.class));
     }
 
@@ -177,9 +220,8 @@ public class SongServiceUnitTest extends Tests {
     @Test
     public void testEditSong_NotFoundException() {
         when(songRepository.findById(NON_EXISTING_SONG_ID)).thenReturn(Optional.empty());
-        SongException ex = assertThrows(SongException.class, () -> songService.editSong(
-                NON_EXISTING_SONG_ID, NEW_SONG_FILE, "New Song Name", "New Artist", "New Album", 2022, "New Genre"
-        ));
+        SongException ex = assertThrows(SongException.class, () -> songService.editSong(NON_EXISTING_SONG_ID,
+                NEW_SONG_FILE, songDto("New Song Name", "New Artist", "New Album", 2022, "New Genre")));
         assertTrue(ex.getMessage().contains("Song not found"));
         verify(songRepository, times(1)).findById(NON_EXISTING_SONG_ID);
     }
@@ -197,37 +239,34 @@ public class SongServiceUnitTest extends Tests {
     // Test for handling exception when trying to delete a non-existing song
     @Test
     public void testDeleteSong_NotFoundException() {
-        when(songRepository.findById(NON_EXISTING_SONG_ID)).thenReturn(Optional.empty());
+        when(songRepository.markDeleted(eq(NON_EXISTING_SONG_ID), anyLong())).thenReturn(0);
         SongException ex = assertThrows(SongException.class, () -> songService.deleteSong(NON_EXISTING_SONG_ID));
         assertTrue(ex.getMessage().contains("Song not found"));
-        verify(songRepository, times(1)).findById(NON_EXISTING_SONG_ID);
-        verify(songRepository, never()).delete(any());
+        verifyNoInteractions(eventPublisher, playlistSongRepository);
     }
 
-    // Test for deleting a song successfully
+    // Test for deleting a song: the row is only marked, its file is left to the purger
     @Test
     public void testDeleteSong_Success() throws IOException {
         Long EXISTING_SONG_ID = 1L;
-        Song existingSong = new Song();
-        existingSong.setId(EXISTING_SONG_ID);
-        // Provide a file path for a dummy file
-        existingSong.setFilePath("src/test/java/Rift/Radio/songMP3Test/existing_song.mp3");
-        when(songRepository.findById(EXISTING_SONG_ID)).thenReturn(Optional.of(existingSong));
-        doNothing().when(songRepository).delete(existingSong);
-
-        // Create a dummy file at the given location so that delete logic can run
-        File dummyFile = new File(existingSong.getFilePath());
-        dummyFile.getParentFile().mkdirs();
-        dummyFile.createNewFile();
+        when(songRepository.markDeleted(eq(EXISTING_SONG_ID), anyLong())).thenReturn(1);
 
         assertDoesNotThrow(() -> songService.deleteSong(EXISTING_SONG_ID));
 
-        verify(songRepository).findById(EXISTING_SONG_ID);
-        verify(songRepository).delete(existingSong);
+        verify(songRepository).markDeleted(eq(EXISTING_SONG_ID), anyLong());
+        verify(playlistSongRepository).decrementCountsForSongs(Collections.singletonList(EXISTING_SONG_ID));
+        verify(songRepository, never()).delete(any());
+        verify(eventPublisher).publishEvent(any(CatalogChangeEvent.class));
+    }
 
-        if (dummyFile.exists()) {
-            dummyFile.delete();
-        }
+    private static CreateSongDto songDto(String songName, String artistName, String album, int releaseYear,
+                                         String genre) {
+        CreateSongDto dto = new CreateSongDto();
+        dto.setSongName(songName);
+        dto.setArtistName(artistName);
+        dto.setAlbum(album);
+        dto.setReleaseYear(releaseYear);
+        dto.setGenre(genre);
+        return dto;
     }
 }
-
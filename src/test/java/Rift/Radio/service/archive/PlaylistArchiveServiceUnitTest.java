@@ -0,0 +1,85 @@
+package Rift.Radio.service.archive;
+
+import Rift.Radio.modal.Playlist;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.service.storage.LocalSongStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PlaylistArchiveServiceUnitTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private PlaylistRepository playlistRepository;
+
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPrepare_IncludesSongsInTheColdTier() throws IOException {
+        LocalSongStorage storage = new LocalSongStorage(tempDir.resolve("mp3").toString(),
+                tempDir.resolve("cold").toString());
+        Song hot = song(1L, "Hot", storage.keyFor("Hot.mp3"), new byte[]{1, 2, 3});
+        Song cold = song(2L, "Cold", storage.keyFor("Cold.mp3"), new byte[]{4, 5, 6, 7});
+        assertTrue(storage.demote(cold.getFilePath()));
+        Playlist playlist = new Playlist();
+        playlist.setId(1L);
+        playlist.setName("Mix");
+        when(playlistRepository.findById(1L)).thenReturn(Optional.of(playlist));
+        when(playlistSongRepository.findSongsByPlaylistId(1L)).thenReturn(Arrays.asList(hot, cold));
+        PlaylistArchiveService archiveService = new PlaylistArchiveService(playlistRepository,
+                playlistSongRepository, storage, new CrcCache(), executor);
+
+        PlaylistArchive archive = archiveService.prepare(1L);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archive.writeTo(out, 0, archive.length() - 1);
+        Path zipFile = tempDir.resolve("Mix.zip");
+        Files.write(zipFile, out.toByteArray());
+        try (ZipFile reader = new ZipFile(zipFile.toFile())) {
+            assertEquals(2, reader.size());
+            assertEquals(4, reader.getEntry("02 - Artist - Cold.mp3").getSize());
+        }
+    }
+
+    private static Song song(Long id, String name, String key, byte[] content) throws IOException {
+        Files.createDirectories(Paths.get(key).getParent());
+        Files.write(Paths.get(key), content);
+        Song song = new Song();
+        song.setId(id);
+        song.setSongName(name);
+        song.setArtistName("Artist");
+        song.setFilePath(key);
+        return song;
+    }
+}
@@ -0,0 +1,113 @@
+package Rift.Radio.service.archive;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlaylistArchiveUnitTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<ArchiveEntry> entries = new ArrayList<>();
+    private final List<byte[]> contents = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        int[] sizes = {0, 1000, 3 * ReadAhead.CHUNK_SIZE + 17};
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] data = new byte[sizes[i]];
+            random.nextBytes(data);
+            Path file = tempDir.resolve("song" + i + ".mp3");
+            Files.write(file, data);
+            contents.add(data);
+            entries.add(new ArchiveEntry(String.format("%02d - Artist - Sång %d.mp3", i + 1, i), file,
+                    data.length, Files.getLastModifiedTime(file).toMillis()));
+        }
+    }
+
+    @Test
+    public void testFullArchive_IsReadableZip() throws IOException {
+        PlaylistArchive archive = newArchive(new CrcCache());
+        byte[] zip = write(archive, 0, archive.length() - 1);
+        assertEquals(archive.length(), zip.length);
+
+        Path zipFile = tempDir.resolve("playlist.zip");
+        Files.write(zipFile, zip);
+        try (ZipFile reader = new ZipFile(zipFile.toFile())) {
+            assertEquals(entries.size(), reader.size());
+            for (int i = 0; i < entries.size(); i++) {
+                ZipEntry entry = reader.getEntry(entries.get(i).getName());
+                assertNotNull(entry);
+                assertEquals(ZipEntry.STORED, entry.getMethod());
+                CRC32 crc = new CRC32();
+                crc.update(contents.get(i));
+                assertEquals(crc.getValue(), entry.getCrc());
+                try (InputStream in = reader.getInputStream(entry)) {
+                    assertArrayEquals(contents.get(i), readAll(in));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResumedRanges_MatchFullArchive() throws IOException {
+        PlaylistArchive full = newArchive(new CrcCache());
+        byte[] expected = write(full, 0, full.length() - 1);
+
+        // A fresh cache forces CRCs of skipped files to be recomputed for the central directory
+        for (long split : Arrays.asList(1L, 40L, 1100L, 70000L, full.length() - 10)) {
+            PlaylistArchive resumed = newArchive(new CrcCache());
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            joined.write(write(resumed, 0, split - 1));
+            joined.write(write(resumed, split, resumed.length() - 1));
+            assertArrayEquals(expected, joined.toByteArray(), "split at " + split);
+        }
+    }
+
+    @Test
+    public void testLayout_RejectsOversizedArchive() {
+        List<ArchiveEntry> huge = new ArrayList<>();
+        huge.add(new ArchiveEntry("big.mp3", tempDir.resolve("big.mp3"), ZipLayout.MAX_ARCHIVE_SIZE, 0L));
+        assertThrows(RuntimeException.class, () -> new ZipLayout(huge));
+    }
+
+    private PlaylistArchive newArchive(CrcCache cache) {
+        return new PlaylistArchive("playlist.zip", "\"zip-test\"", new ZipLayout(entries), cache, executor);
+    }
+
+    private static byte[] write(PlaylistArchive archive, long start, long end) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archive.writeTo(out, start, end);
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
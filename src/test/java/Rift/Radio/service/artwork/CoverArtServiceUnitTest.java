@@ -0,0 +1,149 @@
+package Rift.Radio.service.artwork;
+
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.metadata.EmbeddedArtwork;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CoverArtServiceUnitTest {
+
+    // Bytes before the picture, standing in for the rest of the tag
+    private static final int OFFSET = 100;
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private SongRepository songRepository;
+
+    private CoverArtService coverArtService;
+
+    @BeforeEach
+    public void setUp() {
+        coverArtService = new CoverArtService(songRepository, tempDir.resolve("covers").toString());
+    }
+
+    @Test
+    public void testIngest_StoresOriginalAndVariants() throws IOException {
+        byte[] png = png(600, 300);
+        String hash = coverArtService.ingest(audioWith(png, "a.mp3"), artwork(png));
+
+        assertNotNull(hash);
+        CoverFile original = coverArtService.resolve(hash, 0);
+        assertEquals("image/png", original.getContentType());
+        assertArrayEquals(png, Files.readAllBytes(original.getPath()));
+
+        CoverFile medium = coverArtService.resolve(hash, 100);
+        assertEquals("image/jpeg", medium.getContentType());
+        BufferedImage scaled = ImageIO.read(medium.getPath().toFile());
+        assertEquals(256, scaled.getWidth());
+        assertEquals(128, scaled.getHeight());
+        assertNotEquals(original.getEtag(), medium.getEtag());
+
+        // Larger than every variant
+        assertEquals(original.getPath(), coverArtService.resolve(hash, 2000).getPath());
+    }
+
+    @Test
+    public void testIngest_SamePictureSharesOneEntry() throws IOException {
+        byte[] png = png(300, 300);
+        String first = coverArtService.ingest(audioWith(png, "a.mp3"), artwork(png));
+        String second = coverArtService.ingest(audioWith(png, "b.mp3"), artwork(png));
+
+        assertEquals(first, second);
+        assertSame(coverArtService.resolve(first, 64), coverArtService.resolve(second, 50));
+        try (Stream<Path> files = Files.list(tempDir.resolve("covers").resolve(first.substring(0, 2)))) {
+            // Original plus the 64 and 256 variants; 512 would be an upscale
+            assertEquals(3, files.count());
+        }
+    }
+
+    @Test
+    public void testResolve_SmallPictureAndBadHashes() throws IOException {
+        byte[] png = png(40, 40);
+        String hash = coverArtService.ingest(audioWith(png, "a.mp3"), artwork(png));
+
+        assertEquals("image/png", coverArtService.resolve(hash, 64).getContentType());
+        assertNull(coverArtService.resolve("../../etc/passwd", 64));
+        assertNull(coverArtService.resolve(String.format("%064d", 0), 0));
+    }
+
+    @Test
+    public void testIngest_IgnoresWhatIsNotAnImage() throws IOException {
+        byte[] text = "not a picture".getBytes();
+        assertNull(coverArtService.ingest(audioWith(text, "a.mp3"), artwork(text)));
+        assertNull(coverArtService.ingest(audioWith(text, "b.mp3"), null));
+    }
+
+    @Test
+    public void testRemoveOrphans_KeepsReferencedAndRecentFiles() throws IOException {
+        byte[] kept = png(300, 300);
+        byte[] dropped = png(200, 100);
+        byte[] recent = png(100, 100);
+        String keptHash = coverArtService.ingest(audioWith(kept, "a.mp3"), artwork(kept));
+        String droppedHash = coverArtService.ingest(audioWith(dropped, "b.mp3"), artwork(dropped));
+        String recentHash = coverArtService.ingest(audioWith(recent, "c.mp3"), artwork(recent));
+        age(keptHash);
+        age(droppedHash);
+        when(songRepository.findCoverHashes()).thenReturn(Collections.singletonList(keptHash));
+
+        coverArtService.removeOrphans();
+
+        assertNotNull(coverArtService.resolve(keptHash, 0));
+        assertNull(coverArtService.resolve(droppedHash, 0));
+        assertNull(coverArtService.resolve(droppedHash, 64));
+        assertNotNull(coverArtService.resolve(recentHash, 0));
+    }
+
+    private Path audioWith(byte[] picture, String name) throws IOException {
+        byte[] content = new byte[OFFSET + picture.length + 1000];
+        System.arraycopy(picture, 0, content, OFFSET, picture.length);
+        Path file = tempDir.resolve(name);
+        Files.write(file, content);
+        return file;
+    }
+
+    private static EmbeddedArtwork artwork(byte[] picture) {
+        return new EmbeddedArtwork("image/png", EmbeddedArtwork.FRONT_COVER, OFFSET, picture.length);
+    }
+
+    private void age(String hash) throws IOException {
+        try (Stream<Path> files = Files.list(tempDir.resolve("covers").resolve(hash.substring(0, 2)))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().startsWith(hash)) {
+                    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 2 * 3600_000L));
+                }
+            }
+        }
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,90 @@
+package Rift.Radio.service.charts;
+
+import Rift.Radio.dto.ChartDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChartServiceUnitTest {
+
+    private static final long START = Instant.parse("2026-10-19T10:00:00Z").toEpochMilli();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testTop_FindsHeavyHittersAmongManyRareSongs() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(ChartWindow.DAY, 2048, 4, 16);
+        for (long song = 1000; song < 21000; song++) {
+            counter.add(song, START);
+        }
+        for (int i = 0; i < 500; i++) {
+            counter.add(1L, START);
+            if (i % 2 == 0) {
+                counter.add(2L, START);
+            }
+        }
+
+        List<long[]> top = counter.top(2, START);
+        assertEquals(1L, top.get(0)[0]);
+        assertEquals(2L, top.get(1)[0]);
+        long bound = (long) Math.ceil(CountMinSketch.epsilon(2048) * counter.total(START));
+        assertTrue(top.get(0)[1] >= 500 && top.get(0)[1] <= 500 + bound);
+        assertTrue(top.get(1)[1] >= 250 && top.get(1)[1] <= 250 + bound);
+    }
+
+    @Test
+    public void testTop_ForgetsPlaysThatLeftTheWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(ChartWindow.HOUR, 256, 4, 16);
+        for (int i = 0; i < 10; i++) {
+            counter.add(1L, START);
+        }
+        long later = START + TimeUnit.MINUTES.toMillis(30);
+        counter.add(2L, later);
+
+        assertEquals(1L, counter.top(1, later).get(0)[0]);
+        assertEquals(11, counter.total(later));
+
+        long afterWindow = START + TimeUnit.MINUTES.toMillis(61);
+        List<long[]> top = counter.top(5, afterWindow);
+        assertEquals(1, top.size());
+        assertEquals(2L, top.get(0)[0]);
+        assertEquals(1, counter.total(afterWindow));
+    }
+
+    @Test
+    public void testSnapshot_RestoresChartsAfterRestart() {
+        Path file = tempDir.resolve("charts.snapshot");
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(START), ZoneOffset.UTC);
+        ChartService before = new ChartService(file, clock);
+        for (int i = 0; i < 3; i++) {
+            before.recordPlay(7L);
+        }
+        before.recordPlay(8L);
+        before.snapshot();
+
+        ChartService after = new ChartService(file, clock);
+        after.restore();
+        ChartDto chart = after.getChart(ChartWindow.WEEK, 10);
+
+        assertEquals(4, chart.getTotalPlays());
+        assertEquals(7L, chart.getEntries().get(0).getSongId());
+        assertEquals(3, chart.getEntries().get(0).getEstimatedPlays());
+        assertEquals(8L, chart.getEntries().get(1).getSongId());
+        assertTrue(chart.getConfidence() > 0.98);
+    }
+
+    @Test
+    public void testFromName_RejectsUnknownWindow() {
+        assertEquals(ChartWindow.HOUR, ChartWindow.fromName("Hour"));
+        assertThrows(IllegalArgumentException.class, () -> ChartWindow.fromName("year"));
+    }
+}
@@ -0,0 +1,185 @@
+package Rift.Radio.service.fingerprint;
+
+import Rift.Radio.dto.DuplicateClusterDto;
+import Rift.Radio.dto.DuplicateReportDto;
+import Rift.Radio.repository.SongFingerprintRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.metadata.Mp3MetadataParser;
+import Rift.Radio.service.storage.LocalSongStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FingerprintServiceUnitTest {
+
+    // MPEG-1 layer III, 128 kbit/s, 44.1 kHz, stereo: 417 bytes per frame
+    private static final int FRAME_HEADER = 0xFFFB9000;
+    private static final int FRAME_LENGTH = 417;
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private SongFingerprintRepository fingerprintRepository;
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final Mp3MetadataParser metadataParser = new Mp3MetadataParser();
+
+    private FingerprintService fingerprintService;
+
+    @BeforeEach
+    public void setUp() {
+        fingerprintService = new FingerprintService(fingerprintRepository, songRepository, metadataParser,
+                new AudioFingerprinter(), new LocalSongStorage(tempDir.toString()), transactionManager, 0.8);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fingerprintService.shutdown();
+    }
+
+    @Test
+    public void testFindDuplicate_SameAudioWithOtherTags() throws IOException {
+        AudioFingerprint original = fingerprint(write("a.mp3", tag("Title"), audio(1, 0, 400)));
+        AudioFingerprint retagged = fingerprint(write("b.mp3", tag("Another, much longer title"), audio(1, 0, 400)));
+
+        assertEquals(original.getContentHash(), retagged.getContentHash());
+        assertEquals(400, retagged.getFrames());
+
+        fingerprintService.register(1L, original);
+        Optional<FingerprintMatch> match = fingerprintService.findDuplicate(retagged, null);
+        assertTrue(match.isPresent());
+        assertEquals(Long.valueOf(1L), match.get().getSongId());
+        assertEquals(1.0, match.get().getSimilarity());
+        // A song's own file is not its duplicate
+        assertFalse(fingerprintService.findDuplicate(retagged, 1L).isPresent());
+        verify(fingerprintRepository).save(any());
+
+        fingerprintService.onCatalogChange(CatalogChangeEvent.song(CatalogChangeType.SONG_DELETED, 1L));
+        assertFalse(fingerprintService.findDuplicate(retagged, null).isPresent());
+        verify(fingerprintRepository).deleteBySongId(1L);
+    }
+
+    @Test
+    public void testFindDuplicate_TrimmedCopyMatchesOtherAudioDoesNot() throws IOException {
+        AudioFingerprint full = fingerprint(write("full.mp3", null, audio(1, 0, 400)));
+        AudioFingerprint trimmed = fingerprint(write("trimmed.mp3", tag("Radio edit"), audio(1, 25, 300)));
+        AudioFingerprint other = fingerprint(write("other.mp3", null, audio(2, 0, 400)));
+        fingerprintService.register(1L, full);
+
+        assertNotEquals(full.getContentHash(), trimmed.getContentHash());
+        Optional<FingerprintMatch> match = fingerprintService.findDuplicate(trimmed, null);
+        assertTrue(match.isPresent());
+        assertTrue(match.get().getSimilarity() >= 0.8);
+        assertFalse(fingerprintService.findDuplicate(other, null).isPresent());
+        assertFalse(fingerprintService.findDuplicate(null, null).isPresent());
+    }
+
+    @Test
+    public void testScan_ClustersSongsWithTheSameAudio() throws IOException {
+        List<Object[]> songs = new ArrayList<>();
+        songs.add(row(1L, write("a.mp3", tag("A"), audio(1, 0, 400))));
+        songs.add(row(2L, write("b.mp3", null, audio(2, 0, 400))));
+        songs.add(row(3L, write("c.mp3", tag("C"), audio(1, 0, 400))));
+        songs.add(row(4L, write("d.mp3", null, audio(1, 40, 300))));
+        songs.add(row(5L, write("e.mp3", tag("E"), audio(2, 0, 400))));
+        songs.add(row(6L, write("f.mp3", null, audio(3, 0, 400))));
+        songs.add(row(7L, tempDir.resolve("missing.mp3")));
+        when(songRepository.findAllFilePaths()).thenReturn(songs);
+
+        DuplicateReportDto report = fingerprintService.scan();
+
+        assertEquals(7, report.getSongs());
+        assertEquals(6, report.getFingerprinted());
+        assertEquals(2, report.getClusters().size());
+        DuplicateClusterDto first = report.getClusters().get(0);
+        assertEquals(Arrays.asList(1L, 3L, 4L), first.getSongIds());
+        assertEquals(Arrays.asList("a.mp3", "c.mp3", "d.mp3"), first.getFileNames());
+        assertTrue(first.getSimilarity() >= 0.8);
+        assertEquals(Arrays.asList(2L, 5L), report.getClusters().get(1).getSongIds());
+        assertEquals(1.0, report.getClusters().get(1).getSimilarity());
+        verify(fingerprintRepository).saveAll(anyList());
+        verify(fingerprintRepository).deleteOrphans();
+
+        // Fingerprints are kept, so the next scan only matches
+        assertEquals(0, fingerprintService.scan().getFingerprinted());
+        assertEquals(2, fingerprintService.getLastReport().getClusters().size());
+    }
+
+    private AudioFingerprint fingerprint(Path file) {
+        return fingerprintService.fingerprint(file, metadataParser.parse(file));
+    }
+
+    private static Object[] row(Long songId, Path file) {
+        return new Object[]{songId, file.toString()};
+    }
+
+    private Path write(String name, byte[] tag, byte[] audio) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        if (tag != null) {
+            content.write(tag);
+        }
+        content.write(audio);
+        Path file = tempDir.resolve(name);
+        Files.write(file, content.toByteArray());
+        return file;
+    }
+
+    // The same seed gives the same frames; skip leaves out the first ones
+    private static byte[] audio(long seed, int skip, int count) {
+        Random random = new Random(seed);
+        ByteArrayOutputStream audio = new ByteArrayOutputStream();
+        for (int i = 0; i < skip + count; i++) {
+            byte[] payload = new byte[FRAME_LENGTH - 4];
+            random.nextBytes(payload);
+            if (i >= skip) {
+                byte[] frame = ByteBuffer.allocate(FRAME_LENGTH).putInt(FRAME_HEADER).put(payload).array();
+                audio.write(frame, 0, frame.length);
+            }
+        }
+        return audio.toByteArray();
+    }
+
+    private static byte[] tag(String title) {
+        byte[] text = title.getBytes(StandardCharsets.ISO_8859_1);
+        int size = 10 + 1 + text.length + 32;
+        ByteBuffer tag = ByteBuffer.allocate(10 + size);
+        tag.put(new byte[]{'I', 'D', '3', 3, 0, 0});
+        tag.put(new byte[]{0, 0, (byte) (size >> 7 & 0x7F), (byte) (size & 0x7F)});
+        tag.put("TIT2".getBytes(StandardCharsets.US_ASCII));
+        tag.putInt(1 + text.length);
+        tag.putShort((short) 0);
+        tag.put((byte) 0);
+        tag.put(text);
+        return tag.array();
+    }
+}
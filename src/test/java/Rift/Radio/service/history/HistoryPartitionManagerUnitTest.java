@@ -0,0 +1,53 @@
+package Rift.Radio.service.history;
+
+import Rift.Radio.repository.ListeningHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class HistoryPartitionManagerUnitTest {
+
+    private static HistoryPartitionManager manager(HistoryPartitionManager.Granularity granularity) {
+        return new HistoryPartitionManager(mock(JdbcTemplate.class), mock(ListeningHistoryRepository.class),
+                granularity, 90);
+    }
+
+    @Test
+    public void testPartitionDdl_DailyPartitionsAhead() {
+        List<String> ddl = manager(HistoryPartitionManager.Granularity.DAY).partitionDdl(LocalDate.of(2026, 12, 31));
+
+        assertEquals(HistoryPartitionManager.PARTITIONS_AHEAD, ddl.size());
+        assertTrue(ddl.get(0).contains("listening_history_p20261231 partition of listening_history"));
+        assertTrue(ddl.get(0).contains("from ('2026-12-31 00:00:00+00') to ('2027-01-01 00:00:00+00')"));
+        assertTrue(ddl.get(1).contains("listening_history_p20270101"));
+    }
+
+    @Test
+    public void testPartitionDdl_MonthlyPartitionsStartOnFirstDay() {
+        List<String> ddl = manager(HistoryPartitionManager.Granularity.MONTH).partitionDdl(LocalDate.of(2026, 10, 19));
+
+        assertTrue(ddl.get(0).contains("listening_history_p202610 partition of listening_history"));
+        assertTrue(ddl.get(0).contains("from ('2026-10-01 00:00:00+00') to ('2026-11-01 00:00:00+00')"));
+        assertTrue(ddl.get(2).contains("listening_history_p202612"));
+    }
+
+    @Test
+    public void testIsExpired_OnlyWhenWholeRangeIsBeforeCutoff() {
+        HistoryPartitionManager daily = manager(HistoryPartitionManager.Granularity.DAY);
+        Instant cutoff = Instant.parse("2026-07-21T12:00:00Z");
+
+        assertTrue(daily.isExpired("listening_history_p20260720", cutoff));
+        assertFalse(daily.isExpired("listening_history_p20260721", cutoff));
+        assertFalse(daily.isExpired("listening_history_default", cutoff));
+
+        HistoryPartitionManager monthly = manager(HistoryPartitionManager.Granularity.MONTH);
+        assertTrue(monthly.isExpired("listening_history_p202606", cutoff));
+        assertFalse(monthly.isExpired("listening_history_p202607", cutoff));
+    }
+}
@@ -0,0 +1,78 @@
+package Rift.Radio.service.history;
+
+import Rift.Radio.repository.ListeningHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ListeningHistoryAppenderUnitTest {
+
+    @Mock
+    private ListeningHistoryRepository listeningHistoryRepository;
+
+    private final List<ListeningEvent> written = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        lenient().doAnswer(invocation -> {
+            written.addAll(invocation.getArgument(0));
+            return null;
+        }).when(listeningHistoryRepository).insertAll(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStop_WritesEveryQueuedEventInBatches() throws InterruptedException {
+        ListeningHistoryAppender appender = new ListeningHistoryAppender(listeningHistoryRepository, 10000);
+        for (int i = 0; i < 2500; i++) {
+            appender.append(new ListeningEvent(i, Instant.now(), 0, "test"));
+        }
+        appender.start();
+        appender.stop();
+
+        assertEquals(2500, written.size());
+        assertEquals(0, appender.getDropped());
+        ArgumentCaptor<List<ListeningEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(listeningHistoryRepository, atLeast(3)).insertAll(captor.capture());
+        for (List<ListeningEvent> batch : captor.getAllValues()) {
+            assertTrue(batch.size() <= ListeningHistoryAppender.BATCH_SIZE);
+        }
+    }
+
+    @Test
+    public void testAppend_DropsWhenQueueIsFull() throws InterruptedException {
+        ListeningHistoryAppender appender = new ListeningHistoryAppender(listeningHistoryRepository, 2);
+        for (int i = 0; i < 5; i++) {
+            appender.append(new ListeningEvent(i, Instant.now(), 0, null));
+        }
+        appender.start();
+        appender.stop();
+
+        assertEquals(3, appender.getDropped());
+        assertEquals(2, written.size());
+    }
+
+    @Test
+    public void testWriteFailure_CountsDroppedEventsAndKeepsRunning() throws InterruptedException {
+        ListeningHistoryAppender appender = new ListeningHistoryAppender(listeningHistoryRepository, 100);
+        doThrow(new RuntimeException("database down")).when(listeningHistoryRepository).insertAll(anyList());
+        appender.append(new ListeningEvent(1L, Instant.now(), 0, null));
+        appender.append(new ListeningEvent(2L, Instant.now(), 0, null));
+        appender.start();
+        appender.stop();
+
+        assertEquals(2, appender.getDropped());
+    }
+}
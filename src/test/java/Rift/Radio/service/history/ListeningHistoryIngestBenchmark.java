@@ -0,0 +1,66 @@
+package Rift.Radio.service.history;
+
+import Rift.Radio.repository.ListeningHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares row-at-a-time inserts with the appender's batched inserts. Opt-in because it is
+ * slow and its numbers only mean something on the machine it runs on:
+ * <pre>
+ * mvn test -Dtest=ListeningHistoryIngestBenchmark -Driftradio.benchmark=true \
+ *     [-Driftradio.benchmark.url=jdbc:postgresql://localhost:5432/stykledb -Driftradio.benchmark.user=admin \
+ *      -Driftradio.benchmark.password=pass]
+ * </pre>
+ * Without a URL it runs against an in-memory H2 database.
+ */
+@EnabledIfSystemProperty(named = "riftradio.benchmark", matches = "true")
+public class ListeningHistoryIngestBenchmark {
+
+    private static final int EVENTS = 200_000;
+
+    private final Logger log = LoggerFactory.getLogger(ListeningHistoryIngestBenchmark.class);
+
+    @Test
+    public void benchmarkIngest() throws InterruptedException {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getProperty("riftradio.benchmark.url", "jdbc:h2:mem:history;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"),
+                System.getProperty("riftradio.benchmark.user", "sa"),
+                System.getProperty("riftradio.benchmark.password", ""));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        ListeningHistoryRepository repository = new ListeningHistoryRepository(jdbcTemplate);
+        new HistoryPartitionManager(jdbcTemplate, repository, HistoryPartitionManager.Granularity.DAY, 90)
+                .createSchema();
+
+        int single = EVENTS / 20;
+        long started = System.nanoTime();
+        for (int i = 0; i < single; i++) {
+            List<ListeningEvent> one = new ArrayList<>(1);
+            one.add(new ListeningEvent(i % 1000, Instant.now(), 0, "benchmark"));
+            repository.insertAll(one);
+        }
+        report("row at a time", single, System.nanoTime() - started);
+
+        ListeningHistoryAppender appender = new ListeningHistoryAppender(repository, EVENTS);
+        appender.start();
+        started = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            appender.append(new ListeningEvent(i % 1000, Instant.now(), 0, "benchmark"));
+        }
+        appender.stop();
+        report("batched appender", EVENTS, System.nanoTime() - started);
+    }
+
+    private void report(String name, int events, long nanos) {
+        log.info(String.format("%-18s %8d events in %6d ms, %10.0f events/s",
+                name, events, nanos / 1_000_000, events / (nanos / 1e9)));
+    }
+}
@@ -0,0 +1,300 @@
+package Rift.Radio.service.ingest;
+
+import Rift.Radio.dto.CreateSongDto;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.SongService;
+import Rift.Radio.service.artwork.CoverArtService;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.fingerprint.FingerprintService;
+import Rift.Radio.service.metadata.Mp3MetadataParser;
+import Rift.Radio.service.storage.FileRetirementService;
+import Rift.Radio.service.storage.LocalSongStorage;
+import Rift.Radio.service.tiering.TieringService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DirectoryIngestServiceUnitTest {
+
+    private static final long QUIET = 1000;
+    private static final int FRAME_HEADER = 0xFFFB9000;
+    private static final int FRAME_LENGTH = 417;
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private CoverArtService coverArtService;
+
+    @Mock
+    private FingerprintService fingerprintService;
+
+    @Mock
+    private FileRetirementService fileRetirementService;
+
+    @Mock
+    private TieringService tieringService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Captor
+    private ArgumentCaptor<List<Song>> inserted;
+
+    private Path storageDir;
+    private LocalSongStorage storage;
+    private SongService songService;
+    private DirectoryIngestService ingestService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        storageDir = Files.createDirectories(tempDir.resolve("mp3"));
+        storage = new LocalSongStorage(storageDir.toString());
+        songService = new SongService(songRepository, playlistSongRepository, eventPublisher, new Mp3MetadataParser(),
+                coverArtService, fingerprintService, storage, tieringService, fileRetirementService);
+        ingestService = newIngestService();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ingestService.shutdown();
+    }
+
+    @Test
+    public void testIngestSettled_DroppedFilesInsertedInOneBatch() throws IOException {
+        byte[] first = audio(200);
+        Files.write(storageDir.resolve("First Song.mp3"), first);
+        Files.write(storageDir.resolve("Second Song.mp3"), audio(201));
+        Files.write(storageDir.resolve(".upload-123.part"), audio(202));
+        Files.write(storageDir.resolve("notes.txt"), new byte[]{1, 2, 3});
+        Files.write(storageDir.resolve("cover.mp3"), new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        assignIds();
+
+        assertEquals(3, ingestService.scan(0));
+        long now = System.currentTimeMillis();
+        assertEquals(0, ingestService.ingestSettled(now));
+        verifyNoInteractions(songRepository);
+
+        assertEquals(2, ingestService.ingestSettled(now + QUIET));
+
+        verify(songRepository).insertSkippingTaken(inserted.capture());
+        List<Song> songs = inserted.getValue();
+        assertEquals(2, songs.size());
+        Song song = songs.get(0).getSongName().equals("First Song") ? songs.get(0) : songs.get(1);
+        assertEquals(storage.keyFor("First Song.mp3"), song.getFilePath());
+        assertEquals(DirectoryIngestService.UNKNOWN_ARTIST, song.getArtistName());
+        assertEquals(128, song.getBitrate());
+        assertEquals(64, song.getFileHash().length());
+
+        ArgumentCaptor<CatalogChangeEvent> event = ArgumentCaptor.forClass(CatalogChangeEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(CatalogChangeType.SONG_CREATED, event.getValue().getType());
+        assertEquals(2, event.getValue().getSongIds().size());
+        verify(fingerprintService, times(2)).register(anyLong(), any());
+        assertEquals(0, ingestService.pendingCount());
+    }
+
+    @Test
+    public void testIngestSettled_WaitsForFileToStopGrowing() throws Exception {
+        byte[] content = audio(200);
+        Path file = storageDir.resolve("Growing.mp3");
+        Files.write(file, Arrays.copyOf(content, 1000));
+        long now = System.currentTimeMillis();
+        ingestService.offer(file, now);
+
+        Files.write(file, Arrays.copyOfRange(content, 1000, content.length), StandardOpenOption.APPEND);
+        assertEquals(0, ingestService.ingestSettled(now + QUIET));
+        assertEquals(1, ingestService.pendingCount());
+        verifyNoInteractions(songRepository);
+
+        assignIds();
+        assertEquals(1, ingestService.ingestSettled(now + 2 * QUIET));
+        verify(songRepository).insertSkippingTaken(inserted.capture());
+        assertEquals("Growing", inserted.getValue().get(0).getSongName());
+        assertEquals(sha256(content), inserted.getValue().get(0).getFileHash());
+    }
+
+    @Test
+    public void testIngestSettled_SkipsFilesAlreadyKnown() throws Exception {
+        Files.write(storageDir.resolve("Uploaded.mp3"), audio(200));
+        byte[] copy = audio(201);
+        Files.write(storageDir.resolve("Copy.mp3"), copy);
+        Files.write(storageDir.resolve("Retired.mp3"), audio(202));
+        Files.write(storageDir.resolve("Taken.mp3"), audio(203));
+        when(fileRetirementService.isRetired(anyString()))
+                .thenAnswer(invocation -> invocation.<String>getArgument(0).endsWith("Retired.mp3"));
+        when(songRepository.findStoredFilePaths(anyCollection()))
+                .thenReturn(Collections.singletonList(storage.keyFor("Uploaded.mp3")));
+        when(songRepository.findExistingFileHashes(anyCollection())).thenReturn(Collections.singletonList(sha256(copy)));
+        // Another song holds the name "Taken"
+        when(songRepository.insertSkippingTaken(anyList())).thenReturn(Collections.<String, Long>emptyMap());
+
+        ingestService.scan(0);
+        assertEquals(0, ingestService.ingestSettled(System.currentTimeMillis() + QUIET));
+
+        verify(songRepository).insertSkippingTaken(inserted.capture());
+        assertEquals(1, inserted.getValue().size());
+        assertEquals("Taken", inserted.getValue().get(0).getSongName());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    public void testStart_RescansOnlyFilesChangedSinceCheckpoint() throws Exception {
+        Path old = storageDir.resolve("Old.mp3");
+        Files.write(old, audio(200));
+        Files.setLastModifiedTime(old, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        assignIds();
+
+        ingestService.start();
+        assertEquals(1, ingestService.pendingCount());
+        long now = System.currentTimeMillis();
+        assertEquals(1, ingestService.ingestSettled(now + QUIET));
+        assertEquals(now, ingestService.getCheckpoint());
+        ingestService.shutdown();
+
+        Path dropped = storageDir.resolve("Dropped While Down.mp3");
+        Files.write(dropped, audio(201));
+        Files.setLastModifiedTime(dropped, FileTime.fromMillis(now + TimeUnit.MINUTES.toMillis(1)));
+
+        ingestService = newIngestService();
+        ingestService.start();
+        assertEquals(now, ingestService.getCheckpoint());
+        assertEquals(1, ingestService.pendingCount());
+    }
+
+    @Test
+    public void testStart_WatchesForDroppedFiles() throws Exception {
+        ingestService.start();
+        Files.write(storageDir.resolve(".upload-1.part"), audio(200));
+        Files.write(storageDir.resolve("Dropped.mp3"), audio(200));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (ingestService.pendingCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, ingestService.pendingCount());
+    }
+
+    @Test
+    public void testIngestSettled_LeavesFileOfRunningUploadToIt() throws Exception {
+        String key = storage.keyFor("Uploading.mp3");
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean committed = new AtomicBoolean();
+        when(songRepository.save(any(Song.class))).thenAnswer(invocation -> {
+            saving.countDown();
+            release.await();
+            committed.set(true);
+            Song song = invocation.getArgument(0);
+            song.setId(1L);
+            return song;
+        });
+        when(songRepository.findStoredFilePaths(anyCollection())).thenAnswer(invocation ->
+                committed.get() ? Collections.singletonList(key) : Collections.<String>emptyList());
+        CreateSongDto dto = new CreateSongDto();
+        dto.setSongName("Uploading");
+        dto.setArtistName("Artist");
+        dto.setGenre("Rock");
+        dto.setReleaseYear(1990);
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<Song> upload = threads.submit(() -> songService.uploadSong(
+                    new MockMultipartFile("file", "Uploading.mp3", "audio/mpeg", audio(200)), dto));
+            assertTrue(saving.await(10, TimeUnit.SECONDS));
+            // The upload has stored its file and is saving its song
+            long now = System.currentTimeMillis();
+            ingestService.offer(storageDir.resolve("Uploading.mp3"), now);
+            Future<Integer> ingest = threads.submit(() -> ingestService.ingestSettled(now + QUIET));
+            assertThrows(TimeoutException.class, () -> ingest.get(300, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            assertEquals(key, upload.get(10, TimeUnit.SECONDS).getFilePath());
+            assertEquals(0, ingest.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            threads.shutdownNow();
+        }
+        verify(songRepository, never()).insertSkippingTaken(anyList());
+        assertTrue(Files.exists(storageDir.resolve("Uploading.mp3")));
+    }
+
+    private DirectoryIngestService newIngestService() {
+        return new DirectoryIngestService(songRepository, songService, storage, new Mp3MetadataParser(), coverArtService,
+                fingerprintService, fileRetirementService, eventPublisher, QUIET,
+                tempDir.resolve("ingest/checkpoint.properties").toString());
+    }
+
+    private void assignIds() {
+        when(songRepository.insertSkippingTaken(anyList())).thenAnswer(invocation -> {
+            List<Song> songs = invocation.getArgument(0);
+            Map<String, Long> ids = new HashMap<>();
+            for (Song song : songs) {
+                ids.put(song.getFilePath(), (long) ids.size() + 1);
+            }
+            return ids;
+        });
+    }
+
+    private static byte[] audio(int frames) {
+        Random random = new Random(frames);
+        ByteBuffer audio = ByteBuffer.allocate(frames * FRAME_LENGTH);
+        for (int i = 0; i < frames; i++) {
+            byte[] payload = new byte[FRAME_LENGTH - 4];
+            random.nextBytes(payload);
+            audio.putInt(FRAME_HEADER).put(payload);
+        }
+        return audio.array();
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package Rift.Radio.service.metadata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the parser over a directory of MP3 files against reading each file completely, the
+ * least a parser that walks the whole stream has to do. Opt-in, and its numbers only mean
+ * something on the machine it runs on:
+ * <pre>
+ * mvn test -Dtest=Mp3MetadataParserBenchmark -Driftradio.benchmark=true \
+ *     [-Driftradio.benchmark.mp3-dir=src/main/resources/localstorage/mp3]
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "riftradio.benchmark", matches = "true")
+public class Mp3MetadataParserBenchmark {
+
+    private static final int ROUNDS = 20;
+
+    private final Logger log = LoggerFactory.getLogger(Mp3MetadataParserBenchmark.class);
+
+    @Test
+    public void benchmarkParse() throws IOException {
+        List<Path> files = new ArrayList<>();
+        Path directory = Paths.get(System.getProperty("riftradio.benchmark.mp3-dir",
+                "src/main/resources/localstorage/mp3"));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.mp3")) {
+            stream.forEach(files::add);
+        }
+        Mp3MetadataParser parser = new Mp3MetadataParser();
+
+        long checksum = 0;
+        for (int warmup = 0; warmup < ROUNDS; warmup++) {
+            for (Path file : files) {
+                checksum += parser.parse(file).getDurationMs() + readFully(file);
+            }
+        }
+
+        long started = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Path file : files) {
+                checksum += parser.parse(file).getDurationMs();
+            }
+        }
+        report("header parser", files.size() * ROUNDS, System.nanoTime() - started);
+
+        started = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Path file : files) {
+                checksum += readFully(file);
+            }
+        }
+        report("full read", files.size() * ROUNDS, System.nanoTime() - started);
+        log.info("checksum {}", checksum);
+    }
+
+    private static long readFully(Path file) throws IOException {
+        long total = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int n;
+            while ((n = channel.read(buffer)) > 0) {
+                total += n;
+                buffer.clear();
+            }
+        }
+        return total;
+    }
+
+    private void report(String name, int files, long nanos) {
+        log.info(String.format("%-14s %6d files in %6d ms, %8.1f us/file",
+                name, files, nanos / 1_000_000, nanos / 1e3 / files));
+    }
+}
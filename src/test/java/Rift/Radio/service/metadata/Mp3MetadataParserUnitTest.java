@@ -0,0 +1,209 @@
+package Rift.Radio.service.metadata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp3MetadataParserUnitTest {
+
+    // MPEG-1 layer III, 128 kbit/s, 44.1 kHz, stereo: 417 bytes per frame
+    private static final int FRAME_HEADER = 0xFFFB9000;
+    private static final int FRAME_LENGTH = 417;
+
+    @TempDir
+    Path tempDir;
+
+    private final Mp3MetadataParser parser = new Mp3MetadataParser();
+
+    @Test
+    public void testParse_Id3v24WithXingAndId3v1() throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(id3v2(4,
+                textFrame(4, "TIT2", 3, "Sång".getBytes(StandardCharsets.UTF_8)),
+                textFrame(4, "TPE1", 0, "Artist".getBytes(StandardCharsets.ISO_8859_1)),
+                textFrame(4, "TDRC", 0, "2019-04-01".getBytes(StandardCharsets.ISO_8859_1)),
+                textFrame(4, "TCON", 0, "(17)".getBytes(StandardCharsets.ISO_8859_1))));
+        file.write(xingFrame(1000, 1000L * FRAME_LENGTH));
+        for (int i = 0; i < 3; i++) {
+            file.write(frame());
+        }
+        file.write(id3v1("Old title", "Tail Album", "1999", 79));
+
+        AudioMetadata metadata = parser.parse(write(file.toByteArray()));
+
+        assertEquals("Sång", metadata.getTitle());
+        assertEquals("Artist", metadata.getArtist());
+        assertEquals("Tail Album", metadata.getAlbum());
+        assertEquals(Integer.valueOf(2019), metadata.getYear());
+        assertEquals("Rock", metadata.getGenre());
+        // 1000 frames of 1152 samples at 44.1 kHz
+        assertEquals(26122, metadata.getDurationMs());
+        assertEquals(128, metadata.getBitrate());
+    }
+
+    @Test
+    public void testParse_Id3v23ConstantBitrateAfterLargeFrame() throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        // Cover art bigger than the head read first, so the next frame needs its own read
+        file.write(id3v2(3,
+                textFrame(3, "APIC", 0, new byte[3 * Mp3MetadataParser.HEAD_SIZE]),
+                textFrame(3, "TIT2", 1, "Title".getBytes(StandardCharsets.UTF_16)),
+                textFrame(3, "TYER", 0, "2004".getBytes(StandardCharsets.ISO_8859_1))));
+        for (int i = 0; i < 10; i++) {
+            file.write(frame());
+        }
+
+        AudioMetadata metadata = parser.parse(write(file.toByteArray()));
+
+        assertEquals("Title", metadata.getTitle());
+        assertEquals(Integer.valueOf(2004), metadata.getYear());
+        assertNull(metadata.getArtist());
+        assertEquals(10 * FRAME_LENGTH * 8 / 128, metadata.getDurationMs());
+        assertEquals(128, metadata.getBitrate());
+    }
+
+    @Test
+    public void testParse_LocatesFrontCover() throws IOException {
+        byte[] back = {1, 2, 3};
+        byte[] front = {9, 8, 7, 6, 5};
+        byte[] tag = id3v2(3,
+                pictureFrame(4, false, "Back", back),
+                pictureFrame(EmbeddedArtwork.FRONT_COVER, true, "Front", front));
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(tag);
+        file.write(frame());
+
+        byte[] content = file.toByteArray();
+        EmbeddedArtwork artwork = parser.parse(write(content)).getArtwork();
+
+        assertNotNull(artwork);
+        assertEquals("image/png", artwork.getMimeType());
+        assertEquals(EmbeddedArtwork.FRONT_COVER, artwork.getPictureType());
+        assertEquals(front.length, artwork.getLength());
+        for (int i = 0; i < front.length; i++) {
+            assertEquals(front[i], content[(int) artwork.getOffset() + i]);
+        }
+    }
+
+    @Test
+    public void testParse_SkipsGarbageBeforeFirstFrame() throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        // A lone sync pattern that is not followed by another frame
+        file.write(new byte[]{0, 0, (byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0, 1, 2, 3});
+        for (int i = 0; i < 4; i++) {
+            file.write(frame());
+        }
+
+        AudioMetadata metadata = parser.parse(write(file.toByteArray()));
+
+        assertEquals(4 * FRAME_LENGTH * 8 / 128, metadata.getDurationMs());
+    }
+
+    @Test
+    public void testParse_NotAnMp3() throws IOException {
+        byte[] noise = new byte[5000];
+        new Random(7).nextBytes(noise);
+        for (int i = 0; i < noise.length; i++) {
+            if (noise[i] == (byte) 0xFF) {
+                noise[i] = 0;
+            }
+        }
+
+        AudioMetadata metadata = parser.parse(write(noise));
+
+        assertNull(metadata.getTitle());
+        assertEquals(0, metadata.getDurationMs());
+        assertEquals(0, parser.parse(tempDir.resolve("missing.mp3")).getDurationMs());
+    }
+
+    @Test
+    public void testGenre_NumericAndRefinedForms() {
+        assertEquals("Hard Rock", Mp3MetadataParser.genre("(79)"));
+        assertEquals("Rock", Mp3MetadataParser.genre("17"));
+        assertEquals("Stoner Rock", Mp3MetadataParser.genre("(17)Stoner Rock"));
+        assertEquals("Synthwave", Mp3MetadataParser.genre("Synthwave"));
+    }
+
+    private Path write(byte[] content) throws IOException {
+        Path file = Files.createTempFile(tempDir, "song", ".mp3");
+        Files.write(file, content);
+        return file;
+    }
+
+    private static byte[] id3v2(int major, byte[]... frames) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            body.write(frame);
+        }
+        body.write(new byte[64]); // padding
+        ByteArrayOutputStream tag = new ByteArrayOutputStream();
+        tag.write(new byte[]{'I', 'D', '3', (byte) major, 0, 0});
+        tag.write(syncsafe(body.size()));
+        tag.write(body.toByteArray());
+        return tag.toByteArray();
+    }
+
+    private static byte[] textFrame(int major, String id, int encoding, byte[] text) {
+        ByteBuffer frame = ByteBuffer.allocate(10 + 1 + text.length);
+        frame.put(id.getBytes(StandardCharsets.US_ASCII));
+        frame.put(major == 4 ? syncsafe(1 + text.length) : ByteBuffer.allocate(4).putInt(1 + text.length).array());
+        frame.putShort((short) 0);
+        frame.put((byte) encoding);
+        frame.put(text);
+        return frame.array();
+    }
+
+    private static byte[] pictureFrame(int type, boolean utf16, String description, byte[] data) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write("image/png".getBytes(StandardCharsets.ISO_8859_1));
+        body.write(0);
+        body.write(type);
+        body.write(description.getBytes(utf16 ? StandardCharsets.UTF_16 : StandardCharsets.ISO_8859_1));
+        body.write(new byte[utf16 ? 2 : 1]);
+        body.write(data);
+        return textFrame(3, "APIC", utf16 ? 1 : 0, body.toByteArray());
+    }
+
+    private static byte[] syncsafe(int size) {
+        return new byte[]{(byte) (size >> 21 & 0x7F), (byte) (size >> 14 & 0x7F),
+                (byte) (size >> 7 & 0x7F), (byte) (size & 0x7F)};
+    }
+
+    private static byte[] frame() {
+        return ByteBuffer.allocate(FRAME_LENGTH).putInt(FRAME_HEADER).array();
+    }
+
+    private static byte[] xingFrame(int frames, long bytes) {
+        ByteBuffer frame = ByteBuffer.wrap(frame());
+        frame.position(36);
+        frame.put("Xing".getBytes(StandardCharsets.US_ASCII));
+        frame.putInt(0x3);
+        frame.putInt(frames);
+        frame.putInt((int) bytes);
+        return frame.array();
+    }
+
+    private static byte[] id3v1(String title, String album, String year, int genre) {
+        byte[] tag = new byte[Mp3MetadataParser.ID3V1_SIZE];
+        put(tag, 0, "TAG");
+        put(tag, 3, title);
+        put(tag, 63, album);
+        put(tag, 93, year);
+        tag[127] = (byte) genre;
+        return tag;
+    }
+
+    private static void put(byte[] target, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(bytes, 0, target, offset, bytes.length);
+    }
+}
@@ -0,0 +1,93 @@
+package Rift.Radio.service.metadata;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Mp3StreamCheckUnitTest {
+
+    // MPEG-1 layer III, 128 kbit/s, 44.1 kHz
+    private static final int FRAME_HEADER = 0xFFFB9000;
+    private static final int FRAME_LENGTH = 417;
+
+    @Test
+    public void testFrames_AcceptedAfterTwoHeaders() {
+        byte[] stream = concat(frame(), frame(), frame());
+        Mp3StreamCheck check = new Mp3StreamCheck();
+
+        for (int i = 0; i < FRAME_LENGTH + 3; i++) {
+            assertTrue(check.update(stream, i, 1));
+            assertFalse(check.isMp3());
+        }
+        assertTrue(check.update(stream, FRAME_LENGTH + 3, 1));
+        assertTrue(check.isMp3());
+    }
+
+    @Test
+    public void testTag_SkippedByItsSizeAndPaddingAllowed() {
+        byte[] tag = new byte[10 + 100_000];
+        System.arraycopy(new byte[]{'I', 'D', '3', 3, 0, 0}, 0, tag, 0, 6);
+        System.arraycopy(syncsafe(100_000), 0, tag, 6, 4);
+        // Bytes that look like a header inside the tag are not audio
+        ByteBuffer.wrap(tag).putInt(50, FRAME_HEADER);
+        byte[] stream = concat(tag, new byte[300], frame(), frame());
+        Mp3StreamCheck check = new Mp3StreamCheck();
+
+        assertTrue(check.update(stream, 0, 4096));
+        assertFalse(check.isMp3());
+        assertTrue(check.update(stream, 4096, stream.length - 4096));
+        assertTrue(check.isMp3());
+    }
+
+    @Test
+    public void testOtherFormats_RejectedFromFirstBytes() {
+        byte[] png = concat(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}, new byte[1000]);
+        Mp3StreamCheck check = new Mp3StreamCheck();
+        assertFalse(check.update(png, 0, png.length));
+        assertFalse(check.update(frame(), 0, FRAME_LENGTH));
+        assertFalse(check.isMp3());
+
+        // A lone header followed by anything but a matching frame
+        byte[] lone = concat(frame(), "not audio".getBytes(StandardCharsets.US_ASCII));
+        assertFalse(new Mp3StreamCheck().update(lone, 0, lone.length));
+    }
+
+    @Test
+    public void testTagWithoutAudio_Rejected() {
+        byte[] tag = concat(new byte[]{'I', 'D', '3', 4, 0, 0}, syncsafe(0));
+        Mp3StreamCheck check = new Mp3StreamCheck();
+        assertTrue(check.update(tag, 0, tag.length));
+
+        byte[] junk = new byte[Mp3StreamCheck.MAX_SYNC_SCAN + 8192];
+        assertFalse(check.update(junk, 0, junk.length));
+
+        Mp3StreamCheck shortFile = new Mp3StreamCheck();
+        assertTrue(shortFile.update(frame(), 0, 100));
+        assertFalse(shortFile.isMp3());
+    }
+
+    private static byte[] frame() {
+        byte[] frame = new byte[FRAME_LENGTH];
+        ByteBuffer.wrap(frame).putInt(FRAME_HEADER);
+        Arrays.fill(frame, 4, frame.length, (byte) 0x55);
+        return frame;
+    }
+
+    private static byte[] syncsafe(int size) {
+        return new byte[]{(byte) (size >> 21 & 0x7F), (byte) (size >> 14 & 0x7F), (byte) (size >> 7 & 0x7F),
+                (byte) (size & 0x7F)};
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
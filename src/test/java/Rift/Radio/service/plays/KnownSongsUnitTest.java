@@ -0,0 +1,56 @@
+package Rift.Radio.service.plays;
+
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class KnownSongsUnitTest {
+
+    @Mock
+    private SongRepository songRepository;
+
+    private KnownSongs knownSongs;
+
+    @BeforeEach
+    public void setUp() {
+        knownSongs = new KnownSongs(songRepository);
+    }
+
+    @Test
+    public void testExists_FoundSongsAreCached() {
+        when(songRepository.existsById(1L)).thenReturn(true);
+
+        assertTrue(knownSongs.exists(1L));
+        assertTrue(knownSongs.exists(1L));
+
+        verify(songRepository, times(1)).existsById(1L);
+    }
+
+    @Test
+    public void testExists_UnknownIdsAreLookedUpEachTime() {
+        when(songRepository.existsById(99L)).thenReturn(false, true);
+
+        assertFalse(knownSongs.exists(99L));
+        assertTrue(knownSongs.exists(99L));
+        assertFalse(knownSongs.exists(null));
+    }
+
+    @Test
+    public void testOnCatalogChange_DeletedSongIsForgotten() {
+        when(songRepository.existsById(1L)).thenReturn(true, false);
+        assertTrue(knownSongs.exists(1L));
+
+        knownSongs.onCatalogChange(CatalogChangeEvent.song(CatalogChangeType.SONG_DELETED, 1L));
+
+        assertFalse(knownSongs.exists(1L));
+    }
+}
@@ -0,0 +1,106 @@
+package Rift.Radio.service.plays;
+
+import Rift.Radio.repository.SongPlayCountRepository;
+import Rift.Radio.repository.SongRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PlayCountServiceUnitTest {
+
+    @Mock
+    private SongPlayCountRepository songPlayCountRepository;
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PlayCountService playCountService;
+
+    @BeforeEach
+    public void setUp() {
+        playCountService = new PlayCountService(songPlayCountRepository, songRepository, transactionManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlush_WritesConcurrentPlaysAsOneDeltaPerSong() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    playCountService.recordPlay(1L);
+                    playCountService.recordPlay(2L);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        when(songRepository.findExistingIds(anyCollection())).thenReturn(Arrays.asList(1L, 2L));
+
+        playCountService.flush();
+
+        ArgumentCaptor<Map<Long, Long>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(songPlayCountRepository, times(1)).addPlays(captor.capture());
+        Map<Long, Long> expected = new HashMap<>();
+        expected.put(1L, 80000L);
+        expected.put(2L, 80000L);
+        assertEquals(expected, captor.getValue());
+
+        playCountService.flush();
+        verifyNoMoreInteractions(songPlayCountRepository);
+    }
+
+    @Test
+    public void testFlush_DropsUnknownSongs() {
+        playCountService.recordPlay(1L);
+        playCountService.recordPlay(99L);
+        when(songRepository.findExistingIds(anyCollection())).thenReturn(Collections.singletonList(1L));
+
+        playCountService.flush();
+
+        verify(songPlayCountRepository, times(1)).addPlays(Collections.singletonMap(1L, 1L));
+        assertEquals(1, playCountService.trackedSongs());
+    }
+
+    @Test
+    public void testFlush_KeepsCountsWhenWriteFails() {
+        playCountService.recordPlay(1L);
+        playCountService.recordPlay(1L);
+        when(songRepository.findExistingIds(anyCollection())).thenReturn(Collections.singletonList(1L));
+        doThrow(new RuntimeException("database down")).doNothing()
+                .when(songPlayCountRepository).addPlays(anyMap());
+
+        playCountService.flush();
+        playCountService.flush();
+
+        verify(songPlayCountRepository, times(2)).addPlays(Collections.singletonMap(1L, 2L));
+    }
+
+    @Test
+    public void testGetPlayCount_IncludesUnflushedPlays() {
+        playCountService.recordPlay(5L);
+        when(songPlayCountRepository.findById(5L)).thenReturn(Optional.empty());
+
+        assertEquals(1, playCountService.getPlayCount(5L));
+    }
+}
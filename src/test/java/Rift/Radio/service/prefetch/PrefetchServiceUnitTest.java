@@ -0,0 +1,110 @@
+package Rift.Radio.service.prefetch;
+
+import Rift.Radio.dto.PlaybackContextDto;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.queue.QueueService;
+import Rift.Radio.service.storage.LocalSongStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PrefetchServiceUnitTest {
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private QueueService queueService;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Runnable> submitted = new ArrayList<>();
+    private PrefetchService prefetchService;
+
+    @BeforeEach
+    public void setUp() {
+        prefetchService = new PrefetchService(songRepository, playlistSongRepository, queueService,
+                new LocalSongStorage(tempDir.toString()), submitted::add, 2, 100_000);
+    }
+
+    @Test
+    public void testUpcoming_FollowsPlaylistOrder() {
+        Song next = new Song();
+        next.setId(12L);
+        when(playlistSongRepository.findPosition(3L, 11L)).thenReturn(Optional.of(65536L));
+        when(playlistSongRepository.findSongsAfter(eq(3L), eq(65536L), eq(11L), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(new Object[]{131072L, next}));
+        PlaybackContextDto context = new PlaybackContextDto();
+        context.setPlaylist(3L);
+
+        List<Long> upcoming = prefetchService.upcoming(11L, context);
+
+        assertEquals(Collections.singletonList(12L), upcoming);
+        assertEquals(Collections.singletonList("</api/v1/songs/12/file?playlist=3>; rel=preload; as=audio"),
+                prefetchService.preloadLinks(upcoming, context));
+    }
+
+    @Test
+    public void testPreloadLinks_CarryRemainingNextIds() {
+        PlaybackContextDto context = new PlaybackContextDto();
+        context.setNext(Arrays.asList(5L, 6L, 7L));
+
+        List<Long> upcoming = prefetchService.upcoming(4L, context);
+
+        assertEquals(Arrays.asList(5L, 6L), upcoming);
+        assertEquals("</api/v1/songs/5/file?next=6&next=7>; rel=preload; as=audio",
+                prefetchService.preloadLinks(upcoming, context).get(0));
+    }
+
+    @Test
+    public void testUpcoming_UnresolvableContextGivesNoHints() {
+        PlaybackContextDto context = new PlaybackContextDto();
+        context.setQueue("nonsense");
+        context.setSeed(1L);
+        context.setPosition(0);
+
+        assertTrue(prefetchService.upcoming(1L, context).isEmpty());
+        assertTrue(prefetchService.preloadLinks(Collections.<Long>emptyList(), context).isEmpty());
+    }
+
+    @Test
+    public void testWarmUp_ReadsFileHeadOncePerTtl() throws IOException {
+        Path file = tempDir.resolve("next.mp3");
+        Files.write(file, new byte[300_000]);
+        Song song = new Song();
+        song.setId(9L);
+        song.setFilePath(file.toString());
+        when(songRepository.findAllById(Collections.singletonList(9L))).thenReturn(Collections.singletonList(song));
+
+        prefetchService.warmUp(Collections.singletonList(9L));
+        prefetchService.warmUp(Collections.singletonList(9L));
+
+        assertEquals(1, submitted.size());
+        verify(songRepository, times(1)).findAllById(anyIterable());
+        long read = prefetchService.readHead(file);
+        assertTrue(read >= 100_000 && read < 300_000);
+    }
+}
@@ -0,0 +1,127 @@
+package Rift.Radio.service.purge;
+
+import Rift.Radio.repository.LikedSongRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.storage.SongStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SongPurgeServiceUnitTest {
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private LikedSongRepository likedSongRepository;
+
+    @Mock
+    private SongStorage songStorage;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SongPurgeService purgeService;
+
+    @BeforeEach
+    public void setUp() {
+        purgeService = new SongPurgeService(songRepository, playlistSongRepository, likedSongRepository,
+                songStorage, transactionManager);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        purgeService.shutdown();
+    }
+
+    @Test
+    public void testPurgeDeleted_FilesThenRowsOfEveryPage() throws IOException {
+        List<Object[]> firstPage = new ArrayList<>();
+        for (long id = 1; id <= SongPurgeService.BATCH_SIZE; id++) {
+            firstPage.add(row(id, "mp3/" + id + ".mp3"));
+        }
+        when(songRepository.findDeletedAfter(0L, SongPurgeService.BATCH_SIZE)).thenReturn(firstPage);
+        when(songRepository.findDeletedAfter((long) SongPurgeService.BATCH_SIZE, SongPurgeService.BATCH_SIZE))
+                .thenReturn(Collections.singletonList(row(SongPurgeService.BATCH_SIZE + 1, "mp3/last.mp3")));
+        when(songRepository.findDeletedAfter(SongPurgeService.BATCH_SIZE + 1L, SongPurgeService.BATCH_SIZE))
+                .thenReturn(Collections.<Object[]>emptyList());
+        // Already gone counts as deleted
+        when(songStorage.delete(anyString())).thenReturn(true);
+        when(songStorage.delete("mp3/last.mp3")).thenReturn(false);
+
+        assertEquals(SongPurgeService.BATCH_SIZE + 1, purgeService.purgeDeleted());
+
+        verify(songStorage, times(SongPurgeService.BATCH_SIZE + 1)).delete(anyString());
+        InOrder order = inOrder(playlistSongRepository, likedSongRepository, songRepository);
+        order.verify(playlistSongRepository).deleteBySongIds(argThat(ids -> ids.size() == SongPurgeService.BATCH_SIZE));
+        order.verify(likedSongRepository).deleteAllBySongIds(argThat(ids -> ids.size() == SongPurgeService.BATCH_SIZE));
+        order.verify(songRepository).deleteMarked(argThat(ids -> ids.size() == SongPurgeService.BATCH_SIZE));
+        order.verify(songRepository).deleteMarked(Collections.singletonList(SongPurgeService.BATCH_SIZE + 1L));
+    }
+
+    @Test
+    public void testPurgeDeleted_FailedFileKeepsItsRowsForTheNextRun() throws IOException {
+        when(songRepository.findDeletedAfter(0L, SongPurgeService.BATCH_SIZE))
+                .thenReturn(Arrays.asList(row(1, "mp3/a.mp3"), row(2, "mp3/b.mp3")));
+        when(songRepository.findDeletedAfter(2L, SongPurgeService.BATCH_SIZE))
+                .thenReturn(Collections.<Object[]>emptyList());
+        when(songStorage.delete("mp3/a.mp3")).thenThrow(new IOException("device busy"));
+        when(songStorage.delete("mp3/b.mp3")).thenReturn(true);
+
+        assertEquals(1, purgeService.purgeDeleted());
+
+        verify(playlistSongRepository).deleteBySongIds(Collections.singletonList(2L));
+        verify(likedSongRepository).deleteAllBySongIds(Collections.singletonList(2L));
+        verify(songRepository).deleteMarked(Collections.singletonList(2L));
+        verify(playlistSongRepository, never()).decrementCountsForSongs(anyCollection());
+    }
+
+    @Test
+    public void testPurgeDeleted_KeepsFileOfLiveSong() throws IOException {
+        when(songRepository.findDeletedAfter(0L, SongPurgeService.BATCH_SIZE))
+                .thenReturn(Collections.singletonList(row(1, "mp3/Song.mp3")));
+        when(songRepository.findDeletedAfter(1L, SongPurgeService.BATCH_SIZE))
+                .thenReturn(Collections.<Object[]>emptyList());
+        when(songRepository.findExistingFilePaths(anyCollection()))
+                .thenReturn(Collections.singletonList("mp3/Song.mp3"));
+
+        assertEquals(1, purgeService.purgeDeleted());
+
+        verify(songStorage, never()).delete(anyString());
+        verify(songRepository).deleteMarked(Collections.singletonList(1L));
+    }
+
+    @Test
+    public void testPurge_NothingDeleted() {
+        when(songRepository.findDeletedAfter(0L, SongPurgeService.BATCH_SIZE))
+                .thenReturn(Collections.<Object[]>emptyList());
+
+        purgeService.purge();
+
+        verifyNoInteractions(songStorage, playlistSongRepository, likedSongRepository, transactionManager);
+    }
+
+    private static Object[] row(long id, String filePath) {
+        return new Object[]{id, filePath};
+    }
+}
@@ -0,0 +1,133 @@
+package Rift.Radio.service.queue;
+
+import Rift.Radio.dto.QueuePageDto;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.repository.LikedSongRepository;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogVersion;
+import Rift.Radio.service.plays.PlayCountService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class QueueServiceUnitTest {
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private PlaylistRepository playlistRepository;
+
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private LikedSongRepository likedSongRepository;
+
+    @Mock
+    private PlayCountService playCountService;
+
+    @Mock
+    private CatalogVersion catalogVersion;
+
+    private QueueService queueService;
+
+    @BeforeEach
+    public void setUp() {
+        queueService = new QueueService(songRepository, playlistRepository, playlistSongRepository,
+                likedSongRepository, playCountService, catalogVersion, 3.0, 60000);
+    }
+
+    @Test
+    public void testShuffle_PagesWithSameSeedFormOnePermutation() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++) {
+            ids.add(id);
+        }
+        when(songRepository.findAllIds()).thenReturn(ids);
+
+        QueuePageDto first = queueService.getQueue(QueueSource.parse("catalog"), QueueMode.SHUFFLE, null, 0, 400);
+        QueuePageDto second = queueService.getQueue(QueueSource.parse("catalog"), QueueMode.SHUFFLE,
+                first.getSeed(), 400, 400);
+        QueuePageDto third = queueService.getQueue(QueueSource.parse("catalog"), QueueMode.SHUFFLE,
+                first.getSeed(), 800, 400);
+
+        assertEquals(1000, first.getTotal());
+        assertEquals(200, third.getSongIds().length);
+        long[] all = new long[1000];
+        System.arraycopy(first.getSongIds(), 0, all, 0, 400);
+        System.arraycopy(second.getSongIds(), 0, all, 400, 400);
+        System.arraycopy(third.getSongIds(), 0, all, 800, 200);
+        long[] sorted = all.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i + 1, sorted[i]);
+        }
+        assertFalse(Arrays.equals(sorted, all));
+        // The source is loaded once and reused for later pages
+        verify(songRepository, times(1)).findAllIds();
+    }
+
+    @Test
+    public void testWeighted_FavoursLikedAndPlayedSongs() {
+        when(playlistRepository.existsById(7L)).thenReturn(true);
+        when(playlistSongRepository.findOrderedSongIds(7L)).thenReturn(Arrays.asList(1L, 2L, 3L, 4L));
+        when(likedSongRepository.findAllSongIds()).thenReturn(Collections.singletonList(1L));
+        Map<Long, Long> plays = new HashMap<>();
+        plays.put(2L, 1000L);
+        when(playCountService.getAllPlayCounts()).thenReturn(plays);
+
+        int[] counts = new int[5];
+        for (long seed = 0; seed < 200; seed++) {
+            QueuePageDto page = queueService.getQueue(QueueSource.parse("playlist:7"), QueueMode.WEIGHTED,
+                    seed, 0, 4);
+            for (long id : page.getSongIds()) {
+                counts[(int) id]++;
+            }
+        }
+
+        assertTrue(counts[1] > counts[3] && counts[1] > counts[4]);
+        assertTrue(counts[2] > counts[1]);
+        assertEquals(800, counts[1] + counts[2] + counts[3] + counts[4]);
+    }
+
+    @Test
+    public void testAliasSampler_MatchesWeights() {
+        double[] weights = {1, 2, 3, 4, 0};
+        AliasSampler sampler = new AliasSampler(weights);
+        SplittableRandom random = new SplittableRandom(1);
+        int[] counts = new int[weights.length];
+        int draws = 1_000_000;
+        for (int i = 0; i < draws; i++) {
+            counts[sampler.draw(random)]++;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals(weights[i] / 10, (double) counts[i] / draws, 0.005);
+        }
+    }
+
+    @Test
+    public void testUnknownPlaylist_Throws() {
+        when(playlistRepository.existsById(99L)).thenReturn(false);
+
+        assertThrows(PlaylistException.class, () -> queueService.getQueue(QueueSource.parse("playlist:99"),
+                QueueMode.SHUFFLE, 1L, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> QueueSource.parse("playlist:abc"));
+    }
+}
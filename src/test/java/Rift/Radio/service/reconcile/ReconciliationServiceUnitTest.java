@@ -0,0 +1,271 @@
+package Rift.Radio.service.reconcile;
+
+import Rift.Radio.dto.ReconcileIssueDto;
+import Rift.Radio.dto.ReconcileIssueType;
+import Rift.Radio.dto.ReconcileReportDto;
+import Rift.Radio.modal.Song;
+import Rift.Radio.modal.SongFileState;
+import Rift.Radio.repository.SongFileStateRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.SongService;
+import Rift.Radio.service.fingerprint.FingerprintService;
+import Rift.Radio.service.metadata.Mp3MetadataParser;
+import Rift.Radio.service.storage.FileRetirementService;
+import Rift.Radio.service.storage.LocalSongStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReconciliationServiceUnitTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private SongFileStateRepository fileStateRepository;
+
+    @Mock
+    private SongService songService;
+
+    @Mock
+    private FingerprintService fingerprintService;
+
+    @Mock
+    private FileRetirementService fileRetirementService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Captor
+    private ArgumentCaptor<List<SongFileState>> savedStates;
+
+    private Path storage;
+    private Path checkpointFile;
+    private ReconciliationService reconciliationService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        storage = Files.createDirectories(tempDir.resolve("mp3"));
+        checkpointFile = tempDir.resolve("reconcile").resolve("checkpoint.properties");
+        reconciliationService = new ReconciliationService(songRepository, fileStateRepository, songService,
+                new Mp3MetadataParser(), fingerprintService, new LocalSongStorage(storage.toString()),
+                fileRetirementService, transactionManager,
+                tempDir.resolve("orphans").toString(), checkpointFile.toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        reconciliationService.shutdown();
+    }
+
+    @Test
+    public void testRun_ReportsMissingOrphanAndChangedFiles() throws IOException {
+        Path first = file("a.mp3", 100);
+        Path second = file("b.mp3", 200);
+        Path orphan = file("c.mp3", 300);
+        age(orphan);
+        file("uploading.mp3", 400);
+        rows(row(1L, first), row(2L, second), row(3L, storage.resolve("gone.mp3")));
+        when(fileStateRepository.findAllById(anyIterable()))
+                .thenReturn(Collections.singletonList(state(2L, 150, "0")));
+
+        ReconcileReportDto report = reconciliationService.runNow(ReconcileCheckpoint.start(false, false));
+
+        assertEquals(4, report.getFilesWalked());
+        assertEquals(3, report.getSongsChecked());
+        assertEquals(2, report.getFilesHashed());
+        assertEquals(3, report.getIssueCount());
+        ReconcileIssueDto missing = issue(report, ReconcileIssueType.MISSING_FILE);
+        assertEquals(Long.valueOf(3L), missing.getSongId());
+        assertEquals(orphan.toString(), issue(report, ReconcileIssueType.ORPHAN_FILE).getPath());
+        ReconcileIssueDto changed = issue(report, ReconcileIssueType.CHANGED_FILE);
+        assertEquals(Long.valueOf(2L), changed.getSongId());
+        assertNull(changed.getRepair());
+
+        // Only the unchanged file's state is recorded; the changed one keeps being reported
+        verify(fileStateRepository).saveAll(savedStates.capture());
+        assertEquals(1, savedStates.getValue().size());
+        assertEquals(Long.valueOf(1L), savedStates.getValue().get(0).getSongId());
+        assertEquals(100, savedStates.getValue().get(0).getSize());
+        assertTrue(Files.exists(orphan));
+        assertFalse(Files.exists(checkpointFile));
+        verifyNoInteractions(songService);
+    }
+
+    @Test
+    public void testRun_RepairRelinksRenamedFilesAndQuarantinesOrphans() throws IOException {
+        Path renamed = file("moved/old name.mp3", 100);
+        Path junk = file("junk.mp3", 50);
+        age(renamed);
+        age(junk);
+        rows(row(1L, storage.resolve("Old Name.mp3")), row(2L, storage.resolve("lost.mp3")));
+        Song song = new Song();
+        song.setId(1L);
+        when(songRepository.findById(1L)).thenReturn(Optional.of(song));
+
+        ReconcileReportDto report = reconciliationService.runNow(ReconcileCheckpoint.start(true, false));
+
+        assertEquals(renamed.toString(), song.getFilePath());
+        verify(songRepository).save(song);
+        verify(songService).deleteSong(2L);
+        assertFalse(Files.exists(junk));
+        assertTrue(Files.exists(tempDir.resolve("orphans").resolve("junk.mp3")));
+        assertTrue(Files.exists(renamed));
+        for (ReconcileIssueDto issue : report.getIssues()) {
+            assertNotNull(issue.getRepair(), issue.getPath());
+        }
+    }
+
+    @Test
+    public void testRun_RepairAcceptsChangedFile() throws IOException {
+        Path changed = file("a.mp3", 100);
+        rows(row(1L, changed));
+        when(fileStateRepository.findAllById(anyIterable()))
+                .thenReturn(Collections.singletonList(state(1L, 150, "0")));
+        Song song = new Song();
+        song.setId(1L);
+        song.setFileHash("0");
+        when(songRepository.findById(1L)).thenReturn(Optional.of(song));
+
+        ReconcileReportDto report = reconciliationService.runNow(ReconcileCheckpoint.start(true, false));
+
+        assertNotNull(issue(report, ReconcileIssueType.CHANGED_FILE).getRepair());
+        verify(fileStateRepository).saveAll(savedStates.capture());
+        String hash = savedStates.getValue().get(0).getSha256();
+        assertEquals(sha256(new byte[100]), hash);
+        // The song's hash follows the accepted file, so duplicate checks see its current content
+        assertEquals(hash, song.getFileHash());
+        verify(songRepository).save(song);
+    }
+
+    @Test
+    public void testRun_RepairKeepsFilesWaitingForRetirement() throws IOException {
+        Path current = file("Song.0a1b2c3d4e5f.mp3", 100);
+        Path replaced = file("Song.mp3", 50);
+        age(replaced);
+        rows(row(1L, current));
+        when(fileStateRepository.findAllById(anyIterable())).thenReturn(Collections.<SongFileState>emptyList());
+        when(fileRetirementService.isRetired(anyString()))
+                .thenAnswer(invocation -> replaced.toString().equals(invocation.getArgument(0)));
+
+        ReconcileReportDto report = reconciliationService.runNow(ReconcileCheckpoint.start(true, false));
+
+        assertEquals(0, report.getIssueCount());
+        assertTrue(Files.exists(replaced));
+        assertFalse(Files.exists(tempDir.resolve("orphans").resolve("Song.mp3")));
+    }
+
+    @Test
+    public void testRun_RepairKeepsFilesOfDeletedSongsForThePurge() throws IOException {
+        Path deleted = file("Deleted.mp3", 50);
+        age(deleted);
+        when(songRepository.findFilePathsAfter(eq(0L), any(Pageable.class))).thenReturn(Collections.<Object[]>emptyList());
+        when(songRepository.findStoredFilePaths(anyCollection()))
+                .thenReturn(Collections.singletonList(deleted.toString()));
+
+        ReconcileReportDto report = reconciliationService.runNow(ReconcileCheckpoint.start(true, false));
+
+        assertEquals(0, report.getIssueCount());
+        assertTrue(Files.exists(deleted));
+    }
+
+    @Test
+    public void testRun_ResumesAfterCheckpoint() throws IOException {
+        Path first = file("a.mp3", 100);
+        Path second = file("b.mp3", 200);
+        rows(row(1L, first), row(2L, second));
+        when(fileStateRepository.findAllById(anyIterable())).thenReturn(Collections.<SongFileState>emptyList());
+        ReconcileCheckpoint interrupted = ReconcileCheckpoint.start(false, false);
+        interrupted.lastSongId = 1L;
+        interrupted.save(checkpointFile);
+
+        ReconcileCheckpoint loaded = ReconcileCheckpoint.load(checkpointFile);
+        ReconcileReportDto report = reconciliationService.runNow(loaded);
+
+        assertEquals(interrupted.runId, report.getRunId());
+        assertEquals(1L, report.getResumedAfterSongId());
+        assertEquals(2, report.getSongsChecked());
+        assertEquals(1, report.getFilesHashed());
+        verify(fileStateRepository).findAllById(Collections.singletonList(2L));
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    private void rows(Object[]... rows) {
+        List<Object[]> page = new ArrayList<>(Arrays.asList(rows));
+        when(songRepository.findFilePathsAfter(eq(0L), any(Pageable.class))).thenReturn(page);
+        when(songRepository.findFilePathsAfter(eq((Long) rows[rows.length - 1][0]), any(Pageable.class)))
+                .thenReturn(Collections.<Object[]>emptyList());
+    }
+
+    private static Object[] row(Long songId, Path file) {
+        return new Object[]{songId, file.toString()};
+    }
+
+    private Path file(String name, int size) throws IOException {
+        Path file = storage.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, new byte[size]);
+    }
+
+    private static void age(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 2 * 3600_000L));
+    }
+
+    private static SongFileState state(Long songId, long size, String sha256) {
+        SongFileState state = new SongFileState();
+        state.setSongId(songId);
+        state.setSize(size);
+        state.setSha256(sha256);
+        return state;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ReconcileIssueDto issue(ReconcileReportDto report, ReconcileIssueType type) {
+        for (ReconcileIssueDto issue : report.getIssues()) {
+            if (issue.getType() == type) {
+                return issue;
+            }
+        }
+        fail("No " + type + " issue");
+        return null;
+    }
+}
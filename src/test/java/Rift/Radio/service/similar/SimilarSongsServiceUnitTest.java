@@ -0,0 +1,175 @@
+package Rift.Radio.service.similar;
+
+import Rift.Radio.error.SongException;
+import Rift.Radio.repository.LikedSongRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.smart.SmartPlaylistIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SimilarSongsServiceUnitTest {
+
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private LikedSongRepository likedSongRepository;
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private SmartPlaylistIndex smartPlaylistIndex;
+
+    private SimilarSongsService service;
+
+    @BeforeEach
+    public void setUp() {
+        service = newService();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void testRebuild_RanksSongsByCosineOfSharedPlaylists() {
+        when(playlistSongRepository.findManualMemberships()).thenReturn(memberships(
+                1L, 10L, 1L, 11L, 1L, 12L,
+                2L, 10L, 2L, 11L,
+                3L, 10L, 3L, 13L));
+        when(likedSongRepository.findAllSongIds()).thenReturn(Collections.<Long>emptyList());
+
+        service.rebuild();
+
+        List<SimilarityIndex.Neighbour> similar = neighbours(10L);
+        // 12 and 13 tie; the lower id ranks first
+        assertEquals(Arrays.asList(11L, 12L, 13L), ids(similar));
+        // 10 is in 3 playlists and 11 in 2, together in 2: 2 / sqrt(3 * 2)
+        assertEquals(2 / Math.sqrt(6), similar.get(0).getScore(), 1e-6);
+    }
+
+    @Test
+    public void testRefresh_MatchesFullRebuildAfterRandomChanges() {
+        Random random = new Random(7);
+        List<Object[]> initial = new ArrayList<>();
+        for (long playlist = 1; playlist <= 40; playlist++) {
+            for (int i = 0; i < 8; i++) {
+                initial.add(new Object[]{playlist, (long) random.nextInt(150)});
+            }
+        }
+        when(playlistSongRepository.findManualMemberships()).thenReturn(initial);
+        when(likedSongRepository.findAllSongIds()).thenReturn(Arrays.asList(1L, 2L, 3L));
+        service.rebuild();
+
+        CooccurrenceModel expected = new CooccurrenceModel(1000);
+        for (Object[] row : initial) {
+            expected.add((Long) row[0], Collections.singletonList((Long) row[1]));
+        }
+        expected.add(CooccurrenceModel.LIKED_BASKET, Arrays.asList(1L, 2L, 3L));
+        for (int i = 0; i < 30; i++) {
+            long playlist = 1 + random.nextInt(40);
+            List<Long> songs = Collections.singletonList((long) random.nextInt(150));
+            CatalogChangeType type = random.nextBoolean()
+                    ? CatalogChangeType.PLAYLIST_SONGS_ADDED : CatalogChangeType.PLAYLIST_SONGS_REMOVED;
+            service.onCatalogChange(CatalogChangeEvent.playlist(type, playlist, songs));
+            if (type == CatalogChangeType.PLAYLIST_SONGS_ADDED) {
+                expected.add(playlist, songs);
+            } else {
+                expected.remove(playlist, songs);
+            }
+        }
+        service.onCatalogChange(CatalogChangeEvent.song(CatalogChangeType.SONG_DELETED, 5L));
+        expected.removeSong(5L);
+        service.refresh();
+
+        // The incrementally refreshed index must equal one scored from scratch
+        SimilarityIndex reference = score(expected);
+        assertEquals(reference.size(), service.currentIndex().size());
+        for (long songId = 0; songId < 150; songId++) {
+            assertEquals(ids(reference.neighbours(songId, 5)), ids(neighbours(songId)), "song " + songId);
+        }
+        assertTrue(neighbours(5L).isEmpty());
+    }
+
+    @Test
+    public void testSmartPlaylistChanges_AreIgnored() {
+        when(playlistSongRepository.findManualMemberships()).thenReturn(Collections.<Object[]>emptyList());
+        when(likedSongRepository.findAllSongIds()).thenReturn(Collections.<Long>emptyList());
+        when(smartPlaylistIndex.isSmart(9L)).thenReturn(true);
+        service.rebuild();
+
+        service.onCatalogChange(CatalogChangeEvent.playlist(CatalogChangeType.PLAYLIST_SONGS_ADDED, 9L,
+                Arrays.asList(1L, 2L)));
+        service.refresh();
+
+        assertTrue(neighbours(1L).isEmpty());
+    }
+
+    @Test
+    public void testGetSimilar_UnknownSongIsNotFound() {
+        when(songRepository.existsById(404L)).thenReturn(false);
+
+        assertThrows(SongException.class, () -> service.getSimilar(404L, 10));
+    }
+
+    private SimilarSongsService newService() {
+        return new SimilarSongsService(playlistSongRepository, likedSongRepository, songRepository,
+                smartPlaylistIndex, Similarity.COSINE, 5, 1000);
+    }
+
+    private List<SimilarityIndex.Neighbour> neighbours(long songId) {
+        return service.currentIndex().neighbours(songId, 5);
+    }
+
+    private static SimilarityIndex score(CooccurrenceModel model) {
+        CompactBaskets data = model.compact();
+        int[] all = new int[data.songCount()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        SimilarityIndex.Row[] rows = new SimilarityIndex.Row[all.length];
+        new SimilarityTask(data, all, Similarity.COSINE, 5, rows).invoke();
+        Map<Long, SimilarityIndex.Row> byId = new HashMap<>();
+        for (int i = 0; i < all.length; i++) {
+            byId.put(data.songId(i), rows[i]);
+        }
+        return SimilarityIndex.of(byId);
+    }
+
+    private static List<Object[]> memberships(long... pairs) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            rows.add(new Object[]{pairs[i], pairs[i + 1]});
+        }
+        return rows;
+    }
+
+    private static List<Long> ids(List<SimilarityIndex.Neighbour> neighbours) {
+        List<Long> ids = new ArrayList<>();
+        for (SimilarityIndex.Neighbour neighbour : neighbours) {
+            ids.add(neighbour.getSongId());
+        }
+        return ids;
+    }
+}
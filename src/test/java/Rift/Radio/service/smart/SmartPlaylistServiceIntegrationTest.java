@@ -0,0 +1,70 @@
+package Rift.Radio.service.smart;
+
+import Rift.Radio.dto.CreateSmartPlaylistDto;
+import Rift.Radio.dto.PlaylistSummaryDto;
+import Rift.Radio.dto.SmartRuleDto;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.SongService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+// A database of its own, so the rows written here do not meet data.sql in the other contexts
+@TestPropertySource(locations = "classpath:test_local.properties",
+        properties = "spring.datasource.url=jdbc:h2:mem:smartPlaylistDb;DB_CLOSE_DELAY=-1;MODE=PostgreSQL")
+public class SmartPlaylistServiceIntegrationTest {
+
+    @Autowired
+    private SmartPlaylistService smartPlaylistService;
+
+    @Autowired
+    private SongService songService;
+
+    @Autowired
+    private SongRepository songRepository;
+
+    @Autowired
+    private PlaylistRepository playlistRepository;
+
+    // A deleted member is still a playlist_song row until it is purged; it must not be counted off twice
+    @Test
+    public void testUpdateRule_DeletedMemberIsNotRemovedAgain() {
+        Song deleted = songRepository.save(song("Sharp Dressed Man", "ZZ Top"));
+        songRepository.save(song("Shot in the dark", "AC DC"));
+        SmartRuleDto rule = new SmartRuleDto();
+        rule.setArtists(Arrays.asList("ZZ Top", "AC DC"));
+        CreateSmartPlaylistDto dto = new CreateSmartPlaylistDto();
+        dto.setPlaylistName("Boogie");
+        dto.setRule(rule);
+
+        PlaylistSummaryDto created = smartPlaylistService.createSmartPlaylist(dto);
+        assertEquals(2, created.getTotalSongs());
+
+        songService.deleteSong(deleted.getId());
+        assertEquals(1, totalSongs(created.getPlaylistId()));
+
+        smartPlaylistService.updateRule(created.getPlaylistId(), rule);
+
+        assertEquals(1, totalSongs(created.getPlaylistId()));
+    }
+
+    private static Song song(String songName, String artistName) {
+        Song song = new Song();
+        song.setSongName(songName);
+        song.setArtistName(artistName);
+        song.setFilePath("data/mp3/" + songName + ".mp3");
+        return song;
+    }
+
+    private int totalSongs(Long playlistId) {
+        return playlistRepository.findSummaryById(playlistId).get().getTotalSongs();
+    }
+}
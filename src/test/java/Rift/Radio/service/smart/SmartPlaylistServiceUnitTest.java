@@ -0,0 +1,177 @@
+package Rift.Radio.service.smart;
+
+import Rift.Radio.dto.PlaylistSummaryDto;
+import Rift.Radio.dto.SmartRuleDto;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.modal.Playlist;
+import Rift.Radio.modal.PlaylistSong;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SmartPlaylistServiceUnitTest {
+
+    @Mock
+    private PlaylistRepository playlistRepository;
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SmartPlaylistIndex smartPlaylistIndex;
+    private SmartPlaylistService smartPlaylistService;
+
+    @BeforeEach
+    public void setUp() {
+        smartPlaylistIndex = new SmartPlaylistIndex();
+        smartPlaylistService = new SmartPlaylistService(playlistRepository, songRepository, playlistSongRepository,
+                smartPlaylistIndex, eventPublisher, new ObjectMapper(), transactionManager);
+    }
+
+    @Test
+    public void testCompiledRule_MatchesAllConditions() {
+        SmartRuleDto rule = new SmartRuleDto();
+        rule.setGenreContains("Rock");
+        rule.setReleaseYearFrom(1970);
+        rule.setReleaseYearTo(1979);
+        rule.setArtists(Arrays.asList(" Aerosmith ", "ZZ Top"));
+        CompiledRule compiled = CompiledRule.compile(1L, rule);
+
+        assertTrue(compiled.matches(song(1L, "aerosmith", "Hard rock", 1973, false)));
+        assertFalse(compiled.matches(song(2L, "aerosmith", "Hard rock", 1984, false)));
+        assertFalse(compiled.matches(song(3L, "Metallica", "Hard rock", 1973, false)));
+        assertFalse(compiled.matches(song(4L, "ZZ Top", "Blues", 1973, false)));
+    }
+
+    @Test
+    public void testCompiledRule_RejectsEmptyRule() {
+        assertThrows(PlaylistException.class, () -> CompiledRule.compile(1L, new SmartRuleDto()));
+    }
+
+    @Test
+    public void testCompiledRule_RejectsInvertedYearRange() {
+        SmartRuleDto rule = new SmartRuleDto();
+        rule.setReleaseYearFrom(1990);
+        rule.setReleaseYearTo(1980);
+        assertThrows(PlaylistException.class, () -> CompiledRule.compile(1L, rule));
+    }
+
+    @Test
+    public void testIndex_OnlyReturnsRulesForSongArtist() {
+        smartPlaylistIndex.put(CompiledRule.compile(1L, artistRule("AC DC")));
+        smartPlaylistIndex.put(CompiledRule.compile(2L, artistRule("Queen")));
+        smartPlaylistIndex.put(CompiledRule.compile(3L, genreRule("rock")));
+
+        assertEquals(2, smartPlaylistIndex.candidatesFor(song(1L, "ac dc", "Rock", 1980, false)).size());
+        assertTrue(smartPlaylistIndex.likedRules().isEmpty());
+    }
+
+    @Test
+    public void testRefresh_AddsMatchingSongAndDropsStaleMembership() {
+        smartPlaylistIndex.put(CompiledRule.compile(1L, artistRule("AC DC")));
+        smartPlaylistIndex.put(CompiledRule.compile(2L, artistRule("Queen")));
+        Song song = song(7L, "Queen", "Rock", 1980, false);
+        List<Long> ids = Collections.singletonList(7L);
+        when(songRepository.findAllById(ids)).thenReturn(Collections.singletonList(song));
+        when(playlistSongRepository.findSmartMemberships(ids))
+                .thenReturn(Collections.singletonList(new Object[]{1L, 7L}));
+        when(playlistSongRepository.findMaxPosition(2L)).thenReturn(0L);
+        when(playlistSongRepository.insertSongsAt(2L, ids, PlaylistSong.POSITION_GAP)).thenReturn(1);
+        when(playlistSongRepository.deleteSongs(1L, ids)).thenReturn(1);
+
+        smartPlaylistService.refresh(ids, false);
+
+        verify(playlistSongRepository, times(1)).deleteSongs(1L, ids);
+        verify(playlistRepository, times(1)).adjustSongCount(1L, -1);
+        verify(playlistSongRepository, times(1)).insertSongsAt(2L, ids, PlaylistSong.POSITION_GAP);
+        verify(playlistRepository, times(1)).adjustSongCount(2L, 1);
+    }
+
+    @Test
+    public void testRefresh_LikeChangeOnlyEvaluatesLikedRules() {
+        SmartRuleDto liked = new SmartRuleDto();
+        liked.setLiked(true);
+        smartPlaylistIndex.put(CompiledRule.compile(1L, liked));
+        smartPlaylistIndex.put(CompiledRule.compile(2L, genreRule("rock")));
+        Song song = song(7L, "Queen", "Rock", 1980, true);
+        List<Long> ids = Collections.singletonList(7L);
+        when(songRepository.findAllById(ids)).thenReturn(Collections.singletonList(song));
+        when(playlistSongRepository.findSmartMemberships(ids)).thenReturn(Collections.<Object[]>emptyList());
+        when(playlistSongRepository.findMaxPosition(1L)).thenReturn(0L);
+        when(playlistSongRepository.insertSongsAt(1L, ids, PlaylistSong.POSITION_GAP)).thenReturn(1);
+
+        smartPlaylistService.refresh(ids, true);
+
+        verify(playlistSongRepository, times(1)).insertSongsAt(1L, ids, PlaylistSong.POSITION_GAP);
+        verify(playlistSongRepository, never()).insertSongsAt(eq(2L), anyList(), anyLong());
+    }
+
+    @Test
+    public void testUpdateRule_IndexesRuleOnlyAfterCommit() {
+        Playlist playlist = new Playlist();
+        playlist.setId(1L);
+        playlist.setSmartRule("{}");
+        when(playlistRepository.findById(1L)).thenReturn(Optional.of(playlist));
+        when(songRepository.findAll(any(Sort.class))).thenReturn(Collections.<Song>emptyList());
+        when(playlistSongRepository.findOrderedSongIds(1L)).thenReturn(Collections.<Long>emptyList());
+        when(playlistRepository.findSummaryById(1L)).thenReturn(Optional.of(new PlaylistSummaryDto()));
+
+        smartPlaylistService.updateRule(1L, artistRule("Queen"));
+
+        assertFalse(smartPlaylistIndex.isSmart(1L));
+        ArgumentCaptor<SmartRuleChangedEvent> event = ArgumentCaptor.forClass(SmartRuleChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        smartPlaylistService.onRuleChanged(event.getValue());
+        assertTrue(smartPlaylistIndex.isSmart(1L));
+    }
+
+    private static SmartRuleDto artistRule(String artist) {
+        SmartRuleDto rule = new SmartRuleDto();
+        rule.setArtists(Collections.singletonList(artist));
+        return rule;
+    }
+
+    private static SmartRuleDto genreRule(String genre) {
+        SmartRuleDto rule = new SmartRuleDto();
+        rule.setGenreContains(genre);
+        return rule;
+    }
+
+    private static Song song(Long id, String artist, String genre, int year, boolean liked) {
+        Song song = new Song();
+        song.setId(id);
+        song.setArtistName(artist);
+        song.setGenre(genre);
+        song.setReleaseYear(year);
+        song.setLiked(liked);
+        return song;
+    }
+}
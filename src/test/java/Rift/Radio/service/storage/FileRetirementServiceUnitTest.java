@@ -0,0 +1,81 @@
+package Rift.Radio.service.storage;
+
+import Rift.Radio.repository.SongRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FileRetirementServiceUnitTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private SongRepository songRepository;
+
+    private LocalSongStorage storage;
+    private FileRetirementService retirementService;
+
+    @BeforeEach
+    public void setUp() {
+        storage = new LocalSongStorage(tempDir.toString());
+        retirementService = new FileRetirementService(songRepository, storage, 60_000);
+    }
+
+    @Test
+    public void testDeleteRetired_AfterTheGracePeriodOnly() throws IOException {
+        String old = file("Song.0a1b2c3d4e5f.mp3");
+        retirementService.retire(old);
+
+        retirementService.sweep();
+        assertTrue(Files.exists(Paths.get(old)));
+        assertEquals(1, retirementService.pending());
+
+        assertEquals(1, retirementService.deleteRetired(System.currentTimeMillis()));
+        assertFalse(Files.exists(Paths.get(old)));
+        assertEquals(0, retirementService.pending());
+    }
+
+    @Test
+    public void testDeleteRetired_KeepsFilesInUseAgain() throws IOException {
+        String reused = file("Song.mp3");
+        when(songRepository.existsByFilePath(reused)).thenReturn(true);
+        retirementService.retire(reused);
+
+        retirementService.shutdown();
+
+        assertTrue(Files.exists(Paths.get(reused)));
+        assertEquals(0, retirementService.pending());
+    }
+
+    @Test
+    public void testDeleteRetired_FailureIsRetried() throws IOException {
+        String key = file("Song.mp3");
+        when(songRepository.existsByFilePath(key)).thenThrow(new IllegalStateException("database down"))
+                .thenReturn(false);
+        retirementService.retire(key);
+
+        assertEquals(0, retirementService.deleteRetired(Long.MAX_VALUE));
+        assertEquals(1, retirementService.pending());
+        assertEquals(1, retirementService.deleteRetired(Long.MAX_VALUE));
+        assertFalse(Files.exists(Paths.get(key)));
+    }
+
+    private String file(String name) throws IOException {
+        String key = storage.keyFor(name);
+        Files.write(Paths.get(key), new byte[]{1, 2, 3});
+        return key;
+    }
+}
@@ -0,0 +1,177 @@
+package Rift.Radio.service.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Just enough of the S3 API, path-style, to run {@link S3SongStorage} against: objects,
+ * multipart uploads and ranged GETs, kept in memory. Requests are recorded for assertions.
+ */
+class LocalS3Server implements AutoCloseable {
+
+    final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger uploadIds = new AtomicInteger();
+    private final HttpServer server;
+
+    LocalS3Server() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            // The path is /bucket/key
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), "UTF-8");
+            String key = path.substring(path.indexOf('/', 1) + 1);
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            requests.add(method + " " + key + (query.isEmpty() ? "" : " " + query.keySet())
+                    + (range == null ? "" : " " + range));
+
+            if ("PUT".equals(method) && query.containsKey("partNumber")) {
+                byte[] body = body(exchange);
+                uploads.get(query.get("uploadId")).put(Integer.parseInt(query.get("partNumber")), body);
+                exchange.getResponseHeaders().add("ETag", etag(body));
+                send(exchange, 200, null);
+            } else if ("PUT".equals(method)) {
+                byte[] body = body(exchange);
+                objects.put(key, body);
+                exchange.getResponseHeaders().add("ETag", etag(body));
+                send(exchange, 200, null);
+            } else if ("POST".equals(method) && query.containsKey("uploads")) {
+                String uploadId = "upload-" + uploadIds.incrementAndGet();
+                uploads.put(uploadId, new TreeMap<>());
+                send(exchange, 200, "<InitiateMultipartUploadResult><Bucket>songs</Bucket><Key>" + key
+                        + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+            } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+                body(exchange);
+                ByteArrayOutputStream object = new ByteArrayOutputStream();
+                for (byte[] part : uploads.remove(query.get("uploadId")).values()) {
+                    object.write(part);
+                }
+                objects.put(key, object.toByteArray());
+                send(exchange, 200, "<CompleteMultipartUploadResult><Bucket>songs</Bucket><Key>" + key
+                        + "</Key><ETag>\"multipart\"</ETag></CompleteMultipartUploadResult>");
+            } else if ("DELETE".equals(method)) {
+                if (query.containsKey("uploadId")) {
+                    uploads.remove(query.get("uploadId"));
+                } else {
+                    objects.remove(key);
+                }
+                send(exchange, 204, null);
+            } else if ("HEAD".equals(method) || "GET".equals(method)) {
+                get(exchange, objects.get(key), range, "HEAD".equals(method));
+            } else {
+                send(exchange, 405, null);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void get(HttpExchange exchange, byte[] object, String range, boolean head) throws IOException {
+        if (object == null) {
+            send(exchange, 404, head ? null
+                    : "<Error><Code>NoSuchKey</Code><Message>The specified key does not exist.</Message></Error>");
+            return;
+        }
+        int from = 0;
+        if (range != null) {
+            from = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            exchange.getResponseHeaders().add("Content-Range",
+                    "bytes " + from + "-" + (object.length - 1) + "/" + object.length);
+        }
+        exchange.getResponseHeaders().add("Content-Type", "audio/mpeg");
+        if (head) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(object.length));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(range == null ? 200 : 206, object.length - from);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(object, from, object.length - from);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String xml) throws IOException {
+        if (xml == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = xml.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] body(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                body.write(buffer, 0, n);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private static Map<String, String> query(String raw) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            query.put(URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8"),
+                    eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        return query;
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            StringBuilder hex = new StringBuilder("\"");
+            for (byte b : MessageDigest.getInstance("MD5").digest(body)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package Rift.Radio.service.storage;
+
+import Rift.Radio.error.SongException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalSongStorageUnitTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path directory;
+    private LocalSongStorage storage;
+
+    @BeforeEach
+    public void setUp() {
+        directory = tempDir.resolve("mp3");
+        storage = new LocalSongStorage(directory.toString());
+    }
+
+    @Test
+    public void testStore_MovesStagedFileIntoPlace() throws IOException {
+        Path staged = storage.createStagingFile();
+        Files.write(staged, new byte[]{1, 2, 3});
+        String key = storage.keyFor("Song.mp3");
+
+        assertTrue(storage.store(staged, key));
+
+        assertEquals(directory.resolve("Song.mp3").toString(), key);
+        assertEquals(directory, staged.getParent());
+        assertFalse(Files.exists(staged));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(Paths.get(key)));
+        assertEquals(Paths.get(key), storage.localPath(key));
+        assertFalse(storage.presignedUrl(key, "Song.mp3").isPresent());
+
+        // A stored file is never replaced
+        Path replacement = storage.createStagingFile();
+        Files.write(replacement, new byte[]{4});
+        assertFalse(storage.store(replacement, key));
+        assertTrue(Files.exists(replacement));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(Paths.get(key)));
+    }
+
+    @Test
+    public void testKeyFor_RejectsNamesOutsideTheDirectory() {
+        assertEquals(directory.resolve("Song.mp3").toString(), storage.keyFor("sub/../Song.mp3"));
+        for (String name : new String[]{"../Song.mp3", "../../etc/Song.mp3", "..", "", tempDir.resolve("Song.mp3").toString()}) {
+            SongException e = assertThrows(SongException.class, () -> storage.keyFor(name), name);
+            assertEquals("Invalid file name", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLoadAndDelete() throws IOException {
+        String key = storage.keyFor("Song.mp3");
+        Files.createDirectories(directory);
+        Files.write(Paths.get(key), new byte[]{1, 2, 3, 4});
+
+        Resource resource = storage.load(key);
+        assertEquals(4, resource.contentLength());
+        try (InputStream in = resource.getInputStream()) {
+            assertEquals(2, in.skip(2));
+            assertEquals(3, in.read());
+        }
+
+        assertTrue(storage.delete(key));
+        assertFalse(storage.exists(key));
+        assertFalse(storage.delete(key));
+        assertFalse(storage.load(key).exists());
+    }
+
+    @Test
+    public void testTiers_FileStaysReadableWhileMoving() throws IOException {
+        Path cold = tempDir.resolve("cold");
+        LocalSongStorage tiered = new LocalSongStorage(directory.toString(), cold.toString());
+        String key = tiered.keyFor("Song.mp3");
+        Files.createDirectories(directory);
+        Files.write(Paths.get(key), new byte[]{1, 2, 3, 4});
+        Resource loadedHot = tiered.load(key);
+
+        try (InputStream in = loadedHot.getInputStream()) {
+            assertEquals(1, in.read());
+            assertTrue(tiered.demote(key));
+            assertArrayEquals(new byte[]{2, 3, 4}, StreamUtils.copyToByteArray(in));
+        }
+        assertTrue(tiered.isCold(key));
+        assertFalse(tiered.demote(key));
+        Path staged = tiered.createStagingFile();
+        assertFalse(tiered.store(staged, key));
+        assertFalse(Files.exists(Paths.get(key)));
+        assertEquals(cold.resolve("Song.mp3"), tiered.localPath(key));
+        // Loaded before the move, opened after it
+        assertEquals(4, loadedHot.contentLength());
+        try (InputStream in = loadedHot.getInputStream()) {
+            assertArrayEquals(new byte[]{1, 2, 3, 4}, StreamUtils.copyToByteArray(in));
+        }
+
+        Resource loadedCold = tiered.load(key);
+        assertTrue(tiered.promote(key));
+        assertFalse(tiered.isCold(key));
+        assertTrue(loadedCold.exists());
+        try (InputStream in = loadedCold.getInputStream()) {
+            assertArrayEquals(new byte[]{1, 2, 3, 4}, StreamUtils.copyToByteArray(in));
+        }
+
+        assertTrue(tiered.demote(key));
+        assertTrue(tiered.delete(key));
+        assertFalse(tiered.exists(key));
+        assertFalse(Files.exists(cold.resolve("Song.mp3")));
+    }
+}
@@ -0,0 +1,125 @@
+package Rift.Radio.service.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class S3SongStorageUnitTest {
+
+    private static final int PART_SIZE = (int) S3SongStorage.MIN_PART_SIZE;
+
+    @TempDir
+    Path tempDir;
+
+    private LocalS3Server s3;
+    private S3SongStorage storage;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        s3 = new LocalS3Server();
+        storage = new S3SongStorage("songs", s3.endpoint(), "us-east-1", "test", "test", "mp3/",
+                PART_SIZE, 900);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.shutdown();
+        s3.close();
+    }
+
+    @Test
+    public void testStore_SmallFileInOnePut() throws IOException {
+        byte[] content = bytes(1, 100_000);
+        Path staged = stage(content);
+        String key = storage.keyFor("Song.mp3");
+
+        assertTrue(storage.store(staged, key));
+
+        assertEquals("mp3/Song.mp3", key);
+        assertArrayEquals(content, s3.objects.get(key));
+        assertFalse(Files.exists(staged));
+        assertTrue(storage.exists(key));
+        assertFalse(storage.exists("mp3/Other.mp3"));
+        assertEquals(1, s3.requests.stream().filter(r -> r.startsWith("PUT ")).count());
+
+        Path other = stage(bytes(6, 1000));
+        assertFalse(storage.store(other, key));
+        assertTrue(Files.exists(other));
+        assertArrayEquals(content, s3.objects.get(key));
+    }
+
+    @Test
+    public void testStore_LargeFileAsMultipartUpload() throws IOException {
+        byte[] content = bytes(2, 2 * PART_SIZE + 12_345);
+
+        storage.store(stage(content), "mp3/Long.mp3");
+
+        assertArrayEquals(content, s3.objects.get("mp3/Long.mp3"));
+        assertEquals(3, s3.requests.stream().filter(r -> r.startsWith("PUT mp3/Long.mp3 [")).count());
+    }
+
+    @Test
+    public void testLoad_SkipBecomesRangedGet() throws IOException {
+        byte[] content = bytes(3, 50_000);
+        storage.store(stage(content), "mp3/Song.mp3");
+        Resource resource = storage.load("mp3/Song.mp3");
+
+        assertEquals(content.length, resource.contentLength());
+        assertEquals("Song.mp3", resource.getFilename());
+        try (InputStream in = resource.getInputStream()) {
+            assertEquals(40_000, in.skip(40_000));
+            assertArrayEquals(Arrays.copyOfRange(content, 40_000, content.length), StreamUtils.copyToByteArray(in));
+        }
+        assertTrue(s3.requests.contains("GET mp3/Song.mp3 bytes=40000-"));
+        try (InputStream in = resource.getInputStream()) {
+            assertArrayEquals(content, StreamUtils.copyToByteArray(in));
+        }
+        assertFalse(storage.load("mp3/Missing.mp3").exists());
+    }
+
+    @Test
+    public void testPresignedUrl_PointsAtTheObject() throws IOException {
+        storage.store(stage(bytes(4, 1000)), "mp3/Song.mp3");
+
+        Optional<URI> url = storage.presignedUrl("mp3/Song.mp3", "Song.mp3");
+
+        assertTrue(url.isPresent());
+        assertTrue(url.get().toString().startsWith(s3.endpoint() + "/songs/mp3/Song.mp3?"));
+        assertTrue(url.get().getQuery().contains("X-Amz-Signature="));
+        assertTrue(url.get().getQuery().contains("response-content-disposition=attachment"));
+        assertNull(storage.localPath("mp3/Song.mp3"));
+    }
+
+    @Test
+    public void testDelete_RemovesObject() throws IOException {
+        storage.store(stage(bytes(5, 1000)), "mp3/Song.mp3");
+
+        assertTrue(storage.delete("mp3/Song.mp3"));
+        assertFalse(s3.objects.containsKey("mp3/Song.mp3"));
+        assertFalse(storage.delete("mp3/Song.mp3"));
+    }
+
+    private Path stage(byte[] content) throws IOException {
+        return Files.write(Files.createTempFile(tempDir, "staged", ".mp3"), content);
+    }
+
+    private static byte[] bytes(long seed, int length) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
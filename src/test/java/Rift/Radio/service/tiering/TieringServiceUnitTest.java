@@ -0,0 +1,172 @@
+package Rift.Radio.service.tiering;
+
+import Rift.Radio.modal.SongAccess;
+import Rift.Radio.repository.SongAccessRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.events.CatalogChangeEvent;
+import Rift.Radio.service.events.CatalogChangeType;
+import Rift.Radio.service.storage.LocalSongStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TieringServiceUnitTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private SongAccessRepository songAccessRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Captor
+    private ArgumentCaptor<Map<Long, Long>> flushed;
+
+    private Path hot;
+    private Path cold;
+    private LocalSongStorage storage;
+    private TieringService tieringService;
+
+    @BeforeEach
+    public void setUp() {
+        hot = tempDir.resolve("mp3");
+        cold = tempDir.resolve("cold");
+        storage = new LocalSongStorage(hot.toString(), cold.toString());
+        tieringService = new TieringService(songRepository, songAccessRepository, storage, transactionManager,
+                30, 3600_000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tieringService.shutdown();
+    }
+
+    @Test
+    public void testRecordAccess_SampledAndFlushedInBatches() throws IOException {
+        String first = file("a.mp3", 0);
+        String second = file("b.mp3", 0);
+        when(songRepository.findExistingIds(anyCollection())).thenReturn(Arrays.asList(1L, 2L));
+
+        tieringService.recordAccess(1L, first);
+        tieringService.recordAccess(1L, first);
+        tieringService.recordAccess(2L, second);
+        tieringService.recordAccess(3L, second);
+        assertEquals(3, tieringService.pendingAccesses());
+
+        tieringService.flush();
+
+        verify(songAccessRepository).recordAccesses(flushed.capture());
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(flushed.getValue().keySet()));
+        assertEquals(0, tieringService.pendingAccesses());
+        // Within the sample interval another access is not recorded again
+        tieringService.recordAccess(1L, first);
+        assertEquals(0, tieringService.pendingAccesses());
+    }
+
+    @Test
+    public void testDemoteColdFiles_MovesFilesNotAccessedSinceCutoff() throws IOException {
+        String recent = file("recent.mp3", 40);
+        String stale = file("stale.mp3", 0);
+        String neverPlayed = file("old.mp3", 40);
+        String fresh = file("new.mp3", 0);
+        List<Object[]> rows = Arrays.asList(row(1L, recent), row(2L, stale), row(3L, neverPlayed), row(4L, fresh));
+        when(songRepository.findFilePathsAfter(eq(0L), any(Pageable.class))).thenReturn(rows);
+        when(songRepository.findFilePathsAfter(eq(4L), any(Pageable.class))).thenReturn(Collections.<Object[]>emptyList());
+        long now = System.currentTimeMillis();
+        when(songAccessRepository.findAllById(anyIterable()))
+                .thenReturn(Arrays.asList(access(1L, now - DAY), access(2L, now - 31 * DAY)));
+
+        assertEquals(2, tieringService.demoteColdFiles());
+
+        assertTrue(storage.isCold(stale));
+        assertTrue(storage.isCold(neverPlayed));
+        assertFalse(storage.isCold(recent));
+        assertFalse(storage.isCold(fresh));
+        assertEquals(cold.resolve("stale.mp3"), storage.localPath(stale));
+        assertArrayEquals(new byte[]{(byte) "stale.mp3".length()}, Files.readAllBytes(storage.localPath(stale)));
+    }
+
+    @Test
+    public void testPromotion_ConcurrentAccessesShareOneMove() throws IOException {
+        String key = file("a.mp3", 0);
+        assertTrue(storage.demote(key));
+        List<Runnable> submitted = new ArrayList<>();
+
+        CompletableFuture<Boolean> first = tieringService.move(key, true, submitted::add);
+        CompletableFuture<Boolean> second = tieringService.move(key, true, submitted::add);
+
+        assertSame(first, second);
+        assertEquals(1, submitted.size());
+        submitted.get(0).run();
+        assertTrue(first.join());
+        assertFalse(storage.isCold(key));
+        assertTrue(Files.exists(hot.resolve("a.mp3")));
+        assertFalse(Files.exists(cold.resolve("a.mp3")));
+    }
+
+    @Test
+    public void testRecordAccess_DisabledWithoutColdTier() throws IOException {
+        TieringService untiered = new TieringService(songRepository, songAccessRepository,
+                new LocalSongStorage(hot.toString()), transactionManager, 30, 3600_000);
+        try {
+            untiered.recordAccess(1L, file("a.mp3", 0));
+            untiered.onCatalogChange(CatalogChangeEvent.song(CatalogChangeType.SONG_DELETED, 1L));
+
+            assertFalse(untiered.isEnabled());
+            assertEquals(0, untiered.pendingAccesses());
+            verifyNoInteractions(songAccessRepository);
+        } finally {
+            untiered.shutdown();
+        }
+    }
+
+    private String file(String name, int ageDays) throws IOException {
+        Files.createDirectories(hot);
+        Path file = Files.write(hot.resolve(name), new byte[]{(byte) name.length()});
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - ageDays * DAY));
+        return storage.keyFor(name);
+    }
+
+    private static Object[] row(Long songId, String filePath) {
+        return new Object[]{songId, filePath};
+    }
+
+    private static SongAccess access(Long songId, long at) {
+        SongAccess access = new SongAccess();
+        access.setSongId(songId);
+        access.setLastAccessedAt(at);
+        return access;
+    }
+}
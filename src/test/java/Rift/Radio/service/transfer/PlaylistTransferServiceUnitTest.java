@@ -0,0 +1,142 @@
+package Rift.Radio.service.transfer;
+
+import Rift.Radio.dto.BatchItemStatus;
+import Rift.Radio.dto.BatchResultDto;
+import Rift.Radio.dto.PlaylistImportResultDto;
+import Rift.Radio.error.PlaylistException;
+import Rift.Radio.modal.Playlist;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistRepository;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.PlaylistService;
+import Rift.Radio.service.smart.SmartPlaylistIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PlaylistTransferServiceUnitTest {
+
+    @Mock
+    private PlaylistRepository playlistRepository;
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private PlaylistService playlistService;
+
+    private PlaylistTransferService playlistTransferService;
+
+    private Song dreamOn;
+    private Song tush;
+
+    @BeforeEach
+    public void setUp() {
+        playlistTransferService = new PlaylistTransferService(playlistRepository, songRepository,
+                playlistSongRepository, playlistService, new SmartPlaylistIndex());
+        dreamOn = song(1L, "Dream On", "Aerosmith", "mp3/Aerosmith - Dream On.mp3");
+        tush = song(2L, "Tush", "ZZ Top", "mp3/Tush.mp3");
+    }
+
+    @Test
+    public void testImportM3u_ResolvesByPathAndTitle() {
+        String m3u = "#EXTM3U\n"
+                + "#EXTINF:271,Aerosmith - Dream On\n"
+                + "mp3/Aerosmith - Dream On.mp3\n"
+                + "#EXTINF:140,ZZ Top - Tush\n"
+                + "/home/me/Music/tush.mp3\n"
+                + "/home/me/Music/Unknown Artist - Missing.mp3\n";
+        when(playlistRepository.existsById(1L)).thenReturn(true);
+        when(songRepository.findByFilePathIn(anyCollection())).thenReturn(Collections.singletonList(dreamOn));
+        when(songRepository.findByNormalizedTitleIn(anyCollection())).thenReturn(Collections.singletonList(tush));
+        BatchResultDto added = new BatchResultDto();
+        added.add(1L, BatchItemStatus.ADDED);
+        added.add(2L, BatchItemStatus.ALREADY_IN_PLAYLIST);
+        when(playlistService.addSongsToPlaylist(1L, Arrays.asList(1L, 2L))).thenReturn(added);
+
+        PlaylistImportResultDto result = playlistTransferService.importPlaylist(1L, PlaylistFormat.M3U8,
+                new ByteArrayInputStream(m3u.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(3, result.getEntries());
+        assertEquals(1, result.getAdded());
+        assertEquals(1, result.getAlreadyInPlaylist());
+        assertEquals(1, result.getUnresolvedCount());
+        assertEquals("Missing", result.getUnresolved().get(0).getTitle());
+        assertEquals("Unknown Artist", result.getUnresolved().get(0).getArtist());
+        assertEquals(6, result.getUnresolved().get(0).getLine());
+    }
+
+    @Test
+    public void testImportXspf_ReadsTracks() {
+        String xspf = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<playlist version=\"1\" xmlns=\"http://xspf.org/ns/0/\"><trackList>\n"
+                + "<track><location>mp3/Aerosmith%20-%20Dream%20On.mp3</location><title>Dream On</title></track>\n"
+                + "</trackList></playlist>";
+        when(playlistRepository.existsById(1L)).thenReturn(true);
+        when(songRepository.findByFilePathIn(Collections.singleton("mp3/Aerosmith - Dream On.mp3")))
+                .thenReturn(Collections.singletonList(dreamOn));
+        BatchResultDto added = new BatchResultDto();
+        added.add(1L, BatchItemStatus.ADDED);
+        when(playlistService.addSongsToPlaylist(1L, Collections.singletonList(1L))).thenReturn(added);
+
+        PlaylistImportResultDto result = playlistTransferService.importPlaylist(1L, PlaylistFormat.XSPF,
+                new ByteArrayInputStream(xspf.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, result.getEntries());
+        assertEquals(1, result.getAdded());
+        assertEquals(0, result.getUnresolvedCount());
+    }
+
+    @Test
+    public void testImport_PlaylistNotFound() {
+        when(playlistRepository.existsById(9L)).thenReturn(false);
+        assertThrows(PlaylistException.class, () -> playlistTransferService.importPlaylist(9L, PlaylistFormat.M3U,
+                new ByteArrayInputStream(new byte[0])));
+        verify(playlistService, never()).addSongsToPlaylist(anyLong(), any());
+    }
+
+    @Test
+    public void testExportM3u_WritesPagesInOrder() throws IOException {
+        Playlist playlist = new Playlist();
+        playlist.setId(1L);
+        playlist.setName("Road trip");
+        when(playlistSongRepository.findSongsAfter(eq(1L), eq(Long.MIN_VALUE), eq(Long.MIN_VALUE), any(Pageable.class)))
+                .thenReturn(Arrays.asList(new Object[]{10L, dreamOn}, new Object[]{20L, tush}));
+        when(playlistSongRepository.findSongsAfter(eq(1L), eq(20L), eq(2L), any(Pageable.class)))
+                .thenReturn(Collections.<Object[]>emptyList());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        playlistTransferService.exportPlaylist(playlist, PlaylistFormat.M3U8, out);
+
+        assertEquals("#EXTM3U\n#PLAYLIST:Road trip\n"
+                + "#EXTINF:-1,Aerosmith - Dream On\nmp3/Aerosmith - Dream On.mp3\n"
+                + "#EXTINF:-1,ZZ Top - Tush\nmp3/Tush.mp3\n", out.toString("UTF-8"));
+    }
+
+    private static Song song(Long id, String name, String artist, String path) {
+        Song song = new Song();
+        song.setId(id);
+        song.setSongName(name);
+        song.setArtistName(artist);
+        song.setFilePath(path);
+        return song;
+    }
+}
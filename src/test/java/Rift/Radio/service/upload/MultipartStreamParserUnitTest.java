@@ -0,0 +1,122 @@
+package Rift.Radio.service.upload;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.multipart.MultipartException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultipartStreamParserUnitTest {
+
+    private static final String BOUNDARY = "----form7MA4YWxk";
+
+    @Test
+    public void testParts_ReadInSmallPieces() throws IOException {
+        // Content close to the delimiter must come through untouched
+        byte[] content = new byte[3 * MultipartStreamParser.BUFFER_SIZE + 17];
+        new Random(1).nextBytes(content);
+        byte[] nearDelimiter = ("\r\n--" + BOUNDARY.substring(0, 8)).getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(nearDelimiter, 0, content, MultipartStreamParser.BUFFER_SIZE - 3, nearDelimiter.length);
+        byte[] body = body(content);
+
+        for (int chunk : new int[]{1, 7, 4096, body.length}) {
+            MultipartStreamParser parser = new MultipartStreamParser(chunked(body, chunk), BOUNDARY);
+
+            assertTrue(parser.nextPart());
+            assertEquals("data", parser.getName());
+            assertNull(parser.getFileName());
+            assertEquals("{\"songName\":\"Thunderstruck\"}",
+                    StreamUtils.copyToString(parser.getPartStream(), StandardCharsets.UTF_8));
+
+            assertTrue(parser.nextPart());
+            assertEquals("file", parser.getName());
+            assertEquals("Snortin’ Whiskey.mp3", parser.getFileName());
+            assertEquals("audio/mpeg", parser.getContentType());
+            assertArrayEquals(content, StreamUtils.copyToByteArray(parser.getPartStream()));
+            assertEquals(-1, parser.getPartStream().read());
+
+            assertTrue(parser.nextPart());
+            assertEquals("unread", parser.getName());
+            assertFalse(parser.nextPart());
+            assertFalse(parser.nextPart());
+        }
+    }
+
+    @Test
+    public void testNextPart_SkipsUnreadContent() throws IOException {
+        MultipartStreamParser parser = new MultipartStreamParser(
+                new ByteArrayInputStream(body(new byte[100_000])), BOUNDARY);
+
+        assertTrue(parser.nextPart());
+        assertTrue(parser.nextPart());
+        assertEquals(0, parser.getPartStream().read());
+        assertTrue(parser.nextPart());
+        assertEquals("unread", parser.getName());
+        assertFalse(parser.nextPart());
+    }
+
+    @Test
+    public void testTruncatedBody_Fails() throws IOException {
+        byte[] body = body(new byte[10_000]);
+        MultipartStreamParser parser = new MultipartStreamParser(
+                new ByteArrayInputStream(Arrays.copyOf(body, 5_000)), BOUNDARY);
+
+        assertTrue(parser.nextPart());
+        assertTrue(parser.nextPart());
+        InputStream file = parser.getPartStream();
+        assertThrows(MultipartException.class, () -> StreamUtils.copyToByteArray(file));
+        assertThrows(MultipartException.class,
+                () -> new MultipartStreamParser(new ByteArrayInputStream(new byte[]{'x'}), BOUNDARY).nextPart());
+    }
+
+    @Test
+    public void testBoundary() {
+        assertEquals("abc", MultipartStreamParser.boundary("multipart/form-data; boundary=abc"));
+        assertEquals("a b", MultipartStreamParser.boundary("multipart/form-data; boundary=\"a b\""));
+        assertNull(MultipartStreamParser.boundary("multipart/form-data"));
+        assertNull(MultipartStreamParser.boundary("application/json; boundary=abc"));
+        assertNull(MultipartStreamParser.boundary("not a type"));
+        assertNull(MultipartStreamParser.boundary(null));
+    }
+
+    private static byte[] body(byte[] content) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        write(body, "preamble\r\n--" + BOUNDARY + "\r\n");
+        write(body, "Content-Disposition: form-data; name=\"data\"\r\n");
+        write(body, "Content-Type: application/json\r\n\r\n");
+        write(body, "{\"songName\":\"Thunderstruck\"}");
+        write(body, "\r\n--" + BOUNDARY + "  \r\n");
+        write(body, "content-disposition: form-data; name=\"file\"; filename=\"Snortin’ Whiskey.mp3\"\r\n");
+        write(body, "Content-Type: audio/mpeg\r\n\r\n");
+        body.write(content);
+        write(body, "\r\n--" + BOUNDARY + "\r\n");
+        write(body, "Content-Disposition: form-data; name=\"unread\"\r\n\r\n");
+        write(body, "skipped");
+        write(body, "\r\n--" + BOUNDARY + "--\r\nepilogue");
+        return body.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    // Hands out at most chunk bytes per read, like a socket does
+    private static InputStream chunked(byte[] body, int chunk) {
+        return new FilterInputStream(new ByteArrayInputStream(body)) {
+            @Override
+            public int read(byte[] target, int offset, int length) throws IOException {
+                return super.read(target, offset, Math.min(length, chunk));
+            }
+        };
+    }
+}
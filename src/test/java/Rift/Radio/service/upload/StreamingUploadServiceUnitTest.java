@@ -0,0 +1,370 @@
+package Rift.Radio.service.upload;
+
+import Rift.Radio.dto.CreateSongDto;
+import Rift.Radio.error.SongException;
+import Rift.Radio.modal.Song;
+import Rift.Radio.repository.PlaylistSongRepository;
+import Rift.Radio.repository.SongRepository;
+import Rift.Radio.service.SongService;
+import Rift.Radio.service.artwork.CoverArtService;
+import Rift.Radio.service.fingerprint.FingerprintService;
+import Rift.Radio.service.metadata.Mp3MetadataParser;
+import Rift.Radio.service.storage.FileRetirementService;
+import Rift.Radio.service.storage.LocalSongStorage;
+import Rift.Radio.service.tiering.TieringService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.multipart.MultipartException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StreamingUploadServiceUnitTest {
+
+    private static final String BOUNDARY = "xYzZY";
+    private static final String CONTENT_TYPE = "multipart/form-data; boundary=" + BOUNDARY;
+    private static final String DATA = "{\"songName\":\"Thunderstruck\",\"artistName\":\"AC DC\","
+            + "\"genre\":\"Rock\",\"releaseYear\":1990}";
+    private static final int FRAME_HEADER = 0xFFFB9000;
+    private static final int FRAME_LENGTH = 417;
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private SongRepository songRepository;
+
+    @Mock
+    private PlaylistSongRepository playlistSongRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private CoverArtService coverArtService;
+
+    @Mock
+    private FingerprintService fingerprintService;
+
+    @Mock
+    private TieringService tieringService;
+
+    @Mock
+    private FileRetirementService fileRetirementService;
+
+    private Path storage;
+    private SongService songService;
+    private StreamingUploadService uploadService;
+
+    @BeforeEach
+    public void setUp() {
+        storage = tempDir.resolve("mp3");
+        songService = new SongService(songRepository, playlistSongRepository, eventPublisher,
+                new Mp3MetadataParser(), coverArtService, fingerprintService,
+                new LocalSongStorage(storage.toString()), tieringService, fileRetirementService);
+        uploadService = new StreamingUploadService(songService, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator());
+    }
+
+    @Test
+    public void testUpload_WritesFileStraightToStorage() throws IOException {
+        byte[] content = audio(200);
+        when(songRepository.save(any(Song.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Song song = uploadService.upload(CONTENT_TYPE, new ByteArrayInputStream(body(DATA, content)));
+
+        assertEquals("Thunderstruck", song.getSongName());
+        assertEquals(1990, song.getReleaseYear());
+        assertEquals(storage.resolve("Thunderstruck.mp3").toString(), song.getFilePath());
+        assertArrayEquals(content, Files.readAllBytes(Paths.get(song.getFilePath())));
+        assertEquals(sha256(content), song.getFileHash());
+        assertEquals(128, song.getBitrate());
+        assertEquals(1, fileCount());
+    }
+
+    @Test
+    public void testUpload_OtherFormatRejectedFromFirstBytes() {
+        byte[] png = new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+        CountingStream rest = new CountingStream(50L * 1024 * 1024);
+
+        SongException e = assertThrows(SongException.class, () -> uploadService.upload(CONTENT_TYPE,
+                new SequenceInputStream(new ByteArrayInputStream(head(DATA, png)), rest)));
+
+        assertEquals("Invalid file format. Only MP3 files are allowed.", e.getMessage());
+        assertTrue(rest.read < 2 * MultipartStreamParser.BUFFER_SIZE, "Read " + rest.read + " bytes");
+        assertEquals(0, fileCount());
+        verify(songRepository, never()).save(any());
+    }
+
+    @Test
+    public void testUpload_DuplicateNameRejectedBeforeFileIsRead() {
+        when(songRepository.existsBySongName("Thunderstruck")).thenReturn(true);
+        CountingStream rest = new CountingStream(50L * 1024 * 1024);
+
+        SongException e = assertThrows(SongException.class, () -> uploadService.upload(CONTENT_TYPE,
+                new SequenceInputStream(new ByteArrayInputStream(head(DATA, audio(2))), rest)));
+
+        assertEquals("Song name already exists", e.getMessage());
+        assertTrue(rest.read < 2 * MultipartStreamParser.BUFFER_SIZE, "Read " + rest.read + " bytes");
+        assertEquals(0, fileCount());
+    }
+
+    @Test
+    public void testUpload_RejectsMisorderedOrInvalidParts() {
+        byte[] fileFirst = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"a.mp3\"\r\n\r\n"
+                + "\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        assertThrows(MultipartException.class,
+                () -> uploadService.upload(CONTENT_TYPE, new ByteArrayInputStream(fileFirst)));
+        assertThrows(MultipartException.class,
+                () -> uploadService.upload("application/json", new ByteArrayInputStream(fileFirst)));
+
+        SongException e = assertThrows(SongException.class, () -> uploadService.upload(CONTENT_TYPE,
+                new ByteArrayInputStream(body("{\"songName\":\"\"}", audio(2)))));
+        assertEquals("Invalid song data", e.getMessage());
+        verifyNoInteractions(songRepository);
+    }
+
+    @Test
+    public void testUpload_SameFileNameRacedOnlyOneStored() throws Exception {
+        Set<String> savedPaths = ConcurrentHashMap.newKeySet();
+        when(songRepository.existsByFilePath(anyString()))
+                .thenAnswer(invocation -> savedPaths.contains(invocation.<String>getArgument(0)));
+        when(songRepository.save(any(Song.class))).thenAnswer(invocation -> {
+            Song song = invocation.getArgument(0);
+            savedPaths.add(song.getFilePath());
+            return song;
+        });
+        byte[] first = audio(200);
+        byte[] second = audio(201);
+        String otherData = DATA.replace("Thunderstruck", "Back In Black");
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Song> one = pool.submit(racedUpload(start, DATA, first));
+            Future<Song> two = pool.submit(racedUpload(start, otherData, second));
+            start.countDown();
+
+            Song winner = null;
+            int rejected = 0;
+            for (Future<Song> upload : Arrays.asList(one, two)) {
+                try {
+                    winner = upload.get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertEquals("MP3 file already uploaded", e.getCause().getMessage());
+                    rejected++;
+                }
+            }
+            assertEquals(1, rejected);
+            assertNotNull(winner);
+            byte[] stored = Files.readAllBytes(storage.resolve("Thunderstruck.mp3"));
+            assertArrayEquals("Thunderstruck".equals(winner.getSongName()) ? first : second, stored);
+            assertEquals(1, fileCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEdit_NewVersionLeavesOldFileReadable() throws IOException {
+        byte[] oldContent = audio(200);
+        byte[] newContent = audio(300);
+        Files.createDirectories(storage);
+        Path oldFile = storage.resolve("Thunderstruck.mp3");
+        Files.write(oldFile, oldContent);
+        Song song = new Song();
+        song.setId(1L);
+        song.setSongName("Thunderstruck");
+        song.setFilePath(oldFile.toString());
+        when(songRepository.findById(1L)).thenReturn(Optional.of(song));
+        when(songRepository.save(any(Song.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        CreateSongDto dto = new CreateSongDto();
+        dto.setSongName("Thunderstruck");
+        dto.setArtistName("AC DC");
+        dto.setGenre("Rock");
+        dto.setReleaseYear(1990);
+
+        try (InputStream streaming = Files.newInputStream(oldFile)) {
+            Song edited = songService.editSong(1L,
+                    new MockMultipartFile("file", "Thunderstruck.mp3", "audio/mpeg", newContent), dto);
+
+            String version = sha256(newContent).substring(0, 12);
+            assertEquals(storage.resolve("Thunderstruck." + version + ".mp3").toString(), edited.getFilePath());
+            assertArrayEquals(newContent, Files.readAllBytes(Paths.get(edited.getFilePath())));
+            // A stream opened before the edit reads the old version to its end
+            assertArrayEquals(oldContent, StreamUtils.copyToByteArray(streaming));
+        }
+        assertArrayEquals(oldContent, Files.readAllBytes(oldFile));
+        verify(fileRetirementService).retire(oldFile.toString());
+    }
+
+    @Test
+    public void testUpload_FileNameCannotLeaveStorage() throws IOException {
+        when(songRepository.save(any(Song.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Song song = uploadService.upload(CONTENT_TYPE,
+                new ByteArrayInputStream(body(DATA, "../../Thunderstruck.mp3", audio(200))));
+
+        assertEquals(storage.resolve("Thunderstruck.mp3").toString(), song.getFilePath());
+        assertFalse(Files.exists(tempDir.resolve("Thunderstruck.mp3")));
+        assertEquals(1, fileCount());
+    }
+
+    @Test
+    public void testMultipartUpload_FileNameCannotLeaveStorage() {
+        when(songRepository.save(any(Song.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        CreateSongDto dto = new CreateSongDto();
+        dto.setSongName("Thunderstruck");
+        dto.setArtistName("AC DC");
+        dto.setGenre("Rock");
+        dto.setReleaseYear(1990);
+
+        Song song = songService.uploadSong(
+                new MockMultipartFile("file", "..\\..\\Thunderstruck.mp3", "audio/mpeg", audio(200)), dto);
+
+        assertEquals(storage.resolve("Thunderstruck.mp3").toString(), song.getFilePath());
+        assertFalse(Files.exists(tempDir.resolve("Thunderstruck.mp3")));
+        assertEquals(1, fileCount());
+    }
+
+    private long fileCount() {
+        if (!Files.isDirectory(storage)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(storage)) {
+            return files.count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Callable<Song> racedUpload(CountDownLatch start, String data, byte[] content) {
+        return () -> {
+            start.await();
+            return uploadService.upload(CONTENT_TYPE, new ByteArrayInputStream(body(data, content)));
+        };
+    }
+
+    private static byte[] body(String data, byte[] content) {
+        return body(data, "Thunderstruck.mp3", content);
+    }
+
+    private static byte[] body(String data, String fileName, byte[] content) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] head = head(data, fileName, content);
+        body.write(head, 0, head.length);
+        byte[] end = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        body.write(end, 0, end.length);
+        return body.toByteArray();
+    }
+
+    // The body up to and including the given start of the file
+    private static byte[] head(String data, byte[] content) {
+        return head(data, "Thunderstruck.mp3", content);
+    }
+
+    private static byte[] head(String data, String fileName, byte[] content) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] parts = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"data\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + data + "\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: audio/mpeg\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        body.write(parts, 0, parts.length);
+        body.write(content, 0, content.length);
+        return body.toByteArray();
+    }
+
+    private static byte[] audio(int frames) {
+        Random random = new Random(frames);
+        ByteBuffer audio = ByteBuffer.allocate(frames * FRAME_LENGTH);
+        for (int i = 0; i < frames; i++) {
+            byte[] payload = new byte[FRAME_LENGTH - 4];
+            random.nextBytes(payload);
+            audio.putInt(FRAME_HEADER).put(payload);
+        }
+        return audio.array();
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // A long body of zeros that counts how much of it was read
+    private static final class CountingStream extends InputStream {
+
+        private final long length;
+        private long read;
+
+        private CountingStream(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            if (read >= length) {
+                return -1;
+            }
+            read++;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int count) {
+            if (read >= length) {
+                return -1;
+            }
+            int n = (int) Math.min(count, length - read);
+            Arrays.fill(target, offset, offset + n, (byte) 0);
+            read += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package Rift.Radio.service.upload;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripedLocksUnitTest {
+
+    @Test
+    public void testLock_ExcludesOtherHoldersOfTheKey() throws Exception {
+        StripedLocks locks = new StripedLocks(16);
+        AtomicInteger inside = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int t = 0; t < futures.length; t++) {
+                futures[t] = pool.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        try (StripedLocks.Held held = locks.lock("file:a.mp3")) {
+                            if (inside.incrementAndGet() > 1) {
+                                overlapped.set(true);
+                            }
+                            Thread.yield();
+                            inside.decrementAndGet();
+                        }
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertFalse(overlapped.get());
+    }
+
+    @Test
+    public void testLock_KeysInAnyOrderDoNotDeadlock() throws Exception {
+        StripedLocks locks = new StripedLocks(64);
+        String first = "name:first";
+        String second = "name:second";
+        assertNotEquals(locks.stripe(first), locks.stripe(second));
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> forward = pool.submit(() -> lockRepeatedly(locks, start, first, second));
+            Future<?> backward = pool.submit(() -> lockRepeatedly(locks, start, second, first));
+            start.countDown();
+            forward.get(10, TimeUnit.SECONDS);
+            backward.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Keys on one stripe, and null keys, are fine too
+        try (StripedLocks.Held held = locks.lock(first, first, null)) {
+            assertNotNull(held);
+        }
+    }
+
+    private static Void lockRepeatedly(StripedLocks locks, CountDownLatch start, String... keys) throws Exception {
+        start.await();
+        for (int i = 0; i < 10_000; i++) {
+            try (StripedLocks.Held held = locks.lock(keys)) {
+                Thread.yield();
+            }
+        }
+        return null;
+    }
+}